@@ -0,0 +1,427 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>AuthenticationCache</code> keeps the resource resolvers of
+ * authenticated requests for a short time to be used by later requests
+ * presenting the same credentials, saving the repository login.
+ * <p>
+ * The cache is keyed by a digest of the credentials extracted and validated
+ * by the authentication handler, so the credentials themselves are not
+ * kept. A resource resolver is only ever used by a single request at a
+ * time: requests are handed out a proxy, whose <code>close</code> method
+ * reverts and refreshes the resource resolver and returns it to the cache.
+ * <p>
+ * Cached resource resolvers of a user are closed when the user logs out or
+ * changes the password, or when the node of the user is changed or removed,
+ * for example by a password change through the user management. All cached
+ * resource resolvers are closed when the cache is cleared, e.g. because
+ * group memberships have changed. The resource resolvers of expired logins
+ * are closed on the next login or, without logins, on the first request
+ * after the time to live.
+ */
+class AuthenticationCache {
+
+    /** The maximum number of idle resource resolvers kept per credentials */
+    private static final int MAX_IDLE = 2;
+
+    /** The name of the authentication info property of a new password */
+    static final String NEW_PASSWORD = "user.newpassword";
+
+    private final Logger log = LoggerFactory.getLogger(AuthenticationCache.class);
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private final long ttl;
+
+    private final int maxEntries;
+
+    /** The time after which the next request removes the expired logins */
+    private volatile long nextSweep;
+
+    /**
+     * @param ttl The time in milliseconds a login is reused
+     * @param maxEntries The maximum number of credentials cached
+     */
+    AuthenticationCache(final long ttl, final int maxEntries) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.nextSweep = System.currentTimeMillis() + ttl;
+    }
+
+    /**
+     * Returns the key of the credentials of the authentication info or
+     * <code>null</code> if the credentials cannot be cached, because they
+     * are of an unknown type or a password change is requested.
+     */
+    static String getKey(final AuthenticationInfo authInfo) {
+        if (authInfo.getAuthType() == null || authInfo.getUser() == null
+            || authInfo.containsKey(NEW_PASSWORD)) {
+            return null;
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            return null;
+        }
+
+        // digest the properties in a stable order
+        final Map<String, Object> properties = new TreeMap<String, Object>(authInfo);
+        try {
+            for (final Map.Entry<String, Object> property : properties.entrySet()) {
+                final String value = toString(property.getValue());
+                if (value == null) {
+                    return null;
+                }
+                update(digest, property.getKey());
+                update(digest, value);
+            }
+        } catch (UnsupportedEncodingException uee) {
+            return null;
+        }
+
+        final StringBuilder key = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    private static void update(final MessageDigest digest, final String value) throws UnsupportedEncodingException {
+        digest.update(value.getBytes("UTF-8"));
+        // separate the values
+        digest.update((byte) 0);
+    }
+
+    private static String toString(final Object value) {
+        if (value instanceof String || value instanceof Boolean || value instanceof Number) {
+            return value.toString();
+        } else if (value instanceof char[]) {
+            return new String((char[]) value);
+        } else if (value instanceof String[]) {
+            return Arrays.toString((String[]) value);
+        } else if (value instanceof SimpleCredentials) {
+            final SimpleCredentials credentials = (SimpleCredentials) value;
+            final StringBuilder builder = new StringBuilder(credentials.getUserID()).append(':')
+                    .append(credentials.getPassword());
+            final String[] names = credentials.getAttributeNames();
+            Arrays.sort(names);
+            for (final String name : names) {
+                final String attribute = toString(credentials.getAttribute(name));
+                if (attribute == null) {
+                    return null;
+                }
+                builder.append(':').append(name).append('=').append(attribute);
+            }
+            return builder.toString();
+        }
+
+        // unknown credentials cannot be compared
+        return null;
+    }
+
+    /**
+     * Returns a resource resolver for the credentials if one is cached and
+     * not in use by another request.
+     *
+     * @return The resource resolver or <code>null</code>
+     */
+    ResourceResolver acquire(final String key) {
+        if (System.currentTimeMillis() >= nextSweep) {
+            removeExpired();
+        }
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            remove(entry);
+            return null;
+        }
+
+        ResourceResolver resolver;
+        while ((resolver = entry.poll()) != null) {
+            if (resolver.isLive()) {
+                return createProxy(entry, resolver);
+            }
+            resolver.close();
+        }
+        return null;
+    }
+
+    /**
+     * Adds the resource resolver of a new login to the cache.
+     *
+     * @return The resource resolver to use for the request, which returns
+     *         the resource resolver to the cache when being closed
+     */
+    ResourceResolver add(final String key, final String userId, final ResourceResolver resolver) {
+        // a login is expensive compared to looking at all entries
+        removeExpired();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= maxEntries) {
+                return resolver;
+            }
+            final Entry newEntry = new Entry(key, userId, getUserPath(resolver), System.currentTimeMillis() + ttl);
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return createProxy(entry, resolver);
+    }
+
+    /**
+     * Closes the cached resource resolvers of the user.
+     */
+    void invalidateUser(final String userId) {
+        if (userId == null) {
+            return;
+        }
+        for (final Entry entry : entries.values()) {
+            if (userId.equals(entry.userId)) {
+                remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Closes the cached resource resolvers of the users whose node has been
+     * changed or removed. If <code>removed</code> is <code>true</code>, the
+     * users below the path are invalidated as well. The resource resolvers
+     * of users whose node is not known are closed on any change.
+     */
+    void invalidateUserPath(final String path, final boolean removed) {
+        for (final Entry entry : entries.values()) {
+            if (entry.userPath == null || entry.userPath.equals(path)
+                || (removed && entry.userPath.startsWith(path.endsWith("/") ? path : path.concat("/")))) {
+                remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Closes all cached resource resolvers.
+     */
+    void clear() {
+        for (final Entry entry : entries.values()) {
+            remove(entry);
+        }
+    }
+
+    /** The number of credentials cached */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the path of the node of the user of the resource resolver or
+     * <code>null</code> if it cannot be found, for example because the
+     * repository does not implement the Jackrabbit API.
+     */
+    private String getUserPath(final ResourceResolver resolver) {
+        try {
+            final Session session = resolver.adaptTo(Session.class);
+            if (session instanceof JackrabbitSession) {
+                final Authorizable user = ((JackrabbitSession) session).getUserManager()
+                        .getAuthorizable(session.getUserID());
+                if (user != null) {
+                    return user.getPath();
+                }
+            }
+        } catch (final RepositoryException | RuntimeException e) {
+            log.debug("getUserPath: Cannot find node of user {}", resolver.getUserID(), e);
+        } catch (final NoClassDefFoundError ncdfe) {
+            // JCR or Jackrabbit API not available
+        }
+        return null;
+    }
+
+    /**
+     * Closes the idle resource resolvers of the expired logins.
+     */
+    private void removeExpired() {
+        nextSweep = System.currentTimeMillis() + ttl;
+        for (final Entry entry : entries.values()) {
+            if (entry.isExpired()) {
+                remove(entry);
+            }
+        }
+    }
+
+    private void remove(final Entry entry) {
+        entries.remove(entry.key, entry);
+        entry.invalidate();
+    }
+
+    /**
+     * Returns the resource resolver to the cache once the request is done.
+     */
+    private void release(final Entry entry, final ResourceResolver resolver) {
+        try {
+            if (!entry.isInvalid() && !entry.isExpired() && resolver.isLive()) {
+                if (resolver.hasChanges()) {
+                    resolver.revert();
+                }
+                resolver.refresh();
+                if (entry.offer(resolver)) {
+                    return;
+                }
+            }
+        } catch (RuntimeException re) {
+            log.debug("release: Cannot reuse resource resolver of {}", entry.userId, re);
+        }
+        resolver.close();
+    }
+
+    private ResourceResolver createProxy(final Entry entry, final ResourceResolver resolver) {
+        return (ResourceResolver) Proxy.newProxyInstance(ResourceResolver.class.getClassLoader(),
+            new Class<?>[] { ResourceResolver.class }, new CachedResolverHandler(entry, resolver));
+    }
+
+    /**
+     * The idle resource resolvers of a login.
+     */
+    private static class Entry {
+
+        final String key;
+
+        final String userId;
+
+        /** The path of the node of the user, <code>null</code> if unknown */
+        final String userPath;
+
+        private final long expires;
+
+        private final LinkedList<ResourceResolver> idle = new LinkedList<ResourceResolver>();
+
+        private boolean invalid;
+
+        Entry(final String key, final String userId, final String userPath, final long expires) {
+            this.key = key;
+            this.userId = userId;
+            this.userPath = userPath;
+            this.expires = expires;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expires;
+        }
+
+        synchronized boolean isInvalid() {
+            return invalid;
+        }
+
+        synchronized ResourceResolver poll() {
+            return idle.poll();
+        }
+
+        synchronized boolean offer(final ResourceResolver resolver) {
+            if (invalid || idle.size() >= MAX_IDLE) {
+                return false;
+            }
+            idle.addFirst(resolver);
+            return true;
+        }
+
+        void invalidate() {
+            final ResourceResolver[] resolvers;
+            synchronized (this) {
+                invalid = true;
+                resolvers = idle.toArray(new ResourceResolver[idle.size()]);
+                idle.clear();
+            }
+            for (final ResourceResolver resolver : resolvers) {
+                resolver.close();
+            }
+        }
+    }
+
+    /**
+     * Delegates to the cached resource resolver until the request closes
+     * it, at which point the resource resolver is returned to the cache.
+     */
+    private class CachedResolverHandler implements InvocationHandler {
+
+        private final Entry entry;
+
+        private final ResourceResolver resolver;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        CachedResolverHandler(final Entry entry, final ResourceResolver resolver) {
+            this.entry = entry;
+            this.resolver = resolver;
+        }
+
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if ("close".equals(name) && method.getParameterTypes().length == 0) {
+                if (closed.compareAndSet(false, true)) {
+                    release(entry, resolver);
+                }
+                return null;
+            } else if ("isLive".equals(name) && method.getParameterTypes().length == 0) {
+                return !closed.get() && resolver.isLive();
+            } else if ("equals".equals(name) && method.getParameterTypes().length == 1) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name) && method.getParameterTypes().length == 0) {
+                return System.identityHashCode(proxy);
+            } else if (closed.get() && !"toString".equals(name)) {
+                throw new IllegalStateException("Resource resolver is already closed.");
+            }
+
+            try {
+                return method.invoke(resolver, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
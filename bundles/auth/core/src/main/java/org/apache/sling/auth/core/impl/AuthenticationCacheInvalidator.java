@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>AuthenticationCacheInvalidator</code> discards reused logins
+ * after resource changes. Changes at or below the invalidation paths clear
+ * the whole cache, e.g. because group memberships have changed. Changes
+ * below the users path discard the logins of the changed or removed users,
+ * e.g. because their password has been changed or they have been disabled.
+ */
+class AuthenticationCacheInvalidator implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    private final Logger log = LoggerFactory.getLogger(AuthenticationCacheInvalidator.class);
+
+    private final AuthenticationCache cache;
+
+    private final String[] invalidationPaths;
+
+    private final String usersPath;
+
+    AuthenticationCacheInvalidator(final AuthenticationCache cache, final String[] invalidationPaths,
+            final String usersPath) {
+        this.cache = cache;
+        this.invalidationPaths = normalize(invalidationPaths);
+        final String[] users = normalize(new String[] { usersPath });
+        this.usersPath = (users.length > 0) ? users[0] : null;
+    }
+
+    /**
+     * Registers the invalidator as a resource change listener for its paths.
+     *
+     * @return The registration or <code>null</code> if there are no paths
+     *         to listen to
+     */
+    ServiceRegistration register(final BundleContext bundleContext, final Object vendor) {
+        final List<String> paths = new ArrayList<String>();
+        for (final String path : invalidationPaths) {
+            paths.add(path);
+        }
+        if (usersPath != null) {
+            paths.add(usersPath);
+        }
+        if (paths.isEmpty()) {
+            return null;
+        }
+
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(ResourceChangeListener.PATHS, paths.toArray(new String[paths.size()]));
+        props.put(ResourceChangeListener.CHANGES, new String[] {
+            ResourceChange.ChangeType.ADDED.name(), ResourceChange.ChangeType.CHANGED.name(),
+            ResourceChange.ChangeType.REMOVED.name() });
+        props.put(Constants.SERVICE_DESCRIPTION, "Sling Request Authenticator Cache Invalidator");
+        if (vendor != null) {
+            props.put(Constants.SERVICE_VENDOR, vendor);
+        }
+        return bundleContext.registerService(ResourceChangeListener.class.getName(), this, props);
+    }
+
+    @Override
+    public void onChange(final List<ResourceChange> changes) {
+        for (final ResourceChange change : changes) {
+            final String path = change.getPath();
+            if (isAtOrBelow(path, invalidationPaths)) {
+                log.debug("onChange: Clearing authentication cache after change of {}", path);
+                cache.clear();
+                return;
+            }
+            if (usersPath != null && isAtOrBelow(path, usersPath)
+                && change.getType() != ResourceChange.ChangeType.ADDED) {
+                log.debug("onChange: Invalidating users after change of {}", path);
+                cache.invalidateUserPath(path, change.getType() == ResourceChange.ChangeType.REMOVED);
+            }
+        }
+    }
+
+    private static boolean isAtOrBelow(final String path, final String[] parents) {
+        for (final String parent : parents) {
+            if (isAtOrBelow(path, parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAtOrBelow(final String path, final String parent) {
+        return path.equals(parent) || "/".equals(parent)
+            || (path.startsWith(parent) && path.charAt(parent.length()) == '/');
+    }
+
+    /**
+     * Returns the non-empty paths without trailing slashes.
+     */
+    private static String[] normalize(final String[] paths) {
+        final List<String> result = new ArrayList<String>();
+        if (paths != null) {
+            for (String path : paths) {
+                if (path == null || path.trim().length() == 0) {
+                    continue;
+                }
+                path = path.trim();
+                if (path.length() > 1 && path.endsWith("/")) {
+                    path = path.substring(0, path.length() - 1);
+                }
+                result.add(path);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+}
@@ -19,125 +19,237 @@
 package org.apache.sling.auth.core.impl;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.servlet.http.HttpServletRequest;
 
+/**
+ * The <code>PathBasedHolderCache</code> keeps the {@link PathBasedHolder}s by
+ * protocol and host in path tries, to find the holders applying to a request
+ * path by walking the path segments.
+ * <p>
+ * The tries are immutable: they are rebuilt whenever a holder is added or
+ * removed and published at once, such that lookups need no locking and take
+ * time bounded by the depth of the request path.
+ */
 public class PathBasedHolderCache<Type extends PathBasedHolder> {
 
-    private final Map<String, Map<String, SortedSet<Type>>> cache = new HashMap<String, Map<String, SortedSet<Type>>>();
+    /** The holders by protocol and host, guarded by <code>this</code> */
+    private final Map<String, Map<String, SortedSet<Type>>> holders = new HashMap<String, Map<String, SortedSet<Type>>>();
 
-    /** Read/write lock to synchronize the cache access. */
-    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+    /** The tries by protocol and host, replaced on any change */
+    private volatile Map<String, Map<String, Node<Type>>> cache = Collections.emptyMap();
 
-    public void clear() {
-        this.rwLock.writeLock().lock();
-        try {
-            cache.clear();
-        } finally {
-            this.rwLock.writeLock().unlock();
-        }
+    public synchronized void clear() {
+        holders.clear();
+        cache = Collections.emptyMap();
     }
 
-    public void addHolder(final Type holder) {
-        this.rwLock.writeLock().lock();
-        try {
+    public synchronized void addHolder(final Type holder) {
+        Map<String, SortedSet<Type>> byHostMap = holders.get(holder.protocol);
+        if (byHostMap == null) {
+            byHostMap = new HashMap<String, SortedSet<Type>>();
+            holders.put(holder.protocol, byHostMap);
+        }
+        SortedSet<Type> byPathSet = byHostMap.get(holder.host);
+        if (byPathSet == null) {
+            byPathSet = new TreeSet<Type>();
+            byHostMap.put(holder.host, byPathSet);
+        }
+        if (byPathSet.add(holder)) {
+            cache = build(holders);
+        }
+    }
 
-            Map<String, SortedSet<Type>> byHostMap = cache.get(holder.protocol);
-            if (byHostMap == null) {
-                byHostMap = new HashMap<String, SortedSet<Type>>();
-                cache.put(holder.protocol, byHostMap);
+    public synchronized void removeHolder(final Type holder) {
+        final Map<String, SortedSet<Type>> byHostMap = holders.get(holder.protocol);
+        if (byHostMap != null) {
+            final SortedSet<Type> byPathSet = byHostMap.get(holder.host);
+            if (byPathSet != null && byPathSet.remove(holder)) {
+                if (byPathSet.isEmpty()) {
+                    byHostMap.remove(holder.host);
+                }
+                cache = build(holders);
             }
+        }
+    }
 
-            final SortedSet<Type> byPathSet = new TreeSet<Type>();
+    /**
+     * Returns the holders applying to the path of the request. Holders
+     * registered for the scheme and host of the request come first, followed
+     * by holders for the scheme, for the host, and for any scheme and host.
+     * Within each of these, holders with longer paths come first, and
+     * holders with the same path are ordered by their service references.
+     *
+     * @param request The request providing scheme and host
+     * @param path The path to select the holders for
+     * @return The applicable holders, which may be empty
+     */
+    public List<Type> findApplicableHolders(final HttpServletRequest request, final String path) {
+        final List<Type> result = new ArrayList<Type>();
+        if (path == null) {
+            return result;
+        }
 
-            // preset with current list
-            final SortedSet<Type> currentPathSet = byHostMap.get(holder.host);
-            if (currentPathSet != null) {
-                byPathSet.addAll(currentPathSet);
-            }
+        final String hostname = request.getServerName()
+              + (request.getServerPort() != 80 && request.getServerPort() != 443
+                ? ":" + request.getServerPort()
+                : "");
 
-            // add the new holder
-            byPathSet.add(holder);
+        final Map<String, Map<String, Node<Type>>> cache = this.cache;
+        final Map<String, Node<Type>> byHostMap = cache.get(request.getScheme());
+        if ( byHostMap != null ) {
+            collect(byHostMap.get(hostname), path, result);
+            collect(byHostMap.get(""), path, result);
+        }
+        final Map<String, Node<Type>> defaultByHostMap = cache.get("");
+        if ( defaultByHostMap != null ) {
+            collect(defaultByHostMap.get(hostname), path, result);
+            collect(defaultByHostMap.get(""), path, result);
+        }
+        return result;
+    }
 
-            // replace old set with new set
-            byHostMap.put(holder.host, byPathSet);
-        } finally {
-            this.rwLock.writeLock().unlock();
+    public synchronized List<Type> getHolders() {
+        final List<Type> result = new ArrayList<Type>();
+        for (Map<String, SortedSet<Type>> byHostEntry : holders.values()) {
+            for (SortedSet<Type> holderSet : byHostEntry.values()) {
+                result.addAll(holderSet);
+            }
         }
+        return result;
     }
 
-    public void removeHolder(final Type holder) {
-        this.rwLock.writeLock().lock();
-        try {
-            final Map<String, SortedSet<Type>> byHostMap = cache.get(holder.protocol);
-            if (byHostMap != null) {
-                final SortedSet<Type> byPathSet = byHostMap.get(holder.host);
-                if (byPathSet != null) {
-
-                    // create a new set without the removed holder
-                    final SortedSet<Type> set = new TreeSet<Type>();
-                    set.addAll(byPathSet);
-                    set.remove(holder);
-
-                    // replace the old set with the new one (or remove if empty)
-                    if (set.isEmpty()) {
-                        byHostMap.remove(holder.host);
-                    } else {
-                        byHostMap.put(holder.host, set);
-                    }
+    private static <Type extends PathBasedHolder> Map<String, Map<String, Node<Type>>> build(
+            final Map<String, Map<String, SortedSet<Type>>> holders) {
+        final Map<String, Map<String, Node<Type>>> cache = new HashMap<String, Map<String, Node<Type>>>();
+        for (final Map.Entry<String, Map<String, SortedSet<Type>>> byHostEntry : holders.entrySet()) {
+            final Map<String, Node<Type>> byHostMap = new HashMap<String, Node<Type>>();
+            for (final Map.Entry<String, SortedSet<Type>> byPathEntry : byHostEntry.getValue().entrySet()) {
+                // holders are added in order, so each node lists its holders sorted
+                final Node<Type> root = new Node<Type>(0);
+                for (final Type holder : byPathEntry.getValue()) {
+                    root.add(holder);
                 }
+                byHostMap.put(byPathEntry.getKey(), root);
             }
-        } finally {
-            this.rwLock.writeLock().unlock();
+            cache.put(byHostEntry.getKey(), byHostMap);
         }
+        return cache;
     }
 
-    public Collection<Type>[] findApplicableHolders(final HttpServletRequest request) {
-        this.rwLock.readLock().lock();
-        try {
-            final String hostname = request.getServerName()
-                  + (request.getServerPort() != 80 && request.getServerPort() != 443
-                    ? ":" + request.getServerPort()
-                    : "");
-
-            @SuppressWarnings("unchecked")
-            final SortedSet<Type>[] result = new SortedSet[4];
-
-            final Map<String, SortedSet<Type>> byHostMap = cache.get(request.getScheme());
-            if ( byHostMap != null ) {
-                result[0] = byHostMap.get(hostname);
-                result[1] = byHostMap.get("");
+    /**
+     * Adds the holders of the trie applying to the path to the result,
+     * longest holder paths first.
+     * <p>
+     * A holder applies if its path is <code>/</code>, equals the path, or
+     * is a prefix of the path followed by a <code>/</code> or <code>.</code>
+     * in the path. The path is walked segment by segment: the holders of
+     * each node reached apply, as do the holders of a sibling named like
+     * the segment up to one of its dots.
+     */
+    private static <Type extends PathBasedHolder> void collect(final Node<Type> root, final String path,
+            final List<Type> result) {
+        if (root == null) {
+            return;
+        }
+
+        // the nodes found, by increasing length of their path
+        final List<Node<Type>> found = new ArrayList<Node<Type>>();
+        Node<Type> node = root;
+        int start = 0;
+        while (node != null && node.children != null) {
+            final int end = path.indexOf('/', start);
+            final String segment = (end < 0) ? path.substring(start) : path.substring(start, end);
+            for (int dot = segment.indexOf('.'); dot >= 0; dot = segment.indexOf('.', dot + 1)) {
+                final Node<Type> child = node.children.get(segment.substring(0, dot));
+                if (child != null && child.holders != null) {
+                    found.add(child);
+                }
             }
-            final Map<String, SortedSet<Type>> defaultByHostMap = cache.get("");
-            if ( defaultByHostMap != null ) {
-                result[2] = defaultByHostMap.get(hostname);
-                result[3] = defaultByHostMap.get("");
+            node = node.children.get(segment);
+            if (node != null && node.holders != null) {
+                found.add(node);
             }
-            return result;
-        } finally {
-            this.rwLock.readLock().unlock();
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+
+        // holders for the root path apply to any path, sorted by length 1
+        boolean rootAdded = root.rootHolders == null;
+        for (int i = found.size() - 1; i >= 0; i--) {
+            final Node<Type> match = found.get(i);
+            if (!rootAdded && match.length < 1) {
+                result.addAll(root.rootHolders);
+                rootAdded = true;
+            }
+            result.addAll(match.holders);
+        }
+        if (!rootAdded) {
+            result.addAll(root.rootHolders);
         }
     }
 
-    public List<Type> getHolders() {
-        this.rwLock.readLock().lock();
-        try {
-            final List<Type> result = new ArrayList<Type>();
-            for (Map<String, SortedSet<Type>> byHostEntry : cache.values()) {
-                for (SortedSet<Type> holderSet : byHostEntry.values()) {
-                    result.addAll(holderSet);
+    /**
+     * A node of the path trie for the holders of a protocol and host.
+     */
+    private static class Node<Type extends PathBasedHolder> {
+
+        /** The length of the path of the holders of this node */
+        final int length;
+
+        Map<String, Node<Type>> children;
+
+        /** The holders registered for this path, sorted */
+        List<Type> holders;
+
+        /** The holders registered for the root path, only set on the root */
+        List<Type> rootHolders;
+
+        Node(final int length) {
+            this.length = length;
+        }
+
+        void add(final Type holder) {
+            final String path = holder.path;
+            if ("/".equals(path)) {
+                if (rootHolders == null) {
+                    rootHolders = new ArrayList<Type>();
                 }
+                rootHolders.add(holder);
+                return;
             }
-            return result;
-        } finally {
-            this.rwLock.readLock().unlock();
+
+            Node<Type> node = this;
+            int start = 0;
+            for (;;) {
+                final int end = path.indexOf('/', start);
+                final String segment = (end < 0) ? path.substring(start) : path.substring(start, end);
+                if (node.children == null) {
+                    node.children = new HashMap<String, Node<Type>>();
+                }
+                Node<Type> child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node<Type>((end < 0) ? path.length() : end);
+                    node.children.put(segment, child);
+                }
+                node = child;
+                if (end < 0) {
+                    break;
+                }
+                start = end + 1;
+            }
+            if (node.holders == null) {
+                node.holders = new ArrayList<Type>();
+            }
+            node.holders.add(holder);
         }
     }
 }
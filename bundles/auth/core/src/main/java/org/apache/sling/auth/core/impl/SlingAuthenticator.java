@@ -23,7 +23,6 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -200,6 +199,35 @@ public class SlingAuthenticator implements Authenticator,
     @Property(value = DEFAULT_AUTH_URI_SUFFIX, unbounded = PropertyUnbounded.ARRAY)
     public static final String PAR_AUTH_URI_SUFFIX = "auth.uri.suffix";
 
+    /** The default time in seconds a repository login is reused, 0 to disable */
+    private static final long DEFAULT_AUTH_CACHE_TTL = 0;
+
+    /**
+     * The name of the configuration property defining the time in seconds
+     * the resource resolver of a request is reused by later requests with
+     * the same credentials.
+     */
+    @Property(longValue = DEFAULT_AUTH_CACHE_TTL)
+    private static final String PAR_AUTH_CACHE_TTL = "auth.cache.ttl";
+
+    /** The default maximum number of credentials whose login is reused */
+    private static final int DEFAULT_AUTH_CACHE_SIZE = 1000;
+
+    @Property(intValue = DEFAULT_AUTH_CACHE_SIZE)
+    private static final String PAR_AUTH_CACHE_SIZE = "auth.cache.size";
+
+    /** The default path below which changes invalidate the reused logins */
+    private static final String DEFAULT_AUTH_CACHE_INVALIDATION_PATH = "/home/groups";
+
+    @Property(value = DEFAULT_AUTH_CACHE_INVALIDATION_PATH, unbounded = PropertyUnbounded.ARRAY)
+    private static final String PAR_AUTH_CACHE_INVALIDATION_PATHS = "auth.cache.invalidation.paths";
+
+    /** The default path below which changes of user nodes invalidate their logins */
+    private static final String DEFAULT_AUTH_CACHE_USERS_PATH = "/home/users";
+
+    @Property(value = DEFAULT_AUTH_CACHE_USERS_PATH)
+    private static final String PAR_AUTH_CACHE_USERS_PATH = "auth.cache.users.path";
+
     /**
      * The name of the {@link AuthenticationInfo} property providing the option
      * {@link org.apache.sling.auth.core.spi.AuthenticationFeedbackHandler}
@@ -250,6 +278,21 @@ public class SlingAuthenticator implements Authenticator,
      */
     private char[] anonPassword;
 
+    /**
+     * The cache of resource resolvers reused by requests with the same
+     * credentials, <code>null</code> if logins are not reused.
+     */
+    private volatile AuthenticationCache authenticationCache;
+
+    /** The bundle context of the activated component */
+    private BundleContext bundleContext;
+
+    /**
+     * Resource change listener invalidating the authentication cache,
+     * only registered while logins are reused.
+     */
+    private ServiceRegistration authCacheInvalidator;
+
     /** HTTP Basic authentication handler */
     private HttpBasicAuthenticationHandler httpBasicHandler;
 
@@ -289,6 +332,7 @@ public class SlingAuthenticator implements Authenticator,
     @Activate
     private void activate(final BundleContext bundleContext,
             final Map<String, Object> properties) {
+        this.bundleContext = bundleContext;
         modified(properties);
 
         AuthenticatorWebConsolePlugin plugin = new AuthenticatorWebConsolePlugin(
@@ -396,12 +440,48 @@ public class SlingAuthenticator implements Authenticator,
             final String realm = PropertiesUtil.toString(properties.get(PAR_REALM_NAME), DEFAULT_REALM);
             httpBasicHandler = new HttpBasicAuthenticationHandler(realm, HTTP_AUTH_ENABLED.equals(http));
         }
+
+        // reused logins are dropped on any configuration change
+        final AuthenticationCache oldCache = this.authenticationCache;
+        if (authCacheInvalidator != null) {
+            authCacheInvalidator.unregister();
+            authCacheInvalidator = null;
+        }
+        final long cacheTtl = PropertiesUtil.toLong(properties.get(PAR_AUTH_CACHE_TTL), DEFAULT_AUTH_CACHE_TTL);
+        if (cacheTtl > 0) {
+            final int cacheSize = PropertiesUtil.toInteger(properties.get(PAR_AUTH_CACHE_SIZE), DEFAULT_AUTH_CACHE_SIZE);
+            final AuthenticationCache cache = new AuthenticationCache(cacheTtl * 1000L, cacheSize);
+            if (bundleContext != null) {
+                final AuthenticationCacheInvalidator invalidator = new AuthenticationCacheInvalidator(cache,
+                    PropertiesUtil.toStringArray(properties.get(PAR_AUTH_CACHE_INVALIDATION_PATHS),
+                        new String[] { DEFAULT_AUTH_CACHE_INVALIDATION_PATH }),
+                    PropertiesUtil.toString(properties.get(PAR_AUTH_CACHE_USERS_PATH), DEFAULT_AUTH_CACHE_USERS_PATH));
+                authCacheInvalidator = invalidator.register(bundleContext, properties.get(Constants.SERVICE_VENDOR));
+            }
+            this.authenticationCache = cache;
+            log.info("modified: Reusing logins for {} seconds", cacheTtl);
+        } else {
+            this.authenticationCache = null;
+        }
+        if (oldCache != null) {
+            oldCache.clear();
+        }
     }
 
     @SuppressWarnings("unused")
     @Deactivate
     private void deactivate(final BundleContext bundleContext) {
         this.authRequiredCache.clear();
+        if (authCacheInvalidator != null) {
+            authCacheInvalidator.unregister();
+            authCacheInvalidator = null;
+        }
+        this.bundleContext = null;
+        final AuthenticationCache cache = this.authenticationCache;
+        if (cache != null) {
+            this.authenticationCache = null;
+            cache.clear();
+        }
         if (engineAuthHandlerTracker != null) {
             engineAuthHandlerTracker.close();
             engineAuthHandlerTracker = null;
@@ -543,31 +623,24 @@ public class SlingAuthenticator implements Authenticator,
         }
 
         // select path used for authentication handler selection
-        final Collection<AbstractAuthenticationHandlerHolder>[] holdersArray = this.authHandlerCache
-                .findApplicableHolders(request);
         final String path = getHandlerSelectionPath(request);
+        final List<AbstractAuthenticationHandlerHolder> holderList = this.authHandlerCache
+                .findApplicableHolders(request, path);
         boolean done = false;
-        for (int m = 0; !done && m < holdersArray.length; m++) {
-            final Collection<AbstractAuthenticationHandlerHolder> holderList = holdersArray[m];
-            if ( holderList != null ) {
-                for (AbstractAuthenticationHandlerHolder holder : holderList) {
-                    if (isNodeRequiresAuthHandler(path, holder.path)) {
-                        log.debug("login: requesting authentication using handler: {}",
-                            holder);
-
-                        try {
-                            done = holder.requestCredentials(request, response);
-                        } catch (IOException ioe) {
-                            log.error(
-                                "login: Failed sending authentication request through handler "
-                                    + holder + ", access forbidden", ioe);
-                            done = true;
-                        }
-                        if (done) {
-                            break;
-                        }
-                    }
-                }
+        for (AbstractAuthenticationHandlerHolder holder : holderList) {
+            log.debug("login: requesting authentication using handler: {}",
+                holder);
+
+            try {
+                done = holder.requestCredentials(request, response);
+            } catch (IOException ioe) {
+                log.error(
+                    "login: Failed sending authentication request through handler "
+                        + holder + ", access forbidden", ioe);
+                done = true;
+            }
+            if (done) {
+                break;
             }
         }
 
@@ -578,13 +651,7 @@ public class SlingAuthenticator implements Authenticator,
 
         // no handler could send an authentication request, throw
         if (!done) {
-            int size = 0;
-            for (int m = 0; m < holdersArray.length; m++) {
-                if (holdersArray[m] != null) {
-                    size += holdersArray[m].size();
-                }
-            }
-            log.info("login: No handler for request ({} handlers available)", size);
+            log.info("login: No handler for request ({} handlers available)", holderList.size());
             throw new NoAuthenticationHandlerException();
         }
     }
@@ -605,26 +672,24 @@ public class SlingAuthenticator implements Authenticator,
         // make sure impersonation is dropped
         setSudoCookie(request, response, new AuthenticationInfo("dummy", request.getRemoteUser()));
 
+        // make sure the login is not reused
+        final AuthenticationCache cache = this.authenticationCache;
+        if (cache != null) {
+            cache.invalidateUser(request.getRemoteUser());
+        }
+
         final String path = getHandlerSelectionPath(request);
-        final Collection<AbstractAuthenticationHandlerHolder>[] holdersArray = this.authHandlerCache
-                .findApplicableHolders(request);
-        for (int m = 0; m < holdersArray.length; m++) {
-            final Collection<AbstractAuthenticationHandlerHolder> holderSet = holdersArray[m];
-            if (holderSet != null) {
-                for (AbstractAuthenticationHandlerHolder holder : holderSet) {
-                    if (isNodeRequiresAuthHandler(path, holder.path)) {
-                        log.debug("logout: dropping authentication using handler: {}",
-                            holder);
-
-                        try {
-                            holder.dropCredentials(request, response);
-                        } catch (IOException ioe) {
-                            log.error(
-                                "logout: Failed dropping authentication through handler "
-                                    + holder, ioe);
-                        }
-                    }
-                }
+        for (AbstractAuthenticationHandlerHolder holder : this.authHandlerCache
+                .findApplicableHolders(request, path)) {
+            log.debug("logout: dropping authentication using handler: {}",
+                holder);
+
+            try {
+                holder.dropCredentials(request, response);
+            } catch (IOException ioe) {
+                log.error(
+                    "logout: Failed dropping authentication through handler "
+                        + holder, ioe);
             }
         }
 
@@ -725,25 +790,17 @@ public class SlingAuthenticator implements Authenticator,
             path = "/";
         }
 
-        final Collection<AbstractAuthenticationHandlerHolder>[] localArray = this.authHandlerCache
-                .findApplicableHolders(request);
-        for (int m = 0; m < localArray.length; m++) {
-            final Collection<AbstractAuthenticationHandlerHolder> local = localArray[m];
-            if (local != null) {
-                for (AbstractAuthenticationHandlerHolder holder : local) {
-                    if (isNodeRequiresAuthHandler(path, holder.path)){
-                        final AuthenticationInfo authInfo = holder.extractCredentials(
-                            request, response);
+        for (AbstractAuthenticationHandlerHolder holder : this.authHandlerCache
+                .findApplicableHolders(request, path)) {
+            final AuthenticationInfo authInfo = holder.extractCredentials(
+                request, response);
 
-                        if (authInfo != null) {
-                            // add the feedback handler to the info (may be null)
-                            authInfo.put(AUTH_INFO_PROP_FEEDBACK_HANDLER,
-                                holder.getFeedbackHandler());
+            if (authInfo != null) {
+                // add the feedback handler to the info (may be null)
+                authInfo.put(AUTH_INFO_PROP_FEEDBACK_HANDLER,
+                    holder.getFeedbackHandler());
 
-                            return authInfo;
-                        }
-                    }
-                }
+                return authInfo;
             }
         }
 
@@ -796,7 +853,7 @@ public class SlingAuthenticator implements Authenticator,
         try {
             handleImpersonation(request, authInfo);
             handlePasswordChange(request, authInfo);
-            ResourceResolver resolver = resourceResolverFactory.getResourceResolver(authInfo);
+            ResourceResolver resolver = getResourceResolver(authInfo);
             final boolean impersChanged = setSudoCookie(request, response, authInfo);
 
             if (sendLoginEvent != null) {
@@ -854,6 +911,35 @@ public class SlingAuthenticator implements Authenticator,
 
     }
 
+    /**
+     * Returns a resource resolver for the authentication info, reusing the
+     * login of an earlier request with the same credentials if enabled.
+     */
+    private ResourceResolver getResourceResolver(final AuthenticationInfo authInfo) throws LoginException {
+        final AuthenticationCache cache = this.authenticationCache;
+        if (cache == null) {
+            return resourceResolverFactory.getResourceResolver(authInfo);
+        }
+
+        if (authInfo.containsKey(AuthenticationCache.NEW_PASSWORD)) {
+            // the current password must not be accepted any longer
+            cache.invalidateUser(authInfo.getUser());
+            return resourceResolverFactory.getResourceResolver(authInfo);
+        }
+
+        final String key = AuthenticationCache.getKey(authInfo);
+        if (key == null) {
+            return resourceResolverFactory.getResourceResolver(authInfo);
+        }
+
+        final ResourceResolver cached = cache.acquire(key);
+        if (cached != null) {
+            log.debug("getResourceResolver: Reusing login of {}", authInfo.getUser());
+            return cached;
+        }
+        return cache.add(key, authInfo.getUser(), resourceResolverFactory.getResourceResolver(authInfo));
+    }
+
     private boolean expectAuthenticationHandler(final HttpServletRequest request) {
         if (this.authUriSuffices != null) {
             final String requestUri = request.getRequestURI();
@@ -919,24 +1005,22 @@ public class SlingAuthenticator implements Authenticator,
             path = "/";
         }
 
-        final Collection<AuthenticationRequirementHolder>[] holderSetArray = authRequiredCache
-                .findApplicableHolders(request);
-        for (int m = 0; m < holderSetArray.length; m++) {
-            final Collection<AuthenticationRequirementHolder> holders = holderSetArray[m];
-            if (holders != null) {
-                for (AuthenticationRequirementHolder holder : holders) {
-                    if (isNodeRequiresAuthHandler(path, holder.path)) {
-                        return !holder.requiresAuthentication();
-                    }
-                }
-            }
+        final List<AuthenticationRequirementHolder> holders = authRequiredCache
+                .findApplicableHolders(request, path);
+        if (!holders.isEmpty()) {
+            return !holders.get(0).requiresAuthentication();
         }
 
         // fallback to anonymous not allowed (aka authentication required)
         return false;
     }
 
-   private boolean isNodeRequiresAuthHandler(String path, String holderPath) {
+    /**
+     * Returns <code>true</code> if a holder registered for the
+     * <code>holderPath</code> applies to the <code>path</code>. This is the
+     * rule implemented by {@link PathBasedHolderCache#findApplicableHolders}.
+     */
+    static boolean isNodeRequiresAuthHandler(String path, String holderPath) {
         if (path == null || holderPath == null) {
             return false;
         }
@@ -1347,7 +1431,7 @@ public class SlingAuthenticator implements Authenticator,
     private void handlePasswordChange(HttpServletRequest req, AuthenticationInfo authInfo) {
         String newPassword = req.getParameter(PAR_NEW_PASSWORD );
         if (newPassword != null && newPassword.length() > 0) {
-            authInfo.put("user.newpassword", newPassword);
+            authInfo.put(AuthenticationCache.NEW_PASSWORD, newPassword);
         }
     }
 
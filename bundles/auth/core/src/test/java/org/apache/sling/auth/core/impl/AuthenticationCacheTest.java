@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.junit.Test;
+
+public class AuthenticationCacheTest {
+
+    private static AuthenticationInfo authInfo(final String user, final String password) {
+        final AuthenticationInfo authInfo = new AuthenticationInfo("TEST", user, password.toCharArray());
+        authInfo.put("test.attribute", Boolean.TRUE);
+        return authInfo;
+    }
+
+    private static ResourceResolver liveResolver() {
+        final ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.isLive()).thenReturn(true);
+        when(resolver.getUserID()).thenReturn("admin");
+        return resolver;
+    }
+
+    private static ResourceResolver userResolver(final String userId, final String path) throws Exception {
+        final ResourceResolver resolver = liveResolver();
+        final JackrabbitSession session = mock(JackrabbitSession.class);
+        final UserManager userManager = mock(UserManager.class);
+        final Authorizable user = mock(Authorizable.class);
+        when(resolver.adaptTo(Session.class)).thenReturn(session);
+        when(session.getUserID()).thenReturn(userId);
+        when(session.getUserManager()).thenReturn(userManager);
+        when(userManager.getAuthorizable(userId)).thenReturn(user);
+        when(user.getPath()).thenReturn(path);
+        return resolver;
+    }
+
+    @Test public void testGetKey() {
+        final String key = AuthenticationCache.getKey(authInfo("admin", "admin"));
+        assertNotNull(key);
+        assertEquals(key, AuthenticationCache.getKey(authInfo("admin", "admin")));
+        assertFalse(key.equals(AuthenticationCache.getKey(authInfo("admin", "other"))));
+        assertFalse(key.equals(AuthenticationCache.getKey(authInfo("other", "admin"))));
+
+        final AuthenticationInfo changePassword = authInfo("admin", "admin");
+        changePassword.put(AuthenticationCache.NEW_PASSWORD, "new");
+        assertNull(AuthenticationCache.getKey(changePassword));
+
+        final AuthenticationInfo unknown = authInfo("admin", "admin");
+        unknown.put("test.credentials", new Object());
+        assertNull(AuthenticationCache.getKey(unknown));
+
+        assertNull(AuthenticationCache.getKey(new AuthenticationInfo("TEST")));
+    }
+
+    @Test public void testReuse() {
+        final AuthenticationCache cache = new AuthenticationCache(60000, 10);
+        final String key = AuthenticationCache.getKey(authInfo("admin", "admin"));
+        assertNull(cache.acquire(key));
+
+        final ResourceResolver resolver = liveResolver();
+        when(resolver.hasChanges()).thenReturn(true);
+        final ResourceResolver first = cache.add(key, "admin", resolver);
+        assertNotSame(resolver, first);
+        assertEquals("admin", first.getUserID());
+
+        // in use by the first request
+        assertNull(cache.acquire(key));
+
+        first.close();
+        verify(resolver).revert();
+        verify(resolver).refresh();
+        verify(resolver, never()).close();
+        assertFalse(first.isLive());
+
+        final ResourceResolver second = cache.acquire(key);
+        assertNotNull(second);
+        assertEquals("admin", second.getUserID());
+        second.close();
+        assertEquals(1, cache.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() {
+        final AuthenticationCache cache = new AuthenticationCache(60000, 10);
+        final ResourceResolver resolver = cache.add("key", "admin", liveResolver());
+        resolver.close();
+        resolver.getUserID();
+    }
+
+    @Test public void testInvalidateUser() {
+        final AuthenticationCache cache = new AuthenticationCache(60000, 10);
+        final ResourceResolver resolver = liveResolver();
+        cache.add("key", "admin", resolver).close();
+        final ResourceResolver other = liveResolver();
+        cache.add("other", "other", other).close();
+
+        cache.invalidateUser("admin");
+        verify(resolver).close();
+        verify(other, never()).close();
+        assertNull(cache.acquire("key"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        verify(other).close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void testInvalidateInUse() {
+        final AuthenticationCache cache = new AuthenticationCache(60000, 10);
+        final ResourceResolver resolver = liveResolver();
+        final ResourceResolver inUse = cache.add("key", "admin", resolver);
+
+        cache.invalidateUser("admin");
+        verify(resolver, never()).close();
+
+        // closed once the request is done
+        inUse.close();
+        verify(resolver).close();
+        assertNull(cache.acquire("key"));
+    }
+
+    @Test public void testExpired() {
+        final AuthenticationCache cache = new AuthenticationCache(-1, 10);
+        final ResourceResolver resolver = liveResolver();
+        cache.add("key", "admin", resolver).close();
+        verify(resolver).close();
+        assertNull(cache.acquire("key"));
+    }
+
+    @Test public void testExpiredRemovedOnLogin() throws InterruptedException {
+        final AuthenticationCache cache = new AuthenticationCache(50, 10);
+        final ResourceResolver resolver = liveResolver();
+        cache.add("key", "admin", resolver).close();
+        verify(resolver, never()).close();
+
+        Thread.sleep(60);
+        cache.add("other", "other", liveResolver()).close();
+        verify(resolver).close();
+        assertEquals(1, cache.size());
+    }
+
+    @Test public void testExpiredRemovedOnRequest() throws InterruptedException {
+        final AuthenticationCache cache = new AuthenticationCache(50, 10);
+        final ResourceResolver resolver = liveResolver();
+        cache.add("key", "admin", resolver).close();
+
+        Thread.sleep(60);
+        assertNull(cache.acquire("other"));
+        verify(resolver).close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void testFull() {
+        final AuthenticationCache cache = new AuthenticationCache(60000, 1);
+        cache.add("key", "admin", liveResolver()).close();
+
+        final ResourceResolver resolver = liveResolver();
+        assertSame(resolver, cache.add("other", "admin", resolver));
+        assertEquals(1, cache.size());
+    }
+
+    @Test public void testInvalidateUserPath() throws Exception {
+        final AuthenticationCache cache = new AuthenticationCache(60000, 10);
+        final ResourceResolver alice = userResolver("alice", "/home/users/a/alice");
+        cache.add("alice", "alice", alice).close();
+        final ResourceResolver bob = userResolver("bob", "/home/users/b/bob");
+        cache.add("bob", "bob", bob).close();
+        final AuthenticationCacheInvalidator invalidator = new AuthenticationCacheInvalidator(cache,
+            new String[] { "/home/groups/" }, "/home/users");
+
+        // changes below the user node, e.g. login tokens, are ignored
+        invalidator.onChange(Arrays.asList(
+            new ResourceChange(ChangeType.CHANGED, "/home/users/a/alice/.tokens/token", false),
+            new ResourceChange(ChangeType.ADDED, "/home/users/a/alice2", false)));
+        assertEquals(2, cache.size());
+
+        // the password of alice changed
+        invalidator.onChange(Arrays.asList(new ResourceChange(ChangeType.CHANGED, "/home/users/a/alice", false)));
+        verify(alice).close();
+        verify(bob, never()).close();
+        assertEquals(1, cache.size());
+
+        // the folder of bob has been removed
+        invalidator.onChange(Arrays.asList(new ResourceChange(ChangeType.REMOVED, "/home/users/b", false)));
+        verify(bob).close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void testInvalidateGroups() throws Exception {
+        final AuthenticationCache cache = new AuthenticationCache(60000, 10);
+        cache.add("alice", "alice", userResolver("alice", "/home/users/a/alice")).close();
+        final AuthenticationCacheInvalidator invalidator = new AuthenticationCacheInvalidator(cache,
+            new String[] { "/home/groups/" }, "/home/users");
+
+        invalidator.onChange(Arrays.asList(new ResourceChange(ChangeType.CHANGED, "/home/groupsx", false)));
+        assertEquals(1, cache.size());
+        invalidator.onChange(Arrays.asList(new ResourceChange(ChangeType.ADDED, "/home/groups/g/members", false)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void testUnknownUserPath() {
+        final AuthenticationCache cache = new AuthenticationCache(60000, 10);
+        cache.add("key", "admin", liveResolver()).close();
+        new AuthenticationCacheInvalidator(cache, new String[0], "/home/users").onChange(Arrays.asList(
+            new ResourceChange(ChangeType.CHANGED, "/home/users/a/alice", false)));
+        assertEquals(0, cache.size());
+    }
+}
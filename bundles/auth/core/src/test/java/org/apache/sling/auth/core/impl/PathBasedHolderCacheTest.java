@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+public class PathBasedHolderCacheTest {
+
+    private static final String[] HOLDER_PATHS = { "/", "/content", "/content/en", "/content/en.html",
+        "/content/en/test", "/content/enx", "/apps", "/content/", "/content/en.html/suffix", "" };
+
+    private static final String[] REQUEST_PATHS = { "/", "/content", "/content/en", "/content/en.html",
+        "/content/en.print.html", "/content/en/test/page.html", "/content/enx/page", "/content/", "/content//en",
+        "/content/.en", "/content/en.html/suffix.json", "/apps/x", "/libs", "/contents", "content" };
+
+    private static HttpServletRequest request(final String scheme, final String host) {
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getScheme()).thenReturn(scheme);
+        when(request.getServerName()).thenReturn(host);
+        when(request.getServerPort()).thenReturn(80);
+        return request;
+    }
+
+    private static List<String> paths(final List<AuthenticationRequirementHolder> holders) {
+        final List<String> paths = new ArrayList<String>();
+        for (final AuthenticationRequirementHolder holder : holders) {
+            paths.add(holder.fullPath);
+        }
+        return paths;
+    }
+
+    @Test public void testMatchesLinearLookup() {
+        final PathBasedHolderCache<AuthenticationRequirementHolder> cache = new PathBasedHolderCache<AuthenticationRequirementHolder>();
+        final SortedSet<AuthenticationRequirementHolder> all = new TreeSet<AuthenticationRequirementHolder>();
+        for (final String path : HOLDER_PATHS) {
+            final AuthenticationRequirementHolder holder = new AuthenticationRequirementHolder(path, true, null);
+            cache.addHolder(holder);
+            all.add(holder);
+        }
+        assertEquals(HOLDER_PATHS.length, cache.getHolders().size());
+
+        final HttpServletRequest request = request("http", "localhost");
+        for (final String path : REQUEST_PATHS) {
+            final List<AuthenticationRequirementHolder> expected = new ArrayList<AuthenticationRequirementHolder>();
+            for (final AuthenticationRequirementHolder holder : all) {
+                if (SlingAuthenticator.isNodeRequiresAuthHandler(path, holder.path)) {
+                    expected.add(holder);
+                }
+            }
+            assertEquals(path, paths(expected), paths(cache.findApplicableHolders(request, path)));
+        }
+    }
+
+    @Test public void testSchemeAndHost() {
+        final PathBasedHolderCache<AuthenticationRequirementHolder> cache = new PathBasedHolderCache<AuthenticationRequirementHolder>();
+        cache.addHolder(new AuthenticationRequirementHolder("/content", true, null));
+        cache.addHolder(new AuthenticationRequirementHolder("//localhost/content", true, null));
+        cache.addHolder(new AuthenticationRequirementHolder("//otherhost/content", true, null));
+        cache.addHolder(new AuthenticationRequirementHolder("http:///content/en", true, null));
+        cache.addHolder(new AuthenticationRequirementHolder("http://localhost/content", true, null));
+        assertEquals(5, cache.getHolders().size());
+
+        final List<String> expected = new ArrayList<String>();
+        expected.add("http://localhost/content");
+        expected.add("http:///content/en");
+        expected.add("//localhost/content");
+        expected.add("/content");
+        assertEquals(expected, paths(cache.findApplicableHolders(request("http", "localhost"), "/content/en/page")));
+
+        cache.removeHolder(new AuthenticationRequirementHolder("http:///content/en", true, null));
+        expected.remove(1);
+        assertEquals(expected, paths(cache.findApplicableHolders(request("http", "localhost"), "/content/en/page")));
+
+        assertEquals(1, cache.findApplicableHolders(request("https", "somehost"), "/content/en/page").size());
+        assertTrue(cache.findApplicableHolders(request("http", "localhost"), null).isEmpty());
+
+        cache.clear();
+        assertTrue(cache.getHolders().isEmpty());
+        assertTrue(cache.findApplicableHolders(request("http", "localhost"), "/content").isEmpty());
+    }
+}
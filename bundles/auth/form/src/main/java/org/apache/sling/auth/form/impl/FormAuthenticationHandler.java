@@ -175,6 +175,18 @@ public class FormAuthenticationHandler extends DefaultAuthenticationFeedbackHand
     @Property(boolValue = DEFAULT_TOKEN_FAST_SEED)
     private static final String PAR_TOKEN_FAST_SEED = "form.token.fastseed";
 
+    private static final String DEFAULT_TOKEN_ALGORITHM = TokenStore.HMAC_SHA1;
+
+    /**
+     * The name of the HMAC function used to hash the security tokens. Changing
+     * the function invalidates the authentication data of all logged in
+     * users.
+     */
+    @Property(value = DEFAULT_TOKEN_ALGORITHM, options = {
+        @PropertyOption(name = TokenStore.HMAC_SHA1, value = "HMAC-SHA1"),
+        @PropertyOption(name = TokenStore.HMAC_SHA256, value = "HMAC-SHA256") })
+    private static final String PAR_TOKEN_ALGORITHM = "form.token.algorithm";
+
     /**
      * The default include value.
      *
@@ -748,8 +760,12 @@ public class FormAuthenticationHandler extends DefaultAuthenticationFeedbackHand
             componentContext.getBundleContext());
         final boolean fastSeed = OsgiUtil.toBoolean(
             properties.get(PAR_TOKEN_FAST_SEED), DEFAULT_TOKEN_FAST_SEED);
+        final String tokenAlgorithm = OsgiUtil.toString(
+            properties.get(PAR_TOKEN_ALGORITHM), DEFAULT_TOKEN_ALGORITHM);
         log.info("Storing tokens in {}", tokenFile.getAbsolutePath());
-        this.tokenStore = new TokenStore(tokenFile, sessionTimeout, fastSeed);
+        this.tokenStore = new TokenStore(tokenFile, sessionTimeout, fastSeed,
+            tokenAlgorithm);
+        log.info("Hashing tokens with {}", tokenStore.getAlgorithm());
 
         this.loginModule = null;
         if (!jaasHelper.enabled()) {
@@ -28,6 +28,8 @@ import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -40,6 +42,11 @@ import org.slf4j.LoggerFactory;
  * The <code>TokenStore</code> class provides the secure token hash
  * implementation used by the {@link FormAuthenticationHandler} to generate,
  * validate and persist secure tokens.
+ * <p>
+ * The secret keys are published as an immutable {@link Tokens} instance,
+ * which is replaced atomically when a new key is generated, so encoding and
+ * validating tokens does not lock. Each thread keeps its own
+ * <code>Mac</code> instances initialized with the current keys.
  */
 class TokenStore {
 
@@ -58,7 +65,13 @@ class TokenStore {
      * The name of the HMAC function to calculate the hash code of the payload
      * with the secure token.
      */
-    private static final String HMAC_SHA1 = "HmacSHA1";
+    static final String HMAC_SHA1 = "HmacSHA1";
+
+    /**
+     * The name of the HMAC function using SHA-256, which may be used instead
+     * of {@link #HMAC_SHA1}.
+     */
+    static final String HMAC_SHA256 = "HmacSHA256";
 
     /**
      * String encoding to convert byte arrays to strings and vice-versa.
@@ -76,19 +89,36 @@ class TokenStore {
     private final long ttl;
 
     /**
-     * The time when a new token should be created.
+     * The name of the HMAC function used, one of {@link #HMAC_SHA1} and
+     * {@link #HMAC_SHA256}.
+     */
+    private final String algorithm;
+
+    /**
+     * The number of bytes of the secret keys, the output size of the hash
+     * function.
      */
-    private long nextUpdate = System.currentTimeMillis();
+    private final int keyLength;
 
     /**
-     * The location of the current token.
+     * The ring of tokens used to encrypt, with the current token and the
+     * time when a new token should be created.
      */
-    private volatile int currentToken = 0;
+    private final AtomicReference<Tokens> tokens = new AtomicReference<Tokens>();
 
     /**
-     * A ring of tokens used to encrypt.
+     * The keys with which the <code>Mac</code> instances of the current
+     * thread in {@link #threadMacs} have been initialized.
      */
-    private volatile SecretKey[] currentTokens;
+    private final ThreadLocal<SecretKey[]> threadKeys = new ThreadLocal<SecretKey[]>();
+
+    /**
+     * The <code>Mac</code> instances of the current thread by token number.
+     */
+    private final ThreadLocal<Mac[]> threadMacs = new ThreadLocal<Mac[]>();
+
+    /** Lock to write the token file for one rotation at a time */
+    private final Object saveLock = new Object();
 
     /**
      * A secure random used for generating new tokens.
@@ -113,11 +143,27 @@ class TokenStore {
             final boolean fastSeed) throws NoSuchAlgorithmException,
             InvalidKeyException, IllegalStateException,
             UnsupportedEncodingException {
+        this(tokenFile, sessionTimeout, fastSeed, HMAC_SHA1);
+    }
+
+    /**
+     * @param algorithm The name of the HMAC function, {@link #HMAC_SHA1} or
+     *            {@link #HMAC_SHA256}
+     * @throws NoSuchAlgorithmException If the HMAC function is not supported
+     * @throws NullPointerException if <code>tokenFile</code> is
+     *             <code>null</code>.
+     */
+    TokenStore(final File tokenFile, final long sessionTimeout,
+            final boolean fastSeed, final String algorithm)
+            throws NoSuchAlgorithmException, InvalidKeyException,
+            IllegalStateException, UnsupportedEncodingException {
 
         if (tokenFile == null) {
             throw new NullPointerException("tokenfile");
         }
 
+        this.algorithm = algorithm;
+        this.keyLength = Mac.getInstance(algorithm).getMacLength();
         this.random = SecureRandom.getInstance(SHA1PRNG);
         this.ttl = sessionTimeout;
         this.tokenFile = tokenFile;
@@ -137,15 +183,22 @@ class TokenStore {
                 + "'file:/dev/./urandom' or enable the Fast Seed Generator "
                 + "in the Web Console");
         }
-        byte[] b = new byte[20];
+        byte[] b = new byte[keyLength];
         random.nextBytes(b);
-        final SecretKey secretKey = new SecretKeySpec(b, HMAC_SHA1);
-        final Mac m = Mac.getInstance(HMAC_SHA1);
+        final SecretKey secretKey = new SecretKeySpec(b, algorithm);
+        final Mac m = Mac.getInstance(algorithm);
         m.init(secretKey);
         m.update(UTF_8.getBytes(UTF_8));
         m.doFinal();
     }
 
+    /**
+     * Returns the name of the HMAC function used to hash the tokens.
+     */
+    String getAlgorithm() {
+        return algorithm;
+    }
+
     /**
      * @param expires
      * @param userId
@@ -158,9 +211,8 @@ class TokenStore {
     String encode(final long expires, final String userId)
             throws IllegalStateException, UnsupportedEncodingException,
             NoSuchAlgorithmException, InvalidKeyException {
-        int token = getActiveToken();
-        SecretKey key = currentTokens[token];
-        return encode(expires, userId, token, key);
+        final Tokens active = getActiveTokens();
+        return encode(expires, userId, active.current, active.keys[active.current]);
     }
 
     private String encode(final long expires, final String userId,
@@ -170,13 +222,47 @@ class TokenStore {
 
         String cookiePayload = String.valueOf(token) + String.valueOf(expires)
             + "@" + userId;
-        Mac m = Mac.getInstance(HMAC_SHA1);
-        m.init(key);
+        Mac m = getMac(token, key);
         m.update(cookiePayload.getBytes(UTF_8));
         String cookieValue = byteToHex(m.doFinal());
         return cookieValue + "@" + cookiePayload;
     }
 
+    /**
+     * Returns the <code>Mac</code> of the current thread for the token
+     * number initialized with the key. The <code>Mac</code> is only
+     * initialized again after the key of the token number has changed.
+     */
+    private Mac getMac(final int token, final SecretKey key)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        if (key == null) {
+            throw new InvalidKeyException("No key for token " + token);
+        }
+
+        Mac[] macs = threadMacs.get();
+        SecretKey[] keys = threadKeys.get();
+        if (macs == null) {
+            macs = new Mac[TOKEN_BUFFER_SIZE];
+            keys = new SecretKey[TOKEN_BUFFER_SIZE];
+            threadMacs.set(macs);
+            threadKeys.set(keys);
+        }
+
+        Mac m = macs[token];
+        if (m == null) {
+            m = Mac.getInstance(algorithm);
+            macs[token] = m;
+            keys[token] = null;
+        }
+        if (keys[token] != key) {
+            // forget the previous key before initializing a failing key
+            keys[token] = null;
+            m.init(key);
+            keys[token] = key;
+        }
+        return m;
+    }
+
     /**
      * Splits the authentication data into the three parts packed together while
      * encoding the cookie.
@@ -214,6 +300,7 @@ class TokenStore {
         if (parts != null) {
 
             // single digit token number
+            final SecretKey[] currentTokens = tokens.get().keys;
             int tokenNumber = parts[1].charAt(0) - '0';
             if (tokenNumber >= 0 && tokenNumber < currentTokens.length) {
 
@@ -260,35 +347,49 @@ class TokenStore {
 
     /**
      * Maintain a circular buffer to tokens, and return the current one.
+     * <p>
+     * If a new token is due, the thread replacing the ring of tokens first
+     * persists it, while other threads continue with the ring they have
+     * seen or the ring published meanwhile.
      *
-     * @return the current token.
+     * @return the current tokens.
      */
-    private synchronized int getActiveToken() {
-        if (System.currentTimeMillis() > nextUpdate
-            || currentTokens[currentToken] == null) {
-            // cycle so that during a typical ttl the tokens get completely
-            // refreshed.
-            nextUpdate = System.currentTimeMillis() + ttl
-                / (currentTokens.length - 1);
-            byte[] b = new byte[20];
-            random.nextBytes(b);
-
-            SecretKey newToken = new SecretKeySpec(b, HMAC_SHA1);
-            int nextToken = currentToken + 1;
-            if (nextToken == currentTokens.length) {
-                nextToken = 0;
-            }
-            currentTokens[nextToken] = newToken;
-            currentToken = nextToken;
+    private Tokens getActiveTokens() {
+        final Tokens active = tokens.get();
+        if (System.currentTimeMillis() <= active.nextUpdate
+            && active.keys[active.current] != null) {
+            return active;
+        }
+
+        // cycle so that during a typical ttl the tokens get completely
+        // refreshed.
+        byte[] b = new byte[keyLength];
+        random.nextBytes(b);
+        final Tokens next = active.rotate(new SecretKeySpec(b, algorithm),
+            System.currentTimeMillis() + ttl / (active.keys.length - 1));
+        if (tokens.compareAndSet(active, next)) {
             saveTokens();
+            return next;
         }
-        return currentToken;
+
+        // another thread has just created a new token
+        return tokens.get();
     }
 
     /**
      * Stores the current set of tokens to the token file
      */
     private void saveTokens() {
+        synchronized (saveLock) {
+            // a later rotation may have been published meanwhile
+            saveTokens(tokens.get());
+        }
+    }
+
+    private void saveTokens(final Tokens current) {
+        final int currentToken = current.current;
+        final long nextUpdate = current.nextUpdate;
+        final SecretKey[] currentTokens = current.keys;
         FileOutputStream fout = null;
         DataOutputStream keyOutputStream = null;
         try {
@@ -349,16 +450,14 @@ class TokenStore {
                         int l = keyInputStream.readInt();
                         byte[] b = new byte[l];
                         keyInputStream.read(b);
-                        newKeys[i] = new SecretKeySpec(b, HMAC_SHA1);
+                        newKeys[i] = new SecretKeySpec(b, algorithm);
                     } else {
                         newKeys[i] = null;
                     }
                 }
 
                 // assign the tokes and schedule a next update
-                nextUpdate = newNextUpdate;
-                currentToken = newCurrentToken;
-                currentTokens = newKeys;
+                tokens.set(new Tokens(newKeys, newCurrentToken, newNextUpdate));
 
             } catch (IOException e) {
 
@@ -381,10 +480,9 @@ class TokenStore {
         }
 
         // if there was a failure to read the current tokens, create new ones
-        if (currentTokens == null) {
-            currentTokens = new SecretKey[TOKEN_BUFFER_SIZE];
-            nextUpdate = System.currentTimeMillis();
-            currentToken = 0;
+        if (tokens.get() == null) {
+            tokens.set(new Tokens(new SecretKey[TOKEN_BUFFER_SIZE], 0,
+                System.currentTimeMillis()));
         }
     }
 
@@ -465,4 +563,39 @@ class TokenStore {
             value >>= 8;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The immutable ring of secret keys, replaced as a whole whenever a new
+     * key is created.
+     */
+    private static final class Tokens {
+
+        /** The secret keys by token number, not modified once published */
+        final SecretKey[] keys;
+
+        /** The token number of the key to encode new tokens with */
+        final int current;
+
+        /** The time when a new token should be created */
+        final long nextUpdate;
+
+        Tokens(final SecretKey[] keys, final int current, final long nextUpdate) {
+            this.keys = keys;
+            this.current = current;
+            this.nextUpdate = nextUpdate;
+        }
+
+        /**
+         * Returns a new ring with the key as the next token.
+         */
+        Tokens rotate(final SecretKey key, final long nextUpdate) {
+            int nextToken = current + 1;
+            if (nextToken == keys.length) {
+                nextToken = 0;
+            }
+            final SecretKey[] newKeys = keys.clone();
+            newKeys[nextToken] = key;
+            return new Tokens(newKeys, nextToken, nextUpdate);
+        }
+    }
+}
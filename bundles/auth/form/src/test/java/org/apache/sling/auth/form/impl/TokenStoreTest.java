@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.form.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TokenStoreTest {
+
+    private File tokenFile;
+
+    @Before public void setup() throws Exception {
+        tokenFile = File.createTempFile("cookie-tokens", ".bin");
+        tokenFile.delete();
+    }
+
+    @After public void cleanup() {
+        tokenFile.delete();
+    }
+
+    private static long expires() {
+        return System.currentTimeMillis() + 60000;
+    }
+
+    @Test public void test_validate() throws Exception {
+        final TokenStore store = new TokenStore(tokenFile, 60000, true);
+        assertEquals(TokenStore.HMAC_SHA1, store.getAlgorithm());
+
+        final String token = store.encode(expires(), "admin");
+        assertTrue(store.isValid(token));
+        assertFalse(store.isValid(token.replace("@admin", "@other")));
+        assertFalse(store.isValid(store.encode(System.currentTimeMillis() - 1, "admin")));
+        assertFalse(store.isValid("invalid"));
+    }
+
+    @Test public void test_sha256() throws Exception {
+        final TokenStore store = new TokenStore(tokenFile, 60000, true, TokenStore.HMAC_SHA256);
+        final String token = store.encode(expires(), "admin");
+        // 32 bytes hash as hex
+        assertEquals(64, TokenStore.split(token)[0].length());
+        assertTrue(store.isValid(token));
+
+        // the keys are persisted
+        final TokenStore reloaded = new TokenStore(tokenFile, 60000, true, TokenStore.HMAC_SHA256);
+        assertTrue(reloaded.isValid(token));
+
+        // but a different hash function does not validate
+        final TokenStore sha1 = new TokenStore(tokenFile, 60000, true, TokenStore.HMAC_SHA1);
+        assertFalse(sha1.isValid(token));
+    }
+
+    @Test public void test_rotation() throws Exception {
+        // a new key for every token
+        final TokenStore store = new TokenStore(tokenFile, 0, true);
+        final List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            tokens.add(store.encode(expires(), "admin"));
+            Thread.sleep(2);
+        }
+        for (final String token : tokens) {
+            assertTrue(token, store.isValid(token));
+        }
+
+        // after a full cycle the first key is replaced
+        tokens.add(store.encode(expires(), "admin"));
+        Thread.sleep(2);
+        tokens.add(store.encode(expires(), "admin"));
+        assertFalse(store.isValid(tokens.get(0)));
+        assertTrue(store.isValid(tokens.get(tokens.size() - 1)));
+    }
+
+    @Test public void test_concurrentValidation() throws Exception {
+        final TokenStore store = new TokenStore(tokenFile, 60000, true);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                final String user = "user" + t;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int i = 0; i < 200; i++) {
+                            if (!store.isValid(store.encode(expires(), user))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (final Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
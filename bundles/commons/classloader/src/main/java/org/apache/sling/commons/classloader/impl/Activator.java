@@ -54,6 +54,12 @@ public class Activator implements SynchronousBundleListener, BundleActivator {
     /** The dynamic class loader service factory. */
     private DynamicClassLoaderManagerFactory service;
 
+    /** The index of the exported packages, shared by all factories. */
+    private PackageIndex packageIndex;
+
+    /** The service registration for the web console printer. */
+    private ServiceRegistration printerReg;
+
     /** The bundle context. */
     private BundleContext bundleContext;
 
@@ -66,9 +72,27 @@ public class Activator implements SynchronousBundleListener, BundleActivator {
         this.packageAdminTracker = new ServiceTracker(this.bundleContext, PACKAGE_ADMIN_NAME, null);
         this.packageAdminTracker.open();
 
+        this.packageIndex = new PackageIndex((PackageAdmin)this.packageAdminTracker.getService());
+        this.bundleContext.addFrameworkListener(this.packageIndex);
+
         // register service
         this.registerManagerFactory();
         this.bundleContext.addBundleListener(this);
+        this.registerPrinter();
+    }
+
+    /**
+     * Register the web console printer of the package index statistics.
+     */
+    private void registerPrinter() {
+        final Hashtable<String, String> props = new Hashtable<String, String>();
+        props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Dynamic Class Loader Configuration Printer");
+        props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        props.put("felix.webconsole.label", "dynamicclassloader");
+        props.put("felix.webconsole.title", "Dynamic Class Loader");
+        props.put("felix.webconsole.configprinter.modes", "always");
+        this.printerReg = this.bundleContext.registerService(DynamicClassLoaderPrinter.class.getName(),
+                new DynamicClassLoaderPrinter(this.packageIndex), props);
     }
 
     /**
@@ -79,7 +103,7 @@ public class Activator implements SynchronousBundleListener, BundleActivator {
         props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Dynamic Class Loader Service");
         props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
         this.service = new DynamicClassLoaderManagerFactory(this.bundleContext,
-                (PackageAdmin)this.packageAdminTracker.getService());
+                (PackageAdmin)this.packageAdminTracker.getService(), this.packageIndex);
         this.serviceReg = this.bundleContext.registerService(new String[] {DynamicClassLoaderManager.class.getName()}, service, props);
     }
 
@@ -101,7 +125,15 @@ public class Activator implements SynchronousBundleListener, BundleActivator {
      */
     public void stop(final BundleContext context) {
         context.removeBundleListener(this);
+        if ( this.printerReg != null ) {
+            this.printerReg.unregister();
+            this.printerReg = null;
+        }
         this.unregisterManagerFactory();
+        if ( this.packageIndex != null ) {
+            context.removeFrameworkListener(this.packageIndex);
+            this.packageIndex = null;
+        }
         if ( this.packageAdminTracker != null ) {
             this.packageAdminTracker.close();
             this.packageAdminTracker = null;
@@ -114,6 +146,9 @@ public class Activator implements SynchronousBundleListener, BundleActivator {
      */
     public void bundleChanged(final BundleEvent event) {
         synchronized ( this ) {
+            // update the index before the class loaders use it again
+            this.packageIndex.bundleChanged(event);
+
             final boolean lazyBundle = event.getBundle().getHeaders().get( Constants.BUNDLE_ACTIVATIONPOLICY ) != null;
 
             final boolean reload;
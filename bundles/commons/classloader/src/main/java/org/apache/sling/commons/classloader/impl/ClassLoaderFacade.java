@@ -24,6 +24,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.sling.commons.classloader.DynamicClassLoader;
 import org.slf4j.Logger;
@@ -36,15 +38,37 @@ import org.slf4j.LoggerFactory;
  * dynamic class loader manager.
  * This class loader delegates to other class loaders
  * but caches its result for performance.
+ * <p>
+ * The facade is parallel capable: classes are loaded under a lock per
+ * class name, while lookups of classes found or missed before just probe
+ * the caches. The caches are cleared when the manager is deactivated,
+ * which happens whenever the class loaders change or bundles providing
+ * classes are refreshed.
  */
 public class ClassLoaderFacade extends ClassLoader implements DynamicClassLoader {
 
+    static {
+        registerAsParallelCapable();
+    }
+
+    /** The maximum number of class names in a negative cache. */
+    static final int MAX_NEGATIVE_CACHE_SIZE = 10000;
+
     /** The logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
 
     /** Dynamic class loader manager which manages the dynamic class loader providers for this facade. */
     private final DynamicClassLoaderManagerImpl manager;
 
+    /** The classes loaded through this facade by name. */
+    private final ConcurrentMap<String, Class<?>> classCache = new ConcurrentHashMap<String, Class<?>>();
+
+    /** The names of classes not found by any class loader. */
+    private final ConcurrentMap<String, Boolean> negativeClassCache = new ConcurrentHashMap<String, Boolean>();
+
+    /** The index counting the negative cache hits, might be null. */
+    private final PackageIndex packageIndex;
+
     /** Used to log stack traces in slf4j for non-critical errors */
     @SuppressWarnings("serial")
     static class StackTraceProbe extends Exception {
@@ -57,7 +81,17 @@ public class ClassLoaderFacade extends ClassLoader implements DynamicClassLoader
      * Constructor
      */
     public ClassLoaderFacade(final DynamicClassLoaderManagerImpl manager) {
+        this(manager, null);
+    }
+
+    /**
+     * Constructor
+     * @param manager The manager of this facade
+     * @param packageIndex The index counting the negative cache hits or <code>null</code>
+     */
+    public ClassLoaderFacade(final DynamicClassLoaderManagerImpl manager, final PackageIndex packageIndex) {
         this.manager = manager;
+        this.packageIndex = packageIndex;
     }
 
     /** Return false if our manager is not active, and log the stack trace
@@ -128,27 +162,77 @@ public class ClassLoaderFacade extends ClassLoader implements DynamicClassLoader
      * @see java.lang.ClassLoader#loadClass(java.lang.String, boolean)
      */
     @Override
-    protected synchronized Class<?> loadClass(String name, boolean resolve)
+    protected Class<?> loadClass(String name, boolean resolve)
     throws ClassNotFoundException {
         if(!checkManagerActive()) {
             throw new ClassNotFoundException(name);
         }
-        final ClassLoader[] loaders = manager.getDynamicClassLoaders();
-        for(final ClassLoader cl : loaders) {
-            if ( cl != null ) {
-                try {
-                    final Class<?> c = cl.loadClass(name);
-                    return c;
-                } catch (ClassNotFoundException cnfe) {
-                    // we just ignore this and try the next class loader
-                } catch (Throwable t) {
-                    logger.error("Exception while trying to load class " + name + " from class loader " + cl, t);
+        Class<?> c = this.classCache.get(name);
+        if ( c != null ) {
+            return c;
+        }
+        if ( this.negativeClassCache.containsKey(name) ) {
+            negativeHit();
+            throw new ClassNotFoundException(name);
+        }
+        synchronized ( getClassLoadingLock(name) ) {
+            // another thread might have loaded the class in the meantime
+            c = this.classCache.get(name);
+            if ( c != null ) {
+                return c;
+            }
+            if ( this.negativeClassCache.containsKey(name) ) {
+                negativeHit();
+                throw new ClassNotFoundException(name);
+            }
+            final ClassLoader[] loaders = manager.getDynamicClassLoaders();
+            for(final ClassLoader cl : loaders) {
+                if ( cl != null ) {
+                    try {
+                        c = cl.loadClass(name);
+                        this.classCache.put(name, c);
+                        releaseIfInactive();
+                        return c;
+                    } catch (ClassNotFoundException cnfe) {
+                        // we just ignore this and try the next class loader
+                    } catch (Throwable t) {
+                        logger.error("Exception while trying to load class " + name + " from class loader " + cl, t);
+                    }
                 }
             }
+            if ( this.negativeClassCache.size() >= MAX_NEGATIVE_CACHE_SIZE ) {
+                this.negativeClassCache.clear();
+            }
+            this.negativeClassCache.put(name, Boolean.TRUE);
+            releaseIfInactive();
         }
         throw new ClassNotFoundException(name);
     }
 
+    private void negativeHit() {
+        if ( this.packageIndex != null ) {
+            this.packageIndex.facadeNegativeHit();
+        }
+    }
+
+    /**
+     * Clear the caches if the manager has been deactivated concurrently,
+     * so they do not keep the classes of refreshed bundles.
+     */
+    private void releaseIfInactive() {
+        if ( !this.manager.isActive() ) {
+            clearCache();
+        }
+    }
+
+    /**
+     * Clear the caches of loaded and missing classes.
+     */
+    void clearCache() {
+        this.classCache.clear();
+        this.negativeClassCache.clear();
+    }
+
     /**
      * @see org.apache.sling.commons.classloader.DynamicClassLoader#isLive()
      */
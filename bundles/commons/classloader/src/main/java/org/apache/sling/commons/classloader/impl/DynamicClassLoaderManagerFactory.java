@@ -48,15 +48,28 @@ public class DynamicClassLoaderManagerFactory
 
     private final Set<String> unresolvedPackages = Collections.synchronizedSet(new HashSet<String>());
 
+    /** The index of the exported packages. */
+    private final PackageIndex packageIndex;
+
     /**
      * Create a new service instance
      * @param ctx The bundle context.
      * @param pckAdmin The package admin.
+     * @param index The index of the exported packages.
      */
     public DynamicClassLoaderManagerFactory(final BundleContext ctx,
-                                            final PackageAdmin pckAdmin) {
+                                            final PackageAdmin pckAdmin,
+                                            final PackageIndex index) {
         this.context = ctx;
         this.pckAdmin = pckAdmin;
+        this.packageIndex = index;
+    }
+
+    /**
+     * Return the index of the exported packages.
+     */
+    public PackageIndex getPackageIndex() {
+        return this.packageIndex;
     }
 
     /**
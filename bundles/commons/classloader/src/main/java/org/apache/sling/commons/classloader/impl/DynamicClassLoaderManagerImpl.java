@@ -81,7 +81,7 @@ public class DynamicClassLoaderManagerImpl
                 });
         this.deprecatedProviderTracker.open();
         this.loaders = new ClassLoader[] {new PackageAdminClassLoader(pckAdmin, parent, factory)};
-        this.facade = new ClassLoaderFacade(this);
+        this.facade = new ClassLoaderFacade(this, factory != null ? factory.getPackageIndex() : null);
     }
 
     /**
@@ -90,6 +90,8 @@ public class DynamicClassLoaderManagerImpl
     public void deactivate() {
         this.deprecatedProviderTracker.close();
         this.active = false;
+        // release the classes of refreshed bundles
+        this.facade.clearCache();
     }
 
     /**
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.classloader.impl;
+
+import java.io.PrintWriter;
+
+/**
+ * This is a configuration printer for the web console which
+ * prints out the statistics of the package index.
+ */
+public class DynamicClassLoaderPrinter {
+
+    private static String HEADLINE = "Apache Sling Dynamic Class Loader";
+
+    private final PackageIndex index;
+
+    public DynamicClassLoaderPrinter(final PackageIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Print out the lookup statistics.
+     * @see org.apache.felix.webconsole.ConfigurationPrinter#printConfiguration(java.io.PrintWriter)
+     */
+    public void printConfiguration(final PrintWriter pw) {
+        pw.println(HEADLINE);
+        pw.println();
+        pw.print("Indexed Packages = ");
+        final int size = this.index.size();
+        pw.print(size == -1 ? "not read yet" : String.valueOf(size));
+        pw.println();
+        pw.print("Package Lookups (Exported) = ");
+        pw.print(this.index.getPackageHits());
+        pw.println();
+        pw.print("Package Lookups (Not Exported) = ");
+        pw.print(this.index.getPackageMisses());
+        pw.println();
+        pw.print("Negative Cache Hits (Package Admin) = ");
+        pw.print(this.index.getNegativeHits());
+        pw.println();
+        pw.print("Negative Cache Hits (Facade) = ");
+        pw.print(this.index.getFacadeNegativeHits());
+        pw.println();
+    }
+}
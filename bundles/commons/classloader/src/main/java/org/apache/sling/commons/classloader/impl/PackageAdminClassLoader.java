@@ -22,7 +22,6 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -38,13 +37,16 @@ import org.slf4j.LoggerFactory;
 /**
  * The <code>PackageAdminClassLoader</code> loads
  * classes and resources through the package admin service.
+ * The exporters of a package are looked up in the shared
+ * {@link PackageIndex} rather than asking the package admin
+ * for every class.
  */
 class PackageAdminClassLoader extends ClassLoader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PackageAdminClassLoader.class);
 
-    /** The package admin service. */
-    private final PackageAdmin packageAdmin;
+    /** The index of the exported packages. */
+    private final PackageIndex packageIndex;
 
     /** The manager factory. */
     private final DynamicClassLoaderManagerFactory factory;
@@ -53,7 +55,7 @@ class PackageAdminClassLoader extends ClassLoader {
     private Map<String, Class<?>> classCache = new ConcurrentHashMap<String, Class<?>>();
 
     /** Negative class cache. */
-    private Set<String> negativeClassCache = Collections.synchronizedSet(new HashSet<String>());
+    private Set<String> negativeClassCache = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     private Map<String, Bundle> packageProviders = new ConcurrentHashMap<>();
 
@@ -64,7 +66,7 @@ class PackageAdminClassLoader extends ClassLoader {
             final ClassLoader parent,
             final DynamicClassLoaderManagerFactory factory) {
         super(parent);
-        this.packageAdmin = pckAdmin;
+        this.packageIndex = factory.getPackageIndex();
         this.factory = factory;
     }
 
@@ -106,7 +108,7 @@ class PackageAdminClassLoader extends ClassLoader {
      * @return The bundle or <code>null</code>
      */
     private Set<Bundle> findBundlesForPackage(final String pckName) {
-        final ExportedPackage[] exportedPackages = this.packageAdmin.getExportedPackages(pckName);
+        final ExportedPackage[] exportedPackages = this.packageIndex.getExportedPackages(pckName);
         Set<Bundle> bundles = new LinkedHashSet<>();
         if (exportedPackages != null) {
             for (ExportedPackage exportedPackage : exportedPackages) {
@@ -245,6 +247,7 @@ class PackageAdminClassLoader extends ClassLoader {
             return cachedClass;
         }
         if ( negativeClassCache.contains(name) ) {
+            this.packageIndex.negativeHit();
             throw new ClassNotFoundException("Class not found " + name);
         }
         String packageName = getPackageFromClassName(name);
@@ -255,13 +258,13 @@ class PackageAdminClassLoader extends ClassLoader {
             try {
                 clazz = getClassFromBundles(name);
             } catch (ClassNotFoundException innerCNFE) {
-                negativeClassCache.add(name);
+                addNegative(name);
                 this.factory.addUnresolvedPackage(packageName);
                 throw innerCNFE;
             }
         }
         if ( clazz == null ) {
-            negativeClassCache.add(name);
+            addNegative(name);
             this.factory.addUnresolvedPackage(packageName);
             throw new ClassNotFoundException("Class not found " + name);
         }
@@ -269,6 +272,18 @@ class PackageAdminClassLoader extends ClassLoader {
         return clazz;
     }
 
+    /**
+     * Add a class name to the negative cache, dropping the cache first if
+     * it is full.
+     * @param name The class name.
+     */
+    private void addNegative(final String name) {
+        if ( negativeClassCache.size() >= ClassLoaderFacade.MAX_NEGATIVE_CACHE_SIZE ) {
+            negativeClassCache.clear();
+        }
+        negativeClassCache.add(name);
+    }
+
     private Class<?> getClassFromBundles(String name) throws ClassNotFoundException {
         Class<?> clazz = null;
         String packageName = getPackageFromClassName(name);
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.classloader.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.service.packageadmin.ExportedPackage;
+import org.osgi.service.packageadmin.PackageAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The index of the exported packages by package name.
+ * <p>
+ * The index is read from the package admin on the first lookup and then
+ * kept up to date from the bundle events forwarded by the {@link Activator}:
+ * the exports of a bundle are added when it is resolved and dropped when it
+ * is unresolved, updated or uninstalled. The index is read again once the
+ * framework has refreshed packages.
+ * <p>
+ * The exports of each package are ordered by version, highest first, and
+ * then by the id of the exporting bundle, regardless of the order in which
+ * the bundles were resolved.
+ * <p>
+ * The index also counts the lookups for the web console.
+ */
+class PackageIndex implements FrameworkListener {
+
+    /** Orders the exports of a package by version descending, then by bundle id. */
+    private static final Comparator<ExportedPackage> EXPORT_ORDER = new Comparator<ExportedPackage>() {
+
+        public int compare(final ExportedPackage o1, final ExportedPackage o2) {
+            final int result = o2.getVersion().compareTo(o1.getVersion());
+            if ( result != 0 ) {
+                return result;
+            }
+            final long id1 = getBundleId(o1);
+            final long id2 = getBundleId(o2);
+            return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+        }
+
+        private long getBundleId(final ExportedPackage pck) {
+            final Bundle bundle = pck.getExportingBundle();
+            return bundle == null ? Long.MAX_VALUE : bundle.getBundleId();
+        }
+    };
+
+    /** The logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The package admin service. */
+    private final PackageAdmin packageAdmin;
+
+    /** The exported packages by package name, <code>null</code> until read. */
+    private volatile ConcurrentMap<String, ExportedPackage[]> exports;
+
+    /** The exports by bundle id. */
+    private final Map<Long, ExportedPackage[]> packagesByBundle = new HashMap<Long, ExportedPackage[]>();
+
+    /** Lookups of packages exported by some bundle. */
+    private final AtomicLong packageHits = new AtomicLong();
+
+    /** Lookups of packages not exported by any bundle. */
+    private final AtomicLong packageMisses = new AtomicLong();
+
+    /** Lookups answered by the negative class caches of the package admin class loaders. */
+    private final AtomicLong negativeHits = new AtomicLong();
+
+    /** Lookups answered by the negative class caches of the class loader facades. */
+    private final AtomicLong facadeNegativeHits = new AtomicLong();
+
+    /**
+     * Create the index.
+     * @param pckAdmin The package admin.
+     */
+    public PackageIndex(final PackageAdmin pckAdmin) {
+        this.packageAdmin = pckAdmin;
+    }
+
+    /**
+     * Get the exports of a package.
+     * @param pckName The package name.
+     * @return The exports ordered by version descending and bundle id or
+     *         <code>null</code> if no bundle exports the package.
+     */
+    public ExportedPackage[] getExportedPackages(final String pckName) {
+        ConcurrentMap<String, ExportedPackage[]> current = this.exports;
+        if ( current == null ) {
+            current = this.read();
+        }
+        final ExportedPackage[] pcks = current.get(pckName);
+        if ( pcks == null ) {
+            this.packageMisses.incrementAndGet();
+        } else {
+            this.packageHits.incrementAndGet();
+        }
+        return pcks;
+    }
+
+    /**
+     * Count a lookup answered by the negative class cache of a package
+     * admin class loader.
+     */
+    public void negativeHit() {
+        this.negativeHits.incrementAndGet();
+    }
+
+    /**
+     * Count a lookup answered by the negative class cache of a class
+     * loader facade.
+     */
+    public void facadeNegativeHit() {
+        this.facadeNegativeHits.incrementAndGet();
+    }
+
+    /**
+     * Update the index on a bundle event.
+     * @param event The bundle event.
+     */
+    public void bundleChanged(final BundleEvent event) {
+        switch ( event.getType() ) {
+            case BundleEvent.RESOLVED:
+                this.addBundle(event.getBundle());
+                break;
+            case BundleEvent.UNRESOLVED:
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNINSTALLED:
+                this.removeBundle(event.getBundle());
+                break;
+            default:
+                // the exports do not change
+        }
+    }
+
+    /**
+     * @see org.osgi.framework.FrameworkListener#frameworkEvent(org.osgi.framework.FrameworkEvent)
+     */
+    public void frameworkEvent(final FrameworkEvent event) {
+        if ( event.getType() == FrameworkEvent.PACKAGES_REFRESHED ) {
+            synchronized ( this ) {
+                // read again on the next lookup
+                this.exports = null;
+                this.packagesByBundle.clear();
+            }
+        }
+    }
+
+    /**
+     * Read the exports of all bundles.
+     * @return The index
+     */
+    private synchronized ConcurrentMap<String, ExportedPackage[]> read() {
+        if ( this.exports != null ) {
+            return this.exports;
+        }
+        final Map<String, List<ExportedPackage>> byName = new HashMap<String, List<ExportedPackage>>();
+        final Map<Long, List<ExportedPackage>> byBundle = new HashMap<Long, List<ExportedPackage>>();
+        final ExportedPackage[] pcks = this.packageAdmin.getExportedPackages((Bundle)null);
+        if ( pcks != null ) {
+            for(final ExportedPackage pck : pcks) {
+                if ( pck.isRemovalPending() ) {
+                    continue;
+                }
+                List<ExportedPackage> list = byName.get(pck.getName());
+                if ( list == null ) {
+                    list = new ArrayList<ExportedPackage>(1);
+                    byName.put(pck.getName(), list);
+                }
+                list.add(pck);
+                final Bundle bundle = pck.getExportingBundle();
+                if ( bundle != null ) {
+                    List<ExportedPackage> exported = byBundle.get(bundle.getBundleId());
+                    if ( exported == null ) {
+                        exported = new ArrayList<ExportedPackage>();
+                        byBundle.put(bundle.getBundleId(), exported);
+                    }
+                    exported.add(pck);
+                }
+            }
+        }
+        final ConcurrentMap<String, ExportedPackage[]> index = new ConcurrentHashMap<String, ExportedPackage[]>(byName.size() * 2);
+        for(final Map.Entry<String, List<ExportedPackage>> entry : byName.entrySet()) {
+            Collections.sort(entry.getValue(), EXPORT_ORDER);
+            index.put(entry.getKey(), entry.getValue().toArray(new ExportedPackage[entry.getValue().size()]));
+        }
+        this.packagesByBundle.clear();
+        for(final Map.Entry<Long, List<ExportedPackage>> entry : byBundle.entrySet()) {
+            this.packagesByBundle.put(entry.getKey(), entry.getValue().toArray(new ExportedPackage[entry.getValue().size()]));
+        }
+        logger.debug("Indexed {} exported packages", index.size());
+        this.exports = index;
+        return index;
+    }
+
+    /**
+     * Add the exports of a resolved bundle, keeping the order of the exports
+     * of each package.
+     * @param bundle The bundle.
+     */
+    private synchronized void addBundle(final Bundle bundle) {
+        final ConcurrentMap<String, ExportedPackage[]> current = this.exports;
+        if ( current == null ) {
+            // not read yet
+            return;
+        }
+        this.removeBundle(bundle);
+        final ExportedPackage[] pcks = this.packageAdmin.getExportedPackages(bundle);
+        if ( pcks == null ) {
+            return;
+        }
+        final List<ExportedPackage> exported = new ArrayList<ExportedPackage>(pcks.length);
+        for(final ExportedPackage pck : pcks) {
+            if ( pck.isRemovalPending() ) {
+                continue;
+            }
+            final ExportedPackage[] old = current.get(pck.getName());
+            if ( old == null ) {
+                current.put(pck.getName(), new ExportedPackage[] {pck});
+            } else {
+                final ExportedPackage[] updated = Arrays.copyOf(old, old.length + 1);
+                updated[old.length] = pck;
+                Arrays.sort(updated, EXPORT_ORDER);
+                current.put(pck.getName(), updated);
+            }
+            exported.add(pck);
+        }
+        this.packagesByBundle.put(bundle.getBundleId(), exported.toArray(new ExportedPackage[exported.size()]));
+    }
+
+    /**
+     * Drop the exports of a bundle.
+     * @param bundle The bundle.
+     */
+    private synchronized void removeBundle(final Bundle bundle) {
+        final ConcurrentMap<String, ExportedPackage[]> current = this.exports;
+        final ExportedPackage[] exported = this.packagesByBundle.remove(bundle.getBundleId());
+        if ( current == null || exported == null ) {
+            return;
+        }
+        for(final ExportedPackage removed : exported) {
+            final ExportedPackage[] old = current.get(removed.getName());
+            if ( old == null ) {
+                continue;
+            }
+            final List<ExportedPackage> remaining = new ArrayList<ExportedPackage>(old.length);
+            for(final ExportedPackage pck : old) {
+                if ( pck != removed ) {
+                    remaining.add(pck);
+                }
+            }
+            if ( remaining.isEmpty() ) {
+                current.remove(removed.getName());
+            } else {
+                current.put(removed.getName(), remaining.toArray(new ExportedPackage[remaining.size()]));
+            }
+        }
+    }
+
+    /**
+     * The number of indexed packages, or -1 if not read yet.
+     */
+    public int size() {
+        final Map<String, ExportedPackage[]> current = this.exports;
+        return current == null ? -1 : current.size();
+    }
+
+    public long getPackageHits() {
+        return this.packageHits.get();
+    }
+
+    public long getPackageMisses() {
+        return this.packageMisses.get();
+    }
+
+    public long getNegativeHits() {
+        return this.negativeHits.get();
+    }
+
+    public long getFacadeNegativeHits() {
+        return this.facadeNegativeHits.get();
+    }
+}
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Map;
 
+import org.apache.sling.commons.classloader.DynamicClassLoader;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.Sequence;
@@ -63,8 +64,10 @@ public class ClassLoadingTest {
             will(returnValue(null));
             allowing(bundleContext).addServiceListener(with(any(ServiceListener.class)), with(any(String.class)));
             allowing(bundleContext).removeServiceListener(with(any(ServiceListener.class)));
-            allowing(packageAdmin).getExportedPackages("org.apache.sling.test");
+            allowing(packageAdmin).getExportedPackages((Bundle)null);
             will(returnValue(new ExportedPackage[] {ep}));
+            allowing(ep).getName();
+            will(returnValue("org.apache.sling.test"));
             allowing(ep).getExportingBundle();
             will(returnValue(bundle));
             allowing(ep).isRemovalPending();
@@ -85,7 +88,7 @@ public class ClassLoadingTest {
             will(returnValue(java.util.ArrayList.class));
         }});
         DynamicClassLoaderManagerImpl manager = new DynamicClassLoaderManagerImpl(bundleContext, packageAdmin, null,
-            new DynamicClassLoaderManagerFactory(bundleContext, packageAdmin));
+            new DynamicClassLoaderManagerFactory(bundleContext, packageAdmin, new PackageIndex(packageAdmin)));
         final ClassLoader cl = manager.getDynamicClassLoader();
         final Class<?> c1 = cl.loadClass("org.apache.sling.test.A");
         Assert.assertEquals("java.util.Map", c1.getName());
@@ -113,25 +116,35 @@ public class ClassLoadingTest {
             will(returnValue(null));
             allowing(bundleContext).addServiceListener(with(any(ServiceListener.class)), with(any(String.class)));
             allowing(bundleContext).removeServiceListener(with(any(ServiceListener.class)));
-            allowing(packageAdmin).getExportedPackages(with("org.apache.sling.test"));
-            will(returnValue(new ExportedPackage[] {ep1, ep2}));
-            allowing(packageAdmin).getExportedPackages(with("org.apache.sling.test3"));
-            will(returnValue(new ExportedPackage[] {ep3}));
+            allowing(packageAdmin).getExportedPackages((Bundle)null);
+            will(returnValue(new ExportedPackage[] {ep1, ep2, ep3}));
+            allowing(ep1).getName();
+            will(returnValue("org.apache.sling.test"));
+            allowing(ep2).getName();
+            will(returnValue("org.apache.sling.test"));
+            allowing(ep3).getName();
+            will(returnValue("org.apache.sling.test3"));
 
             allowing(ep1).getExportingBundle();
             will(returnValue(bundle1));
             allowing(ep1).isRemovalPending();
             will(returnValue(false));
+            allowing(ep1).getVersion();
+            will(returnValue(new Version("1.0.0")));
 
             allowing(ep2).getExportingBundle();
             will(returnValue(bundle2));
             allowing(ep2).isRemovalPending();
             will(returnValue(false));
+            allowing(ep2).getVersion();
+            will(returnValue(new Version("2.0.0")));
 
             allowing(ep3).getExportingBundle();
             will(returnValue(bundle3));
             allowing(ep3).isRemovalPending();
             will(returnValue(false));
+            allowing(ep3).getVersion();
+            will(returnValue(new Version("1.2.3")));
 
             allowing(bundle1).getBundleId();
             will(returnValue(1L));
@@ -183,7 +196,7 @@ public class ClassLoadingTest {
             }})));
         }});
         DynamicClassLoaderManagerImpl manager = new DynamicClassLoaderManagerImpl(bundleContext, packageAdmin, null,
-                new DynamicClassLoaderManagerFactory(bundleContext, packageAdmin));
+                new DynamicClassLoaderManagerFactory(bundleContext, packageAdmin, new PackageIndex(packageAdmin)));
         final ClassLoader cl = manager.getDynamicClassLoader();
         Assert.assertEquals(ArrayList.class, cl.loadClass("org.apache.sling.test.T1"));
         try {
@@ -205,4 +218,63 @@ public class ClassLoadingTest {
         Assert.assertEquals(1, count);
         Assert.assertEquals("jar:file:/ws/org.apache.sling.test3.jar!/org/apache/sling/test3/T4.class", lastURL.toString());
     }
+
+    @Test public void testCaches() throws Exception {
+        final BundleContext bundleContext = this.context.mock(BundleContext.class);
+        final PackageAdmin packageAdmin = this.context.mock(PackageAdmin.class);
+        final ExportedPackage ep = this.context.mock(ExportedPackage.class);
+        final Bundle bundle = this.context.mock(Bundle.class);
+        this.context.checking(new Expectations() {{
+            allowing(bundleContext).createFilter(with(any(String.class)));
+            will(returnValue(null));
+            allowing(bundleContext).getServiceReferences(with(any(String.class)), with((String)null));
+            will(returnValue(null));
+            allowing(bundleContext).addServiceListener(with(any(ServiceListener.class)), with(any(String.class)));
+            allowing(bundleContext).removeServiceListener(with(any(ServiceListener.class)));
+            allowing(packageAdmin).getExportedPackages((Bundle)null);
+            will(returnValue(new ExportedPackage[] {ep}));
+            allowing(ep).getName();
+            will(returnValue("org.apache.sling.test"));
+            allowing(ep).getExportingBundle();
+            will(returnValue(bundle));
+            allowing(ep).isRemovalPending();
+            will(returnValue(false));
+            allowing(bundle).getBundleId();
+            will(returnValue(2L));
+            allowing(bundle).getState();
+            will(returnValue(Bundle.ACTIVE));
+            allowing(bundle).getSymbolicName();
+            will(returnValue("org.apache.sling.test"));
+            allowing(bundle).getVersion();
+            will(returnValue(new Version("1.0.0")));
+            one(bundle).loadClass("org.apache.sling.test.A");
+            will(returnValue(java.util.Map.class));
+        }});
+        final PackageIndex index = new PackageIndex(packageAdmin);
+        DynamicClassLoaderManagerImpl manager = new DynamicClassLoaderManagerImpl(bundleContext, packageAdmin, null,
+            new DynamicClassLoaderManagerFactory(bundleContext, packageAdmin, index));
+        final ClassLoader cl = manager.getDynamicClassLoader();
+        Assert.assertEquals(java.util.Map.class, cl.loadClass("org.apache.sling.test.A"));
+        Assert.assertEquals(java.util.Map.class, cl.loadClass("org.apache.sling.test.A"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                cl.loadClass("org.apache.sling.missing.B");
+                Assert.fail("Expected class not to be found");
+            } catch (ClassNotFoundException expected) {
+                // expected
+            }
+        }
+        // the second lookup is answered by the negative cache of the facade
+        Assert.assertEquals(1, index.getFacadeNegativeHits());
+
+        // the caches are released on deactivation
+        manager.deactivate();
+        Assert.assertFalse(((DynamicClassLoader) cl).isLive());
+        try {
+            cl.loadClass("org.apache.sling.test.A");
+            Assert.fail("Expected class not to be found");
+        } catch (ClassNotFoundException expected) {
+            // expected
+        }
+    }
 }
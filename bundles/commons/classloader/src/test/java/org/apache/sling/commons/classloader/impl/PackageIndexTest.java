@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.classloader.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.Version;
+import org.osgi.service.packageadmin.ExportedPackage;
+import org.osgi.service.packageadmin.PackageAdmin;
+
+/**
+ * Test for the index of the exported packages.
+ */
+public class PackageIndexTest {
+
+    protected Mockery context;
+
+    private PackageAdmin packageAdmin;
+
+    private Bundle bundle1;
+
+    private Bundle bundle2;
+
+    private ExportedPackage ep1;
+
+    private ExportedPackage ep2;
+
+    private Bundle bundle3;
+
+    private ExportedPackage ep3;
+
+    public PackageIndexTest() {
+        this.context = new JUnit4Mockery();
+    }
+
+    @Before public void setUp() {
+        this.packageAdmin = this.context.mock(PackageAdmin.class);
+        this.bundle1 = this.context.mock(Bundle.class, "bundle1");
+        this.bundle2 = this.context.mock(Bundle.class, "bundle2");
+        this.ep1 = this.context.mock(ExportedPackage.class, "ep1");
+        this.ep2 = this.context.mock(ExportedPackage.class, "ep2");
+        this.bundle3 = this.context.mock(Bundle.class, "bundle3");
+        this.ep3 = this.context.mock(ExportedPackage.class, "ep3");
+        this.context.checking(new Expectations() {{
+            allowing(bundle1).getBundleId();
+            will(returnValue(1L));
+            allowing(bundle2).getBundleId();
+            will(returnValue(2L));
+            allowing(ep1).getName();
+            will(returnValue("org.apache.sling.test"));
+            allowing(ep1).getExportingBundle();
+            will(returnValue(bundle1));
+            allowing(ep1).isRemovalPending();
+            will(returnValue(false));
+            allowing(ep2).getName();
+            will(returnValue("org.apache.sling.test"));
+            allowing(ep2).getExportingBundle();
+            will(returnValue(bundle2));
+            allowing(ep2).isRemovalPending();
+            will(returnValue(false));
+            allowing(ep1).getVersion();
+            will(returnValue(new Version(1, 0, 0)));
+            allowing(ep2).getVersion();
+            will(returnValue(new Version(1, 0, 0)));
+            allowing(bundle3).getBundleId();
+            will(returnValue(3L));
+            allowing(ep3).getName();
+            will(returnValue("org.apache.sling.test"));
+            allowing(ep3).getExportingBundle();
+            will(returnValue(bundle3));
+            allowing(ep3).isRemovalPending();
+            will(returnValue(false));
+            allowing(ep3).getVersion();
+            will(returnValue(new Version(2, 0, 0)));
+        }});
+    }
+
+    @Test public void testLookups() throws Exception {
+        this.context.checking(new Expectations() {{
+            one(packageAdmin).getExportedPackages((Bundle)null);
+            will(returnValue(new ExportedPackage[] {ep1}));
+        }});
+        final PackageIndex index = new PackageIndex(this.packageAdmin);
+        Assert.assertEquals(-1, index.size());
+        Assert.assertArrayEquals(new ExportedPackage[] {ep1}, index.getExportedPackages("org.apache.sling.test"));
+        Assert.assertNull(index.getExportedPackages("org.apache.sling.missing"));
+        Assert.assertNull(index.getExportedPackages("org.apache.sling.missing"));
+        Assert.assertEquals(1, index.size());
+        Assert.assertEquals(1, index.getPackageHits());
+        Assert.assertEquals(2, index.getPackageMisses());
+    }
+
+    @Test public void testBundleEvents() throws Exception {
+        this.context.checking(new Expectations() {{
+            one(packageAdmin).getExportedPackages((Bundle)null);
+            will(returnValue(new ExportedPackage[] {ep1}));
+            one(packageAdmin).getExportedPackages(bundle2);
+            will(returnValue(new ExportedPackage[] {ep2}));
+        }});
+        final PackageIndex index = new PackageIndex(this.packageAdmin);
+        Assert.assertArrayEquals(new ExportedPackage[] {ep1}, index.getExportedPackages("org.apache.sling.test"));
+
+        index.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, this.bundle2));
+        Assert.assertArrayEquals(new ExportedPackage[] {ep1, ep2}, index.getExportedPackages("org.apache.sling.test"));
+
+        index.bundleChanged(new BundleEvent(BundleEvent.UNRESOLVED, this.bundle1));
+        Assert.assertArrayEquals(new ExportedPackage[] {ep2}, index.getExportedPackages("org.apache.sling.test"));
+
+        index.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, this.bundle2));
+        Assert.assertNull(index.getExportedPackages("org.apache.sling.test"));
+        Assert.assertEquals(0, index.size());
+    }
+
+    @Test public void testOrder() throws Exception {
+        this.context.checking(new Expectations() {{
+            one(packageAdmin).getExportedPackages((Bundle)null);
+            will(returnValue(new ExportedPackage[] {ep2, ep1}));
+            one(packageAdmin).getExportedPackages(bundle3);
+            will(returnValue(new ExportedPackage[] {ep3}));
+        }});
+        final PackageIndex index = new PackageIndex(this.packageAdmin);
+        Assert.assertArrayEquals(new ExportedPackage[] {ep1, ep2}, index.getExportedPackages("org.apache.sling.test"));
+
+        // the highest version comes first, though resolved last
+        index.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, this.bundle3));
+        Assert.assertArrayEquals(new ExportedPackage[] {ep3, ep1, ep2}, index.getExportedPackages("org.apache.sling.test"));
+    }
+
+    @Test public void testRefresh() throws Exception {
+        this.context.checking(new Expectations() {{
+            one(packageAdmin).getExportedPackages((Bundle)null);
+            will(returnValue(new ExportedPackage[] {ep1}));
+            one(packageAdmin).getExportedPackages((Bundle)null);
+            will(returnValue(new ExportedPackage[] {ep2}));
+        }});
+        final PackageIndex index = new PackageIndex(this.packageAdmin);
+        Assert.assertArrayEquals(new ExportedPackage[] {ep1}, index.getExportedPackages("org.apache.sling.test"));
+
+        index.frameworkEvent(new FrameworkEvent(FrameworkEvent.PACKAGES_REFRESHED, this.bundle1, null));
+        Assert.assertEquals(-1, index.size());
+        Assert.assertArrayEquals(new ExportedPackage[] {ep2}, index.getExportedPackages("org.apache.sling.test"));
+    }
+}
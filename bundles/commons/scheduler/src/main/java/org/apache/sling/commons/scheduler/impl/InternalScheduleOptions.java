@@ -46,6 +46,18 @@ public class InternalScheduleOptions implements ScheduleOptions {
 
     public String[] runOn;
 
+    /** Whether the trigger fires at a start time and period rather than for a cron expression. */
+    public boolean timed;
+
+    /** The start time of a timed trigger. */
+    public long startMillis;
+
+    /** The number of times a timed trigger fires, -1 for ever. */
+    public int times = 1;
+
+    /** The period of a timed trigger firing more than once. */
+    public long periodMillis;
+
     public InternalScheduleOptions(final TriggerBuilder<? extends Trigger> trigger) {
         this.trigger = trigger;
         this.argumentException = null;
@@ -56,6 +68,22 @@ public class InternalScheduleOptions implements ScheduleOptions {
         this.argumentException = iae;
     }
 
+    /**
+     * Set the timing of a trigger without cron expression, the timer wheel
+     * of the scheduler can fire it instead of quartz.
+     * @param startMillis The start time
+     * @param times The number of times to fire, -1 for ever
+     * @param periodMillis The period if firing more than once
+     * @return These options
+     */
+    InternalScheduleOptions timed(final long startMillis, final int times, final long periodMillis) {
+        this.timed = true;
+        this.startMillis = startMillis;
+        this.times = times;
+        this.periodMillis = periodMillis;
+        return this;
+    }
+
     /**
      * @see org.apache.sling.commons.scheduler.ScheduleOptions#config(java.util.Map)
      */
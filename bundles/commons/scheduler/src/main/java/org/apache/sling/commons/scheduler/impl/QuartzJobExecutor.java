@@ -302,8 +302,16 @@ public class QuartzJobExecutor implements Job {
      */
     @Override
     public void execute(final JobExecutionContext context) throws JobExecutionException {
+        this.execute(context.getJobDetail().getJobDataMap());
+    }
 
-        final JobDataMap data = context.getJobDetail().getJobDataMap();
+    /**
+     * Execute the job described by the data map, this is used for the
+     * jobs of the timer wheel, too.
+     * @param data The data map of the job
+     * @throws JobExecutionException If the job throws it
+     */
+    void execute(final JobDataMap data) throws JobExecutionException {
         final JobDesc desc = new JobDesc(data);
         final Logger logger = (Logger)data.get(QuartzScheduler.DATA_MAP_LOGGER);
 
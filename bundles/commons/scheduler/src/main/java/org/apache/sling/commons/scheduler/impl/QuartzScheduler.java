@@ -57,7 +57,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * The quartz based implementation of the scheduler.
- *
+ * <p>
+ * If the timer wheel is enabled, jobs without cron expression are run by the
+ * {@link TimerWheel} of the scheduler proxy instead of quartz.
  */
 @Component(
     service = QuartzScheduler.class,
@@ -126,6 +128,8 @@ public class QuartzScheduler implements BundleListener {
 
     private volatile boolean active;
 
+    private volatile boolean useTimerWheel;
+
     /**
      * Activate this component.
      * Start the scheduler.
@@ -140,6 +144,7 @@ public class QuartzScheduler implements BundleListener {
 
         defaultPoolName = configuration.poolName();
         allowedPoolNames = configuration.allowedPoolNames();
+        useTimerWheel = configuration.scheduler_timerwheel();
         if (allowedPoolNames == null) {
             allowedPoolNames = new String[0];
         }
@@ -196,7 +201,7 @@ public class QuartzScheduler implements BundleListener {
             if ( this.active ) {
                 proxy = this.schedulers.get(poolName);
                 if ( proxy == null ) {
-                    proxy = new SchedulerProxy(this.threadPoolManager, poolName);
+                    proxy = new SchedulerProxy(this.threadPoolManager, poolName, this.useTimerWheel);
                     this.schedulers.put(poolName, proxy);
                 }
             }
@@ -221,6 +226,13 @@ public class QuartzScheduler implements BundleListener {
                 }
             }
             for(final SchedulerProxy proxy : proxies.values()) {
+                for(final TimerWheelJob job : proxy.getTimerWheelJobs()) {
+                    final Long jobBundleId = (Long) job.getJobDataMap().get(QuartzScheduler.DATA_MAP_BUNDLE_ID);
+                    if ( jobBundleId != null && jobBundleId.equals(bundleId) ) {
+                        proxy.unscheduleTimerWheelJob(job.getName());
+                        this.logger.debug("Unscheduling job with name {}", job.getName());
+                    }
+                }
                 synchronized ( proxy ) {
                     try {
                         final List<String> groups = proxy.getScheduler().getJobGroupNames();
@@ -371,14 +383,15 @@ public class QuartzScheduler implements BundleListener {
             return new InternalScheduleOptions(new IllegalArgumentException("Period argument must be higher than 0"));
         }
         final long ms = period * 1000;
+        final long now = System.currentTimeMillis();
 
         final TriggerBuilder<SimpleTrigger> builder = TriggerBuilder.newTrigger()
-                .startAt(new Date(System.currentTimeMillis() + ms))
+                .startAt(new Date(now + ms))
                 .withSchedule(SimpleScheduleBuilder.simpleSchedule().repeatForever().withIntervalInMilliseconds(ms));
         if ( startImmediate ) {
-            return new InternalScheduleOptions( builder.startNow());
+            return new InternalScheduleOptions( builder.startNow()).timed(now, -1, ms);
         } else {
-            return new InternalScheduleOptions( builder.startAt(new Date(System.currentTimeMillis() + ms)) );
+            return new InternalScheduleOptions( builder.startAt(new Date(now + ms)) ).timed(now + ms, -1, ms);
         }
     }
 
@@ -447,6 +460,10 @@ public class QuartzScheduler implements BundleListener {
             }
         }
         for(final SchedulerProxy proxy : proxies.values()) {
+            if ( proxy.unscheduleTimerWheelJob(jobName) ) {
+                this.logger.debug("Unscheduling job with name {}", jobName);
+                return;
+            }
             synchronized ( proxy ) {
                 try {
                     final JobKey key = JobKey.jobKey(jobName);
@@ -471,7 +488,7 @@ public class QuartzScheduler implements BundleListener {
      */
     public ScheduleOptions NOW() {
         return new InternalScheduleOptions( TriggerBuilder.newTrigger()
-                .startNow());
+                .startNow()).timed(System.currentTimeMillis(), 1, 0);
     }
 
     /**
@@ -492,7 +509,8 @@ public class QuartzScheduler implements BundleListener {
         }
         return new InternalScheduleOptions( TriggerBuilder.newTrigger()
             .startNow()
-            .withSchedule(sb.withIntervalInMilliseconds(period * 1000)));
+            .withSchedule(sb.withIntervalInMilliseconds(period * 1000)))
+            .timed(System.currentTimeMillis(), times, period * 1000);
     }
 
     /**
@@ -503,7 +521,7 @@ public class QuartzScheduler implements BundleListener {
             return new InternalScheduleOptions(new IllegalArgumentException("Date can't be null"));
         }
         return new InternalScheduleOptions( TriggerBuilder.newTrigger()
-            .startAt(date));
+            .startAt(date)).timed(date.getTime(), 1, 0);
     }
 
     /**
@@ -528,7 +546,8 @@ public class QuartzScheduler implements BundleListener {
         }
         return new InternalScheduleOptions( TriggerBuilder.newTrigger()
             .startAt(date)
-            .withSchedule(sb.withIntervalInMilliseconds(period * 1000)));
+            .withSchedule(sb.withIntervalInMilliseconds(period * 1000)))
+            .timed(date.getTime(), times, period * 1000);
     }
 
     /**
@@ -571,6 +590,10 @@ public class QuartzScheduler implements BundleListener {
                 proxies = new HashMap<>(this.schedulers);
             }
             for(final SchedulerProxy proxy : proxies.values()) {
+                if ( proxy.unscheduleTimerWheelJob(jobName) ) {
+                    this.logger.debug("Unscheduling job with name {}", jobName);
+                    return true;
+                }
                 synchronized ( proxy ) {
                     try {
                         final JobKey key = JobKey.jobKey(jobName);
@@ -614,6 +637,11 @@ public class QuartzScheduler implements BundleListener {
             throw new IllegalStateException("Scheduler is not available anymore.");
         }
 
+        if ( opts.timed && proxy.getTimerWheel() != null ) {
+            this.scheduleTimerWheelJob(bundleId, serviceId, job, opts, proxy);
+            return;
+        }
+
         synchronized ( proxy ) {
             opts.providedName = opts.name;
             final String name;
@@ -637,6 +665,32 @@ public class QuartzScheduler implements BundleListener {
         }
     }
 
+    /**
+     * Internal method to schedule a job on the timer wheel, without locking the proxy
+     */
+    private void scheduleTimerWheelJob(final Long bundleId,
+            final Long serviceId,
+            final Object job,
+            final InternalScheduleOptions opts,
+            final SchedulerProxy proxy) {
+        opts.providedName = opts.name;
+        final String name;
+        if ( opts.name != null ) {
+            // if there is already a job with the name, remove it first
+            this.unschedule(bundleId, opts.name);
+            name = opts.name;
+        } else {
+            name = job.getClass().getName() + ':' + UUID.randomUUID();
+        }
+
+        // create the data map
+        final JobDataMap jobDataMap = this.initDataMap(bundleId, serviceId, name, job, opts);
+
+        final TimerWheelJob timerWheelJob = new TimerWheelJob(proxy, name, jobDataMap, opts);
+        this.logger.debug("Scheduling job {} with name {} and trigger {}", new Object[] {job, name, timerWheelJob});
+        proxy.scheduleTimerWheelJob(timerWheelJob);
+    }
+
     /**
      * This is used by the web console plugin
      * @return All current schedulers
@@ -61,4 +61,11 @@ import org.osgi.service.metatype.annotations.ObjectClassDefinition;
                     + " 0 or a negative value disables this feature."
         )
     int slowThresholdMillis() default QuartzJobExecutor.DEFAULT_SLOW_JOB_THRESHOLD_MILLIS;
+
+    @AttributeDefinition(
+            name = "Timer Wheel",
+            description="If enabled, jobs fired now, at a date or periodically are run by a lightweight timer wheel"
+                    + " instead of quartz. Jobs with a cron expression are always run by quartz."
+        )
+    boolean scheduler_timerwheel() default false;
 }
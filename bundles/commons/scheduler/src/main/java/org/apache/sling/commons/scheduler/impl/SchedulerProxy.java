@@ -16,8 +16,11 @@
  */
 package org.apache.sling.commons.scheduler.impl;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolManager;
@@ -36,6 +39,9 @@ public class SchedulerProxy {
 
     private static final String QUARTZ_SCHEDULER_NAME = "ApacheSling";
 
+    /** The duration of a tick of the timer wheel. */
+    static final long TIMER_WHEEL_TICK_MILLIS = 10;
+
     /** Default logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -48,8 +54,20 @@ public class SchedulerProxy {
 
     private final String poolName;
 
+    /** The timer wheel for jobs without cron expression, null if disabled. */
+    private final TimerWheel timerWheel;
+
+    /** The jobs of the timer wheel by name. */
+    private final ConcurrentMap<String, TimerWheelJob> timerWheelJobs = new ConcurrentHashMap<>();
+
     public SchedulerProxy(final ThreadPoolManager manager,
             final String pName) throws SchedulerException {
+        this(manager, pName, false);
+    }
+
+    public SchedulerProxy(final ThreadPoolManager manager,
+            final String pName,
+            final boolean useTimerWheel) throws SchedulerException {
         // sanity null check
         if ( manager == null ) {
             throw new SchedulerException("Thread pool manager missing");
@@ -93,6 +111,11 @@ public class SchedulerProxy {
                 this.logger.debug("{}for pool {} started.", PREFIX, poolName);
             }
             this.scheduler = s;
+            if ( useTimerWheel ) {
+                this.timerWheel = new TimerWheel(PREFIX + "Timer Wheel for pool " + poolName, TIMER_WHEEL_TICK_MILLIS);
+            } else {
+                this.timerWheel = null;
+            }
             succeeded = true;
         } finally {
             if ( !succeeded) {
@@ -105,6 +128,10 @@ public class SchedulerProxy {
      * Dispose the quartz scheduler
      */
     public void dispose() {
+        if ( this.timerWheel != null ) {
+            this.timerWheel.stop();
+            this.timerWheelJobs.clear();
+        }
         try {
             this.scheduler.shutdown();
         } catch (SchedulerException e) {
@@ -120,4 +147,57 @@ public class SchedulerProxy {
     public org.quartz.Scheduler getScheduler() {
         return this.scheduler;
     }
+
+    ThreadPool getThreadPool() {
+        return this.threadPool;
+    }
+
+    /**
+     * Return the timer wheel
+     * @return The timer wheel or <code>null</code> if it is disabled
+     */
+    TimerWheel getTimerWheel() {
+        return this.timerWheel;
+    }
+
+    /**
+     * Schedule a job on the timer wheel, replacing a job with the same name.
+     * @param job The job
+     */
+    void scheduleTimerWheelJob(final TimerWheelJob job) {
+        final TimerWheelJob previous = this.timerWheelJobs.put(job.getName(), job);
+        if ( previous != null ) {
+            previous.cancel();
+        }
+        job.start();
+    }
+
+    /**
+     * Unschedule a job of the timer wheel.
+     * @param name The name of the job
+     * @return <code>true</code> if the job was scheduled
+     */
+    boolean unscheduleTimerWheelJob(final String name) {
+        final TimerWheelJob job = this.timerWheelJobs.remove(name);
+        if ( job != null ) {
+            job.cancel();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove a job of the timer wheel after its last run.
+     * @param job The job
+     */
+    void removeTimerWheelJob(final TimerWheelJob job) {
+        this.timerWheelJobs.remove(job.getName(), job);
+    }
+
+    /**
+     * Return the scheduled jobs of the timer wheel.
+     */
+    Collection<TimerWheelJob> getTimerWheelJobs() {
+        return this.timerWheelJobs.values();
+    }
 }
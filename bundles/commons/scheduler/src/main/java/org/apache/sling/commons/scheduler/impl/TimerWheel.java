@@ -0,0 +1,427 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hierarchical timing wheel running tasks after a delay.
+ * <p>
+ * The wheel has {@link #LEVELS} levels of {@link #WHEEL_SIZE} buckets. A
+ * bucket of the first level holds the timeouts of a single tick, a bucket of
+ * each next level the timeouts of as many ticks as the whole level below.
+ * Whenever a level wraps around, the current bucket of the next level is
+ * cascaded into the lower levels. Delays longer than all levels are cascaded
+ * again until they fit.
+ * <p>
+ * Scheduling and cancelling a timeout only add it to a lock free queue, the
+ * thread of the wheel then adds it to or removes it from its bucket in
+ * constant time. The tasks run on the thread of the wheel, so they must hand
+ * off any real work to a thread pool.
+ * <p>
+ * The thread of the wheel sleeps until the next tick with a timeout to
+ * expire or a bucket to cascade, skipping the ticks without any, or until a
+ * timeout is scheduled before that tick.
+ */
+final class TimerWheel {
+
+    /** The number of bits of the slot index of a level. */
+    static final int WHEEL_BITS = 6;
+
+    /** The number of buckets of a level. */
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    /** The number of levels. */
+    static final int LEVELS = 4;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /** The number of ticks covered by all levels. */
+    private static final long MAX_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+    /** Default logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final long tickNanos;
+
+    private final long startNanos;
+
+    /** The buckets by level and slot, only accessed by the worker. */
+    private final Bucket[][] buckets;
+
+    /** The timeouts to add to the buckets. */
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+    /** The timeouts to remove from the buckets. */
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    /** The number of pending timeouts. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    /** The current tick, only accessed by the worker. */
+    private long tick;
+
+    /**
+     * The tick the worker sleeps until, {@link Long#MAX_VALUE} if there is no
+     * timeout, <code>0</code> while it is not sleeping.
+     */
+    private volatile long wakeTick;
+
+    /**
+     * Create and start a timer wheel.
+     * @param name The name of the thread of the wheel
+     * @param tickMillis The duration of a tick in milliseconds
+     * @throws IllegalArgumentException If the duration is not positive
+     */
+    TimerWheel(final String name, final long tickMillis) {
+        this(name, tickMillis, true);
+    }
+
+    /**
+     * Create a timer wheel.
+     * @param name The name of the thread of the wheel
+     * @param tickMillis The duration of a tick in milliseconds
+     * @param start Whether to start the thread of the wheel, a wheel without
+     *              it is only advanced by {@link #advanceTo(long)}
+     * @throws IllegalArgumentException If the duration is not positive
+     */
+    TimerWheel(final String name, final long tickMillis, final boolean start) {
+        if ( tickMillis < 1 ) {
+            throw new IllegalArgumentException("Tick duration must be higher than 0");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new Bucket[LEVELS][WHEEL_SIZE];
+        for(int level = 0; level < LEVELS; level++) {
+            for(int slot = 0; slot < WHEEL_SIZE; slot++) {
+                this.buckets[level][slot] = new Bucket();
+            }
+        }
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                work();
+            }
+        }, name);
+        this.worker.setDaemon(true);
+        if ( start ) {
+            this.worker.start();
+        }
+    }
+
+    /**
+     * Run a task after a delay.
+     * @param task The task, run on the thread of the wheel
+     * @param delayMillis The delay in milliseconds, the task runs at the first tick after it
+     * @return The timeout to cancel the task
+     */
+    Timeout schedule(final Runnable task, final long delayMillis) {
+        final long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        final long elapsed = System.nanoTime() - this.startNanos + delayNanos;
+        final Timeout timeout = new Timeout(this, task, (elapsed + this.tickNanos - 1) / this.tickNanos);
+        this.size.incrementAndGet();
+        this.added.add(timeout);
+        if ( !this.running ) {
+            timeout.cancel();
+        } else if ( timeout.deadline < this.wakeTick ) {
+            // the worker sleeps beyond the new timeout
+            LockSupport.unpark(this.worker);
+        }
+        return timeout;
+    }
+
+    /**
+     * The number of timeouts neither expired nor cancelled.
+     */
+    int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Stop the wheel, the pending timeouts never expire.
+     */
+    void stop() {
+        this.running = false;
+        LockSupport.unpark(this.worker);
+    }
+
+    private void work() {
+        while ( this.running ) {
+            this.advanceTo((System.nanoTime() - this.startNanos) / this.tickNanos);
+            long next = this.nextTick();
+            this.wakeTick = next;
+            // a timeout might have been added before the wake tick was set
+            if ( !this.added.isEmpty() ) {
+                next = this.tick + 1;
+            }
+            if ( next == Long.MAX_VALUE ) {
+                LockSupport.park(this);
+            } else {
+                final long wait = this.startNanos + next * this.tickNanos - System.nanoTime();
+                if ( wait > 0 ) {
+                    LockSupport.parkNanos(this, wait);
+                }
+            }
+            this.wakeTick = 0;
+        }
+        this.added.clear();
+        this.cancelled.clear();
+        this.size.set(0);
+    }
+
+    /**
+     * Process the ticks up to the given tick, skipping the ticks without
+     * timeouts to expire or buckets to cascade. Only called by the worker.
+     * @param current The tick to process up to
+     */
+    void advanceTo(final long current) {
+        while ( this.tick < current ) {
+            this.tick = Math.min(this.nextTick(), current);
+            this.advance();
+        }
+    }
+
+    /**
+     * Return the next tick with timeouts to expire or a bucket to cascade.
+     * @return The tick or {@link Long#MAX_VALUE} if there is no timeout
+     */
+    private long nextTick() {
+        if ( !this.added.isEmpty() ) {
+            return this.tick + 1;
+        }
+        long next = Long.MAX_VALUE;
+        for(long t = this.tick + 1; t < this.tick + WHEEL_SIZE; t++) {
+            if ( !this.buckets[0][(int) t & WHEEL_MASK].isEmpty() ) {
+                next = t;
+                break;
+            }
+        }
+        // a bucket of a higher level is cascaded at the first tick of its range
+        for(int level = 1; level < LEVELS; level++) {
+            final int shift = WHEEL_BITS * level;
+            final long first = (this.tick >>> shift) + 1;
+            for(long index = first; index <= first + WHEEL_MASK && (index << shift) < next; index++) {
+                if ( !this.buckets[level][(int) index & WHEEL_MASK].isEmpty() ) {
+                    next = index << shift;
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Process the current tick.
+     */
+    private void advance() {
+        // cascade the buckets whose range starts at this tick
+        for(int level = 1; level < LEVELS; level++) {
+            final int shift = WHEEL_BITS * level;
+            if ( (this.tick & ((1L << shift) - 1)) != 0 ) {
+                break;
+            }
+            Timeout timeout = this.buckets[level][(int) (this.tick >>> shift) & WHEEL_MASK].clear();
+            while ( timeout != null ) {
+                final Timeout next = timeout.next;
+                timeout.next = null;
+                this.place(timeout);
+                timeout = next;
+            }
+        }
+        Timeout timeout;
+        while ( (timeout = this.cancelled.poll()) != null ) {
+            if ( timeout.bucket != null ) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+        while ( (timeout = this.added.poll()) != null ) {
+            if ( timeout.state == Timeout.PENDING ) {
+                this.place(timeout);
+            }
+        }
+        timeout = this.buckets[0][(int) this.tick & WHEEL_MASK].clear();
+        while ( timeout != null ) {
+            final Timeout next = timeout.next;
+            timeout.next = null;
+            this.expire(timeout);
+            timeout = next;
+        }
+    }
+
+    /**
+     * Add a timeout to the bucket of its deadline.
+     */
+    private void place(final Timeout timeout) {
+        final long delta = timeout.deadline - this.tick;
+        if ( delta < WHEEL_SIZE ) {
+            final long deadline = Math.max(timeout.deadline, this.tick);
+            this.buckets[0][(int) deadline & WHEEL_MASK].add(timeout);
+            return;
+        }
+        int level = 1;
+        while ( level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1))) ) {
+            level++;
+        }
+        // beyond the last level the timeout is cascaded once more at the end of its range
+        final long deadline = delta >= MAX_TICKS ? this.tick + MAX_TICKS - 1 : timeout.deadline;
+        this.buckets[level][(int) (deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK].add(timeout);
+    }
+
+    private void expire(final Timeout timeout) {
+        if ( timeout.deadline > this.tick ) {
+            // can only happen for a timeout added late, keep it
+            this.place(timeout);
+            return;
+        }
+        if ( Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED) ) {
+            this.size.decrementAndGet();
+            try {
+                timeout.task.run();
+            } catch (final Throwable t) {
+                logger.error("Exception during expiration of timeout " + timeout.task + " : " + t.getMessage(), t);
+            }
+        }
+    }
+
+    /**
+     * A task to run after a delay.
+     */
+    static final class Timeout {
+
+        private static final int PENDING = 0;
+
+        private static final int EXPIRED = 1;
+
+        private static final int CANCELLED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimerWheel wheel;
+
+        private final Runnable task;
+
+        /** The tick to run the task at. */
+        private final long deadline;
+
+        private volatile int state = PENDING;
+
+        /** The bucket and the links of the bucket, only accessed by the worker. */
+        private Bucket bucket;
+
+        private Timeout prev;
+
+        private Timeout next;
+
+        private Timeout(final TimerWheel wheel, final Runnable task, final long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task.
+         * @return <code>true</code> if the task did neither run nor was cancelled before
+         */
+        boolean cancel() {
+            if ( STATE.compareAndSet(this, PENDING, CANCELLED) ) {
+                this.wheel.size.decrementAndGet();
+                this.wheel.cancelled.add(this);
+                return true;
+            }
+            return false;
+        }
+
+        boolean isCancelled() {
+            return this.state == CANCELLED;
+        }
+
+        boolean isExpired() {
+            return this.state == EXPIRED;
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        boolean isEmpty() {
+            return this.head == null;
+        }
+
+        void add(final Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = this.tail;
+            timeout.next = null;
+            if ( this.tail == null ) {
+                this.head = timeout;
+            } else {
+                this.tail.next = timeout;
+            }
+            this.tail = timeout;
+        }
+
+        void remove(final Timeout timeout) {
+            if ( timeout.prev == null ) {
+                this.head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if ( timeout.next == null ) {
+                this.tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        /**
+         * Remove all timeouts.
+         * @return The first timeout, linked to the others by their next field
+         */
+        Timeout clear() {
+            final Timeout first = this.head;
+            for(Timeout timeout = first; timeout != null; timeout = timeout.next) {
+                timeout.bucket = null;
+                timeout.prev = null;
+            }
+            this.head = null;
+            this.tail = null;
+            return first;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.sling.commons.threads.ThreadPool;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A job run on the timer wheel of a {@link SchedulerProxy} instead of the
+ * quartz scheduler: it runs once or a number of times with a fixed period,
+ * on the thread pool of the proxy.
+ * <p>
+ * A job which can't run concurrently skips a period while it is still
+ * running, like a quartz trigger with a misfire. Periods missed entirely,
+ * for example while the system was suspended, are skipped, too: the next
+ * run is at the first period after the current time and the skipped runs
+ * count against the number of runs, like the quartz misfire instruction
+ * to reschedule with the remaining count.
+ */
+final class TimerWheelJob implements Runnable {
+
+    /** The executor of the jobs, it has no state. */
+    private static final QuartzJobExecutor EXECUTOR = new QuartzJobExecutor();
+
+    /** Default logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final SchedulerProxy proxy;
+
+    private final String name;
+
+    private final JobDataMap data;
+
+    private final boolean concurrent;
+
+    private final long periodMillis;
+
+    /** The next fire time as of {@link System#nanoTime()}, only accessed by the wheel. */
+    private long fireNanos;
+
+    /** The number of times left to fire, -1 to fire for ever, only accessed by the wheel. */
+    private int remaining;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile TimerWheel.Timeout timeout;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Create a job.
+     * @param proxy The proxy running the job
+     * @param name The name of the job
+     * @param data The data map of the job
+     * @param options The options with the timing of the job
+     */
+    TimerWheelJob(final SchedulerProxy proxy,
+            final String name,
+            final JobDataMap data,
+            final InternalScheduleOptions options) {
+        this.proxy = proxy;
+        this.name = name;
+        this.data = data;
+        this.concurrent = options.canRunConcurrently;
+        this.fireNanos = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(options.startMillis - System.currentTimeMillis());
+        this.remaining = options.times;
+        this.periodMillis = options.periodMillis;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    JobDataMap getJobDataMap() {
+        return this.data;
+    }
+
+    boolean isConcurrent() {
+        return this.concurrent;
+    }
+
+    /**
+     * Schedule the first run of this job on the timer wheel.
+     */
+    void start() {
+        this.schedule();
+    }
+
+    /**
+     * Cancel all further runs of this job.
+     */
+    void cancel() {
+        this.cancelled = true;
+        final TimerWheel.Timeout current = this.timeout;
+        if ( current != null ) {
+            current.cancel();
+        }
+    }
+
+    private void schedule() {
+        final long delayNanos = this.fireNanos - System.nanoTime();
+        this.timeout = this.proxy.getTimerWheel().schedule(this,
+                TimeUnit.NANOSECONDS.toMillis(delayNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+        // cancel might have missed the new timeout
+        if ( this.cancelled ) {
+            this.timeout.cancel();
+        }
+    }
+
+    /**
+     * Fire the job, this is called by the timer wheel.
+     */
+    @Override
+    public void run() {
+        if ( this.cancelled ) {
+            return;
+        }
+        if ( this.remaining == 1 ) {
+            this.proxy.removeTimerWheelJob(this);
+        } else {
+            if ( this.remaining > 1 ) {
+                this.remaining--;
+            }
+            this.scheduleNext();
+        }
+        if ( !this.concurrent && !this.running.compareAndSet(false, true) ) {
+            logger.debug("Skipping job {} as it is still running", this.name);
+            return;
+        }
+        final ThreadPool pool = this.proxy.getThreadPool();
+        try {
+            pool.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        EXECUTOR.execute(data);
+                    } catch (final JobExecutionException e) {
+                        logger.error("Exception during job execution of " + name + " : " + e.getMessage(), e);
+                    } finally {
+                        running.set(false);
+                    }
+                }
+            });
+        } catch (final RuntimeException e) {
+            this.running.set(false);
+            logger.warn("Unable to run job " + this.name + " : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Schedule the next run at the first period after the current time.
+     */
+    private void scheduleNext() {
+        final long periodNanos = TimeUnit.MILLISECONDS.toNanos(this.periodMillis);
+        final long now = System.nanoTime();
+        this.fireNanos += periodNanos;
+        if ( this.fireNanos <= now ) {
+            final long skipped = (now - this.fireNanos) / periodNanos + 1;
+            logger.debug("Skipping {} missed runs of job {}", skipped, this.name);
+            if ( this.remaining > 0 && skipped >= this.remaining ) {
+                this.proxy.removeTimerWheelJob(this);
+                return;
+            }
+            this.fireNanos += skipped * periodNanos;
+            if ( this.remaining > 0 ) {
+                this.remaining -= (int) skipped;
+            }
+        }
+        this.schedule();
+    }
+
+    @Override
+    public String toString() {
+        final long fireTime = System.currentTimeMillis()
+                + TimeUnit.NANOSECONDS.toMillis(this.fireNanos - System.nanoTime());
+        return "TimerWheelTrigger '" + this.name + "': fireTime = " + new Date(fireTime)
+                + ", period = " + this.periodMillis + "ms, remaining = "
+                + (this.remaining == -1 ? "forever" : String.valueOf(this.remaining));
+    }
+}
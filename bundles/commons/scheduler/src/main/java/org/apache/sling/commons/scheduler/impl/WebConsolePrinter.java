@@ -28,6 +28,7 @@ import java.util.Set;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
@@ -87,6 +88,10 @@ public class WebConsolePrinter {
                     pw.println(entry.getKey());
                     pw.print  ("Id        : ");
                     pw.println(s.getSchedulerInstanceId());
+                    if ( entry.getValue().getTimerWheel() != null ) {
+                        pw.print  ("TimerWheel: ");
+                        pw.println(entry.getValue().getTimerWheel().size() + " pending");
+                    }
                     pw.println();
                     final List<JobInfo> activeJobs = new ArrayList<>();
                     final List<JobInfo> disabledJobs = new ArrayList<>();
@@ -97,58 +102,7 @@ public class WebConsolePrinter {
                             final QuartzJobExecutor.JobDesc desc = new QuartzJobExecutor.JobDesc(detail.getJobDataMap());
                             // only print jobs started through the sling scheduler
                             if ( desc.isKnownJob() ) {
-                                final JobInfo info = new JobInfo();
-                                info.name = desc.name;
-                                info.className = desc.job.getClass().getName();
-                                info.concurrent = !detail.isConcurrentExectionDisallowed();
-                                // check run on information
-                                if ( desc.runOn != null ) {
-                                    if ( desc.isRunOnLeader() ) {
-                                        info.runOn = "LEADER";
-                                    } else if ( desc.isRunOnSingle() ) {
-                                        info.runOn = "SINGLE";
-                                    } else {
-                                        info.runOn = Arrays.toString(desc.runOn);
-                                    }
-                                    if ( desc.isRunOnLeader() || desc.isRunOnSingle() ) {
-                                        if ( QuartzJobExecutor.DISCOVERY_AVAILABLE.get() ) {
-                                            if ( QuartzJobExecutor.DISCOVERY_INFO_AVAILABLE.get() ) {
-                                                if ( desc.isRunOnLeader() || QuartzJobExecutor.FORCE_LEADER.get() ) {
-                                                    if ( !QuartzJobExecutor.IS_LEADER.get() ) {
-                                                        info.reason = "not leader";
-                                                    }
-                                                } else {
-                                                    final String id = desc.shouldRunAsSingleOn();
-                                                    if ( id != null ) {
-                                                        info.reason = "single distributed elsewhere " + id;
-                                                    }
-                                                }
-                                            } else {
-                                                info.reason = "no discovery info";
-                                            }
-                                        } else {
-                                            info.reason = "no discovery";
-                                        }
-                                    } else { // sling IDs
-                                        final String myId = QuartzJobExecutor.SLING_ID;
-                                        if ( myId == null ) {
-                                            info.reason = "no Sling settings";
-                                        } else {
-                                            boolean schedule = false;
-                                            for(final String id : desc.runOn ) {
-                                                if ( myId.equals(id) ) {
-                                                    schedule = true;
-                                                    break;
-                                                }
-                                            }
-                                            if ( !schedule ) {
-                                                info.reason = "Sling ID";
-                                            }
-                                        }
-                                    }
-                                }
-                                info.bundleId = (Long)detail.getJobDataMap().get(QuartzScheduler.DATA_MAP_BUNDLE_ID);
-                                info.serviceId = (Long)detail.getJobDataMap().get(QuartzScheduler.DATA_MAP_SERVICE_ID);
+                                final JobInfo info = getJobInfo(desc, detail.getJobDataMap(), !detail.isConcurrentExectionDisallowed());
                                 int index = 0;
                                 final List<? extends Trigger> triggers = s.getTriggersOfJob(key);
                                 info.triggers = new String[triggers.size()];
@@ -165,6 +119,16 @@ public class WebConsolePrinter {
                             }
                         }
                     }
+                    for(final TimerWheelJob job : entry.getValue().getTimerWheelJobs()) {
+                        final QuartzJobExecutor.JobDesc desc = new QuartzJobExecutor.JobDesc(job.getJobDataMap());
+                        final JobInfo info = getJobInfo(desc, job.getJobDataMap(), job.isConcurrent());
+                        info.triggers = new String[] {job.toString()};
+                        if ( info.reason != null ) {
+                            disabledJobs.add(info);
+                        } else {
+                            activeJobs.add(info);
+                        }
+                    }
                     if ( !activeJobs.isEmpty() ) {
                         pw.println();
                         pw.println("Active Jobs");
@@ -193,6 +157,65 @@ public class WebConsolePrinter {
         pw.println();
     }
 
+    /**
+     * Create the info of a job, without triggers
+     */
+    private JobInfo getJobInfo(final QuartzJobExecutor.JobDesc desc, final JobDataMap data, final boolean concurrent) {
+        final JobInfo info = new JobInfo();
+        info.name = desc.name;
+        info.className = desc.job.getClass().getName();
+        info.concurrent = concurrent;
+        // check run on information
+        if ( desc.runOn != null ) {
+            if ( desc.isRunOnLeader() ) {
+                info.runOn = "LEADER";
+            } else if ( desc.isRunOnSingle() ) {
+                info.runOn = "SINGLE";
+            } else {
+                info.runOn = Arrays.toString(desc.runOn);
+            }
+            if ( desc.isRunOnLeader() || desc.isRunOnSingle() ) {
+                if ( QuartzJobExecutor.DISCOVERY_AVAILABLE.get() ) {
+                    if ( QuartzJobExecutor.DISCOVERY_INFO_AVAILABLE.get() ) {
+                        if ( desc.isRunOnLeader() || QuartzJobExecutor.FORCE_LEADER.get() ) {
+                            if ( !QuartzJobExecutor.IS_LEADER.get() ) {
+                                info.reason = "not leader";
+                            }
+                        } else {
+                            final String id = desc.shouldRunAsSingleOn();
+                            if ( id != null ) {
+                                info.reason = "single distributed elsewhere " + id;
+                            }
+                        }
+                    } else {
+                        info.reason = "no discovery info";
+                    }
+                } else {
+                    info.reason = "no discovery";
+                }
+            } else { // sling IDs
+                final String myId = QuartzJobExecutor.SLING_ID;
+                if ( myId == null ) {
+                    info.reason = "no Sling settings";
+                } else {
+                    boolean schedule = false;
+                    for(final String id : desc.runOn ) {
+                        if ( myId.equals(id) ) {
+                            schedule = true;
+                            break;
+                        }
+                    }
+                    if ( !schedule ) {
+                        info.reason = "Sling ID";
+                    }
+                }
+            }
+        }
+        info.bundleId = (Long)data.get(QuartzScheduler.DATA_MAP_BUNDLE_ID);
+        info.serviceId = (Long)data.get(QuartzScheduler.DATA_MAP_SERVICE_ID);
+        return info;
+    }
+
     private void print(final PrintWriter pw, final JobInfo info) {
         pw.print("Job : ");
         pw.print(info.name);
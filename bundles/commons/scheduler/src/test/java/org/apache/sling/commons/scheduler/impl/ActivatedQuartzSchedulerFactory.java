@@ -34,6 +34,10 @@ import static org.mockito.Mockito.when;
 class ActivatedQuartzSchedulerFactory {
 
     public static QuartzScheduler create(BundleContext context, String poolName) throws Exception {
+        return create(context, poolName, false);
+    }
+
+    public static QuartzScheduler create(BundleContext context, String poolName, boolean useTimerWheel) throws Exception {
         QuartzScheduler quartzScheduler = null;
         if (context != null) {
             quartzScheduler = new QuartzScheduler();
@@ -54,6 +58,8 @@ class ActivatedQuartzSchedulerFactory {
                 when(configuration.allowedPoolNames()).thenReturn(allowedPoolNames);
             }
 
+            when(configuration.scheduler_timerwheel()).thenReturn(useTimerWheel);
+
             quartzScheduler.activate(context, configuration);
             context.registerService("scheduler", quartzScheduler, props);
         }
@@ -41,6 +41,7 @@ public class MetricsHelperTest {
         private String poolName;
         private String[] metrics_filters;
         private String[] allowedPoolNames;
+        private boolean timerwheel;
 
         @Override
         public Class<? extends Annotation> annotationType() {
@@ -71,6 +72,11 @@ public class MetricsHelperTest {
         public String[] allowedPoolNames() {
             return allowedPoolNames;
         }
+
+        @Override
+        public boolean scheduler_timerwheel() {
+            return timerwheel;
+        }
     }
 
     @Test
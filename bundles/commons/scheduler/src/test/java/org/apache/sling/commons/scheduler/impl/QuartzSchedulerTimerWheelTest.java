@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.quartz.JobKey;
+
+public class QuartzSchedulerTimerWheelTest {
+
+    private BundleContext context;
+
+    private QuartzScheduler quartzScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        context = MockOsgi.newBundleContext();
+        quartzScheduler = ActivatedQuartzSchedulerFactory.create(context, "testName", true);
+    }
+
+    @After
+    public void tearDown() {
+        quartzScheduler.deactivate(context);
+    }
+
+    private SchedulerProxy getProxy() {
+        return quartzScheduler.getSchedulers().get("testName");
+    }
+
+    @Test
+    public void testFireNow() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final Runnable job = new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        assertTrue(quartzScheduler.schedule(1L, 1L, job, quartzScheduler.NOW()));
+        assertTrue(quartzScheduler.schedule(1L, 1L, job, quartzScheduler.NOW(2, 1)));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, getProxy().getScheduler().getJobKeys(null).size());
+    }
+
+    @Test
+    public void testNamedJob() throws Exception {
+        final Date future = new Date(System.currentTimeMillis() + 1000 * 60 * 60);
+        quartzScheduler.schedule(1L, 1L, new Thread(), quartzScheduler.AT(future).name("j1"));
+        quartzScheduler.schedule(1L, 1L, new Thread(), quartzScheduler.AT(future).name("j1"));
+        assertEquals(1, getProxy().getTimerWheelJobs().size());
+        assertEquals(1, getProxy().getTimerWheel().size());
+        assertFalse(getProxy().getScheduler().checkExists(JobKey.jobKey("j1")));
+
+        // a cron expression replaces the job and runs on quartz
+        quartzScheduler.addJob(1L, 1L, "j1", new Thread(), new HashMap<String, Serializable>(), "0 * * * * ?", true);
+        assertEquals(0, getProxy().getTimerWheelJobs().size());
+        assertTrue(getProxy().getScheduler().checkExists(JobKey.jobKey("j1")));
+
+        quartzScheduler.addPeriodicJob(1L, 1L, "j1", new Thread(), null, 60L, false, false);
+        assertEquals(1, getProxy().getTimerWheelJobs().size());
+        assertFalse(getProxy().getScheduler().checkExists(JobKey.jobKey("j1")));
+
+        assertTrue(quartzScheduler.unschedule(1L, "j1"));
+        assertFalse(quartzScheduler.unschedule(1L, "j1"));
+        assertEquals(0, getProxy().getTimerWheelJobs().size());
+        assertEquals(0, getProxy().getTimerWheel().size());
+    }
+
+    @Test
+    public void testBundleStopped() throws Exception {
+        final Date future = new Date(System.currentTimeMillis() + 1000 * 60 * 60);
+        quartzScheduler.schedule(1L, 1L, new Thread(), quartzScheduler.AT(future).name("j1"));
+        quartzScheduler.schedule(2L, 2L, new Thread(), quartzScheduler.AT(future).name("j2"));
+
+        final Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(2L);
+        quartzScheduler.bundleChanged(new BundleEvent(BundleEvent.STOPPED, bundle));
+
+        assertEquals(1, getProxy().getTimerWheelJobs().size());
+        assertEquals("j1", getProxy().getTimerWheelJobs().iterator().next().getName());
+    }
+
+    @Test
+    public void testMissedPeriods() throws Exception {
+        final List<Long> runs = new CopyOnWriteArrayList<>();
+        final Runnable job = new Runnable() {
+
+            @Override
+            public void run() {
+                runs.add(System.nanoTime());
+            }
+        };
+        final InternalScheduleOptions options = (InternalScheduleOptions) quartzScheduler.NOW(-1, 1);
+        options.periodMillis = 100;
+        assertTrue(quartzScheduler.schedule(1L, 1L, job, options));
+
+        // block the timer wheel for several periods
+        final long[] resumed = new long[1];
+        final CountDownLatch blocked = new CountDownLatch(1);
+        getProxy().getTimerWheel().schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(550);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                resumed[0] = System.nanoTime();
+                blocked.countDown();
+            }
+        }, 50);
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        Thread.sleep(400);
+
+        // the missed periods are skipped instead of run in a burst
+        int burst = 0;
+        for(final long run : runs) {
+            if ( run >= resumed[0] && run < resumed[0] + TimeUnit.MILLISECONDS.toNanos(150) ) {
+                burst++;
+            }
+        }
+        assertTrue("Runs after resuming: " + burst, burst <= 2);
+        assertTrue(runs.size() > 2);
+    }
+}
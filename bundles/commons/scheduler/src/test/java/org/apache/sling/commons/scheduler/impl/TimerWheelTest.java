@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    private TimerWheel wheel;
+
+    @Before
+    public void setUp() {
+        wheel = new TimerWheel("test", 1);
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        final List<Long> expired = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        // the longest delay is cascaded from the second level
+        for(final long delay : new long[] {50, 5, 200}) {
+            final long start = System.nanoTime();
+            wheel.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(delay));
+                    expired.add(delay);
+                    latch.countDown();
+                }
+            }, delay);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(3, expired.size());
+        assertEquals(Long.valueOf(5), expired.get(0));
+        assertEquals(Long.valueOf(50), expired.get(1));
+        assertEquals(Long.valueOf(200), expired.get(2));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final CountDownLatch expired = new CountDownLatch(1);
+        final TimerWheel.Timeout timeout = wheel.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                cancelled.countDown();
+            }
+        }, 100);
+        wheel.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                expired.countDown();
+            }
+        }, 200);
+        assertEquals(2, wheel.size());
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(1, wheel.size());
+
+        assertTrue(expired.await(10, TimeUnit.SECONDS));
+        assertEquals(1, cancelled.getCount());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testStop() {
+        wheel.stop();
+        final TimerWheel.Timeout timeout = wheel.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                // nothing to do
+            }
+        }, 0);
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    public void testIdle() throws Exception {
+        final TimerWheel idle = new TimerWheel("idle-test", 1);
+        try {
+            final long until = System.currentTimeMillis() + 10000;
+            while ( getState("idle-test") != Thread.State.WAITING ) {
+                assertTrue(System.currentTimeMillis() < until);
+                Thread.sleep(10);
+            }
+            // a new timeout wakes the sleeping thread
+            final CountDownLatch latch = new CountDownLatch(1);
+            idle.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            }, 5);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            idle.stop();
+        }
+    }
+
+    @Test
+    public void testCascade() {
+        // the ticks of a second are advanced by the test only
+        final TimerWheel manual = new TimerWheel("manual-test", 1000, false);
+        final long level1 = TimerWheel.WHEEL_SIZE + 3;
+        final long level2 = (1L << (2 * TimerWheel.WHEEL_BITS)) + 5;
+        final long level3 = (1L << (3 * TimerWheel.WHEEL_BITS)) + 7;
+        final long beyond = (1L << (TimerWheel.LEVELS * TimerWheel.WHEEL_BITS)) * 2 + 11;
+        final List<Long> expired = new ArrayList<Long>();
+        for(final long deadline : new long[] {beyond, level3, level2, level1}) {
+            // half a tick less than the deadline, as some time has passed since the start
+            manual.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    expired.add(deadline);
+                }
+            }, deadline * 1000 - 500);
+        }
+        assertEquals(4, manual.size());
+        for(final long deadline : new long[] {level1, level2, level3, beyond}) {
+            manual.advanceTo(deadline - 1);
+            assertFalse(expired.contains(deadline));
+            manual.advanceTo(deadline);
+            assertEquals(Long.valueOf(deadline), expired.get(expired.size() - 1));
+        }
+        assertEquals(4, expired.size());
+        assertEquals(0, manual.size());
+    }
+
+    private static Thread.State getState(final String name) {
+        for(final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ( name.equals(thread.getName()) ) {
+                return thread.getState();
+            }
+        }
+        return null;
+    }
+}
@@ -36,6 +36,7 @@ import java.util.concurrent.TimeUnit;
  * - priority: NORM
  * - daemon: false
  * - factory: null (= default jvm thread factory)
+ * - type: PLATFORM
  */
 @ProviderType
 public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
@@ -62,6 +63,8 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
     public static final String PROPERTY_DAEMON = "daemon";
     /** Configuration property for the thread pool name. */
     public static final String PROPERTY_NAME = "name";
+    /** Configuration property for the thread pool type. */
+    public static final String PROPERTY_TYPE = "type";
 
     /** The min pool size. */
     private int minPoolSize = 5;
@@ -100,6 +103,9 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
     /** Create daemon threads? */
     private  boolean isDaemon = false;
 
+    /** The thread pool type. Default is PLATFORM. */
+    private ThreadPoolType type = ThreadPoolType.PLATFORM;
+
     /**
      * Create a new default configuration.
      */
@@ -124,6 +130,7 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
             this.factory = copy.getFactory();
             this.priority = copy.getPriority();
             this.isDaemon = copy.isDaemon();
+            this.type = copy.getType();
         }
     }
 
@@ -306,6 +313,25 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
         this.isDaemon = isDaemon;
     }
 
+    /**
+     * @see org.apache.sling.commons.threads.ThreadPoolConfig#getType()
+     */
+    public ThreadPoolType getType() {
+        return type;
+    }
+
+    /**
+     * Set the thread pool type.
+     * @param type The thread pool type.
+     * @throws IllegalArgumentException If type is null.
+     */
+    public void setType(final ThreadPoolType type) {
+        if ( type == null ) {
+            throw new IllegalArgumentException("Type must not be null.");
+        }
+        this.type = type;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if ( obj instanceof ModifiableThreadPoolConfig ) {
@@ -319,7 +345,8 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
                 && this.shutdownGraceful == o.shutdownGraceful
                 && this.shutdownWaitTimeMs == o.shutdownWaitTimeMs
                 && this.priority.equals(o.priority)
-                && this.isDaemon == o.isDaemon;
+                && this.isDaemon == o.isDaemon
+                && this.type.equals(o.type);
         }
         return false;
     }
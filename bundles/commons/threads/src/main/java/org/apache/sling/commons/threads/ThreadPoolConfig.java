@@ -40,6 +40,27 @@ public interface ThreadPoolConfig {
         MAX
     };
 
+    /**
+     * The thread pool types.
+     * @since 3.5.0
+     */
+    public enum ThreadPoolType {
+        /** The tasks run on platform threads. */
+        PLATFORM,
+        /**
+         * The tasks run on virtual threads, at most max pool size at a time.
+         * Falls back to platform threads if the JVM does not support
+         * virtual threads.
+         */
+        VIRTUAL,
+        /**
+         * The tasks run on a work stealing fork join pool in async mode
+         * with max pool size threads. The queue size and block policy
+         * do not apply.
+         */
+        WORK_STEALING
+    };
+
     /**
      * Return the minimum pool size.
      * @return The minimum pool size.
@@ -110,4 +131,11 @@ public interface ThreadPoolConfig {
      * @return <code>true</code> if daemon threads should be created.
      */
     boolean isDaemon();
+
+    /**
+     * Return the type of the thread pool.
+     * @return The type of the thread pool.
+     * @since 3.5.0
+     */
+    ThreadPoolType getType();
 }
\ No newline at end of file
@@ -27,12 +27,19 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.ManagedServiceFactory;
+import org.osgi.util.tracker.ServiceTracker;
 
 /**
  * This activator registers the thread pool manager.
  */
 public class Activator implements BundleActivator {
 
+    /** The metrics service name, the metrics API is imported optionally. */
+    private static final String METRICS_SERVICE_NAME = "org.apache.sling.commons.metrics.MetricsService";
+
+    /** A service tracker for the metrics service. */
+    private ServiceTracker<Object, Object> metricsTracker;
+
     /** The service registration for the thread pool manager. */
     private ServiceRegistration serviceReg;
 
@@ -51,7 +58,9 @@ public class Activator implements BundleActivator {
         props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Thread Pool Manager");
         props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
         props.put(Constants.SERVICE_PID, DefaultThreadPool.class.getName() + ".factory");
-        this.service = new DefaultThreadPoolManager(this.bundleContext, props);
+        this.metricsTracker = new ServiceTracker<Object, Object>(this.bundleContext, METRICS_SERVICE_NAME, null);
+        this.metricsTracker.open();
+        this.service = new DefaultThreadPoolManager(this.bundleContext, props, this.metricsTracker);
         this.serviceReg = this.bundleContext.registerService(new String[] {ThreadPoolManager.class.getName(),
                 ManagedServiceFactory.class.getName()}, service, props);
 
@@ -72,6 +81,10 @@ public class Activator implements BundleActivator {
             this.service.destroy();
             this.service = null;
         }
+        if ( this.metricsTracker != null ) {
+            this.metricsTracker.close();
+            this.metricsTracker = null;
+        }
         this.bundleContext = null;
     }
 }
@@ -18,20 +18,27 @@ package org.apache.sling.commons.threads.impl;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPriority;
 import org.apache.sling.commons.threads.ThreadPoolManager;
+import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +46,11 @@ import org.slf4j.LoggerFactory;
 /**
  * The DefaultThreadPool class implements the {@link ThreadPool} interface.
  * Instances of this class are managed by the {@link ThreadPoolManager}.
+ * <p>
+ * The tasks run on a {@link ThreadPoolExecutor}, or on a {@link ForkJoinPool}
+ * in async mode for {@link ThreadPoolType#WORK_STEALING} pools. If a metrics
+ * service is available, the pool measures its tasks with
+ * {@link ThreadPoolMetrics}.
  */
 public class DefaultThreadPool
     implements ThreadPool {
@@ -46,14 +58,35 @@ public class DefaultThreadPool
     /** By default we use the logger for this class. */
     protected final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    /**
+     * One in this many submits records the queue depth, as counting the
+     * tasks of a fork join pool scans the queues of all its workers.
+     */
+    static final int QUEUE_DEPTH_SAMPLING = 64;
+
     /** The name of this thread pool */
     protected final String name;
 
+    /** The maximum parallelism of a fork join pool. */
+    private static final int MAX_PARALLELISM = 0x7fff;
+
     /** The executor. */
-    protected ThreadPoolExecutor executor;
+    protected ExecutorService executor;
 
     protected final ModifiableThreadPoolConfig configuration;
 
+    /** The tracker of the metrics service, might be null. */
+    private final ServiceTracker metricsTracker;
+
+    /** The tracking count of the metrics tracker the metrics were created for. */
+    private volatile int metricsTrackingCount = -1;
+
+    /** The metrics of this pool, null without a metrics service. */
+    private volatile ThreadPoolMetrics metrics;
+
+    /** Listener of the thread locals cleaned up after the tasks of work stealing pools. */
+    private final ThreadLocalChangeListener threadLocalChangeListener = new LoggingThreadLocalChangeListener();
+
     /**
      * Create a new thread pool.
      * @param name - The name of the thread pool. If null {@link DefaultThreadPoolManager#DEFAULT_THREADPOOL_NAME}
@@ -61,6 +94,19 @@ public class DefaultThreadPool
      */
     public DefaultThreadPool(final String name,
                              final ThreadPoolConfig origConfig) {
+        this(name, origConfig, null);
+    }
+
+    /**
+     * Create a new thread pool.
+     * @param name - The name of the thread pool. If null {@link DefaultThreadPoolManager#DEFAULT_THREADPOOL_NAME}
+     *               is used
+     * @param metricsTracker - The tracker of the metrics service or null to not measure the tasks
+     */
+    public DefaultThreadPool(final String name,
+                             final ThreadPoolConfig origConfig,
+                             final ServiceTracker metricsTracker) {
+        this.metricsTracker = metricsTracker;
         // name
         if ( name != null ) {
             this.name = name;
@@ -73,8 +119,17 @@ public class DefaultThreadPool
         this.configuration = new ModifiableThreadPoolConfig(origConfig);
 
         // factory
-        final ThreadFactory delegateThreadFactory;
-        if (this.configuration.getFactory() == null) {
+        ThreadFactory delegateThreadFactory = null;
+        if (this.configuration.getType() == ThreadPoolType.VIRTUAL) {
+            delegateThreadFactory = VirtualThreads.newFactory();
+            if (delegateThreadFactory == null) {
+                this.logger.warn("Virtual threads are not supported by this JVM for pool \"" + this.name + "\". Using platform threads");
+                this.configuration.setType(ThreadPoolType.PLATFORM);
+            }
+        }
+        if (delegateThreadFactory != null) {
+            logger.debug("Thread pool [{}] ; Using virtual threads", this.name);
+        } else if (this.configuration.getFactory() == null) {
             logger.debug("Thread pool [{}] ; No ThreadFactory is configured. Will use JVM default thread factory: {}",
                     this.name, ExtendedThreadFactory.class.getName());
             delegateThreadFactory = Executors.defaultThreadFactory();
@@ -91,14 +146,19 @@ public class DefaultThreadPool
             this.configuration.setMaxPoolSize(Integer.MAX_VALUE);
         }
 
-        // Set priority and daemon flag
+        // Set priority and daemon flag, virtual threads are always daemon threads with normal priority
+        final boolean virtual = this.configuration.getType() == ThreadPoolType.VIRTUAL;
         final ExtendedThreadFactory threadFactory = new ExtendedThreadFactory(
                 delegateThreadFactory,
                 this.name,
-                this.configuration.getPriority(),
-                this.configuration.isDaemon()
+                virtual ? ThreadPriority.NORM : this.configuration.getPriority(),
+                virtual || this.configuration.isDaemon()
         );
 
+        // Virtual threads are cheap to keep: start up to max pool size before queueing,
+        // so the max pool size is the limit of the tasks running at a time
+        final int corePoolSize = virtual ? this.configuration.getMaxPoolSize() : this.configuration.getMinPoolSize();
+
         // Keep alive time
         if (this.configuration.getKeepAliveTime() < 0) {
             this.configuration.setKeepAliveTime(1000);
@@ -117,6 +177,15 @@ public class DefaultThreadPool
             queue = new SynchronousQueue<Runnable>();
         }
 
+        if (this.configuration.getType() == ThreadPoolType.WORK_STEALING) {
+            // the configured factory cannot create fork join worker threads, the queues are unbounded
+            // and the thread locals are cleaned up by the tasks
+            final int parallelism = Math.min(Math.max(this.configuration.getMaxPoolSize(), 1), MAX_PARALLELISM);
+            this.executor = new ForkJoinPool(parallelism, threadFactory.forkJoinWorkerThreadFactory(), null, true);
+            this.logger.info("Thread pool [{}] initialized.", name);
+            return;
+        }
+
         RejectedExecutionHandler handler = null;
         switch (this.configuration.getBlockPolicy()) {
             case ABORT :
@@ -132,18 +201,22 @@ public class DefaultThreadPool
                 handler = new ThreadPoolExecutor.CallerRunsPolicy();
                 break;
         }
+        if (metricsTracker != null) {
+            handler = new CountingRejectedExecutionHandler(handler);
+        }
+        ThreadPoolExecutor tpe;
         try {
-            this.executor = new ThreadPoolExecutorCleaningThreadLocals(this.configuration.getMinPoolSize(),
+            tpe = new ThreadPoolExecutorCleaningThreadLocals(corePoolSize,
                     this.configuration.getMaxPoolSize(),
                     this.configuration.getKeepAliveTime(),
                     TimeUnit.MILLISECONDS,
                     queue,
                     threadFactory,
                     handler,
-                    new LoggingThreadLocalChangeListener());
+                    this.threadLocalChangeListener);
         } catch (IllegalStateException e) {
             logger.warn("Unsupported JRE, cannot register ThreadPoolExecutorCleaningThreadLocals due to '{}', fall back to regular ThreadPoolExecutor", e.getMessage(), e);
-            this.executor = new ThreadPoolExecutor(this.configuration.getMinPoolSize(),
+            tpe = new ThreadPoolExecutor(corePoolSize,
                     this.configuration.getMaxPoolSize(),
                     this.configuration.getKeepAliveTime(),
                     TimeUnit.MILLISECONDS,
@@ -151,6 +224,11 @@ public class DefaultThreadPool
                     threadFactory,
                     handler);
         }
+        if ( virtual && this.configuration.getKeepAliveTime() > 0 ) {
+            // and let idle virtual threads end after the keep alive time
+            tpe.allowCoreThreadTimeOut(true);
+        }
+        this.executor = tpe;
         this.logger.info("Thread pool [{}] initialized.", name);
     }
 
@@ -185,7 +263,12 @@ public class DefaultThreadPool
             if ( logger.isDebugEnabled() ) {
                 logOperation("Executing runnable: ", runnable);
             }
-            executor.execute(runnable);
+            final ThreadPoolMetrics metrics = this.getMetrics();
+            if ( metrics != null || this.executor instanceof ForkJoinPool ) {
+                executor.execute(new Task<Object>(runnable, null, metrics));
+            } else {
+                executor.execute(runnable);
+            }
         }
     }
 
@@ -197,6 +280,10 @@ public class DefaultThreadPool
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting callable: ", callable);
         }
+        final ThreadPoolMetrics metrics = this.getMetrics();
+        if ( callable != null && (metrics != null || this.executor instanceof ForkJoinPool) ) {
+            return executor.submit((Callable<T>)new Task<T>(null, callable, metrics));
+        }
         return executor.submit(callable);
     }
 
@@ -208,6 +295,10 @@ public class DefaultThreadPool
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting runnable: ", runnable);
         }
+        final ThreadPoolMetrics metrics = this.getMetrics();
+        if ( runnable != null && (metrics != null || this.executor instanceof ForkJoinPool) ) {
+            return executor.submit((Runnable)new Task<Object>(runnable, null, metrics));
+        }
         return executor.submit(runnable);
     }
 
@@ -240,8 +331,56 @@ public class DefaultThreadPool
         this.logger.info("Thread pool [{}] is shut down.", this.name);
     }
 
+    /**
+     * Return the thread pool executor.
+     * @return The executor or <code>null</code> if the pool is shut down or a work stealing pool.
+     */
     public ThreadPoolExecutor getExecutor() {
-        return this.executor;
+        final ExecutorService current = this.executor;
+        return current instanceof ThreadPoolExecutor ? (ThreadPoolExecutor) current : null;
+    }
+
+    /**
+     * Return the metrics of this pool, creating them if the metrics service changed.
+     * @return The metrics or <code>null</code> if there is no metrics service.
+     */
+    private ThreadPoolMetrics getMetrics() {
+        if ( this.metricsTracker == null ) {
+            return null;
+        }
+        final int trackingCount = this.metricsTracker.getTrackingCount();
+        if ( trackingCount != this.metricsTrackingCount ) {
+            synchronized ( this ) {
+                if ( trackingCount != this.metricsTrackingCount ) {
+                    final Object service = this.metricsTracker.getService();
+                    ThreadPoolMetrics created = null;
+                    if ( service != null ) {
+                        try {
+                            created = new ThreadPoolMetrics(service, this.name);
+                        } catch (final LinkageError e) {
+                            logger.debug("Metrics API is not available for thread pool [{}]", this.name, e);
+                        } catch (final ClassCastException e) {
+                            logger.debug("Metrics service is not compatible for thread pool [{}]", this.name, e);
+                        }
+                    }
+                    this.metrics = created;
+                    this.metricsTrackingCount = trackingCount;
+                }
+            }
+        }
+        return this.metrics;
+    }
+
+    /**
+     * Return the number of tasks waiting to run.
+     */
+    private int getQueueDepth() {
+        final ExecutorService current = this.executor;
+        if ( current instanceof ForkJoinPool ) {
+            final ForkJoinPool pool = (ForkJoinPool) current;
+            return (int) Math.min(pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount(), Integer.MAX_VALUE);
+        }
+        return current instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) current).getQueue().size() : 0;
     }
 
     private void checkExecutor() {
@@ -251,11 +390,112 @@ public class DefaultThreadPool
     }
 
     private void logOperation(final String msg, final Object obj) {
+        if ( executor instanceof ForkJoinPool ) {
+            final ForkJoinPool pool = (ForkJoinPool) executor;
+            logger.debug("{} {}, pool={}, active={}, parallelism={}, queueSize={}",
+                    new Object[] {msg, obj, name,
+                            pool.getActiveThreadCount(),
+                            pool.getParallelism(),
+                            getQueueDepth()});
+            return;
+        }
+        final ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
         logger.debug("{} {}, pool={}, active={}, corePoolSize={}, maxPoolSize={}, queueSize={}",
                 new Object[] {msg, obj, name,
-                        executor.getActiveCount(),
-                        executor.getCorePoolSize(),
-                        executor.getMaximumPoolSize(),
-                        executor.getQueue().size()});
+                        tpe.getActiveCount(),
+                        tpe.getCorePoolSize(),
+                        tpe.getMaximumPoolSize(),
+                        tpe.getQueue().size()});
+    }
+
+    /**
+     * A task measured for the metrics and, in work stealing pools, cleaning
+     * up the thread locals it added as the thread pool executor does.
+     */
+    private final class Task<T> implements Runnable, Callable<T> {
+
+        private final Runnable runnable;
+
+        private final Callable<T> callable;
+
+        private final ThreadPoolMetrics metrics;
+
+        private final long queued;
+
+        Task(final Runnable runnable, final Callable<T> callable, final ThreadPoolMetrics metrics) {
+            this.runnable = runnable;
+            this.callable = callable;
+            this.metrics = metrics;
+            if ( metrics != null && ThreadLocalRandom.current().nextInt(QUEUE_DEPTH_SAMPLING) == 0 ) {
+                metrics.queued(getQueueDepth());
+            }
+            this.queued = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            final ThreadLocalCleaner cleaner = this.begin();
+            final long started = System.nanoTime();
+            try {
+                this.runnable.run();
+            } finally {
+                this.end(cleaner, started);
+            }
+        }
+
+        @Override
+        public T call() throws Exception {
+            final ThreadLocalCleaner cleaner = this.begin();
+            final long started = System.nanoTime();
+            try {
+                return this.callable.call();
+            } finally {
+                this.end(cleaner, started);
+            }
+        }
+
+        private ThreadLocalCleaner begin() {
+            if ( this.metrics != null ) {
+                this.metrics.started(System.nanoTime() - this.queued);
+            }
+            if ( Thread.currentThread() instanceof ForkJoinWorkerThread ) {
+                try {
+                    return new ThreadLocalCleaner(threadLocalChangeListener);
+                } catch (final IllegalStateException e) {
+                    // unsupported JRE, the thread locals are kept as in a regular thread pool executor
+                }
+            }
+            return null;
+        }
+
+        private void end(final ThreadLocalCleaner cleaner, final long started) {
+            if ( this.metrics != null ) {
+                this.metrics.finished(System.nanoTime() - started);
+            }
+            if ( cleaner != null ) {
+                cleaner.cleanup();
+            }
+        }
+    }
+
+    /**
+     * Counts the rejected tasks before applying the block policy.
+     */
+    private final class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler delegate;
+
+        CountingRejectedExecutionHandler(final RejectedExecutionHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+            final ThreadPoolMetrics metrics = getMetrics();
+            if ( metrics != null ) {
+                metrics.rejected();
+            }
+            this.delegate.rejectedExecution(r, executor);
+        }
     }
 }
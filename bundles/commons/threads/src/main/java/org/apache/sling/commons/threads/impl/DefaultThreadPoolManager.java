@@ -27,6 +27,7 @@ import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPriority;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.apache.sling.commons.threads.jmx.ThreadPoolMBean;
@@ -35,6 +36,7 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedServiceFactory;
+import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,12 +59,28 @@ public class DefaultThreadPoolManager
     /** The bundle context. */
     protected final BundleContext bundleContext;
 
+    /** The tracker of the metrics service, might be null. */
+    protected final ServiceTracker metricsTracker;
+
+    /** The prefix of the names of anonymous pools, followed by a random id. */
+    static final String ANONYMOUS_NAME_PREFIX = "ThreadPool-";
+
     /**
      * Constructor and activate this component.
      */
     public DefaultThreadPoolManager(final BundleContext bc, final Dictionary<String, Object> props) {
+        this(bc, props, null);
+    }
+
+    /**
+     * Constructor and activate this component.
+     * @param metricsTracker The tracker of the metrics service measuring the pools, might be null
+     */
+    public DefaultThreadPoolManager(final BundleContext bc, final Dictionary<String, Object> props,
+            final ServiceTracker metricsTracker) {
         this.properties = props;
         this.bundleContext = bc;
+        this.metricsTracker = metricsTracker;
         this.logger.info("Started Apache Sling Thread Pool Manager");
     }
 
@@ -116,6 +134,9 @@ public class DefaultThreadPoolManager
         if ( props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON) != null ) {
             config.setDaemon((Boolean)props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON));
         }
+        if ( props.get(ModifiableThreadPoolConfig.PROPERTY_TYPE) != null ) {
+            config.setType(ThreadPoolType.valueOf(props.get(ModifiableThreadPoolConfig.PROPERTY_TYPE).toString()));
+        }
         return config;
     }
 
@@ -132,7 +153,7 @@ public class DefaultThreadPoolManager
             if ( entry == null ) {
                 this.logger.debug("Creating new pool with name {}", poolName);
                 final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
-                entry = new Entry(null, config, poolName, bundleContext);
+                entry = new Entry(null, config, poolName, bundleContext, metricsTracker);
                 created = true;
 
                 this.pools.put(poolName, entry);
@@ -192,9 +213,9 @@ public class DefaultThreadPoolManager
             }
         }
 
-        final String name = "ThreadPool-" + UUID.randomUUID().toString() +
+        final String name = ANONYMOUS_NAME_PREFIX + UUID.randomUUID().toString() +
              (label == null ? "" : " (" + label + ")");
-        final Entry entry = new Entry(null, config, name, bundleContext);
+        final Entry entry = new Entry(null, config, name, bundleContext, metricsTracker);
         ThreadPool threadPool = null;
         synchronized ( this.pools ) {
             this.pools.put(name, entry);
@@ -263,7 +284,7 @@ public class DefaultThreadPoolManager
                 foundEntry.update(config, name, pid);
             } else {
                 // create
-                createdEntry = new Entry(pid, config, name, bundleContext);
+                createdEntry = new Entry(pid, config, name, bundleContext, metricsTracker);
                 this.pools.put(name, createdEntry);
             }
         }
@@ -292,7 +313,7 @@ public class DefaultThreadPoolManager
                 this.pools.remove(foundEntry.getName());
                 if ( foundEntry.isUsed() ) {
                     // we register this with a new name
-                    final String name = "ThreadPool-" + UUID.randomUUID().toString();
+                    final String name = ANONYMOUS_NAME_PREFIX + UUID.randomUUID().toString();
                     foundEntry.update(new ModifiableThreadPoolConfig(), name, null);
                     this.pools.put(name, foundEntry);
                 }
@@ -322,6 +343,9 @@ public class DefaultThreadPoolManager
 
         private BundleContext bundleContext;
 
+        /** The tracker of the metrics service, might be null. */
+        private final ServiceTracker metricsTracker;
+
         /**
          * This lock protects the counter which is volatile so must be
          * protected.
@@ -329,10 +353,16 @@ public class DefaultThreadPoolManager
         private Object usagelock = new Object();
 
         public Entry(final String pid, final ThreadPoolConfig config, final String name, final BundleContext bundleContext) {
+            this(pid, config, name, bundleContext, null);
+        }
+
+        public Entry(final String pid, final ThreadPoolConfig config, final String name, final BundleContext bundleContext,
+                final ServiceTracker metricsTracker) {
             this.pid = pid;
             this.config = config;
             this.name = name;
             this.bundleContext = bundleContext;
+            this.metricsTracker = metricsTracker;
         }
 
         public String getPid() {
@@ -355,7 +385,7 @@ public class DefaultThreadPoolManager
          */
         public ThreadPoolFacade incUsage() {
             if ( pool == null ) {
-                pool = new ThreadPoolFacade(new DefaultThreadPool(name, this.config));
+                pool = new ThreadPoolFacade(new DefaultThreadPool(name, this.config, this.getMetricsTracker(name)));
             }
             this.count++;
             return pool;
@@ -377,7 +407,7 @@ public class DefaultThreadPoolManager
             if ( this.pool != null ) {
                 this.pool.setName(name);
                 if ( !this.config.equals(config) ) {
-                    this.pool.setPool(new DefaultThreadPool(name, config));
+                    this.pool.setPool(new DefaultThreadPool(name, config, this.getMetricsTracker(name)));
                 }
             }
             this.config = config;
@@ -389,6 +419,14 @@ public class DefaultThreadPoolManager
             return this.name;
         }
 
+        /**
+         * Anonymous pools are not measured, as each would add metrics named
+         * with a new random id.
+         */
+        private ServiceTracker getMetricsTracker(final String name) {
+            return name.startsWith(ANONYMOUS_NAME_PREFIX) ? null : this.metricsTracker;
+        }
+
         public boolean isUsed() {
             return this.count > 0;
         }
@@ -17,6 +17,8 @@
 package org.apache.sling.commons.threads.impl;
 
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -26,6 +28,8 @@ import org.apache.sling.commons.threads.ThreadPoolConfig;
 /**
  * This class is responsible to create new Thread instances.
  * It's a very basic implementation.
+ * It creates the worker threads of fork join pools, too, which
+ * are not created by the wrapped factory, see {@link #forkJoinWorkerThreadFactory()}.
  *
  */
 public final class ExtendedThreadFactory implements ThreadFactory {
@@ -99,6 +103,27 @@ public final class ExtendedThreadFactory implements ThreadFactory {
         return thread;
     }
 
+    /**
+     * Return a factory of fork join worker threads named like the threads of
+     * this factory and with its daemon flag and priority.
+     */
+    public ForkJoinPool.ForkJoinWorkerThreadFactory forkJoinWorkerThreadFactory() {
+        return new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+            @Override
+            public ForkJoinWorkerThread newThread( final ForkJoinPool pool ) {
+                final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                    // the constructor is protected
+                };
+                thread.setName(nextThreadName());
+                thread.setPriority( priority );
+                thread.setDaemon( isDaemon );
+
+                return thread;
+            }
+        };
+    }
+
     private String nextThreadName() {
         return String.format(THREAD_NAME_TEMPLATE, this.name, this.threadCounter.getAndIncrement());
     }
@@ -101,7 +101,10 @@ public class ThreadLocalCleaner {
             Reference<?>[] current = (Reference<?>[]) tableField.get(threadLocals);
             if (backup == null) {
                 for (Reference<?> reference : current) {
-                    changed(thread, reference, Mode.ADDED);
+                    // skip the empty slots of the table
+                    if (reference != null) {
+                        changed(thread, reference, Mode.ADDED);
+                    }
                 }
             } else {
                 // nested loop - both arrays *should* be relatively small
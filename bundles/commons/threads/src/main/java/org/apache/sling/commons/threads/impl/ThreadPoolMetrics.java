@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.MetricsService;
+
+/**
+ * The metrics of a thread pool:
+ * <ul>
+ *   <li><code>commons.threads.&lt;pool&gt;.queue.depth</code> the tasks waiting, sampled at one in
+ *       {@link DefaultThreadPool#QUEUE_DEPTH_SAMPLING} submits</li>
+ *   <li><code>commons.threads.&lt;pool&gt;.wait.micros</code> the time between submitting and starting a task</li>
+ *   <li><code>commons.threads.&lt;pool&gt;.execution.micros</code> the time a task runs</li>
+ *   <li><code>commons.threads.&lt;pool&gt;.rejected</code> the tasks the pool rejected</li>
+ * </ul>
+ * Anonymous pools, named with a random id, are not measured.
+ * <p>
+ * This is the only class using the metrics API, which is imported
+ * optionally: it is only loaded once a metrics service is available.
+ */
+final class ThreadPoolMetrics {
+
+    /** The prefix of the metric names. */
+    static final String PREFIX = "commons.threads.";
+
+    private final Histogram queueDepth;
+
+    private final Histogram waitTime;
+
+    private final Histogram executionTime;
+
+    private final Counter rejected;
+
+    /**
+     * Register the metrics of a pool.
+     * @param metricsService The metrics service.
+     * @param name The name of the pool.
+     * @throws ClassCastException If the metrics service is not wired to this bundle
+     */
+    ThreadPoolMetrics(final Object metricsService, final String name) {
+        final MetricsService service = (MetricsService) metricsService;
+        final String prefix = PREFIX + name + ".";
+        this.queueDepth = service.histogram(prefix + "queue.depth");
+        this.waitTime = service.histogram(prefix + "wait.micros");
+        this.executionTime = service.histogram(prefix + "execution.micros");
+        this.rejected = service.counter(prefix + "rejected");
+    }
+
+    void queued(final int depth) {
+        this.queueDepth.update(depth);
+    }
+
+    void started(final long waitNanos) {
+        this.waitTime.update(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    }
+
+    void finished(final long executionNanos) {
+        this.executionTime.update(TimeUnit.NANOSECONDS.toMicros(executionNanos));
+    }
+
+    void rejected() {
+        this.rejected.increment();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the factories of virtual threads if the JVM supports them.
+ * <p>
+ * The bundle is compiled for older JVMs, so the virtual thread builder is
+ * looked up by reflection.
+ */
+final class VirtualThreads {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private VirtualThreads() {
+        // no instances
+    }
+
+    /**
+     * Create a factory of virtual threads.
+     * @return The factory or <code>null</code> if the JVM does not support virtual threads.
+     */
+    static ThreadFactory newFactory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (final NoSuchMethodException e) {
+            LOGGER.debug("Virtual threads are not supported by this JVM", e);
+        } catch (final ClassNotFoundException e) {
+            LOGGER.debug("Virtual threads are not supported by this JVM", e);
+        } catch (final Exception e) {
+            LOGGER.warn("Unable to create a factory of virtual threads", e);
+        }
+        return null;
+    }
+}
@@ -86,6 +86,8 @@ public class WebConsolePrinter {
                 }
                 pw.print("- used : ");
                 pw.println(entry.isUsed());
+                pw.print("- type : ");
+                pw.println(config.getType());
                 pw.print("- min pool size : ");
                 pw.println(config.getMinPoolSize());
                 pw.print("- max pool size : ");
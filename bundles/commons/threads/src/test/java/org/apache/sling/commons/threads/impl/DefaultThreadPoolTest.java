@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.osgi.util.tracker.ServiceTracker;
+
+public class DefaultThreadPoolTest {
+
+    private DefaultThreadPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPlatformPool() {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMinPoolSize(1);
+        config.setMaxPoolSize(4);
+        pool = new DefaultThreadPool("test", config);
+        Assert.assertEquals(ThreadPoolType.PLATFORM, pool.getConfiguration().getType());
+        Assert.assertEquals(1, pool.getExecutor().getCorePoolSize());
+    }
+
+    @Test
+    public void testVirtualPool() throws Exception {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setType(ThreadPoolType.VIRTUAL);
+        config.setMinPoolSize(1);
+        config.setMaxPoolSize(4);
+        pool = new DefaultThreadPool("test", config);
+        // falls back to platform threads if the JVM lacks virtual threads
+        final boolean supported = VirtualThreads.newFactory() != null;
+        Assert.assertEquals(supported ? ThreadPoolType.VIRTUAL : ThreadPoolType.PLATFORM,
+                pool.getConfiguration().getType());
+        if (supported) {
+            // the max pool size limits the running tasks, whatever the queue
+            Assert.assertEquals(4, pool.getExecutor().getCorePoolSize());
+        }
+
+        // blocked tasks run at the same time up to the max pool size
+        final CountDownLatch started = new CountDownLatch(4);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<Boolean> task = new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                started.countDown();
+                return release.await(10, TimeUnit.SECONDS);
+            }
+        };
+        final Future<?>[] futures = new Future<?>[4];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = pool.submit(task);
+        }
+        if (supported) {
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        }
+        release.countDown();
+        for (final Future<?> future : futures) {
+            Assert.assertEquals(Boolean.TRUE, future.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testWorkStealingPool() throws Exception {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setType(ThreadPoolType.WORK_STEALING);
+        config.setMaxPoolSize(2);
+        pool = new DefaultThreadPool("test", config);
+        Assert.assertNull(pool.getExecutor());
+
+        final ThreadLocal<String> local = new ThreadLocal<String>();
+        final Callable<String> task = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                final String previous = local.get();
+                local.set(Thread.currentThread().getName());
+                return previous;
+            }
+        };
+        // the thread locals of a task are removed once it finished
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNull(pool.submit(task).get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final Histogram histogram = mock(Histogram.class);
+        final Counter counter = mock(Counter.class);
+        final MetricsService metricsService = mock(MetricsService.class);
+        when(metricsService.histogram(Matchers.anyString())).thenReturn(histogram);
+        when(metricsService.counter(Matchers.anyString())).thenReturn(counter);
+        final ServiceTracker tracker = mock(ServiceTracker.class);
+        when(tracker.getTrackingCount()).thenReturn(1);
+        when(tracker.getService()).thenReturn(metricsService);
+
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMinPoolSize(1);
+        config.setMaxPoolSize(1);
+        pool = new DefaultThreadPool("test", config, tracker);
+        pool.submit(new Runnable() {
+            @Override
+            public void run() {
+                // nothing to do
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        verify(metricsService).histogram("commons.threads.test.queue.depth");
+        verify(metricsService).histogram("commons.threads.test.wait.micros");
+        verify(metricsService).histogram("commons.threads.test.execution.micros");
+        verify(metricsService).counter("commons.threads.test.rejected");
+        verify(histogram, atLeastOnce()).update(Matchers.anyLong());
+    }
+
+    @Test
+    public void testNoMetricsForAnonymousPools() throws Exception {
+        final MetricsService metricsService = mock(MetricsService.class);
+        final ServiceTracker tracker = mock(ServiceTracker.class);
+        when(tracker.getTrackingCount()).thenReturn(1);
+        when(tracker.getService()).thenReturn(metricsService);
+
+        final DefaultThreadPoolManager.Entry entry = new DefaultThreadPoolManager.Entry(null,
+                new ModifiableThreadPoolConfig(), DefaultThreadPoolManager.ANONYMOUS_NAME_PREFIX + "1 (test)", null,
+                tracker);
+        try {
+            entry.incUsage().submit(new Runnable() {
+                @Override
+                public void run() {
+                    // nothing to do
+                }
+            }).get(10, TimeUnit.SECONDS);
+        } finally {
+            entry.shutdown();
+        }
+
+        verifyZeroInteractions(metricsService);
+    }
+}
@@ -156,10 +156,71 @@ public class EngineConstants {
     public static final String SLING_FILTER_SCOPE = "sling.filter.scope";
     
     /**
-     *@since 2.2, Sling Engine 2.4
+     * The name of the service registration property of a
+     * <code>javax.servlet.Filter</code> service restricting the filter to
+     * requests whose path info matches the given regular expression (value
+     * is "sling.filter.pattern").
+     * <p>
+     * This condition and the extension, selector, method and resource type
+     * conditions are checked against the request passed on to the filter
+     * chain. If a filter passes on a different request, such as a wrapper,
+     * the conditions of the filters following it are checked against that
+     * request.
+     *
+     * @since 2.2, Sling Engine 2.4
      */
     public static final String SLING_FILTER_PATTERN = "sling.filter.pattern";
 
+    /**
+     * The name of the service registration property of a
+     * <code>javax.servlet.Filter</code> service restricting the filter to
+     * requests with one of the given extensions (value is
+     * "sling.filter.extensions"). The property is expected to be a scalar
+     * String, an array of Strings or a Vector of Strings. If the property is
+     * missing, the filter is applied regardless of the extension.
+     *
+     * @since 2.3, Sling Engine 2.6.10
+     */
+    public static final String SLING_FILTER_EXTENSIONS = "sling.filter.extensions";
+
+    /**
+     * The name of the service registration property of a
+     * <code>javax.servlet.Filter</code> service restricting the filter to
+     * requests with at least one of the given selectors (value is
+     * "sling.filter.selectors"). The property is expected to be a scalar
+     * String, an array of Strings or a Vector of Strings. If the property is
+     * missing, the filter is applied regardless of the selectors.
+     *
+     * @since 2.3, Sling Engine 2.6.10
+     */
+    public static final String SLING_FILTER_SELECTORS = "sling.filter.selectors";
+
+    /**
+     * The name of the service registration property of a
+     * <code>javax.servlet.Filter</code> service restricting the filter to
+     * requests with one of the given methods (value is
+     * "sling.filter.methods"). Case of the value is ignored. The property is
+     * expected to be a scalar String, an array of Strings or a Vector of
+     * Strings. If the property is missing, the filter is applied regardless
+     * of the method.
+     *
+     * @since 2.3, Sling Engine 2.6.10
+     */
+    public static final String SLING_FILTER_METHODS = "sling.filter.methods";
+
+    /**
+     * The name of the service registration property of a
+     * <code>javax.servlet.Filter</code> service restricting the filter to
+     * requests for resources of one of the given resource types, including
+     * their resource super types (value is "sling.filter.resourceTypes").
+     * The property is expected to be a scalar String, an array of Strings or
+     * a Vector of Strings. If the property is missing, the filter is applied
+     * regardless of the resource type.
+     *
+     * @since 2.3, Sling Engine 2.6.10
+     */
+    public static final String SLING_FILTER_RESOURCETYPES = "sling.filter.resourceTypes";
+
     /**
      * Filter scope value identifying a component level filter.
      * <p>
@@ -20,6 +20,7 @@ package org.apache.sling.engine.impl;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -28,6 +29,7 @@ import org.apache.sling.api.request.RequestProgressTracker;
 import org.apache.sling.auth.core.AuthenticationSupport;
 import org.apache.sling.commons.mime.MimeTypeService;
 import org.apache.sling.engine.impl.parameters.ParameterSupport;
+import org.apache.sling.engine.impl.request.NullRequestProgressTracker;
 import org.apache.sling.engine.impl.request.SlingRequestProgressTracker;
 import org.osgi.service.http.context.ServletContextHelper;
 import org.slf4j.Logger;
@@ -56,6 +58,18 @@ class SlingHttpContext extends ServletContextHelper {
      */
     private AuthenticationSupport authenticationSupport;
 
+    /**
+     * One of this number of requests is tracked by a
+     * {@link SlingRequestProgressTracker}.
+     *
+     * @see #createRequestProgressTracker(HttpServletRequest)
+     */
+    private volatile int requestProgressTrackerSample = 1;
+
+    public void setRequestProgressTrackerSample(int sample) {
+        this.requestProgressTrackerSample = sample;
+    }
+
     public void setMimeTypeService(MimeTypeService mimeTypeService) {
         this.mimeTypeService = mimeTypeService;
     }
@@ -106,6 +120,20 @@ class SlingHttpContext extends ServletContextHelper {
         return null;
     }
 
+    /**
+     * Returns a {@link SlingRequestProgressTracker} for one of every
+     * configured number of requests and the {@link NullRequestProgressTracker}
+     * for the other requests. A number of 1 tracks all requests, 0 or less
+     * none.
+     */
+    private RequestProgressTracker createRequestProgressTracker(HttpServletRequest request) {
+        final int sample = this.requestProgressTrackerSample;
+        if (sample == 1 || (sample > 1 && ThreadLocalRandom.current().nextInt(sample) == 0)) {
+            return new SlingRequestProgressTracker(request);
+        }
+        return NullRequestProgressTracker.INSTANCE;
+    }
+
     /**
      * Tries to authenticate the request using the
      * <code>SlingAuthenticator</code>. If the authenticator or the Repository
@@ -116,7 +144,7 @@ class SlingHttpContext extends ServletContextHelper {
     public boolean handleSecurity(HttpServletRequest request,
             HttpServletResponse response) throws IOException {
 
-        final SlingRequestProgressTracker t = new SlingRequestProgressTracker(request);
+        final RequestProgressTracker t = createRequestProgressTracker(request);
         request.setAttribute(RequestProgressTracker.class.getName(), t);
         final String timerName = "handleSecurity";
         t.startTimer(timerName);
@@ -30,6 +30,7 @@ import javax.servlet.GenericServlet;
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestListener;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -45,6 +46,7 @@ import org.apache.sling.engine.impl.filter.ServletFilterManager;
 import org.apache.sling.engine.impl.helper.ClientAbortException;
 import org.apache.sling.engine.impl.helper.RequestListenerManager;
 import org.apache.sling.engine.impl.helper.SlingServletContext;
+import org.apache.sling.engine.impl.parameters.ParameterSupportRequestListener;
 import org.apache.sling.engine.impl.request.RequestData;
 import org.apache.sling.engine.impl.request.RequestHistoryConsolePlugin;
 import org.apache.sling.engine.jmx.RequestProcessorMBean;
@@ -118,6 +120,24 @@ public class SlingMainServlet extends GenericServlet {
                             "limit the requests which are stored by the \"Recent Requests\" Web Console page.")
         String[] sling_store_pattern_requests();
 
+        @AttributeDefinition(name = "Request Progress Tracking Sample",
+                description = "Tracks the progress of one of this number of requests. " +
+                     "The progress of the other requests is not recorded, so they are neither shown on " +
+                     "the \"Recent Requests\" Web Console page nor logged by the request progress " +
+                     "tracker log filter. The default value of 1 tracks all requests, a value of 0 or " +
+                     "less tracks none.")
+        int sling_progress_tracker_sample() default 1;
+
+        @AttributeDefinition(name = "Slow Filter Threshold",
+                description = "Filter calls taking longer than this number of milliseconds, " +
+                     "excluding the time spent in the rest of the chain, are counted per filter and " +
+                     "posted as org/apache/sling/engine/filter/SLOW events. Without an event admin they " +
+                     "are logged by the org.apache.sling.engine.impl.filter.AbstractSlingFilterChain.slow " +
+                     "logger instead. If a metrics service is available, the filter timings and slow calls " +
+                     "are exported as the engine.filter.<chain>.<filter> metrics. The default value of 0 " +
+                     "does not consider any filter calls slow.")
+        long sling_filter_slow_threshold() default 0;
+
         @AttributeDefinition(name = "Server Info",
                 description = "The server info returned by Sling. If this field is left empty, Sling generates a default into.")
         String sling_serverinfo();
@@ -197,6 +217,8 @@ public class SlingMainServlet extends GenericServlet {
 
     private ServiceRegistration<Servlet> servletRegistration;
 
+    private ServiceRegistration<ServletRequestListener> requestListenerRegistration;
+
     private String configuredServerInfo;
 
     // ---------- Servlet API -------------------------------------------------
@@ -388,6 +410,9 @@ public class SlingMainServlet extends GenericServlet {
         // configure method filter
         allowTrace = config.sling_trace_allow();
 
+        // configure request progress tracking
+        slingHttpContext.setRequestProgressTrackerSample(config.sling_progress_tracker_sample());
+
         // configure the request limits
         RequestData.setMaxIncludeCounter(config.sling_max_inclusions());
         RequestData.setMaxCallCounter(config.sling_max_calls());
@@ -420,6 +445,16 @@ public class SlingMainServlet extends GenericServlet {
         servletConfig.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
         this.servletRegistration = bundleContext.registerService(Servlet.class, this, servletConfig);
 
+        // register the listener releasing the pooled upload buffers of requests
+        final Dictionary<String, String> listenerProperties = new Hashtable<>();
+        listenerProperties.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT,
+                "(" + HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME + "=" + SERVLET_CONTEXT_NAME + ")");
+        listenerProperties.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_LISTENER, "true");
+        listenerProperties.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Engine Request Parameter Listener");
+        listenerProperties.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        this.requestListenerRegistration = bundleContext.registerService(ServletRequestListener.class,
+            new ParameterSupportRequestListener(), listenerProperties);
+
         log.info("{} ready to serve requests", this.getServerInfo());
 
         // now that the sling main servlet is registered with the HttpService
@@ -431,6 +466,7 @@ public class SlingMainServlet extends GenericServlet {
         // context to be required (see SLING-42)
         filterManager = new ServletFilterManager(bundleContext,
             slingServletContext);
+        filterManager.setSlowFilterThreshold(config.sling_filter_slow_threshold());
         filterManager.open();
         requestProcessor.setFilterManager(filterManager);
 
@@ -531,6 +567,10 @@ public class SlingMainServlet extends GenericServlet {
             this.servletRegistration.unregister();
             this.servletRegistration = null;
         }
+        if ( this.requestListenerRegistration != null ) {
+            this.requestListenerRegistration.unregister();
+            this.requestListenerRegistration = null;
+        }
 
         // dispose of request listener manager after unregistering the servlet
         // to prevent a potential NPE in the service method
@@ -48,7 +48,7 @@ import org.apache.sling.api.servlets.ServletResolver;
 import org.apache.sling.api.wrappers.SlingHttpServletResponseWrapper;
 import org.apache.sling.engine.SlingRequestProcessor;
 import org.apache.sling.engine.impl.filter.AbstractSlingFilterChain;
-import org.apache.sling.engine.impl.filter.FilterHandle;
+import org.apache.sling.engine.impl.filter.FilterDispatchTable;
 import org.apache.sling.engine.impl.filter.RequestSlingFilterChain;
 import org.apache.sling.engine.impl.filter.ServletFilterManager;
 import org.apache.sling.engine.impl.filter.ServletFilterManager.FilterChainType;
@@ -140,10 +140,10 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             Resource resource = requestData.initResource(resourceResolver);
             requestData.initServlet(resource, sr);
 
-            FilterHandle[] filters = filterManager.getFilters(FilterChainType.REQUEST);
+            FilterDispatchTable filters = filterManager.getDispatchTable(FilterChainType.REQUEST);
             if (filters != null) {
                 FilterChain processor = new RequestSlingFilterChain(this,
-                    filters);
+                    filters.getFilters(), filters.select(request));
 
                 request.getRequestProgressTracker().log(
                     "Applying " + FilterChainType.REQUEST + "filters");
@@ -243,9 +243,15 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         // set the marker for the parameter support
         final Object oldValue = servletRequest.getAttribute(ParameterSupport.MARKER_IS_SERVICE_PROCESSING);
         servletRequest.setAttribute(ParameterSupport.MARKER_IS_SERVICE_PROCESSING, Boolean.TRUE);
+        // the parameters are only released if created for this request,
+        // otherwise they belong to the (wrapped) enclosing request
+        final boolean hasParameterSupport = ParameterSupport.hasInstance(servletRequest);
         try {
             this.doProcessRequest(servletRequest, servletResponse, resourceResolver);
         } finally {
+            if (!hasParameterSupport) {
+                ParameterSupport.dispose(servletRequest);
+            }
             // restore the old value
             if ( oldValue != null ) {
                 servletRequest.setAttribute(ParameterSupport.MARKER_IS_SERVICE_PROCESSING, oldValue);
@@ -273,10 +279,11 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             final FilterChainType filterChainType) throws IOException,
             ServletException {
 
-        FilterHandle filters[] = filterManager.getFilters(filterChainType);
+        FilterDispatchTable filters = filterManager.getDispatchTable(filterChainType);
         if (filters != null) {
 
-            FilterChain processor = new SlingComponentFilterChain(filters);
+            FilterChain processor = new SlingComponentFilterChain(filters.getFilters(),
+                filters.select(request));
             request.getRequestProgressTracker().log(
                 "Applying " + filterChainType + "filters");
             processor.doFilter(request, response);
@@ -335,9 +342,10 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         // the response output stream if reset does not reset this
         response = new ErrorResponseWrapper(response);
 
-        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR);
-        if (filters != null && filters.length > 0) {
-            FilterChain processor = new AbstractSlingFilterChain(filters) {
+        FilterDispatchTable filters = filterManager.getDispatchTable(FilterChainType.ERROR);
+        if (filters != null && filters.getFilters().length > 0) {
+            FilterChain processor = new AbstractSlingFilterChain(filters.getFilters(),
+                    filters.select(request)) {
 
                 @Override
                 protected void render(SlingHttpServletRequest request,
@@ -367,9 +375,10 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         // the response output stream if reset does not reset this
         response = new ErrorResponseWrapper(response);
 
-        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR);
-        if (filters != null && filters.length > 0) {
-            FilterChain processor = new AbstractSlingFilterChain(filters) {
+        FilterDispatchTable filters = filterManager.getDispatchTable(FilterChainType.ERROR);
+        if (filters != null && filters.getFilters().length > 0) {
+            FilterChain processor = new AbstractSlingFilterChain(filters.getFilters(),
+                    filters.select(request)) {
 
                 @Override
                 protected void render(SlingHttpServletRequest request,
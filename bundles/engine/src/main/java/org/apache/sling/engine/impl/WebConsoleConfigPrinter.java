@@ -23,8 +23,10 @@ import java.util.Dictionary;
 import java.util.Hashtable;
 
 import org.apache.sling.engine.impl.filter.FilterHandle;
+import org.apache.sling.engine.impl.filter.LatencyHistogram;
 import org.apache.sling.engine.impl.filter.ServletFilterManager;
 import org.apache.sling.engine.impl.filter.ServletFilterManager.FilterChainType;
+import org.apache.sling.engine.impl.filter.SlingFilterChainHelper;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
@@ -84,9 +86,13 @@ public class WebConsoleConfigPrinter {
             pw.println("---");
         } else {
             for(final FilterHandle entry : entries) {
-                pw.printf("%d : %s (id: %d, property: %s); called: %d; time: %dms; time/call: %dµs%n",
+                final LatencyHistogram histogram = entry.getHistogram();
+                pw.printf("%d : %s (id: %d, property: %s); called: %d; time: %dms; time/call: %dµs; "
+                    + "p50: %dµs; p99: %dµs; p999: %dµs; max: %dµs; slow: %d%n",
                     entry.getOrder(), entry.getFilter().getClass(), entry.getFilterId(), entry.getOrderSource(),
-                    entry.getCalls(), entry.getTime(), entry.getTimePerCall());
+                    entry.getCalls(), entry.getTime(), entry.getTimePerCall(),
+                    histogram.getValueAtPercentile(50) / 1000, histogram.getValueAtPercentile(99) / 1000,
+                    histogram.getValueAtPercentile(99.9) / 1000, histogram.getMax() / 1000, entry.getSlowCalls());
             }
         }
     }
@@ -99,9 +105,13 @@ public class WebConsoleConfigPrinter {
         pw.println("Current Apache Sling Servlet Filter Configuration");
         for (FilterChainType type : FilterChainType.values()) {
             pw.println();
-            pw.println(type + " Filters:");
-            printFilterChain(pw,
-                filterManager.getFilterChain(type).getFilters());
+            final SlingFilterChainHelper chain = filterManager.getFilterChain(type);
+            final LatencyHistogram histogram = chain.getHistogram();
+            pw.printf("%s Filters: (called: %d; p50: %dµs; p99: %dµs; p999: %dµs; max: %dµs)%n",
+                type, histogram.getCount(), histogram.getValueAtPercentile(50) / 1000,
+                histogram.getValueAtPercentile(99) / 1000, histogram.getValueAtPercentile(99.9) / 1000,
+                histogram.getMax() / 1000);
+            printFilterChain(pw, chain.getFilters());
         }
     }
 }
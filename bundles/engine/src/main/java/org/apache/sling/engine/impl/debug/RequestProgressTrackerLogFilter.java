@@ -33,6 +33,7 @@ import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.request.RequestPathInfo;
 import org.apache.sling.api.request.RequestProgressTracker;
 import org.apache.sling.engine.EngineConstants;
+import org.apache.sling.engine.impl.request.NullRequestProgressTracker;
 import org.apache.sling.engine.impl.request.SlingRequestProgressTracker;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
@@ -111,7 +112,7 @@ public class RequestProgressTrackerLogFilter implements Filter {
             final RequestProgressTracker rpt = slingRequest.getRequestProgressTracker();
             rpt.done();
 
-            if (log.isDebugEnabled() && allowDuration(rpt) && allowExtension(extractExtension(slingRequest))) {
+            if (log.isDebugEnabled() && !(rpt instanceof NullRequestProgressTracker) && allowDuration(rpt) && allowExtension(extractExtension(slingRequest))) {
                 if (configuration.compactLogFormat()) {
                     logCompactFormat(rpt);
                 } else {
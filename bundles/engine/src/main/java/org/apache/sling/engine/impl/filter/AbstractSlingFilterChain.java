@@ -29,26 +29,56 @@ import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.request.RequestProgressTracker;
 import org.apache.sling.engine.impl.request.RequestData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public abstract class AbstractSlingFilterChain implements FilterChain {
 
+    /** The log of slow filter calls */
+    private static final Logger SLOW_FILTER_LOG = LoggerFactory.getLogger(AbstractSlingFilterChain.class.getName() + ".slow");
+
     private FilterHandle[] filters;
 
+    // the filters selected for the request the chain is started with,
+    // null if all filters are selected
+    private long[] selected;
+
+    // the request the chain is started with
+    private ServletRequest request;
+
+    // the index of the next filter to consider
+    private int next;
+
     private int current;
 
     private long[] times;
 
+    // the index of the filter called at each step of the chain, -1 for rendering
+    private int[] called;
+
     protected AbstractSlingFilterChain(FilterHandle[] filters) {
+        this(filters, null);
+    }
+
+    /**
+     * Creates a chain of the filters of a dispatch table of which the filters
+     * in the <code>selected</code> bit set apply to the request the chain is
+     * started with. If a filter passes on another request, such as a wrapper,
+     * the remaining filters are selected against that request.
+     */
+    protected AbstractSlingFilterChain(FilterHandle[] filters, long[] selected) {
         this.filters = filters;
+        this.selected = selected;
         this.current = -1;
         this.times = (filters != null) ? new long[filters.length + 1] : null;
+        this.called = (filters != null) ? new int[filters.length + 1] : null;
     }
 
     public void doFilter(ServletRequest request, ServletResponse response)
             throws ServletException, IOException {
 
         final int filterIdx = ++this.current;
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
 
         // the previous filter may have wrapped non-Sling request and response
         // wrappers (e.g. WebCastellum does this), so we have to make
@@ -58,27 +88,24 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
 
         try {
 
-            if (this.current < this.filters.length) {
+            if (filterIdx == 0) {
+                this.request = request;
+            }
+            final int index = nextFilter(request, slingRequest);
+            called[filterIdx] = (index < this.filters.length) ? index : -1;
+
+            if (index < this.filters.length) {
 
                 // continue filtering with the next filter
-                FilterHandle filter = this.filters[this.current];
-                
-                if (filter.select(slingRequest)) {
-                    trackFilter(slingRequest, filter);
-                    filter.getFilter().doFilter(slingRequest, slingResponse, this);
-                } else {
-                    if (this.current == this.filters.length-1) {
-                        this.render(slingRequest, slingResponse);
-                    } else {
-                       doFilter(slingRequest, slingResponse);
-                    }
-                }
+                FilterHandle filter = this.filters[index];
+                trackFilter(slingRequest, filter);
+                filter.getFilter().doFilter(slingRequest, slingResponse, this);
             } else {
                 this.render(slingRequest, slingResponse);
             }
 
         } finally {
-            times[filterIdx] = System.currentTimeMillis() - start;
+            times[filterIdx] = System.nanoTime() - start;
             if (filterIdx == 0) {
                 consolidateFilterTimings(slingRequest);
             }
@@ -101,18 +128,61 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
         filter.track();
     }
 
-    private void consolidateFilterTimings(ServletRequest request) {
-        if (filters != null) {
+    /**
+     * Returns the index of the next filter applying to the request, or the
+     * number of filters if no more filters apply. The filters selected when
+     * building the chain are only used as long as the filters pass on the
+     * request the chain was started with, otherwise the filters are selected
+     * against the request passed on, which may wrap the original request.
+     */
+    private int nextFilter(final ServletRequest request, final SlingHttpServletRequest slingRequest) {
+        for (; next < filters.length; next++) {
+            final boolean applies;
+            if (request == this.request) {
+                applies = selected == null || (selected[next >>> 6] & (1L << next)) != 0;
+            } else {
+                applies = filters[next].select(slingRequest);
+            }
+            if (applies) {
+                return next++;
+            }
+        }
+        return filters.length;
+    }
+
+    private void consolidateFilterTimings(SlingHttpServletRequest request) {
+        if (filters != null && filters.length > 0) {
             RequestData data = RequestData.getRequestData(request);
             RequestProgressTracker tracker = (data != null) ? data.getRequestProgressTracker() : null;
 
-            for (int i = filters.length - 1; i > 0; i--) {
-                filters[i].trackTime(times[i] - times[i + 1]);
+            int rendered = -1;
+            for (int step = this.current; step >= 0; step--) {
+                final int i = called[step];
+                if (i < 0) {
+                    rendered = step;
+                    continue;
+                }
+                final long outer = times[step] - times[step + 1];
+                if (filters[i].trackTime(outer)) {
+                    // the log is the fallback without an event admin
+                    final FilterReporter reporter = filters[i].getChain().getReporter();
+                    if (reporter == null || !reporter.slowFilter(filters[i], outer, request.getPathInfo())) {
+                        SLOW_FILTER_LOG.warn("Slow filter: filter={}, chain={}, time={}ms, path={}",
+                            filters[i].getName(), filters[i].getChain().getType(),
+                            outer / 1000000L, request.getPathInfo());
+                    }
+                }
                 if (tracker != null) {
                     tracker.log("Filter timing: filter={0}, inner={1}, total={2}, outer={3}",
-                        filters[i].getFilter().getClass().getName(), times[i + 1], times[i], (times[i] - times[i + 1]));
+                        filters[i].getFilter().getClass().getName(), times[step + 1] / 1000000L,
+                        times[step] / 1000000L, outer / 1000000L);
                 }
             }
+
+            final SlingFilterChainHelper chain = filters[0].getChain();
+            if (chain != null) {
+                chain.getHistogram().record(times[0] - (rendered >= 0 ? times[rendered] : 0));
+            }
         }
     }
 
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestPathInfo;
+
+/**
+ * The <code>FilterDispatchTable</code> is an immutable index of the filters
+ * of a chain, built whenever the filters of the chain change. It selects
+ * the filters applying to a request by combining precomputed bit sets of
+ * the filters per extension, selector and method, so only the path pattern
+ * and the resource types of the remaining filters have to be checked
+ * against the request.
+ */
+public class FilterDispatchTable {
+
+    private static final FilterHandle[] EMPTY_FILTER_ARRAY = new FilterHandle[0];
+
+    static final FilterDispatchTable EMPTY = new FilterDispatchTable(EMPTY_FILTER_ARRAY);
+
+    /** All filters of the chain in calling order */
+    private final FilterHandle[] filters;
+
+    /** Whether all filters apply to all requests */
+    private final boolean unconditional;
+
+    private final Index extensions;
+
+    private final Index selectors;
+
+    private final Index methods;
+
+    /** The filters with conditions to be checked against the request */
+    private final long[] requestConditions;
+
+    /** The bit set of all filters, returned if all filters apply */
+    private final long[] all;
+
+    FilterDispatchTable(final FilterHandle[] filters) {
+        this.filters = filters;
+
+        final int words = (filters.length + 63) >>> 6;
+        this.extensions = new Index(words);
+        this.selectors = new Index(words);
+        this.methods = new Index(words);
+        this.requestConditions = new long[words];
+
+        boolean unconditional = true;
+        for (int i = 0; i < filters.length; i++) {
+            final FilterPredicate predicate = filters[i].getPredicate();
+            unconditional &= !predicate.hasConditions();
+            extensions.add(i, predicate.getExtensions());
+            selectors.add(i, predicate.getSelectors());
+            methods.add(i, predicate.getMethods());
+            if (predicate.hasRequestConditions()) {
+                requestConditions[i >>> 6] |= 1L << i;
+            }
+        }
+        this.unconditional = unconditional;
+
+        this.all = new long[words];
+        for (int i = 0; i < filters.length; i++) {
+            all[i >>> 6] |= 1L << i;
+        }
+    }
+
+    /**
+     * Returns all filters of the chain in calling order.
+     */
+    public FilterHandle[] getFilters() {
+        return filters;
+    }
+
+    /**
+     * Returns the bit set of the filters applying to the request, indexed
+     * like the array returned by {@link #getFilters()}. The returned array
+     * must not be modified, as it is shared if all filters apply.
+     */
+    public long[] select(final SlingHttpServletRequest request) {
+        if (unconditional) {
+            return all;
+        }
+
+        final RequestPathInfo pathInfo = request.getRequestPathInfo();
+        final long[] selected = new long[requestConditions.length];
+        extensions.select(selected, pathInfo.getExtension());
+        final String method = request.getMethod();
+        methods.retain(selected, (method != null) ? method.toUpperCase(Locale.ENGLISH) : null);
+        selectors.retain(selected, pathInfo.getSelectors());
+
+        boolean complete = true;
+        for (int w = 0; w < selected.length; w++) {
+            long bits = selected[w] & requestConditions[w];
+            while (bits != 0) {
+                final long bit = Long.lowestOneBit(bits);
+                bits ^= bit;
+                final int i = (w << 6) + Long.numberOfTrailingZeros(bit);
+                if (!filters[i].getPredicate().selectRequest(request)) {
+                    selected[w] ^= bit;
+                }
+            }
+            complete &= selected[w] == all[w];
+        }
+        return complete ? all : selected;
+    }
+
+    /**
+     * The filters per value of a request property, such as the extension.
+     */
+    private static class Index {
+
+        /** The filters applying regardless of the value */
+        private final long[] any;
+
+        private final Map<String, long[]> byValue = new HashMap<String, long[]>();
+
+        Index(final int words) {
+            this.any = new long[words];
+        }
+
+        void add(final int filter, final Set<String> values) {
+            if (values == null) {
+                any[filter >>> 6] |= 1L << filter;
+            } else {
+                for (final String value : values) {
+                    long[] bits = byValue.get(value);
+                    if (bits == null) {
+                        bits = new long[any.length];
+                        byValue.put(value, bits);
+                    }
+                    bits[filter >>> 6] |= 1L << filter;
+                }
+            }
+        }
+
+        /** Sets the filters applying to the value */
+        void select(final long[] selected, final String value) {
+            final long[] bits = (value != null) ? byValue.get(value) : null;
+            for (int w = 0; w < selected.length; w++) {
+                selected[w] = any[w] | (bits != null ? bits[w] : 0);
+            }
+        }
+
+        /** Clears the filters not applying to the value */
+        void retain(final long[] selected, final String value) {
+            if (byValue.isEmpty()) {
+                return;
+            }
+            final long[] bits = (value != null) ? byValue.get(value) : null;
+            for (int w = 0; w < selected.length; w++) {
+                selected[w] &= any[w] | (bits != null ? bits[w] : 0);
+            }
+        }
+
+        /** Clears the filters applying to none of the values */
+        void retain(final long[] selected, final String[] values) {
+            if (byValue.isEmpty()) {
+                return;
+            }
+            final long[] matching = any.clone();
+            if (values != null) {
+                for (final String value : values) {
+                    final long[] bits = byValue.get(value);
+                    if (bits != null) {
+                        for (int w = 0; w < matching.length; w++) {
+                            matching[w] |= bits[w];
+                        }
+                    }
+                }
+            }
+            for (int w = 0; w < selected.length; w++) {
+                selected[w] &= matching[w];
+            }
+        }
+    }
+}
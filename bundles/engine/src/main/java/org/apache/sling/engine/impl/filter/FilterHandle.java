@@ -19,7 +19,6 @@
 package org.apache.sling.engine.impl.filter;
 
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Pattern;
 
 import javax.servlet.Filter;
 
@@ -28,8 +27,10 @@ import org.apache.sling.api.SlingHttpServletRequest;
 public class FilterHandle implements Comparable<FilterHandle> {
 
     private final Filter filter;
+
+    private final String name;
     
-    private final Pattern regex;
+    private final FilterPredicate predicate;
 
     private final Long filterId;
 
@@ -40,29 +41,60 @@ public class FilterHandle implements Comparable<FilterHandle> {
     private AtomicLong calls;
 
     private AtomicLong time;
+
+    private final AtomicLong slowCalls = new AtomicLong();
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private final SlingFilterChainHelper chain;
+
+    /** The tracking count of the metrics service the metrics were created for. */
+    private volatile int metricsTrackingCount = -1;
+
+    /** The metrics of this filter, null without a metrics service. */
+    private volatile FilterMetrics metrics;
     
     FilterProcessorMBeanImpl mbean;
 
     FilterHandle(Filter filter, String pattern, Long filterId, int order, final String orderSource, FilterProcessorMBeanImpl mbean) {
+        this(filter, pattern, filterId, order, orderSource, mbean, null);
+    }
+
+    FilterHandle(Filter filter, String pattern, Long filterId, int order, final String orderSource,
+            FilterProcessorMBeanImpl mbean, SlingFilterChainHelper chain) {
+        this(filter, new FilterPredicate(pattern, null, null, null, null), filterId, order, orderSource, mbean, chain);
+    }
+
+    FilterHandle(Filter filter, FilterPredicate predicate, Long filterId, int order, final String orderSource,
+            FilterProcessorMBeanImpl mbean, SlingFilterChainHelper chain) {
+        this(filter, null, predicate, filterId, order, orderSource, mbean, chain);
+    }
+
+    FilterHandle(Filter filter, String name, FilterPredicate predicate, Long filterId, int order,
+            final String orderSource, FilterProcessorMBeanImpl mbean, SlingFilterChainHelper chain) {
         this.filter = filter;
-        if (pattern != null && pattern.length() > 0) {
-            this.regex = Pattern.compile(pattern);
-        } else {
-            this.regex = null;
-        }
-        
+        this.name = (name != null) ? name : filter.getClass().getName();
+        this.predicate = (predicate != null) ? predicate : FilterPredicate.ANY;
         this.filterId = filterId;
         this.order = order;
         this.orderSource = orderSource;
         this.calls = new AtomicLong();
         this.time = new AtomicLong();
         this.mbean = mbean;
+        this.chain = chain;
     }
 
     public Filter getFilter() {
         return filter;
     }
 
+    /**
+     * The name of the filter, its class name if it has no name.
+     */
+    public String getName() {
+        return name;
+    }
+
     public Long getFilterId() {
         return filterId;
     }
@@ -75,41 +107,94 @@ public class FilterHandle implements Comparable<FilterHandle> {
         return orderSource;
     }
     
+    FilterPredicate getPredicate() {
+        return predicate;
+    }
+
     boolean select(SlingHttpServletRequest slingHttpServletRequest) {
-        boolean select = true;        
-        if (regex != null) {
-            String uri = slingHttpServletRequest.getPathInfo();
-            // assume root if uri is null
-            if (uri == null)
-            {
-                uri = "/";
-            }
-            select = this.regex.matcher(uri).matches();
-        }        
-        return select;
+        return predicate.select(slingHttpServletRequest);
     }
 
     public long getCalls() {
         return calls.get();
     }
 
+    /**
+     * The time spent in the filter itself in milliseconds.
+     */
     public long getTime() {
-        return time.get();
+        return time.get() / 1000000L;
     }
 
+    /**
+     * The mean time spent in the filter itself per call in microseconds.
+     */
     public long getTimePerCall() {
-        return (getCalls() > 0) ? (1000L * getTime() / getCalls()) : -1;
+        return (getCalls() > 0) ? (time.get() / 1000L / getCalls()) : -1;
+    }
+
+    /**
+     * The number of calls taking longer than the slow filter threshold of
+     * the chain.
+     */
+    public long getSlowCalls() {
+        return slowCalls.get();
+    }
+
+    /**
+     * The distribution of the time spent in the filter itself.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    SlingFilterChainHelper getChain() {
+        return chain;
     }
 
     void track() {
         calls.incrementAndGet();
     }
 
-    void trackTime(long time) {
-        this.time.addAndGet(time);
+    /**
+     * Records the time spent in the filter itself.
+     *
+     * @param nanos The time in nanoseconds
+     * @return <code>true</code> if the time exceeds the slow filter threshold
+     */
+    boolean trackTime(long nanos) {
+        this.time.addAndGet(nanos);
+        this.histogram.record(nanos);
         if (mbean != null) {
-            mbean.addFilterHandle(this);
+            mbean.record(nanos);
+        }
+        final long threshold = (chain != null) ? chain.getSlowFilterThreshold() : 0;
+        final boolean slow = threshold > 0 && nanos > threshold;
+        if (slow) {
+            slowCalls.incrementAndGet();
+        }
+        final FilterMetrics metrics = getMetrics();
+        if (metrics != null) {
+            metrics.record(nanos, slow);
+        }
+        return slow;
+    }
+
+    private FilterMetrics getMetrics() {
+        final FilterReporter reporter = (chain != null) ? chain.getReporter() : null;
+        if (reporter == null) {
+            return null;
+        }
+        final int trackingCount = reporter.getMetricsTrackingCount();
+        if (trackingCount != this.metricsTrackingCount) {
+            synchronized (this) {
+                if (trackingCount != this.metricsTrackingCount) {
+                    this.metrics = reporter.createMetrics(this);
+                    this.metricsTrackingCount = trackingCount;
+                }
+            }
         }
+        return this.metrics;
     }
 
     /**
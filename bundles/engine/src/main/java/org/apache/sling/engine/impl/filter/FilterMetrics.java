@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.MetricsService;
+
+/**
+ * The metrics of a filter in a chain:
+ * <ul>
+ *   <li><code>engine.filter.&lt;chain&gt;.&lt;filter&gt;.micros</code> the time spent in the filter itself</li>
+ *   <li><code>engine.filter.&lt;chain&gt;.&lt;filter&gt;.slow</code> the calls above the slow filter threshold</li>
+ * </ul>
+ * <p>
+ * This is the only class using the metrics API, which is imported
+ * optionally: it is only loaded once a metrics service is available.
+ */
+final class FilterMetrics {
+
+    /** The prefix of the metric names. */
+    static final String PREFIX = "engine.filter.";
+
+    private final Histogram time;
+
+    private final Counter slowCalls;
+
+    /**
+     * Register the metrics of a filter.
+     * @param metricsService The metrics service.
+     * @param chain The name of the chain.
+     * @param name The name of the filter.
+     * @throws ClassCastException If the metrics service is not wired to this bundle
+     */
+    FilterMetrics(final Object metricsService, final String chain, final String name) {
+        final MetricsService service = (MetricsService) metricsService;
+        final String prefix = PREFIX + chain + "." + name + ".";
+        this.time = service.histogram(prefix + "micros");
+        this.slowCalls = service.counter(prefix + "slow");
+    }
+
+    void record(final long nanos, final boolean slow) {
+        this.time.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (slow) {
+            this.slowCalls.increment();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestPathInfo;
+import org.apache.sling.api.resource.Resource;
+
+/**
+ * The <code>FilterPredicate</code> holds the conditions under which a filter
+ * is applied to a request. A filter without conditions is applied to all
+ * requests, otherwise all of its conditions have to be met.
+ */
+class FilterPredicate {
+
+    /** The predicate of filters applied to all requests */
+    static final FilterPredicate ANY = new FilterPredicate(null, null, null, null, null);
+
+    private final Pattern regex;
+
+    private final Set<String> extensions;
+
+    private final Set<String> selectors;
+
+    private final Set<String> methods;
+
+    private final String[] resourceTypes;
+
+    FilterPredicate(final String pattern, final String[] extensions, final String[] selectors,
+            final String[] methods, final String[] resourceTypes) {
+        if (pattern != null && pattern.length() > 0) {
+            this.regex = Pattern.compile(pattern);
+        } else {
+            this.regex = null;
+        }
+        this.extensions = toSet(extensions, false);
+        this.selectors = toSet(selectors, false);
+        this.methods = toSet(methods, true);
+        this.resourceTypes = (resourceTypes != null && resourceTypes.length > 0) ? resourceTypes : null;
+    }
+
+    private static Set<String> toSet(final String[] values, final boolean upperCase) {
+        if (values == null || values.length == 0) {
+            return null;
+        }
+        final Set<String> set = new LinkedHashSet<String>();
+        for (final String value : values) {
+            if (value != null) {
+                set.add(upperCase ? value.toUpperCase(Locale.ENGLISH) : value);
+            }
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * The request extensions the filter is applied to, <code>null</code> for
+     * all extensions.
+     */
+    Set<String> getExtensions() {
+        return extensions;
+    }
+
+    /**
+     * The selectors one of which the request has to have for the filter to be
+     * applied, <code>null</code> for any selectors.
+     */
+    Set<String> getSelectors() {
+        return selectors;
+    }
+
+    /**
+     * The upper case request methods the filter is applied to,
+     * <code>null</code> for all methods.
+     */
+    Set<String> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Whether the filter has conditions which can only be checked against
+     * the request itself, that is a path pattern or resource types.
+     */
+    boolean hasRequestConditions() {
+        return regex != null || resourceTypes != null;
+    }
+
+    /**
+     * Whether the filter has any conditions at all.
+     */
+    boolean hasConditions() {
+        return hasRequestConditions() || extensions != null || selectors != null || methods != null;
+    }
+
+    /**
+     * Checks all conditions against the request.
+     */
+    boolean select(final SlingHttpServletRequest request) {
+        final RequestPathInfo pathInfo = request.getRequestPathInfo();
+        if (extensions != null && !extensions.contains(pathInfo.getExtension())) {
+            return false;
+        }
+        if (methods != null && (request.getMethod() == null
+                || !methods.contains(request.getMethod().toUpperCase(Locale.ENGLISH)))) {
+            return false;
+        }
+        if (selectors != null) {
+            final String[] requestSelectors = pathInfo.getSelectors();
+            if (requestSelectors == null || Collections.disjoint(selectors, Arrays.asList(requestSelectors))) {
+                return false;
+            }
+        }
+        return selectRequest(request);
+    }
+
+    /**
+     * Checks the path pattern and the resource types against the request.
+     */
+    boolean selectRequest(final SlingHttpServletRequest request) {
+        if (regex != null) {
+            String uri = request.getPathInfo();
+            // assume root if uri is null
+            if (uri == null) {
+                uri = "/";
+            }
+            if (!regex.matcher(uri).matches()) {
+                return false;
+            }
+        }
+        if (resourceTypes != null) {
+            final Resource resource = request.getResource();
+            if (resource == null) {
+                return false;
+            }
+            for (final String resourceType : resourceTypes) {
+                if (resource.isResourceType(resourceType)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+}
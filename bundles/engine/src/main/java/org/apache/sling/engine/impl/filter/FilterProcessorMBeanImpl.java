@@ -26,35 +26,52 @@ import org.apache.sling.engine.jmx.FilterProcessorMBean;
  * FilterProcessorMBean.
  */
 public class FilterProcessorMBeanImpl extends StandardMBean implements FilterProcessorMBean{
-    
-    // number of filter invocations
-    private volatile long n;
-    
-    private volatile double meanDuration;
-    
+
+    private static final double NANOS_PER_MSEC = 1000000d;
+
+    // the durations of the filter invocations
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
     public FilterProcessorMBeanImpl() throws NotCompliantMBeanException{
         super(FilterProcessorMBean.class);
-        resetStatistics();
     }
 
-    void addFilterHandle(FilterHandle filterHandle) {        
-        this.n = filterHandle.getCalls();        
-        this.meanDuration = (double)filterHandle.getTimePerCall()/1000;
+    void record(long nanos) {
+        this.histogram.record(nanos);
     }
 
     @Override
     public long getInvocationsCount() {
-        return this.n;
+        return this.histogram.getCount();
     }
 
     @Override
     public double getMeanFilterDurationMsec() {
-        return this.meanDuration;
+        return this.histogram.getMean() / NANOS_PER_MSEC;
+    }
+
+    @Override
+    public double getFilterDurationPercentile50Msec() {
+        return this.histogram.getValueAtPercentile(50) / NANOS_PER_MSEC;
+    }
+
+    @Override
+    public double getFilterDurationPercentile99Msec() {
+        return this.histogram.getValueAtPercentile(99) / NANOS_PER_MSEC;
+    }
+
+    @Override
+    public double getFilterDurationPercentile999Msec() {
+        return this.histogram.getValueAtPercentile(99.9) / NANOS_PER_MSEC;
     }
-    
+
+    @Override
+    public double getMaxFilterDurationMsec() {
+        return this.histogram.getMax() / NANOS_PER_MSEC;
+    }
+
     @Override
     public void resetStatistics() {
-        this.n = 0;
-        this.meanDuration = 0;
+        this.histogram.reset();
     }
 }
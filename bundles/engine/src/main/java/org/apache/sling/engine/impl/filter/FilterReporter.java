@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>FilterReporter</code> reports the filter calls to the services
+ * monitoring them, if available: the filter timings are exported as
+ * {@link FilterMetrics} to the metrics service and slow filter calls are
+ * posted as {@link #TOPIC_SLOW_FILTER} events to the event admin.
+ * <p>
+ * Both APIs are imported optionally, so the services are tracked by name
+ * and the classes using them are only loaded once a service is available.
+ */
+public class FilterReporter {
+
+    /** The topic of the events posted for slow filter calls. */
+    public static final String TOPIC_SLOW_FILTER = "org/apache/sling/engine/filter/SLOW";
+
+    /** The name of the filter, a slow filter event property. */
+    public static final String PROPERTY_FILTER = "filter";
+
+    /** The class of the filter, a slow filter event property. */
+    public static final String PROPERTY_FILTER_CLASS = "filter.class";
+
+    /** The chain of the filter, a slow filter event property. */
+    public static final String PROPERTY_CHAIN = "chain";
+
+    /** The time in milliseconds spent in the filter itself, a slow filter event property. */
+    public static final String PROPERTY_TIME = "time";
+
+    /** The path info of the request, a slow filter event property. */
+    public static final String PROPERTY_PATH = "path";
+
+    private static final String METRICS_SERVICE = "org.apache.sling.commons.metrics.MetricsService";
+
+    private static final String EVENT_ADMIN = "org.osgi.service.event.EventAdmin";
+
+    /** default log */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ServiceTracker<Object, Object> metricsTracker;
+
+    private final ServiceTracker<Object, Object> eventAdminTracker;
+
+    public FilterReporter(final BundleContext context) {
+        this.metricsTracker = new ServiceTracker<Object, Object>(context, METRICS_SERVICE, null);
+        this.eventAdminTracker = new ServiceTracker<Object, Object>(context, EVENT_ADMIN, null);
+    }
+
+    public void open() {
+        this.metricsTracker.open();
+        this.eventAdminTracker.open();
+    }
+
+    public void close() {
+        this.eventAdminTracker.close();
+        this.metricsTracker.close();
+    }
+
+    /**
+     * The tracking count of the metrics service, changing whenever the
+     * metrics of the filters have to be created again.
+     */
+    int getMetricsTrackingCount() {
+        return this.metricsTracker.getTrackingCount();
+    }
+
+    /**
+     * Register the metrics of a filter.
+     * @return The metrics or <code>null</code> without a usable metrics service
+     */
+    FilterMetrics createMetrics(final FilterHandle filter) {
+        final Object service = this.metricsTracker.getService();
+        if (service != null) {
+            final String chain = (filter.getChain() != null && filter.getChain().getType() != null)
+                    ? filter.getChain().getType().name().toLowerCase() : "unknown";
+            try {
+                return new FilterMetrics(service, chain, filter.getName());
+            } catch (final LinkageError e) {
+                log.debug("Metrics API is not available for filter {}", filter.getName(), e);
+            } catch (final ClassCastException e) {
+                log.debug("Metrics service is not compatible for filter {}", filter.getName(), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Post the event of a slow filter call.
+     * @param filter The filter
+     * @param nanos The time spent in the filter itself in nanoseconds
+     * @param path The path info of the request
+     * @return <code>true</code> if the event has been posted,
+     *         <code>false</code> without a usable event admin
+     */
+    boolean slowFilter(final FilterHandle filter, final long nanos, final String path) {
+        final Object service = this.eventAdminTracker.getService();
+        if (service != null) {
+            final Map<String, Object> props = new HashMap<String, Object>();
+            props.put(PROPERTY_FILTER, filter.getName());
+            props.put(PROPERTY_FILTER_CLASS, filter.getFilter().getClass().getName());
+            if (filter.getChain() != null && filter.getChain().getType() != null) {
+                props.put(PROPERTY_CHAIN, filter.getChain().getType().name());
+            }
+            props.put(PROPERTY_TIME, nanos / 1000000L);
+            if (path != null) {
+                props.put(PROPERTY_PATH, path);
+            }
+            try {
+                SlowFilterEvent.post(service, props);
+                return true;
+            } catch (final LinkageError e) {
+                log.debug("Event admin API is not available for filter {}", filter.getName(), e);
+            } catch (final ClassCastException e) {
+                log.debug("Event admin is not compatible for filter {}", filter.getName(), e);
+            }
+        }
+        return false;
+    }
+}
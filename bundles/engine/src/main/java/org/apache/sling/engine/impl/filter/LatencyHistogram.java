@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <code>LatencyHistogram</code> records durations in nanoseconds into
+ * buckets of logarithmically increasing width, like an HDR histogram: each
+ * power of two is divided into {@link #SUB_BUCKETS} buckets, so a recorded
+ * value is reported with an error of at most 1/16th. Durations of more than
+ * 2<sup>{@value #MAX_EXPONENT}</sup> nanoseconds (about 18 minutes) are
+ * counted in the last bucket.
+ * <p>
+ * Recording only updates atomic counters, so it does not lock. Reading the
+ * percentiles while values are recorded may see some of the concurrently
+ * recorded values only.
+ */
+public class LatencyHistogram {
+
+    /** The number of bits distinguishing the buckets of a power of two */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** The number of buckets per power of two */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** The largest power of two with its own buckets */
+    static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds, negative values are recorded
+     *            as zero
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /** The number of recorded durations */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** The sum of the recorded durations in nanoseconds */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /** The largest recorded duration in nanoseconds */
+    public long getMax() {
+        return max.get();
+    }
+
+    /** The mean of the recorded durations in nanoseconds, 0 if none */
+    public double getMean() {
+        final long n = count.get();
+        return (n > 0) ? (double) sum.get() / n : 0;
+    }
+
+    /**
+     * Returns the duration at or below which the given percentage of the
+     * recorded durations are. The value is the upper bound of the bucket
+     * containing the percentile, but at most the largest recorded duration.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The duration in nanoseconds, 0 if no durations are recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                // the last bucket also counts all larger durations
+                return (i == BUCKETS - 1) ? max.get() : Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** Removes all recorded durations */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        final long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        final long lower = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
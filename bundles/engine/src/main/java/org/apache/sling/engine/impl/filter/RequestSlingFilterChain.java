@@ -38,8 +38,8 @@ public class RequestSlingFilterChain extends AbstractSlingFilterChain {
 
     private final SlingRequestProcessorImpl handler;
 
-    public RequestSlingFilterChain(SlingRequestProcessorImpl handler, FilterHandle[] filters) {
-        super(filters);
+    public RequestSlingFilterChain(SlingRequestProcessorImpl handler, FilterHandle[] filters, long[] selected) {
+        super(filters, selected);
         this.handler = handler;
     }
 
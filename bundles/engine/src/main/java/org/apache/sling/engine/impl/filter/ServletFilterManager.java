@@ -99,27 +99,63 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
 
     private Map <Long, ServiceRegistration<FilterProcessorMBean>> mbeanMap;
 
+    private final FilterReporter reporter;
+
     public ServletFilterManager(final BundleContext context,
             final SlingServletContext servletContext) {
         super(context, Filter.class, null);
         this.servletContext = servletContext;
         this.filterChains = new SlingFilterChainHelper[FilterChainType.values().length];
-        this.filterChains[FilterChainType.REQUEST.ordinal()] = new SlingFilterChainHelper();
-        this.filterChains[FilterChainType.ERROR.ordinal()] = new SlingFilterChainHelper();
-        this.filterChains[FilterChainType.INCLUDE.ordinal()] = new SlingFilterChainHelper();
-        this.filterChains[FilterChainType.FORWARD.ordinal()] = new SlingFilterChainHelper();
-        this.filterChains[FilterChainType.COMPONENT.ordinal()] = new SlingFilterChainHelper();
+        this.filterChains[FilterChainType.REQUEST.ordinal()] = new SlingFilterChainHelper(FilterChainType.REQUEST);
+        this.filterChains[FilterChainType.ERROR.ordinal()] = new SlingFilterChainHelper(FilterChainType.ERROR);
+        this.filterChains[FilterChainType.INCLUDE.ordinal()] = new SlingFilterChainHelper(FilterChainType.INCLUDE);
+        this.filterChains[FilterChainType.FORWARD.ordinal()] = new SlingFilterChainHelper(FilterChainType.FORWARD);
+        this.filterChains[FilterChainType.COMPONENT.ordinal()] = new SlingFilterChainHelper(FilterChainType.COMPONENT);
         this.mbeanMap = new HashMap<Long, ServiceRegistration<FilterProcessorMBean>>();
+        this.reporter = new FilterReporter(context);
+        for (final SlingFilterChainHelper chain : filterChains) {
+            chain.setReporter(reporter);
+        }
+    }
+
+    @Override
+    public void open() {
+        reporter.open();
+        super.open();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        reporter.close();
     }
 
     public SlingFilterChainHelper getFilterChain(final FilterChainType chain) {
         return filterChains[chain.ordinal()];
     }
 
+    /**
+     * Sets the time above which filter calls are reported as slow.
+     *
+     * @param millis The time in milliseconds, 0 or less to not report slow calls
+     */
+    public void setSlowFilterThreshold(final long millis) {
+        for (final SlingFilterChainHelper chain : filterChains) {
+            chain.setSlowFilterThreshold(Math.max(0, millis) * 1000000L);
+        }
+    }
+
     public FilterHandle[] getFilters(final FilterChainType chain) {
         return getFilterChain(chain).getFilters();
     }
 
+    /**
+     * Returns the current dispatch table of the chain.
+     */
+    public FilterDispatchTable getDispatchTable(final FilterChainType chain) {
+        return getFilterChain(chain).getDispatchTable();
+    }
+
     @Override
     public Filter addingService(ServiceReference<Filter> reference) {
         if ( this.excludeFilter(reference) ) {
@@ -222,7 +258,12 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
             String[] scopes = OsgiUtil.toStringArray(
                     reference.getProperty(EngineConstants.SLING_FILTER_SCOPE), null);
 
-            String pattern = OsgiUtil.toString(reference.getProperty(EngineConstants.SLING_FILTER_PATTERN), "");
+            final FilterPredicate predicate = new FilterPredicate(
+                OsgiUtil.toString(reference.getProperty(EngineConstants.SLING_FILTER_PATTERN), ""),
+                OsgiUtil.toStringArray(reference.getProperty(EngineConstants.SLING_FILTER_EXTENSIONS), null),
+                OsgiUtil.toStringArray(reference.getProperty(EngineConstants.SLING_FILTER_SELECTORS), null),
+                OsgiUtil.toStringArray(reference.getProperty(EngineConstants.SLING_FILTER_METHODS), null),
+                OsgiUtil.toStringArray(reference.getProperty(EngineConstants.SLING_FILTER_RESOURCETYPES), null));
 
             if ( scopes == null ) {
                 scopes = OsgiUtil.toStringArray(
@@ -235,14 +276,14 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
                     scope = scope.toUpperCase();
                     try {
                         FilterChainType type = FilterChainType.valueOf(scope.toString());
-                        getFilterChain(type).addFilter(filter, pattern, serviceId,
+                        getFilterChain(type).addFilterWithPredicate(filter, filterName, predicate, serviceId,
                             order, orderSource, mbean);
 
                         if (type == FilterChainType.COMPONENT) {
-                            getFilterChain(FilterChainType.INCLUDE).addFilter(
-                                filter, pattern, serviceId, order, orderSource, mbean);
-                            getFilterChain(FilterChainType.FORWARD).addFilter(
-                                filter, pattern, serviceId, order, orderSource, mbean);
+                            getFilterChain(FilterChainType.INCLUDE).addFilterWithPredicate(
+                                filter, filterName, predicate, serviceId, order, orderSource, mbean);
+                            getFilterChain(FilterChainType.FORWARD).addFilterWithPredicate(
+                                filter, filterName, predicate, serviceId, order, orderSource, mbean);
                         }
 
                     } catch (IllegalArgumentException iae) {
@@ -253,8 +294,8 @@ public class ServletFilterManager extends ServiceTracker<Filter, Filter> {
                 log.warn(String.format(
                     "A Filter (Service ID %s) has been registered without a filter.scope property.",
                     reference.getProperty(Constants.SERVICE_ID)));
-                getFilterChain(FilterChainType.REQUEST).addFilter(filter, pattern,
-                    serviceId, order, orderSource,mbean);
+                getFilterChain(FilterChainType.REQUEST).addFilterWithPredicate(filter, filterName,
+                    predicate, serviceId, order, orderSource,mbean);
             }
 
         } catch (ServletException ce) {
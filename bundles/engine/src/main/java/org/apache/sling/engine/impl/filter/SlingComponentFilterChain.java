@@ -34,8 +34,8 @@ import org.apache.sling.engine.impl.request.RequestData;
  */
 public class SlingComponentFilterChain extends AbstractSlingFilterChain {
 
-    public SlingComponentFilterChain(FilterHandle[] filters) {
-        super(filters);
+    public SlingComponentFilterChain(FilterHandle[] filters, long[] selected) {
+        super(filters, selected);
     }
 
     protected void render(SlingHttpServletRequest request,
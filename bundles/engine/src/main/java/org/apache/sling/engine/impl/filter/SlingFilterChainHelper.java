@@ -30,25 +30,90 @@ import javax.servlet.Filter;
  * ordering, each filter is optionally registered with an ordering index. If
  * none is provided the default ordering index is Integer.MAX_VALUE to append
  * the filter to the end of the list.
+ * <p>
+ * Whenever the filters change, a {@link FilterDispatchTable} is built and
+ * published, from which the filters applying to a request are selected
+ * without locking.
  */
 public class SlingFilterChainHelper {
 
-    private static final FilterHandle[] EMPTY_FILTER_ARRAY = new FilterHandle[0];
-
     private SortedSet<FilterHandle> filterList;
 
-    private FilterHandle[] filters = EMPTY_FILTER_ARRAY;
+    private volatile FilterDispatchTable dispatchTable = FilterDispatchTable.EMPTY;
+
+    private final ServletFilterManager.FilterChainType type;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private volatile long slowFilterThreshold;
+
+    private volatile FilterReporter reporter;
 
     SlingFilterChainHelper() {
+        this(null);
+    }
+
+    SlingFilterChainHelper(final ServletFilterManager.FilterChainType type) {
+        this.type = type;
+    }
+
+    /**
+     * The type of the chain, <code>null</code> if unknown.
+     */
+    public ServletFilterManager.FilterChainType getType() {
+        return type;
+    }
+
+    /**
+     * The distribution of the time spent in the filters of the chain,
+     * excluding the time spent rendering.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * The time in nanoseconds above which a filter call is considered slow,
+     * 0 if no calls are considered slow.
+     */
+    long getSlowFilterThreshold() {
+        return slowFilterThreshold;
     }
 
-    public synchronized Filter addFilter(final Filter filter,  String pattern,
+    void setSlowFilterThreshold(final long nanos) {
+        this.slowFilterThreshold = nanos;
+    }
+
+    /**
+     * The reporter of the filter calls to the monitoring services,
+     * <code>null</code> if the calls are not reported.
+     */
+    FilterReporter getReporter() {
+        return reporter;
+    }
+
+    void setReporter(final FilterReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    public Filter addFilter(final Filter filter,  String pattern,
+            final Long filterId, final int order, final String orderSource, FilterProcessorMBeanImpl mbean) {
+        return addFilterWithPredicate(filter, new FilterPredicate(pattern, null, null, null, null), filterId, order,
+            orderSource, mbean);
+    }
+
+    Filter addFilterWithPredicate(final Filter filter, final FilterPredicate predicate,
+            final Long filterId, final int order, final String orderSource, FilterProcessorMBeanImpl mbean) {
+        return addFilterWithPredicate(filter, null, predicate, filterId, order, orderSource, mbean);
+    }
+
+    synchronized Filter addFilterWithPredicate(final Filter filter, final String name, final FilterPredicate predicate,
             final Long filterId, final int order, final String orderSource, FilterProcessorMBeanImpl mbean) {
         if (filterList == null) {
             filterList = new TreeSet<FilterHandle>();
         }
-        filterList.add(new FilterHandle(filter, pattern, filterId, order, orderSource, mbean));
-        filters = getFiltersInternal();
+        filterList.add(new FilterHandle(filter, name, predicate, filterId, order, orderSource, mbean, this));
+        dispatchTable = new FilterDispatchTable(getFiltersInternal());
         return filter;
     }
 
@@ -60,7 +125,7 @@ public class SlingFilterChainHelper {
                     || (test.getFilterId() != null && test.getFilterId().equals(
                         filterId))) {
                     fi.remove();
-                    filters = getFiltersInternal();
+                    dispatchTable = new FilterDispatchTable(getFiltersInternal());
                     return true;
                 }
             }
@@ -71,17 +136,24 @@ public class SlingFilterChainHelper {
     }
 
     /**
-     * Returns the list of <code>Filter</code>s added to this instance
-     * or <code>null</code> if no filters have been added.
-     * This method doesn't need to be synced as it is called from synced methods.
+     * Returns the list of <code>Filter</code>s added to this instance,
+     * which is empty if no filters have been added.
      */
     public FilterHandle[] getFilters() {
-        return filters;
+        return dispatchTable.getFilters();
+    }
+
+    /**
+     * Returns the current dispatch table of the filters added to this
+     * instance, from which filter chains are built.
+     */
+    public FilterDispatchTable getDispatchTable() {
+        return dispatchTable;
     }
 
     private FilterHandle[] getFiltersInternal() {
         if (filterList == null || filterList.isEmpty()) {
-            return EMPTY_FILTER_ARRAY;
+            return FilterDispatchTable.EMPTY.getFilters();
         }
         return filterList.toArray(new FilterHandle[filterList.size()]);
     }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.Map;
+
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+/**
+ * Posts the event of a slow filter call.
+ * <p>
+ * This is the only class using the event admin API, which is imported
+ * optionally: it is only loaded once an event admin is available.
+ */
+final class SlowFilterEvent {
+
+    private SlowFilterEvent() {
+    }
+
+    /**
+     * Post the event asynchronously.
+     * @param eventAdmin The event admin.
+     * @param properties The properties of the event.
+     * @throws ClassCastException If the event admin is not wired to this bundle
+     */
+    static void post(final Object eventAdmin, final Map<String, Object> properties) {
+        ((EventAdmin) eventAdmin).postEvent(new Event(FilterReporter.TOPIC_SLOW_FILTER, properties));
+    }
+}
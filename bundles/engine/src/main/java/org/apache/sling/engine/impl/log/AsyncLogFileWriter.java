@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>AsyncLogFileWriter</code> writes log lines to a file from a
+ * background thread. The request threads hand the lines off to a bounded
+ * queue without taking a lock, and the background thread encodes them into
+ * a reusable direct buffer which is written to the file channel when it is
+ * full or the queue is empty.
+ * <p>
+ * If the queue is full, a line is either dropped or the request thread
+ * waits for space in the queue. Lines written after the writer has been
+ * closed are dropped as well. Dropped lines are counted.
+ */
+class AsyncLogFileWriter {
+
+    /** Overflow behaviour waiting for space in the queue */
+    static final String OVERFLOW_BLOCK = "block";
+
+    /** Overflow behaviour dropping the line */
+    static final String OVERFLOW_DROP = "drop";
+
+    /** The size of the direct buffer the lines are encoded into */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The time a blocked request thread waits before checking the queue again */
+    private static final long BLOCK_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /** The time the writer thread waits for lines if the queue is empty */
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /** The time to wait for the writer thread to write the queued lines on close */
+    private static final long CLOSE_WAIT_MILLIS = 5000;
+
+    /** default log */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File file;
+
+    private final int capacity;
+
+    private final boolean block;
+
+    private final Queue<String> queue = new ConcurrentLinkedQueue<String>();
+
+    /** The number of queued lines, reserved before a line is added */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final FileChannel channel;
+
+    private final Thread writerThread;
+
+    /** Whether the writer thread waits for lines and has to be woken up */
+    private volatile boolean idle;
+
+    private volatile boolean running = true;
+
+    /** Whether the writer thread has closed the file and no more lines are written */
+    private volatile boolean terminated;
+
+    AsyncLogFileWriter(final File file, final int capacity, final String overflow) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        this.block = OVERFLOW_BLOCK.equals(overflow);
+        this.channel = new FileOutputStream(file, true).getChannel();
+        this.writerThread = new Thread("Apache Sling Request Log Writer " + file.getName()) {
+            @Override
+            public void run() {
+                writeLines();
+            }
+        };
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues the line to be written.
+     *
+     * @param line The line without line separator
+     * @return <code>true</code> if the line is queued, <code>false</code> if
+     *         it is dropped
+     */
+    boolean write(final String line) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        while (!reserve()) {
+            if (!block || !running) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            LockSupport.parkNanos(this, BLOCK_WAIT_NANOS);
+        }
+        queue.offer(line);
+        if (terminated) {
+            // closed concurrently, the writer thread does not take the line anymore
+            dropQueued();
+            return false;
+        }
+        if (idle) {
+            LockSupport.unpark(writerThread);
+        }
+        return true;
+    }
+
+    private void dropQueued() {
+        while (queue.poll() != null) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+    }
+
+    private boolean reserve() {
+        for (;;) {
+            final int current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread after it has written the queued lines and
+     * closes the file.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(CLOSE_WAIT_MILLIS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int getQueueSize() {
+        return size.get();
+    }
+
+    long getWrittenCount() {
+        return written.get();
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    boolean isBlocking() {
+        return block;
+    }
+
+    private void writeLines() {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final CharBuffer lineSeparator = CharBuffer.wrap(System.getProperty("line.separator", "\n"));
+        try {
+            for (;;) {
+                final String line = queue.poll();
+                if (line != null) {
+                    size.decrementAndGet();
+                    encode(encoder, CharBuffer.wrap(line), buffer);
+                    lineSeparator.rewind();
+                    encode(encoder, lineSeparator, buffer);
+                    written.incrementAndGet();
+                    continue;
+                }
+
+                // the queue is empty, write the batch
+                flush(buffer);
+                if (!running && queue.isEmpty()) {
+                    break;
+                }
+                idle = true;
+                if (running && queue.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+                }
+                idle = false;
+            }
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ioe) {
+                // don't care
+            }
+            terminated = true;
+            dropQueued();
+        }
+    }
+
+    private void encode(final CharsetEncoder encoder, final CharBuffer chars, final ByteBuffer buffer) {
+        encoder.reset();
+        for (;;) {
+            final CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flush(buffer);
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flush(buffer);
+        }
+    }
+
+    private void flush(final ByteBuffer buffer) {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException ioe) {
+            log.error("Failed writing request log lines to {}", file, ioe);
+        } finally {
+            buffer.clear();
+        }
+    }
+}
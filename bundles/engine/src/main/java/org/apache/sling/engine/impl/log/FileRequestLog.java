@@ -23,8 +23,10 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.sling.engine.RequestLog;
 
@@ -50,36 +52,95 @@ import org.apache.sling.engine.RequestLog;
  * flushed after each log message written. Future development should probably
  * implement better buffering in conjunction with the temporary open/close
  * cycles of the files.
+ * <p>
+ * If a queue size is given, the messages are instead written by an
+ * {@link AsyncLogFileWriter} from a background thread. The settings of the
+ * log last opening a file apply to all logs sharing the file: if they
+ * differ from the settings the file is currently written with, the file is
+ * reopened with the new settings.
  */
 class FileRequestLog implements RequestLog {
 
     // The map of shared open files (actually PrintWriter instances)
-    private static Map<String, PrintWriter> logFiles = new HashMap<String, PrintWriter>();
+    private static final Map<String, PrintWriter> logFiles = new ConcurrentHashMap<String, PrintWriter>();
+
+    // The map of shared files written asynchronously
+    private static final Map<String, AsyncLogFileWriter> asyncLogFiles = new ConcurrentHashMap<String, AsyncLogFileWriter>();
+
+    // Guards opening and closing the shared files
+    private static final Object lock = new Object();
 
     // Dispose class by closing all open PrintWeiter instances
     static void dispose() {
-        for (final Writer w : logFiles.values()) {
-            try {
+        synchronized (lock) {
+            for (final Writer w : logFiles.values()) {
+                try {
+                    w.close();
+                } catch (IOException ioe) {
+                    // don't care
+                }
+            }
+            logFiles.clear();
+            for (final AsyncLogFileWriter w : asyncLogFiles.values()) {
                 w.close();
-            } catch (IOException ioe) {
-                // don't care
             }
+            asyncLogFiles.clear();
         }
-        logFiles.clear();
     }
 
-    // The PrintWriter used by this instance to write the messages
-    private PrintWriter output;
+    // The files written asynchronously
+    static List<AsyncLogFileWriter> getAsyncLogFiles() {
+        return new ArrayList<AsyncLogFileWriter>(asyncLogFiles.values());
+    }
+
+    // The absolute path of the file, the writer is looked up for each message
+    // to use the writer of the current settings
+    private final String fileName;
+
+    private volatile boolean closed;
 
     FileRequestLog(File logFile) throws IOException {
-        synchronized (logFiles) {
-            final String fileName = logFile.getAbsolutePath();
-            this.output = logFiles.get(fileName);
-            if (this.output == null) {
+        this(logFile, 0, AsyncLogFileWriter.OVERFLOW_BLOCK);
+    }
+
+    /**
+     * @param logFile The file to write to
+     * @param queueSize The number of messages queued for writing them
+     *            asynchronously, 0 or less to write them synchronously
+     * @param overflow The behaviour if the queue is full, either
+     *            {@link AsyncLogFileWriter#OVERFLOW_BLOCK} or
+     *            {@link AsyncLogFileWriter#OVERFLOW_DROP}
+     */
+    FileRequestLog(File logFile, int queueSize, String overflow) throws IOException {
+        this.fileName = logFile.getAbsolutePath();
+        synchronized (lock) {
+            final PrintWriter output = logFiles.get(fileName);
+            final AsyncLogFileWriter asyncOutput = asyncLogFiles.get(fileName);
+            if (queueSize > 0) {
+                if (asyncOutput != null && asyncOutput.getCapacity() == queueSize
+                        && asyncOutput.isBlocking() == AsyncLogFileWriter.OVERFLOW_BLOCK.equals(overflow)) {
+                    return;
+                }
+                logFile.getParentFile().mkdirs();
+                asyncLogFiles.put(fileName, new AsyncLogFileWriter(logFile, queueSize, overflow));
+            } else {
+                if (output != null) {
+                    return;
+                }
                 logFile.getParentFile().mkdirs();
                 FileWriter fw = new FileWriter(logFile, true);
-                this.output = new PrintWriter(fw);
-                logFiles.put(fileName, this.output);
+                logFiles.put(fileName, new PrintWriter(fw));
+                asyncLogFiles.remove(fileName);
+            }
+            // close the writer of the previous settings after the new one is in place
+            if (asyncOutput != null) {
+                asyncOutput.close();
+            }
+            if (output != null && queueSize > 0) {
+                logFiles.remove(fileName);
+                synchronized (output) {
+                    output.close();
+                }
             }
         }
     }
@@ -88,10 +149,18 @@ class FileRequestLog implements RequestLog {
      * @see org.apache.sling.engine.RequestLog#write(java.lang.String)
      */
     public void write(String message) {
-        // use a local copy of the reference to not encounter NPE when this
-        // log happens to be closed asynchronously while at the same time not
-        // requiring synchronization
-        PrintWriter writer = this.output;
+        if (closed) {
+            return;
+        }
+        final AsyncLogFileWriter asyncWriter = asyncLogFiles.get(fileName);
+        if (asyncWriter != null) {
+            asyncWriter.write(message);
+            return;
+        }
+
+        // use a local copy of the reference to not encounter NPE when the
+        // file happens to be closed asynchronously
+        PrintWriter writer = logFiles.get(fileName);
         if (writer != null) {
             synchronized (writer) {
                 writer.println(message);
@@ -101,7 +170,7 @@ class FileRequestLog implements RequestLog {
     }
 
     public void close() {
-        // just drop the reference to the output
-        this.output = null;
+        // just stop writing, the files are closed on dispose
+        this.closed = true;
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * This is a configuration printer for the web console which prints out the
+ * state of the request log files written asynchronously.
+ */
+public class FileRequestLogPrinter {
+
+    /**
+     * Print out the queue of each request log file.
+     * @see org.apache.felix.webconsole.ConfigurationPrinter#printConfiguration(java.io.PrintWriter)
+     */
+    public void printConfiguration(PrintWriter pw) {
+        pw.println("Current Apache Sling Request Log Files");
+        pw.println();
+        final List<AsyncLogFileWriter> files = FileRequestLog.getAsyncLogFiles();
+        if (files.isEmpty()) {
+            pw.println("No request log files are written asynchronously.");
+        }
+        for (final AsyncLogFileWriter file : files) {
+            pw.printf("%s: queued: %d of %d; overflow: %s; written: %d; dropped: %d%n",
+                file.getFile(), file.getQueueSize(), file.getCapacity(),
+                file.isBlocking() ? AsyncLogFileWriter.OVERFLOW_BLOCK : AsyncLogFileWriter.OVERFLOW_DROP,
+                file.getWrittenCount(), file.getDroppedCount());
+        }
+    }
+}
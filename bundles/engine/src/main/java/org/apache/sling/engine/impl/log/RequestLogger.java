@@ -19,11 +19,14 @@
 package org.apache.sling.engine.impl.log;
 
 import java.lang.annotation.Annotation;
+import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -103,6 +106,23 @@ public class RequestLogger {
         @AttributeDefinition(name = "Enable Access Log",
                 description = "Whether to enable Access logging or not.")
         boolean access_log_enabled() default true;
+
+        @AttributeDefinition(name = "File Queue Size",
+                description = "For logs of the \"File Name\" type, the number of log "+
+                     "entries queued for a background thread writing them to the file. If this "+
+                     "value is 0 or less, the entries are written by the request threads.")
+        int request_log_file_queue() default 0;
+
+        @AttributeDefinition(name = "File Queue Overflow",
+                description = "What to do with a log entry if the file queue is full. "+
+                     "\"Block\" lets the request wait for space in the queue, \"Drop\" drops "+
+                     "and counts the entry. The queue size and the dropped entries are shown on "+
+                     "the \"Request Log Files\" configuration status page.",
+                options = {
+                    @Option(label = "Block", value = AsyncLogFileWriter.OVERFLOW_BLOCK),
+                    @Option(label = "Drop", value = AsyncLogFileWriter.OVERFLOW_DROP)
+        })
+        String request_log_file_overflow() default AsyncLogFileWriter.OVERFLOW_BLOCK;
     }
 
     /**
@@ -130,6 +150,9 @@ public class RequestLogger {
      */
     private Map<ServiceRegistration, RequestLoggerService> services = new HashMap<>();
 
+    /** The configuration printer for the request log files */
+    private ServiceRegistration printerRegistration;
+
     // ---------- SCR Integration ----------------------------------------------
 
     @Activate
@@ -138,19 +161,32 @@ public class RequestLogger {
         // prepare the request loggers if a name is configured and the
         // request loggers are enabled
         if (config.request_log_output() != null && config.request_log_enabled()) {
-            createRequestLoggerService(services, bundleContext, true, REQUEST_LOG_ENTRY_FORMAT, config.request_log_output(), config.request_log_outputtype());
-            createRequestLoggerService(services, bundleContext, false, REQUEST_LOG_EXIT_FORMAT, config.request_log_output(), config.request_log_outputtype());
+            createRequestLoggerService(services, bundleContext, true, REQUEST_LOG_ENTRY_FORMAT, config.request_log_output(), config.request_log_outputtype(), config);
+            createRequestLoggerService(services, bundleContext, false, REQUEST_LOG_EXIT_FORMAT, config.request_log_output(), config.request_log_outputtype(), config);
         }
 
         // prepare the access logger if a name is configured and the
         // access logger is enabled
         if (config.access_log_output() != null && config.access_log_enabled()) {
-            createRequestLoggerService(services, bundleContext, false, ACCESS_LOG_FORMAT, config.access_log_output(), config.access_log_outputtype());
+            createRequestLoggerService(services, bundleContext, false, ACCESS_LOG_FORMAT, config.access_log_output(), config.access_log_outputtype(), config);
         }
+
+        final Dictionary<String, String> printerProps = new Hashtable<>();
+        printerProps.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Request Log Files Configuration Printer");
+        printerProps.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        printerProps.put("felix.webconsole.label", "slingrequestlogfiles");
+        printerProps.put("felix.webconsole.title", "Request Log Files");
+        printerProps.put("felix.webconsole.configprinter.modes", "always");
+        printerRegistration = bundleContext.registerService(FileRequestLogPrinter.class.getName(),
+            new FileRequestLogPrinter(), printerProps);
     }
 
     @Deactivate
     protected void deactivate() {
+        if (printerRegistration != null) {
+            printerRegistration.unregister();
+            printerRegistration = null;
+        }
         for (Entry<ServiceRegistration, RequestLoggerService> entry : services.entrySet()) {
             entry.getKey().unregister();
             entry.getValue().shutdown();
@@ -163,7 +199,8 @@ public class RequestLogger {
             final boolean onEntry,
             final String format,
             final String output,
-            final int outputType) {
+            final int outputType,
+            final Config config) {
         final RequestLoggerService service = new RequestLoggerService(bundleContext, new RequestLoggerService.Config() {
 
             @Override
@@ -190,6 +227,16 @@ public class RequestLogger {
             public String request_log_service_format() {
                 return format;
             }
+
+            @Override
+            public int request_log_service_file_queue() {
+                return config.request_log_file_queue();
+            }
+
+            @Override
+            public String request_log_service_file_overflow() {
+                return config.request_log_file_overflow();
+            }
         });
         final ServiceRegistration reg = bundleContext.registerService(service.getClass().getName(), service, null);
         services.put(reg, service);
@@ -83,6 +83,25 @@ public class RequestLoggerService {
                      "request exit (aka termination), which is the default for access logger type "+
                      "loggers.")
         boolean request_log_service_onentry() default false;
+
+        @AttributeDefinition(name = "File Queue Size",
+                description = "For the \"File Name\" logger type, the number of log "+
+                     "entries queued for a background thread writing them to the file. If this "+
+                     "value is 0 or less, the entries are written by the request threads. The "+
+                     "settings of the last logger opening a file apply to all loggers writing "+
+                     "to the file.")
+        int request_log_service_file_queue() default 0;
+
+        @AttributeDefinition(name = "File Queue Overflow",
+                description = "What to do with a log entry if the file queue is full. "+
+                     "\"Block\" lets the request wait for space in the queue, \"Drop\" drops "+
+                     "and counts the entry. The queue size and the dropped entries are shown on "+
+                     "the \"Request Log Files\" configuration status page.",
+                options = {
+                    @Option(label = "Block", value = AsyncLogFileWriter.OVERFLOW_BLOCK),
+                    @Option(label = "Drop", value = AsyncLogFileWriter.OVERFLOW_DROP)
+        })
+        String request_log_service_file_overflow() default AsyncLogFileWriter.OVERFLOW_BLOCK;
     }
 
 
@@ -122,7 +141,7 @@ public class RequestLoggerService {
         // where to log to
         final String output = configuration.request_log_service_output();
         if (output != null) {
-            this.log = this.getLog(bundleContext, output, configuration.request_log_service_outputtype());
+            this.log = this.getLog(bundleContext, output, configuration);
         }
     }
 
@@ -146,8 +165,8 @@ public class RequestLoggerService {
         return this.onEntry;
     }
 
-    private RequestLog getLog(BundleContext bundleContext, String output, int outputType) {
-        switch (outputType) {
+    private RequestLog getLog(BundleContext bundleContext, String output, Config configuration) {
+        switch (configuration.request_log_service_outputtype()) {
             case OUTPUT_TYPE_FILE:
                 // file logging
                 try {
@@ -161,7 +180,8 @@ public class RequestLoggerService {
                         file = file.getAbsoluteFile();
                     }
 
-                    return new FileRequestLog(file);
+                    return new FileRequestLog(file, configuration.request_log_service_file_queue(),
+                        configuration.request_log_service_file_overflow());
                 } catch (IOException ioe) {
                     // TODO: log
                 }
@@ -113,12 +113,20 @@ public class ParameterSupport {
      */
     private static boolean checkForAdditionalParameters = false;
 
+    /**
+     * The pool of direct buffers holding uploaded parts up to the file size
+     * threshold, <code>null</code> to use the <code>DiskFileItemFactory</code>.
+     */
+    private static UploadBufferPool uploadBufferPool = null;
+
     private final HttpServletRequest servletRequest;
 
     private ParameterMap postParameterMap;
 
     private boolean requestDataUsed;
 
+    private PooledFileItemFactory pooledFileItemFactory;
+
     /**
      * Returns the {@code ParameterSupport} instance supporting request
      * parameter for the give {@code request}. For a single request only a
@@ -153,14 +161,55 @@ public class ParameterSupport {
         return new ParameterSupportHttpServletRequestWrapper(request);
     }
 
+    /**
+     * Returns whether a {@code ParameterSupport} instance has already been
+     * created for the {@code request}.
+     *
+     * @param request The {@code HttpServletRequest} to check
+     * @return {@code true} if the request has a {@code ParameterSupport}
+     */
+    public static boolean hasInstance(final HttpServletRequest request) {
+        return request.getAttribute(ATTR_NAME) instanceof ParameterSupport;
+    }
+
+    /**
+     * Releases the resources held by the multipart parameters of the request
+     * once the request has been processed. Only parts kept in pooled upload
+     * buffers are released; parts created by the
+     * <code>DiskFileItemFactory</code> are left to be cleaned up as before.
+     * This is called by the {@link ParameterSupportRequestListener} for
+     * requests of the servlet container and by the request processor for
+     * requests processed through the <code>SlingRequestProcessor</code>.
+     *
+     * @param request The {@code HttpServletRequest} which has been processed
+     */
+    public static void dispose(final HttpServletRequest request) {
+        final Object instance = request.getAttribute(ATTR_NAME);
+        if (instance instanceof ParameterSupport) {
+            final ParameterSupport parameterSupport = (ParameterSupport) instance;
+            if (parameterSupport.pooledFileItemFactory != null) {
+                parameterSupport.pooledFileItemFactory.dispose();
+                parameterSupport.pooledFileItemFactory = null;
+            }
+        }
+    }
+
     static void configure(final long maxRequestSize, final String location, final long maxFileSize,
             final int fileSizeThreshold,
             final boolean checkForAdditionalParameters) {
+        configure(maxRequestSize, location, maxFileSize, fileSizeThreshold, checkForAdditionalParameters, -1);
+    }
+
+    static void configure(final long maxRequestSize, final String location, final long maxFileSize,
+            final int fileSizeThreshold,
+            final boolean checkForAdditionalParameters,
+            final long maxUploadMemory) {
         ParameterSupport.maxRequestSize = (maxRequestSize > 0) ? maxRequestSize : -1;
         ParameterSupport.location = (location != null) ? new File(location) : null;
         ParameterSupport.maxFileSize = (maxFileSize > 0) ? maxFileSize : -1;
         ParameterSupport.fileSizeThreshold = (fileSizeThreshold > 0) ? fileSizeThreshold : 256000;
         ParameterSupport.checkForAdditionalParameters = checkForAdditionalParameters;
+        ParameterSupport.uploadBufferPool = (maxUploadMemory > 0) ? new UploadBufferPool(maxUploadMemory) : null;
     }
 
     private ParameterSupport(HttpServletRequest servletRequest) {
@@ -382,8 +431,15 @@ public class ParameterSupport {
         ServletFileUpload upload = new ServletFileUpload();
         upload.setSizeMax(ParameterSupport.maxRequestSize);
         upload.setFileSizeMax(ParameterSupport.maxFileSize);
-        upload.setFileItemFactory(new DiskFileItemFactory(ParameterSupport.fileSizeThreshold,
-            ParameterSupport.location));
+        final UploadBufferPool pool = ParameterSupport.uploadBufferPool;
+        if (pool != null) {
+            this.pooledFileItemFactory = new PooledFileItemFactory(pool, ParameterSupport.fileSizeThreshold,
+                ParameterSupport.location);
+            upload.setFileItemFactory(this.pooledFileItemFactory);
+        } else {
+            upload.setFileItemFactory(new DiskFileItemFactory(ParameterSupport.fileSizeThreshold,
+                ParameterSupport.location));
+        }
 
         RequestContext rc = new ServletRequestContext(this.getServletRequest()) {
             @Override
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The <code>ParameterSupportRequestListener</code> releases the pooled
+ * upload buffers of a request once the servlet container is done with the
+ * request. This also covers asynchronous requests, which are still being
+ * processed when the servlet returns.
+ */
+public class ParameterSupportRequestListener implements ServletRequestListener {
+
+    @Override
+    public void requestInitialized(final ServletRequestEvent sre) {
+        // nothing to do
+    }
+
+    @Override
+    public void requestDestroyed(final ServletRequestEvent sre) {
+        if (sre.getServletRequest() instanceof HttpServletRequest) {
+            ParameterSupport.dispose((HttpServletRequest) sre.getServletRequest());
+        }
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemHeaders;
+import org.apache.commons.fileupload.ParameterParser;
+
+/**
+ * The <code>PooledFileItem</code> is a <code>FileItem</code> keeping the
+ * content of a part in direct buffers taken from an {@link UploadBufferPool}
+ * as long as the part does not exceed the size threshold. Larger parts, and
+ * parts for which the pool has no buffer left, are written to a temporary
+ * file through a file channel. Form fields are kept in heap buffers sized to
+ * their content instead of taking buffers from the pool.
+ * <p>
+ * The buffers are returned to the pool when the item is deleted. Reading
+ * the content of such an item afterwards fails, also through input streams
+ * opened before, as the buffers may already hold the content of another
+ * request. The temporary file is removed when the item is deleted, or, like
+ * for a <code>DiskFileItem</code>, when the item is garbage collected without
+ * having been deleted.
+ */
+class PooledFileItem implements FileItem {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The smallest heap buffer allocated for a form field */
+    private static final int MIN_HEAP_BUFFER_SIZE = 256;
+
+    /** The charset of text parts without charset parameter */
+    private static final String DEFAULT_CHARSET = "ISO-8859-1";
+
+    private final transient UploadBufferPool pool;
+
+    private final int sizeThreshold;
+
+    private final File repository;
+
+    private String fieldName;
+
+    private final String contentType;
+
+    private boolean formField;
+
+    private final String fileName;
+
+    private transient FileItemHeaders headers;
+
+    /** The filled buffers of the content kept in memory */
+    private final transient List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+    /** The file of the content written to disk */
+    private File spoolFile;
+
+    /** Removes the temporary file, <code>null</code> once it has been moved or deleted */
+    private transient TempFileCleaner cleaner;
+
+    private long size;
+
+    /** Set once buffers of the pool have been returned by deleting the item */
+    private volatile boolean released;
+
+    PooledFileItem(final UploadBufferPool pool, final int sizeThreshold, final File repository,
+            final String fieldName, final String contentType, final boolean formField, final String fileName) {
+        this.pool = pool;
+        this.sizeThreshold = sizeThreshold;
+        this.repository = repository;
+        this.fieldName = fieldName;
+        this.contentType = contentType;
+        this.formField = formField;
+        this.fileName = fileName;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        checkReleased();
+        if (spoolFile != null) {
+            return new FileInputStream(spoolFile);
+        }
+        return new BuffersInputStream(buffers);
+    }
+
+    private void checkReleased() throws IOException {
+        if (released) {
+            throw new IOException("Content of part " + fieldName + " has been released");
+        }
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getName() {
+        return fileName;
+    }
+
+    public boolean isInMemory() {
+        return spoolFile == null;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @throws IllegalStateException If the item has been deleted after its
+     *             content was read into buffers of the pool
+     */
+    public byte[] get() {
+        if (released) {
+            throw new IllegalStateException("Content of part " + fieldName + " has been released");
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Part " + fieldName + " is too large: " + size);
+        }
+        final byte[] content = new byte[(int) size];
+        int offset = 0;
+        try {
+            final InputStream in = getInputStream();
+            try {
+                int read;
+                while (offset < content.length
+                        && (read = in.read(content, offset, content.length - offset)) >= 0) {
+                    offset += read;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException ioe) {
+            if (released) {
+                throw new IllegalStateException(ioe.getMessage(), ioe);
+            }
+            return null;
+        }
+        return content;
+    }
+
+    public String getString(final String encoding) throws UnsupportedEncodingException {
+        return new String(get(), encoding);
+    }
+
+    public String getString() {
+        String charset = null;
+        if (contentType != null) {
+            final ParameterParser parser = new ParameterParser();
+            parser.setLowerCaseNames(true);
+            charset = parser.parse(contentType, ';').get("charset");
+        }
+        try {
+            return getString((charset != null) ? charset : DEFAULT_CHARSET);
+        } catch (UnsupportedEncodingException uee) {
+            return new String(get());
+        }
+    }
+
+    public void write(final File file) throws Exception {
+        if (cleaner != null && spoolFile.renameTo(file)) {
+            // the content is read from the new location from now on
+            spoolFile = file;
+            cleaner.cancel();
+            cleaner = null;
+            return;
+        }
+        final InputStream in = getInputStream();
+        try {
+            final OutputStream out = new FileOutputStream(file);
+            try {
+                final byte[] buffer = new byte[UploadBufferPool.BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the buffers to the pool and removes the temporary file. A
+     * file the content has been moved to by {@link #write(File)} is kept.
+     */
+    public void delete() {
+        if (releaseBuffers()) {
+            released = true;
+        }
+        if (cleaner != null) {
+            spoolFile.delete();
+            cleaner.cancel();
+            cleaner = null;
+        }
+    }
+
+    /**
+     * Returns the buffers of the pool, the heap buffers of a form field are
+     * kept as no other item can use them.
+     *
+     * @return <code>true</code> if buffers have been returned to the pool
+     */
+    private boolean releaseBuffers() {
+        if (buffers.isEmpty() || !buffers.get(0).isDirect()) {
+            return false;
+        }
+        for (final ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        buffers.clear();
+        return true;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public void setFieldName(final String name) {
+        this.fieldName = name;
+    }
+
+    public boolean isFormField() {
+        return formField;
+    }
+
+    public void setFormField(final boolean state) {
+        this.formField = state;
+    }
+
+    public OutputStream getOutputStream() throws IOException {
+        return new ItemOutputStream();
+    }
+
+    public FileItemHeaders getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(final FileItemHeaders headers) {
+        this.headers = headers;
+    }
+
+    @Override
+    public String toString() {
+        return "PooledFileItem: " + fieldName + " (" + size + " bytes"
+            + (spoolFile != null ? " in " + spoolFile : " in memory") + ")";
+    }
+
+    /**
+     * Receives the content of the part from the parser, filling buffers from
+     * the pool until the content exceeds the size threshold.
+     */
+    private class ItemOutputStream extends OutputStream {
+
+        private ByteBuffer current;
+
+        private FileChannel channel;
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            if (channel == null && size + len > sizeThreshold) {
+                spool();
+            }
+            size += len;
+            if (channel != null) {
+                final ByteBuffer src = ByteBuffer.wrap(b, off, len);
+                while (src.hasRemaining()) {
+                    channel.write(src);
+                }
+                return;
+            }
+
+            while (len > 0) {
+                if (current == null || !current.hasRemaining()) {
+                    if (formField) {
+                        current = ByteBuffer.allocate(Math.min(UploadBufferPool.BUFFER_SIZE,
+                            Math.max(len, MIN_HEAP_BUFFER_SIZE)));
+                    } else {
+                        current = pool.acquire();
+                    }
+                    if (current == null) {
+                        // no memory left, write this part to disk
+                        spool();
+                        final ByteBuffer src = ByteBuffer.wrap(b, off, len);
+                        while (src.hasRemaining()) {
+                            channel.write(src);
+                        }
+                        return;
+                    }
+                    buffers.add(current);
+                }
+                final int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Moves the content received so far from the buffers to a temporary
+         * file, to which the rest of the content is written.
+         */
+        private void spool() throws IOException {
+            spoolFile = File.createTempFile("upload_", ".tmp", repository);
+            cleaner = new TempFileCleaner(spoolFile);
+            channel = new FileOutputStream(spoolFile).getChannel();
+            for (final ByteBuffer buffer : buffers) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            // no stream has been opened while the content is received
+            releaseBuffers();
+            buffers.clear();
+            current = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Removes the temporary file of an item once it is garbage collected,
+     * in case the item is never deleted, for example because the request
+     * has not been completed. Only spooled items have a cleaner, so items
+     * kept in memory are not finalized.
+     */
+    private static final class TempFileCleaner {
+
+        private volatile File file;
+
+        TempFileCleaner(final File file) {
+            this.file = file;
+        }
+
+        void cancel() {
+            this.file = null;
+        }
+
+        @Override
+        protected void finalize() throws Throwable {
+            try {
+                final File f = this.file;
+                if (f != null) {
+                    f.delete();
+                }
+            } finally {
+                super.finalize();
+            }
+        }
+    }
+
+    /**
+     * Reads the content kept in the buffers without changing the buffers.
+     * Reads fail once the buffers have been returned to the pool, data read
+     * concurrently with returning them is discarded.
+     */
+    private class BuffersInputStream extends InputStream {
+
+        private final ByteBuffer[] buffers;
+
+        private int index;
+
+        BuffersInputStream(final List<ByteBuffer> buffers) {
+            this.buffers = new ByteBuffer[buffers.size()];
+            for (int i = 0; i < this.buffers.length; i++) {
+                // the buffers are positioned at the end of their content
+                final ByteBuffer buffer = buffers.get(i).duplicate();
+                buffer.flip();
+                this.buffers[i] = buffer;
+            }
+        }
+
+        private ByteBuffer next() {
+            while (index < buffers.length && !buffers[index].hasRemaining()) {
+                index++;
+            }
+            return (index < buffers.length) ? buffers[index] : null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkReleased();
+            final ByteBuffer buffer = next();
+            final int b = (buffer != null) ? buffer.get() & 0xff : -1;
+            checkReleased();
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            checkReleased();
+            if (len == 0) {
+                return 0;
+            }
+            final ByteBuffer buffer = next();
+            if (buffer == null) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            checkReleased();
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            checkReleased();
+            final ByteBuffer buffer = next();
+            return (buffer != null) ? buffer.remaining() : 0;
+        }
+    }
+}
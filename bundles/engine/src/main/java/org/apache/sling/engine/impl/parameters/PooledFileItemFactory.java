@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemFactory;
+
+/**
+ * The <code>PooledFileItemFactory</code> creates the {@link PooledFileItem}s
+ * of a single multipart request. It keeps track of the created items, such
+ * that their buffers can be returned to the pool once the request has been
+ * processed.
+ */
+class PooledFileItemFactory implements FileItemFactory {
+
+    private final UploadBufferPool pool;
+
+    private final int sizeThreshold;
+
+    private final File repository;
+
+    private final List<PooledFileItem> items = new ArrayList<PooledFileItem>();
+
+    /**
+     * @param pool The pool of buffers for the parts kept in memory
+     * @param sizeThreshold The size above which parts are written to disk
+     * @param repository The directory to write parts to, <code>null</code>
+     *            for the default temporary directory
+     */
+    PooledFileItemFactory(final UploadBufferPool pool, final int sizeThreshold, final File repository) {
+        this.pool = pool;
+        this.sizeThreshold = sizeThreshold;
+        this.repository = repository;
+    }
+
+    public FileItem createItem(final String fieldName, final String contentType, final boolean isFormField,
+            final String fileName) {
+        final PooledFileItem item = new PooledFileItem(pool, sizeThreshold, repository, fieldName, contentType,
+            isFormField, fileName);
+        items.add(item);
+        return item;
+    }
+
+    /**
+     * Deletes all items created by this factory, returning their buffers to
+     * the pool and removing their temporary files.
+     */
+    void dispose() {
+        for (final PooledFileItem item : items) {
+            item.delete();
+        }
+        items.clear();
+    }
+}
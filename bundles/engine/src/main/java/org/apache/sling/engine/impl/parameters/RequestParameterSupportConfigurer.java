@@ -68,6 +68,14 @@ public class RequestParameterSupportConfigurer {
                 description = "The size threshold after which the file will be written to disk. The default is 256KB.")
         int file_threshold() default 256000;
 
+        @AttributeDefinition(
+                name = "Upload Buffer Memory",
+                description = "The maximum amount of memory in bytes used at any time to keep uploaded parts not "
+                    + "exceeding the File Save Threshold in pooled direct buffers. If all memory is in use, parts "
+                    + "are written to disk right away. "
+                    + "The default is -1, which means parts are kept on the heap without a limit.")
+        long file_buffer_max() default -1;
+
         @AttributeDefinition(
                 name = "Maximum File Size",
                 description = "The maximum size allowed for uploaded files. The default is -1, which means unlimited.")
@@ -101,6 +109,7 @@ public class RequestParameterSupportConfigurer {
         final String fileLocation = getFileLocation(config.file_location());
         final long maxFileSize = config.file_max();
         final int fileSizeThreshold = config.file_threshold();
+        final long maxUploadMemory = config.file_buffer_max();
         final boolean checkAddParameters = config.sling_default_parameter_checkForAdditionalContainerParameters();
 
         if (log.isInfoEnabled()) {
@@ -110,13 +119,14 @@ public class RequestParameterSupportConfigurer {
             log.info("Temporary File Location: {}", fileLocation);
             log.info("Maximum File Size: {}", maxFileSize);
             log.info("Tempory File Creation Threshold: {}", fileSizeThreshold);
+            log.info("Upload Buffer Memory: {}", (maxUploadMemory > 0) ? maxUploadMemory : "unpooled");
             log.info("Check for additional container parameters: {}", checkAddParameters);
         }
 
         Util.setDefaultFixEncoding(fixEncoding);
         ParameterMap.setMaxParameters(maxParams);
         ParameterSupport.configure(maxRequestSize, fileLocation, maxFileSize,
-                fileSizeThreshold, checkAddParameters);
+                fileSizeThreshold, checkAddParameters, maxUploadMemory);
     }
 
     private String getFileLocation(String fileLocation) {
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The <code>UploadBufferPool</code> provides direct buffers of
+ * {@link #BUFFER_SIZE} bytes to hold uploaded parts in memory. The total
+ * memory of the buffers handed out is capped: if all buffers are in use, no
+ * buffer is returned and the part is written to disk instead of waiting for
+ * other requests. Released buffers are kept for being reused by later
+ * requests.
+ */
+class UploadBufferPool {
+
+    /** The size of each buffer */
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    private final int maxBuffers;
+
+    private final Semaphore available;
+
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * @param maxMemory The maximum number of bytes of all buffers in use, at
+     *            least one buffer is always available
+     */
+    UploadBufferPool(final long maxMemory) {
+        this.maxBuffers = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxMemory / BUFFER_SIZE));
+        this.available = new Semaphore(this.maxBuffers);
+    }
+
+    /**
+     * Returns a cleared buffer.
+     *
+     * @return The buffer or <code>null</code> if all buffers are in use
+     */
+    ByteBuffer acquire() {
+        if (!available.tryAcquire()) {
+            return null;
+        }
+
+        final ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            buffer.clear();
+            return buffer;
+        }
+        return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Returns a buffer acquired from this pool.
+     */
+    void release(final ByteBuffer buffer) {
+        free.offer(buffer);
+        available.release();
+    }
+
+    /** The maximum number of bytes of all buffers in use */
+    long getMaxMemory() {
+        return (long) maxBuffers * BUFFER_SIZE;
+    }
+
+    /** The number of bytes of the buffers in use */
+    long getMemoryInUse() {
+        return (long) (maxBuffers - available.availablePermits()) * BUFFER_SIZE;
+    }
+}
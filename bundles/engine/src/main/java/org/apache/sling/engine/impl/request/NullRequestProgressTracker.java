@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.request;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.apache.sling.api.request.RequestProgressTracker;
+
+/**
+ * The <code>NullRequestProgressTracker</code> is the request progress
+ * tracker of requests which are not sampled for tracking. It records
+ * nothing and has no state, so a single instance is shared by all these
+ * requests.
+ */
+public final class NullRequestProgressTracker implements RequestProgressTracker {
+
+    /** The shared instance */
+    public static final NullRequestProgressTracker INSTANCE = new NullRequestProgressTracker();
+
+    private NullRequestProgressTracker() {
+    }
+
+    public void log(String message) {
+        // not tracked
+    }
+
+    public void log(String format, Object... args) {
+        // not tracked
+    }
+
+    public void startTimer(String timerName) {
+        // not tracked
+    }
+
+    public void logTimer(String timerName) {
+        // not tracked
+    }
+
+    public void logTimer(String timerName, String format, Object... args) {
+        // not tracked
+    }
+
+    public Iterator<String> getMessages() {
+        return Collections.<String> emptyList().iterator();
+    }
+
+    public void dump(PrintWriter writer) {
+        // nothing tracked
+    }
+
+    public void done() {
+        // not tracked
+    }
+}
@@ -126,7 +126,8 @@ public class RequestHistoryConsolePlugin {
         }
 
         private void addRequest(SlingHttpServletRequest r) {
-            if (requests != null) {
+            // requests not sampled for tracking have nothing to show
+            if (requests != null && !(r.getRequestProgressTracker() instanceof NullRequestProgressTracker)) {
                 String requestPath = r.getPathInfo();
                 boolean accept = true;
                 if (storePatterns != null && storePatterns.size() > 0) {
@@ -19,11 +19,14 @@
 package org.apache.sling.engine.impl.request;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -89,6 +92,16 @@ import org.apache.sling.api.request.RequestProgressTracker;
  * <li>The absolute time of the timer in parenthesis.
  * <li>The entry message
  * </ol>
+ * <p>
+ * <b>Recording Entries</b>
+ * <p>
+ * The entries are recorded as records of primitive values in arrays: the
+ * type, the time stamp, the message template or timer name and the
+ * arguments of the message. Messages are only formatted when the entries
+ * are read through {@link #getMessages()} or {@link #dump(PrintWriter)}.
+ * Arguments which are not strings, number wrappers like <code>Integer</code>,
+ * booleans, characters, enums or dates are converted to strings when logged,
+ * so their value at that time is recorded and the objects are not retained.
  */
 public class SlingRequestProgressTracker implements RequestProgressTracker {
 
@@ -107,9 +120,27 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
     /** TIMER_END format explanation */
     private static final String TIMER_END_FORMAT = "{<elapsed microseconds>,<timer name>} <optional message>";
 
+    /** The comment entered on creation and {@link #reset()} */
+    private static final String TIMER_END_COMMENT = "timer_end format is " + TIMER_END_FORMAT;
+
     /** The leading nanosecond number is left-padded with white-space to this width. */
     private static final int PADDING_WIDTH = 7;
 
+    /** The initial number of entries for which space is allocated. */
+    private static final int INITIAL_CAPACITY = 32;
+
+    /** Entry type of comments */
+    private static final byte TYPE_COMMENT = 0;
+
+    /** Entry type of log messages */
+    private static final byte TYPE_LOG = 1;
+
+    /** Entry type of started timers */
+    private static final byte TYPE_TIMER_START = 2;
+
+    /** Entry type of logged timers */
+    private static final byte TYPE_TIMER_END = 3;
+
     /**
      * The system time at creation of this instance or the last {@link #reset()}.
      */
@@ -120,18 +151,33 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      */
     private long processingEnd;
 
-    /**
-     * The list of tracking entries.
-     */
-    private final List<TrackingEntry> entries = new ArrayList<TrackingEntry>();
+    /** The number of entries. */
+    private int size;
+
+    /** The types of the entries. */
+    private byte[] types = new byte[INITIAL_CAPACITY];
+
+    /** The creation time stamps of the entries. */
+    private long[] timeStamps = new long[INITIAL_CAPACITY];
+
+    /** The start time of the timer of a timer end entry. */
+    private long[] timerStarts = new long[INITIAL_CAPACITY];
+
+    /** The timer names of timer entries. */
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    /** The message templates of the entries, <code>null</code> if none. */
+    private String[] templates = new String[INITIAL_CAPACITY];
+
+    /** The arguments of the message templates, <code>null</code> if none. */
+    private Object[][] arguments = new Object[INITIAL_CAPACITY][];
+
     /**
      * Map of named timers indexed by timer name storing the system time of
      * start of the respective timer.
      */
     private final Map<String, Long> namedTimerEntries = new HashMap<String, Long>();
 
-    private final FastMessageFormat messageFormat = new FastMessageFormat();
-
     /**
      * Creates a new request progress tracker.
      */
@@ -155,14 +201,17 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      */
     public void reset() {
         // remove all entries
-        entries.clear();
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(templates, 0, size, null);
+        Arrays.fill(arguments, 0, size, null);
+        size = 0;
         namedTimerEntries.clear();
 
         // enter initial messages
         processingStart = startTimerInternal(REQUEST_PROCESSING_TIMER);
         processingEnd = -1;
 
-        entries.add(new TrackingEntry(COMMENT_PREFIX + "timer_end format is " + TIMER_END_FORMAT));
+        add(TYPE_COMMENT, System.nanoTime(), 0, null, TIMER_END_COMMENT, null);
     }
 
     /**
@@ -170,17 +219,21 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      */
     public Iterator<String> getMessages() {
         return new Iterator<String>() {
-            private final Iterator<TrackingEntry> entryIter = entries.iterator();
+            private final FastMessageFormat messageFormat = new FastMessageFormat();
+
+            private int index;
 
             public boolean hasNext() {
-                return entryIter.hasNext();
+                return index < size;
             }
 
             public String next() {
-                // throws NoSuchElementException if no entries any more
-                final TrackingEntry entry = entryIter.next();
-                final long offset = entry.getTimeStamp() - getTimeStamp();
-                return formatMessage(offset, entry.getMessage());
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                final int entry = index++;
+                final long offset = timeStamps[entry] - getTimeStamp();
+                return formatMessage(offset, getMessage(entry, messageFormat));
             }
 
             public void remove() {
@@ -189,6 +242,35 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
         };
     }
 
+    /**
+     * Formats the message of the entry.
+     */
+    private String getMessage(final int entry, final FastMessageFormat messageFormat) {
+        final String template = templates[entry];
+        final Object[] args = arguments[entry];
+        final String message = (args == null) ? template : messageFormat.format(template, args);
+        switch (types[entry]) {
+            case TYPE_COMMENT:
+                return COMMENT_PREFIX + message;
+            case TYPE_LOG:
+                return LOG_PREFIX + message;
+            case TYPE_TIMER_START:
+                return "TIMER_START{" + names[entry] + "}";
+            default:
+                final StringBuilder sb = new StringBuilder();
+                sb.append("TIMER_END{");
+                sb.append((timeStamps[entry] - timerStarts[entry]) / 1000);
+                sb.append(',');
+                sb.append(names[entry]);
+                sb.append('}');
+                if (message != null) {
+                    sb.append(' ');
+                    sb.append(message);
+                }
+                return sb.toString();
+        }
+    }
+
     private String formatMessage(long offset, String message) {
         // Set exact length to avoid array copies within StringBuilder
         final StringBuilder sb = new StringBuilder(PADDING_WIDTH + 1 +  message.length() + 1);
@@ -218,13 +300,12 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
 
     /** Creates an entry with the given message. */
     public void log(String message) {
-        entries.add(new TrackingEntry(LOG_PREFIX + message));
+        add(TYPE_LOG, System.nanoTime(), 0, null, message, null);
     }
 
     /** Creates an entry with the given entry tag and message */
     public void log(String format, Object... args) {
-        String message = messageFormat.format(format, args);
-        entries.add(new TrackingEntry(LOG_PREFIX + message));
+        add(TYPE_LOG, System.nanoTime(), 0, null, format, snapshot(args));
     }
 
     /**
@@ -245,7 +326,7 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
     private long startTimerInternal(String name) {
         long timer = System.nanoTime();
         namedTimerEntries.put(name, timer);
-        entries.add(new TrackingEntry(timer, "TIMER_START{" + name + "}"));
+        add(TYPE_TIMER_START, timer, 0, name, null, null);
         return timer;
     }
 
@@ -253,8 +334,9 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      * Log a timer entry, including start, end and elapsed time.
      */
     public void logTimer(String name) {
-        if (namedTimerEntries.containsKey(name)) {
-            logTimerInternal(name, null, namedTimerEntries.get(name));
+        final Long startTime = namedTimerEntries.get(name);
+        if (startTime != null) {
+            add(TYPE_TIMER_END, System.nanoTime(), startTime, name, null, null);
         }
     }
 
@@ -262,28 +344,12 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      * Log a timer entry, including start, end and elapsed time.
      */
     public void logTimer(String name, String format, Object... args) {
-        if (namedTimerEntries.containsKey(name)) {
-            logTimerInternal(name, messageFormat.format(format, args), namedTimerEntries.get(name));
+        final Long startTime = namedTimerEntries.get(name);
+        if (startTime != null) {
+            add(TYPE_TIMER_END, System.nanoTime(), startTime, name, format, snapshot(args));
         }
     }
 
-    /**
-     * Log a timer entry, including start, end and elapsed time using TIMER_END_FORMAT
-     */
-    private void logTimerInternal(String name, String msg, long startTime) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("TIMER_END{");
-        sb.append((System.nanoTime() - startTime) / 1000);
-        sb.append(',');
-        sb.append(name);
-        sb.append('}');
-        if(msg != null) {
-            sb.append(' ');
-            sb.append(msg);
-        }
-        entries.add(new TrackingEntry(sb.toString()));
-    }
-
     public void done() {
         if(processingEnd != -1) return;
         logTimer(REQUEST_PROCESSING_TIMER, REQUEST_PROCESSING_TIMER);
@@ -301,31 +367,58 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
         return System.nanoTime() - processingStart;
     }
 
-    /** Process tracker entry keeping timestamp, tag and message */
-    private static class TrackingEntry {
-
-        // creation time stamp
-        private final long timeStamp;
-
-        // tracking message
-        private final String message;
-
-        TrackingEntry(String message) {
-            this.timeStamp = System.nanoTime();
-            this.message = message;
+    /** Records an entry, growing the arrays if needed. */
+    private void add(final byte type, final long timeStamp, final long timerStart, final String name,
+            final String template, final Object[] args) {
+        if (size == types.length) {
+            final int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            timeStamps = Arrays.copyOf(timeStamps, capacity);
+            timerStarts = Arrays.copyOf(timerStarts, capacity);
+            names = Arrays.copyOf(names, capacity);
+            templates = Arrays.copyOf(templates, capacity);
+            arguments = Arrays.copyOf(arguments, capacity);
         }
+        types[size] = type;
+        timeStamps[size] = timeStamp;
+        timerStarts[size] = timerStart;
+        names[size] = name;
+        templates[size] = template;
+        arguments[size] = args;
+        size++;
+    }
 
-        TrackingEntry(long timeStamp, String message) {
-            this.timeStamp = timeStamp;
-            this.message = message;
+    /**
+     * Returns the arguments, with the arguments of other than value types
+     * converted to strings. The array is only copied if an argument is
+     * converted.
+     */
+    private static Object[] snapshot(final Object[] args) {
+        if (args == null) {
+            return null;
         }
-
-        long getTimeStamp() {
-            return timeStamp;
+        Object[] result = args;
+        for (int i = 0; i < args.length; i++) {
+            final Object arg = args[i];
+            if (arg != null && !isValue(arg)) {
+                if (result == args) {
+                    result = args.clone();
+                }
+                result[i] = (arg instanceof Date) ? new Date(((Date) arg).getTime()) : String.valueOf(arg);
+            }
         }
+        return result;
+    }
 
-        String getMessage() {
-            return message;
-        }
+    /**
+     * Whether the argument is immutable and can be kept until the message is
+     * formatted. Other numbers, like <code>AtomicInteger</code>, might change.
+     */
+    private static boolean isValue(final Object arg) {
+        final Class<?> type = arg.getClass();
+        return type == String.class || type == Integer.class || type == Long.class
+            || type == Double.class || type == Float.class || type == Short.class
+            || type == Byte.class || type == BigInteger.class || type == BigDecimal.class
+            || type == Boolean.class || type == Character.class || arg instanceof Enum;
     }
 }
@@ -42,6 +42,46 @@ public interface FilterProcessorMBean {
      */
     double getMeanFilterDurationMsec();
 
+    /**
+     * Returns the median filter invocation time in milliseconds since
+     * resetting the statistics.
+     *
+     * @return Get the 50th percentile of the filter duration
+     * @see #resetStatistics()
+     * @since 1.2.0
+     */
+    double getFilterDurationPercentile50Msec();
+
+    /**
+     * Returns the filter invocation time in milliseconds which 99% of the
+     * invocations since resetting the statistics did not exceed.
+     *
+     * @return Get the 99th percentile of the filter duration
+     * @see #resetStatistics()
+     * @since 1.2.0
+     */
+    double getFilterDurationPercentile99Msec();
+
+    /**
+     * Returns the filter invocation time in milliseconds which 99.9% of the
+     * invocations since resetting the statistics did not exceed.
+     *
+     * @return Get the 99.9th percentile of the filter duration
+     * @see #resetStatistics()
+     * @since 1.2.0
+     */
+    double getFilterDurationPercentile999Msec();
+
+    /**
+     * Returns the longest filter invocation time in milliseconds since
+     * resetting the statistics.
+     *
+     * @return Get the maximum filter duration
+     * @see #resetStatistics()
+     * @since 1.2.0
+     */
+    double getMaxFilterDurationMsec();
+
     /**
      * Resets all statistics values and restarts from zero.
      */
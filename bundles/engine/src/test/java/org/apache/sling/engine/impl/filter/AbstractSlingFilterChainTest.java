@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.request.RequestPathInfo;
+import org.apache.sling.api.wrappers.SlingHttpServletRequestWrapper;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.engine.impl.SlingHttpServletRequestImpl;
+import org.apache.sling.engine.impl.SlingHttpServletResponseImpl;
+import org.apache.sling.engine.impl.request.ContentData;
+import org.apache.sling.engine.impl.request.RequestData;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Tests the selection of the filters while running a filter chain.
+ */
+public class AbstractSlingFilterChainTest {
+
+    private final List<String> calls = new ArrayList<String>();
+
+    // whether the wrapping filter wraps the request
+    private boolean wrapRequest;
+
+    private SlingHttpServletRequest request;
+
+    private SlingHttpServletResponse response;
+
+    private SlingFilterChainHelper chain;
+
+    private Mockery context;
+
+    @Before
+    public void setup() {
+        context = new Mockery() {{
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }};
+        final HttpServletRequest req = context.mock(HttpServletRequest.class);
+        final HttpServletResponse resp = context.mock(HttpServletResponse.class);
+        final ContentData contentData = context.mock(ContentData.class);
+        final RequestPathInfo pathInfo = context.mock(RequestPathInfo.class);
+        context.checking(new Expectations() {{
+            allowing(req).getServletPath(); will(returnValue(""));
+            allowing(req).getPathInfo(); will(returnValue("/apps/a.html"));
+            allowing(req).getMethod(); will(returnValue("GET"));
+            allowing(req).getAttribute(with(any(String.class))); will(returnValue(null));
+            allowing(contentData).getRequestPathInfo(); will(returnValue(pathInfo));
+            allowing(pathInfo).getExtension(); will(returnValue("html"));
+            allowing(pathInfo).getSelectors(); will(returnValue(new String[0]));
+        }});
+
+        final RequestData requestData = new RequestData(null, req, resp) {
+            @Override
+            public ContentData getContentData() {
+                return contentData;
+            }
+        };
+        request = new SlingHttpServletRequestImpl(requestData, req);
+        response = new SlingHttpServletResponseImpl(requestData, resp);
+
+        chain = new SlingFilterChainHelper();
+        chain.addFilterWithPredicate(new RecordingFilter("apps", false), "apps",
+            new FilterPredicate("/apps/.*", null, null, null, null), 1L, 40, "apps", null);
+        chain.addFilterWithPredicate(new RecordingFilter("wrap", true), "wrap",
+            new FilterPredicate(null, null, null, null, null), 2L, 30, "wrap", null);
+        chain.addFilterWithPredicate(new RecordingFilter("apps2", false), "apps2",
+            new FilterPredicate("/apps/.*", null, null, null, null), 3L, 20, "apps2", null);
+        chain.addFilterWithPredicate(new RecordingFilter("content", false), "content",
+            new FilterPredicate("/content/.*", null, null, null, null), 4L, 10, "content", null);
+    }
+
+    @Test public void testSelectedFilters() throws Exception {
+        run(chain.getDispatchTable(), false);
+        assertEquals(Arrays.asList("apps", "wrap", "apps2", "render /apps/a.html"), calls);
+    }
+
+    @Test public void testWrappedRequest() throws Exception {
+        // the filters following the wrapping filter are selected against
+        // the wrapped request
+        run(chain.getDispatchTable(), true);
+        assertEquals(Arrays.asList("apps", "wrap", "content", "render /content/a.html"), calls);
+    }
+
+    @Test public void testSlowFiltersReported() throws Exception {
+        final BundleContext bundleContext = context.mock(BundleContext.class);
+        final org.osgi.framework.Filter osgiFilter = context.mock(org.osgi.framework.Filter.class);
+        final MetricsService metricsService = context.mock(MetricsService.class);
+        final Histogram histogram = context.mock(Histogram.class);
+        final Counter counter = context.mock(Counter.class);
+        context.checking(new Expectations() {{
+            allowing(bundleContext).createFilter(with(any(String.class))); will(returnValue(osgiFilter));
+            exactly(3).of(metricsService).histogram(with(any(String.class))); will(returnValue(histogram));
+            exactly(3).of(metricsService).counter(with(any(String.class))); will(returnValue(counter));
+            exactly(6).of(histogram).update(with(any(Long.class)));
+            exactly(6).of(counter).increment();
+        }});
+        final List<String> slow = new ArrayList<String>();
+        chain.setReporter(new FilterReporter(bundleContext) {
+            @Override
+            int getMetricsTrackingCount() {
+                return 1;
+            }
+
+            @Override
+            FilterMetrics createMetrics(final FilterHandle filter) {
+                return new FilterMetrics(metricsService, "request", filter.getName());
+            }
+
+            @Override
+            boolean slowFilter(final FilterHandle filter, final long nanos, final String path) {
+                slow.add(filter.getName() + " " + path);
+                return true;
+            }
+        });
+        chain.setSlowFilterThreshold(1);
+
+        // the metrics are only registered once per metrics service
+        run(chain.getDispatchTable(), false);
+        run(chain.getDispatchTable(), false);
+        Collections.sort(slow);
+        assertEquals(Arrays.asList("apps /apps/a.html", "apps /apps/a.html", "apps2 /apps/a.html",
+            "apps2 /apps/a.html", "wrap /apps/a.html", "wrap /apps/a.html"), slow);
+        context.assertIsSatisfied();
+    }
+
+    private void run(final FilterDispatchTable table, final boolean wrap) throws Exception {
+        wrapRequest = wrap;
+        new AbstractSlingFilterChain(table.getFilters(), table.select(request)) {
+            @Override
+            protected void render(SlingHttpServletRequest request, SlingHttpServletResponse response) {
+                calls.add("render " + request.getPathInfo());
+            }
+        }.doFilter(request, response);
+    }
+
+    private class RecordingFilter implements Filter {
+
+        private final String name;
+
+        private final boolean wrap;
+
+        RecordingFilter(final String name, final boolean wrap) {
+            this.name = name;
+            this.wrap = wrap;
+        }
+
+        public void init(FilterConfig filterConfig) {
+        }
+
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            calls.add(name);
+            if (wrap && wrapRequest) {
+                request = new SlingHttpServletRequestWrapper((SlingHttpServletRequest) request) {
+                    @Override
+                    public String getPathInfo() {
+                        return "/content/a.html";
+                    }
+                };
+            }
+            chain.doFilter(request, response);
+        }
+
+        public void destroy() {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final long value = random.nextLong() >>> (24 + random.nextInt(40));
+            final int bucket = LatencyHistogram.bucket(value);
+            final long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue(value + " <= " + upper, value <= upper);
+            // at most a sixteenth above the value
+            assertTrue(value + " ~ " + upper, upper - value <= value / LatencyHistogram.SUB_BUCKETS);
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000L, histogram.getMax());
+        assertEquals(500500d, histogram.getMean(), 0.1);
+        assertNear(500000L, histogram.getValueAtPercentile(50));
+        assertNear(990000L, histogram.getValueAtPercentile(99));
+        assertNear(999000L, histogram.getValueAtPercentile(99.9));
+        assertEquals(1000000L, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testOutOfRange() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    private void assertNear(final long expected, final long actual) {
+        assertTrue(expected + " ~ " + actual,
+            actual >= expected && actual - expected <= expected / LatencyHistogram.SUB_BUCKETS);
+    }
+}
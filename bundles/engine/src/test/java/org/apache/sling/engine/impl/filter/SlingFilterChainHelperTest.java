@@ -17,9 +17,17 @@
 package org.apache.sling.engine.impl.filter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.servlet.Filter;
 
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestPathInfo;
+import org.apache.sling.api.resource.Resource;
+import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -50,4 +58,85 @@ public class SlingFilterChainHelperTest {
         assertEquals("3:-100", entries[3].getOrderSource());
         assertEquals("4:-1000", entries[4].getOrderSource());
     }
+
+    @Test public void testUnconditionalDispatch() {
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+        chain.addFilter(context.mock(Filter.class, "A"), null, 1L, 0, "A", null);
+        chain.addFilter(context.mock(Filter.class, "B"), "", 2L, 0, "B", null);
+
+        // no request properties are looked at
+        final SlingHttpServletRequest request = context.mock(SlingHttpServletRequest.class);
+        final FilterDispatchTable table = chain.getDispatchTable();
+        assertSame(chain.getFilters(), table.getFilters());
+        assertEquals(2, getFilters(table, request).size());
+        // all filters apply, the shared bit set is returned
+        assertSame(table.select(request), table.select(request));
+    }
+
+    @Test public void testDispatch() {
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+        // more than 64 filters applying to all requests
+        for (int i = 0; i < 70; i++) {
+            chain.addFilter(context.mock(Filter.class, "any" + i), null, (long) i, 100 - i, "any" + i, null);
+        }
+        chain.addFilterWithPredicate(context.mock(Filter.class, "json"),
+            new FilterPredicate(null, new String[] {"json"}, null, null, null), 100L, -10, "json", null);
+        chain.addFilterWithPredicate(context.mock(Filter.class, "tidyPost"),
+            new FilterPredicate(null, null, new String[] {"tidy", "infinity"}, new String[] {"post"}, null),
+            101L, -20, "tidyPost", null);
+        chain.addFilterWithPredicate(context.mock(Filter.class, "content"),
+            new FilterPredicate("/content/.*", null, null, null, null), 102L, -30, "content", null);
+        chain.addFilterWithPredicate(context.mock(Filter.class, "page"),
+            new FilterPredicate(null, new String[] {"html", "json"}, null, null, new String[] {"sample/page"}),
+            103L, -40, "page", null);
+
+        assertDispatch(chain, "GET", "/content/a.json", "json", null, false, "json", "content");
+        assertDispatch(chain, "POST", "/apps/a.tidy.json", "json", new String[] {"tidy"}, false, "json", "tidyPost");
+        assertDispatch(chain, "GET", "/apps/a.tidy.json", "json", new String[] {"tidy"}, false, "json");
+        assertDispatch(chain, "post", "/content/a.html", "html", new String[] {"1", "infinity"}, true,
+            "tidyPost", "content", "page");
+        assertDispatch(chain, "GET", null, null, null, true);
+    }
+
+    private void assertDispatch(final SlingFilterChainHelper chain, final String method, final String path,
+            final String extension, final String[] selectors, final boolean isPage, final String... expected) {
+        final String name = method + " " + path + " " + isPage;
+        final SlingHttpServletRequest request = context.mock(SlingHttpServletRequest.class, name);
+        final RequestPathInfo pathInfo = context.mock(RequestPathInfo.class, "pathInfo " + name);
+        final Resource resource = context.mock(Resource.class, "resource " + name);
+        context.checking(new Expectations() {{
+            allowing(request).getMethod(); will(returnValue(method));
+            allowing(request).getPathInfo(); will(returnValue(path));
+            allowing(request).getRequestPathInfo(); will(returnValue(pathInfo));
+            allowing(request).getResource(); will(returnValue(resource));
+            allowing(pathInfo).getExtension(); will(returnValue(extension));
+            allowing(pathInfo).getSelectors(); will(returnValue(selectors));
+            allowing(resource).isResourceType("sample/page"); will(returnValue(isPage));
+        }});
+
+        final List<FilterHandle> filters = getFilters(chain.getDispatchTable(), request);
+        assertEquals(name, 70 + expected.length, filters.size());
+        for (int i = 0; i < 70; i++) {
+            assertEquals("any" + i, filters.get(i).getOrderSource());
+        }
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(name, expected[i], filters.get(70 + i).getOrderSource());
+            assertEquals(name, true, filters.get(70 + i).select(request));
+        }
+    }
+
+    /**
+     * Returns the filters selected for the request, in calling order.
+     */
+    private List<FilterHandle> getFilters(final FilterDispatchTable table, final SlingHttpServletRequest request) {
+        final FilterHandle[] all = table.getFilters();
+        final long[] selected = table.select(request);
+        final List<FilterHandle> filters = new ArrayList<FilterHandle>();
+        for (int i = 0; i < all.length; i++) {
+            if ((selected[i >>> 6] & (1L << i)) != 0) {
+                filters.add(all[i]);
+            }
+        }
+        return filters;
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncLogFileWriterTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("request", ".log");
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    private List<String> readLines() throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void testWriteBlocking() throws IOException {
+        final AsyncLogFileWriter writer = new AsyncLogFileWriter(file, 4, AsyncLogFileWriter.OVERFLOW_BLOCK);
+        final List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add("GET /content/page" + i + ".html HTTP/1.1 200");
+        }
+        // longer than the buffer
+        final char[] longLine = new char[100 * 1024];
+        Arrays.fill(longLine, 'x');
+        expected.add(new String(longLine));
+        for (final String line : expected) {
+            writer.write(line);
+        }
+        writer.close();
+
+        assertEquals(expected, readLines());
+        assertEquals(expected.size(), writer.getWrittenCount());
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(0, writer.getQueueSize());
+    }
+
+    @Test
+    public void testWriteDropping() throws IOException {
+        final AsyncLogFileWriter writer = new AsyncLogFileWriter(file, 1, AsyncLogFileWriter.OVERFLOW_DROP);
+        for (int i = 0; i < 1000; i++) {
+            writer.write("line " + i);
+        }
+        writer.close();
+
+        final List<String> lines = readLines();
+        assertEquals(lines.size(), writer.getWrittenCount());
+        assertEquals(1000, writer.getWrittenCount() + writer.getDroppedCount());
+    }
+
+    @Test
+    public void testWriteAfterClose() throws IOException {
+        final AsyncLogFileWriter writer = new AsyncLogFileWriter(file, 1, AsyncLogFileWriter.OVERFLOW_BLOCK);
+        writer.write("first");
+        writer.close();
+        // the writer is closed, the lines are dropped
+        assertFalse(writer.write("second"));
+        assertFalse(writer.write("third"));
+        assertEquals(Arrays.asList("first"), readLines());
+        assertEquals(1, writer.getWrittenCount());
+        assertEquals(2, writer.getDroppedCount());
+        assertEquals(0, writer.getQueueSize());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileRequestLogTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("request", ".log");
+    }
+
+    @After
+    public void cleanup() {
+        FileRequestLog.dispose();
+        file.delete();
+    }
+
+    @Test
+    public void testSettingsChange() throws IOException {
+        final FileRequestLog first = new FileRequestLog(file, 4, AsyncLogFileWriter.OVERFLOW_BLOCK);
+        first.write("first");
+        final AsyncLogFileWriter blocking = FileRequestLog.getAsyncLogFiles().get(0);
+        assertTrue(blocking.isBlocking());
+
+        // the same settings share the writer
+        new FileRequestLog(file, 4, AsyncLogFileWriter.OVERFLOW_BLOCK);
+        assertEquals(1, FileRequestLog.getAsyncLogFiles().size());
+        assertTrue(FileRequestLog.getAsyncLogFiles().get(0) == blocking);
+
+        // other settings reopen the file, for all logs sharing it
+        final FileRequestLog second = new FileRequestLog(file, 8, AsyncLogFileWriter.OVERFLOW_DROP);
+        final List<AsyncLogFileWriter> writers = FileRequestLog.getAsyncLogFiles();
+        assertEquals(1, writers.size());
+        final AsyncLogFileWriter dropping = writers.get(0);
+        assertEquals(8, dropping.getCapacity());
+        assertFalse(dropping.isBlocking());
+        assertEquals(1, blocking.getWrittenCount());
+
+        first.write("second");
+        second.write("third");
+        FileRequestLog.dispose();
+        assertEquals(2, dropping.getWrittenCount());
+
+        // synchronous writing closes the asynchronous writer
+        final FileRequestLog sync = new FileRequestLog(file, 0, AsyncLogFileWriter.OVERFLOW_BLOCK);
+        new FileRequestLog(file, 8, AsyncLogFileWriter.OVERFLOW_DROP);
+        new FileRequestLog(file, 0, AsyncLogFileWriter.OVERFLOW_BLOCK);
+        assertTrue(FileRequestLog.getAsyncLogFiles().isEmpty());
+        sync.write("fourth");
+    }
+
+    @Test
+    public void testWriteAfterClose() throws IOException {
+        final FileRequestLog log = new FileRequestLog(file, 4, AsyncLogFileWriter.OVERFLOW_BLOCK);
+        final AsyncLogFileWriter writer = FileRequestLog.getAsyncLogFiles().get(0);
+        log.write("first");
+        log.close();
+        log.write("second");
+        FileRequestLog.dispose();
+        assertEquals(1, writer.getWrittenCount());
+    }
+}
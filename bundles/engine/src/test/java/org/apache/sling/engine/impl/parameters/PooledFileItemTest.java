@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.RequestContext;
+import org.junit.Test;
+
+public class PooledFileItemTest {
+
+    private static final String BOUNDARY = "----SlingBoundary";
+
+    private static byte[] content(final int size) {
+        final byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    private static byte[] read(final FileItem item) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final InputStream in = item.getInputStream();
+        try {
+            final byte[] buffer = new byte[1000];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static PooledFileItem write(final UploadBufferPool pool, final int threshold, final byte[] content)
+            throws IOException {
+        final PooledFileItem item = new PooledFileItem(pool, threshold, null, "file", "application/octet-stream",
+            false, "file.bin");
+        final OutputStream out = item.getOutputStream();
+        // write in odd chunks crossing the buffer boundaries
+        for (int offset = 0; offset < content.length; offset += 777) {
+            out.write(content, offset, Math.min(777, content.length - offset));
+        }
+        out.close();
+        return item;
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        final UploadBufferPool pool = new UploadBufferPool(1024 * 1024);
+        final byte[] content = content(3 * UploadBufferPool.BUFFER_SIZE + 100);
+        final PooledFileItem item = write(pool, 256000, content);
+
+        assertTrue(item.isInMemory());
+        assertEquals(content.length, item.getSize());
+        assertArrayEquals(content, item.get());
+        assertArrayEquals(content, read(item));
+        assertEquals(4 * UploadBufferPool.BUFFER_SIZE, pool.getMemoryInUse());
+
+        item.delete();
+        assertEquals(0, pool.getMemoryInUse());
+
+        // the buffers are reused
+        final PooledFileItem other = write(pool, 256000, content(10));
+        assertArrayEquals(content(10), other.get());
+        other.delete();
+    }
+
+    @Test
+    public void testAboveThreshold() throws IOException {
+        final UploadBufferPool pool = new UploadBufferPool(1024 * 1024);
+        final byte[] content = content(100000);
+        final PooledFileItem item = write(pool, 20000, content);
+
+        assertFalse(item.isInMemory());
+        assertEquals(0, pool.getMemoryInUse());
+        assertEquals(content.length, item.getSize());
+        assertArrayEquals(content, read(item));
+        item.delete();
+    }
+
+    @Test
+    public void testWriteMovesFile() throws Exception {
+        final UploadBufferPool pool = new UploadBufferPool(1024 * 1024);
+        final byte[] content = content(100000);
+        final PooledFileItem item = write(pool, 20000, content);
+        final File target = File.createTempFile("moved_", ".tmp");
+        try {
+            item.write(target);
+            assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+
+            // the content is read from the file it has been moved to
+            assertFalse(item.isInMemory());
+            assertEquals(content.length, item.getSize());
+            assertArrayEquals(content, read(item));
+
+            // which is not removed with the item
+            item.delete();
+            assertTrue(target.exists());
+        } finally {
+            target.delete();
+        }
+    }
+
+    @Test
+    public void testPoolExhausted() throws IOException {
+        final UploadBufferPool pool = new UploadBufferPool(UploadBufferPool.BUFFER_SIZE);
+        final PooledFileItem first = write(pool, 256000, content(100));
+        assertTrue(first.isInMemory());
+
+        // no buffer is available, the part is written to disk
+        final byte[] content = content(1000);
+        final PooledFileItem second = write(pool, 256000, content);
+        assertFalse(second.isInMemory());
+        assertArrayEquals(content, second.get());
+
+        first.delete();
+        second.delete();
+        assertEquals(0, pool.getMemoryInUse());
+    }
+
+    @Test
+    public void testReadAfterRelease() throws IOException {
+        final UploadBufferPool pool = new UploadBufferPool(UploadBufferPool.BUFFER_SIZE);
+        final PooledFileItem item = write(pool, 256000, content(100));
+        final InputStream in = item.getInputStream();
+        item.delete();
+
+        // the buffer now holds the content of another request
+        final PooledFileItem other = write(pool, 256000, content(200));
+        assertTrue(other.isInMemory());
+        try {
+            in.read(new byte[100]);
+            fail("Reading a released part must fail");
+        } catch (IOException expected) {
+            // the content has been released
+        }
+        try {
+            item.get();
+            fail("Reading a released part must fail");
+        } catch (IllegalStateException expected) {
+            // the content has been released
+        }
+        try {
+            item.getInputStream();
+            fail("Reading a released part must fail");
+        } catch (IOException expected) {
+            // the content has been released
+        }
+        assertArrayEquals(content(200), other.get());
+        other.delete();
+    }
+
+    @Test
+    public void testFormFieldOnHeap() throws IOException {
+        final UploadBufferPool pool = new UploadBufferPool(UploadBufferPool.BUFFER_SIZE);
+        final PooledFileItem field = new PooledFileItem(pool, 256000, null, "title", null, true, null);
+        final OutputStream out = field.getOutputStream();
+        out.write("Sling".getBytes("ISO-8859-1"));
+        out.close();
+        assertTrue(field.isInMemory());
+        assertEquals(0, pool.getMemoryInUse());
+
+        // a form field stays readable after the request
+        field.delete();
+        assertEquals("Sling", field.getString());
+    }
+
+    @Test
+    public void testParseMultipart() throws Exception {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] file = content(50000);
+        body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\n"
+            + "Sling\r\n").getBytes("ISO-8859-1"));
+        body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.bin\"\r\n"
+            + "Content-Type: application/octet-stream\r\n\r\n").getBytes("ISO-8859-1"));
+        body.write(file);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes("ISO-8859-1"));
+        final byte[] data = body.toByteArray();
+
+        final UploadBufferPool pool = new UploadBufferPool(1024 * 1024);
+        final PooledFileItemFactory factory = new PooledFileItemFactory(pool, 256000, null);
+        final List<FileItem> items = new FileUpload(factory).parseRequest(new RequestContext() {
+            public String getCharacterEncoding() {
+                return "ISO-8859-1";
+            }
+
+            public String getContentType() {
+                return "multipart/form-data; boundary=" + BOUNDARY;
+            }
+
+            @Deprecated
+            public int getContentLength() {
+                return data.length;
+            }
+
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(data);
+            }
+        });
+
+        assertEquals(2, items.size());
+        assertTrue(items.get(0).isFormField());
+        assertEquals("Sling", new MultipartRequestParameter(items.get(0)).getString());
+        final MultipartRequestParameter fileParameter = new MultipartRequestParameter(items.get(1));
+        assertEquals("a.bin", fileParameter.getFileName());
+        assertTrue(Arrays.equals(file, fileParameter.get()));
+        assertTrue(pool.getMemoryInUse() > 0);
+
+        factory.dispose();
+        assertEquals(0, pool.getMemoryInUse());
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.sling.engine.impl.request;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assert.assertEquals;
@@ -26,6 +27,8 @@ import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -124,6 +127,67 @@ public class SlingRequestProgressTrackerTest {
         assertEquals(d, tracker.getDuration());
     }
     
+    @Test
+    public void argumentsAreRecordedWhenLogged() {
+        final StringBuilder argument = new StringBuilder("before");
+        tracker.log("value {0}, number {1}", argument, 42);
+        argument.setLength(0);
+        argument.append("after");
+        tracker.logTimer("Request Processing", "timer {0}", argument);
+
+        final Iterator<String> messages = tracker.getMessages();
+        messages.next();
+        messages.next();
+        assertEquals("LOG value before, number 42\n", messages.next().substring(8));
+        assertTrue(messages.next().endsWith(",Request Processing} timer after\n"));
+        assertFalse(messages.hasNext());
+    }
+
+    @Test
+    public void mutableNumbersAreRecordedWhenLogged() {
+        final AtomicInteger counter = new AtomicInteger(1);
+        tracker.log("counter {0}", counter);
+        counter.set(2);
+
+        final Iterator<String> messages = tracker.getMessages();
+        messages.next();
+        messages.next();
+        assertEquals("LOG counter 1\n", messages.next().substring(8));
+    }
+
+    @Test
+    public void manyEntries() {
+        for (int i = 0; i < 100; i++) {
+            tracker.log("entry {0}", i);
+        }
+        final Iterator<String> messages = tracker.getMessages();
+        int count = 0;
+        while (messages.hasNext()) {
+            final String m = messages.next();
+            if (count >= 2) {
+                assertEquals("LOG entry " + (count - 2) + "\n", m.substring(8));
+            }
+            count++;
+        }
+        assertEquals(102, count);
+
+        tracker.reset();
+        count = 0;
+        for (final Iterator<String> it = tracker.getMessages(); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(2, count);
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void nextFails() {
+        final Iterator<String> messages = tracker.getMessages();
+        while (messages.hasNext()) {
+            messages.next();
+        }
+        messages.next();
+    }
+
     @Test(expected=UnsupportedOperationException.class)
     public void removeFails() {
         tracker.getMessages().remove();
@@ -20,10 +20,13 @@ package org.apache.sling.jcr.resource.internal;
 
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This is a helper class used to pass several services/data to the resource
@@ -31,12 +34,38 @@ import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
  */
 public class HelperData {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(HelperData.class);
+
     private final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference;
 
+    private final JcrValueMapSnapshotCache snapshotCache;
+
+    private final int childrenPageSize;
+
     private volatile String[] namespacePrefixes;
 
+    /** The key of the principals of the session, empty if not known. */
+    private volatile String principalsKey;
+
+    /** Set once the session changed the repository. */
+    private volatile boolean changed;
+
+    /**
+     * The snapshot cache stamp taken when the session was logged in or last
+     * refreshed, negative if the session must not use snapshots.
+     */
+    private volatile long snapshotStamp = -1;
+
     public HelperData(final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference) {
+        this(dynamicClassLoaderManagerReference, null, 0);
+    }
+
+    public HelperData(final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference,
+            final JcrValueMapSnapshotCache snapshotCache,
+            final int childrenPageSize) {
         this.dynamicClassLoaderManagerReference = dynamicClassLoaderManagerReference;
+        this.snapshotCache = snapshotCache;
+        this.childrenPageSize = childrenPageSize;
     }
 
     public String[] getNamespacePrefixes(final Session session)
@@ -54,4 +83,96 @@ public class HelperData {
         }
         return dclm.getDynamicClassLoader();
     }
+
+    /**
+     * The number of child nodes to read ahead when listing children, if the
+     * session {@link #usesValueMapSnapshots() uses the snapshots}.
+     * @return The page size or {@code 0} to read one child at a time
+     */
+    public int getChildrenPageSize() {
+        return this.childrenPageSize;
+    }
+
+    /**
+     * Whether the value maps of the session currently use the shared
+     * snapshots.
+     * @return {@code true} if the snapshots are used
+     */
+    public boolean usesValueMapSnapshots() {
+        return this.snapshotCache != null && !this.changed && this.snapshotStamp >= 0;
+    }
+
+    /**
+     * Read the shared snapshot of the properties of a node ahead of the
+     * value maps using it. Does nothing if snapshots are not enabled.
+     * @param node The node
+     */
+    public void prefetchValueMap(final Node node) {
+        this.getValueMapSnapshot(node);
+    }
+
+    /**
+     * Get the shared snapshot of the properties of a node.
+     * <p>
+     * Once the session has changed the repository, its value maps read from
+     * the nodes again, as the snapshots are only dropped when the
+     * observation events of the changes arrive. Sessions without a
+     * {@link #setSnapshotStamp(long) snapshot stamp} always read from the
+     * nodes.
+     *
+     * @param node The node
+     * @return The snapshot or {@code null} if the value map has to read from the node
+     */
+    JcrValueMapSnapshot getValueMapSnapshot(final Node node) {
+        final long stamp = this.snapshotStamp;
+        if ( this.snapshotCache == null || this.changed || stamp < 0 ) {
+            return null;
+        }
+        try {
+            final Session session = node.getSession();
+            if ( session.hasPendingChanges() ) {
+                this.changed = true;
+                return null;
+            }
+            if ( this.principalsKey == null ) {
+                final String key = JcrValueMapSnapshotCache.getPrincipalsKey(session);
+                this.principalsKey = (key == null ? "" : key);
+            }
+            if ( this.principalsKey.isEmpty() ) {
+                return null;
+            }
+            return this.snapshotCache.getSnapshot(node, this.principalsKey, stamp);
+        } catch (final RepositoryException e) {
+            LOGGER.debug("Unable to get value map snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Allow the session to use the shared snapshots. Only sessions logged in
+     * for a user, whose principals are the user and its groups, may use the
+     * snapshots.
+     * @param stamp The stamp of the snapshot cache taken before the session
+     *              was logged in
+     */
+    public void setSnapshotStamp(final long stamp) {
+        this.snapshotStamp = stamp;
+    }
+
+    /**
+     * Take a new snapshot stamp before the session is refreshed, if the
+     * session uses snapshots.
+     */
+    public void refreshSnapshotStamp() {
+        if ( this.snapshotCache != null && this.snapshotStamp >= 0 ) {
+            this.snapshotStamp = this.snapshotCache.getStamp();
+        }
+    }
+
+    /**
+     * Mark the session as having changed the repository.
+     */
+    public void setChanged() {
+        this.changed = true;
+    }
 }
@@ -140,6 +140,18 @@ public class JcrListenerBaseConfig implements Closeable {
 
     }
 
+    /**
+     * Register the listener of the value map snapshots for all changes
+     * of the repository, including external changes.
+     * @param cache The snapshot cache
+     * @throws RepositoryException If registration fails.
+     */
+    public void register(final JcrValueMapSnapshotCache cache)
+    throws RepositoryException {
+        this.session.getWorkspace().getObservationManager().addEventListener(cache,
+                JcrValueMapSnapshotCache.EVENT_TYPES, "/", true, null, null, false);
+    }
+
     /**
      * Get the event types based on the configuraiton
      * @param c The configuration
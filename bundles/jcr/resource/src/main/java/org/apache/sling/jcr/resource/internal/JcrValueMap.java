@@ -54,6 +54,12 @@ public class JcrValueMap implements ValueMap {
     /** Has the node been read completely? */
     boolean fullyRead;
 
+    /** The shared snapshot of the properties, if any. */
+    private JcrValueMapSnapshot snapshot;
+
+    /** Has the snapshot been looked up? */
+    private boolean snapshotRead;
+
     /**
      * Create a new JCR property map based on a node.
      * @param node The underlying node.
@@ -98,6 +104,16 @@ public class JcrValueMap implements ValueMap {
             return (T) get(key);
         }
 
+        if ( type == Property.class && key.indexOf('/') == -1 && this.getSnapshot() != null ) {
+            // the entries of the snapshot are not bound to the session
+            final int index = this.snapshot.indexOf(key);
+            try {
+                return index == -1 ? null : (T) node.getProperty(this.snapshot.getName(index));
+            } catch (final RepositoryException re) {
+                throw new IllegalArgumentException(re);
+            }
+        }
+
         final JcrPropertyMapCacheEntry entry = this.read(key);
         if ( entry == null ) {
             return null;
@@ -240,20 +256,7 @@ public class JcrValueMap implements ValueMap {
      */
     private JcrPropertyMapCacheEntry cacheProperty(final Property prop) {
         try {
-            // calculate the key
-            final String name = prop.getName();
-            String key = null;
-            if ( name.indexOf("_x") != -1 ) {
-                // for compatibility with older versions we use the (wrong)
-                // ISO9075 path encoding
-                key = ISO9075.decode(name);
-                if ( key.equals(name) ) {
-                    key = null;
-                }
-            }
-            if ( key == null ) {
-                key = Text.unescapeIllegalJcrChars(name);
-            }
+            final String key = getKey(prop.getName());
             JcrPropertyMapCacheEntry entry = cache.get(key);
             if ( entry == null ) {
                 entry = new JcrPropertyMapCacheEntry(prop);
@@ -270,6 +273,68 @@ public class JcrValueMap implements ValueMap {
         }
     }
 
+    /**
+     * Put a single property of the snapshot into the cache
+     * @param index the position of the property in the snapshot
+     * @return the cached property
+     * @throws IllegalArgumentException if a repository exception occurs
+     */
+    private JcrPropertyMapCacheEntry cacheSnapshotProperty(final int index) {
+        final String key = snapshot.getKey(index);
+        JcrPropertyMapCacheEntry entry = cache.get(key);
+        if ( entry == null ) {
+            entry = snapshot.getEntry(index);
+            if ( entry == null ) {
+                // binary values are read from the node
+                try {
+                    return cacheProperty(node.getProperty(snapshot.getName(index)));
+                } catch (final RepositoryException re) {
+                    throw new IllegalArgumentException(re);
+                }
+            }
+            cache.put(key, entry);
+
+            final Object defaultValue = entry.getPropertyValueOrNull();
+            if (defaultValue != null) {
+                valueCache.put(key, defaultValue);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Calculate the key of a property
+     * @param name the name of the property
+     * @return the key
+     */
+    static String getKey(final String name) {
+        String key = null;
+        if ( name.indexOf("_x") != -1 ) {
+            // for compatibility with older versions we use the (wrong)
+            // ISO9075 path encoding
+            key = ISO9075.decode(name);
+            if ( key.equals(name) ) {
+                key = null;
+            }
+        }
+        if ( key == null ) {
+            key = Text.unescapeIllegalJcrChars(name);
+        }
+        return key;
+    }
+
+    /**
+     * Get the shared snapshot of the properties.
+     * @return the snapshot or {@code null} if the properties are read from the node
+     */
+    private JcrValueMapSnapshot getSnapshot() {
+        if ( !snapshotRead ) {
+            snapshot = helper.getValueMapSnapshot(node);
+            snapshotRead = true;
+        }
+        return snapshot;
+    }
+
     /**
      * Read a single property.
      * @throws IllegalArgumentException if a repository exception occurs
@@ -326,6 +391,11 @@ public class JcrValueMap implements ValueMap {
             return cachedValued;
         }
 
+        if ( getSnapshot() != null ) {
+            final int index = snapshot.indexOf(name);
+            return index == -1 ? null : cacheSnapshotProperty(index);
+        }
+
         final String key;
         try {
             key = escapeKeyName(name);
@@ -383,6 +453,12 @@ public class JcrValueMap implements ValueMap {
      * @throws IllegalArgumentException if a repository exception occurs
      */
     void readFully() {
+        if (!fullyRead && getSnapshot() != null) {
+            for (int i = 0; i < snapshot.size(); i++) {
+                cacheSnapshotProperty(i);
+            }
+            fullyRead = true;
+        }
         if (!fullyRead) {
             try {
                 final PropertyIterator pi = node.getProperties();
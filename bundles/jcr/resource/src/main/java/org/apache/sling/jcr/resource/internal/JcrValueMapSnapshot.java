@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCacheEntry;
+
+/**
+ * An immutable snapshot of the properties of a node, read in a single pass
+ * and converted to Java objects. As the entries are not bound to a session,
+ * a snapshot can be shared by the value maps of several sessions.
+ * <p>
+ * Binary properties are only listed by name: their values are streamed
+ * from the node by the value map reading them.
+ */
+final class JcrValueMapSnapshot {
+
+    /** The keys of the value map, in the order of the properties. */
+    private final String[] keys;
+
+    /** The JCR names of the properties. */
+    private final String[] names;
+
+    /** The detached entries, <code>null</code> for binary properties. */
+    private final JcrPropertyMapCacheEntry[] entries;
+
+    /** The positions by key and by JCR name. */
+    private final Map<String, Integer> positions;
+
+    private JcrValueMapSnapshot(final List<String> keys,
+            final List<String> names,
+            final List<JcrPropertyMapCacheEntry> entries) {
+        this.keys = keys.toArray(new String[keys.size()]);
+        this.names = names.toArray(new String[names.size()]);
+        this.entries = entries.toArray(new JcrPropertyMapCacheEntry[entries.size()]);
+        this.positions = new HashMap<String, Integer>(this.keys.length * 4 / 3 + 1);
+        for (int i = 0; i < this.keys.length; i++) {
+            if (!this.positions.containsKey(this.keys[i])) {
+                this.positions.put(this.keys[i], i);
+            }
+        }
+        // the names are only used if no property has such a key
+        for (int i = 0; i < this.names.length; i++) {
+            if (!this.positions.containsKey(this.names[i])) {
+                this.positions.put(this.names[i], i);
+            }
+        }
+    }
+
+    /**
+     * Read all properties of the node.
+     * @param node The node
+     * @return The snapshot of the properties
+     * @throws RepositoryException If the properties cannot be read
+     */
+    static JcrValueMapSnapshot read(final Node node) throws RepositoryException {
+        final List<String> keys = new ArrayList<String>();
+        final List<String> names = new ArrayList<String>();
+        final List<JcrPropertyMapCacheEntry> entries = new ArrayList<JcrPropertyMapCacheEntry>();
+        final PropertyIterator pi = node.getProperties();
+        while (pi.hasNext()) {
+            final Property prop = pi.nextProperty();
+            final String name = prop.getName();
+            keys.add(JcrValueMap.getKey(name));
+            names.add(name);
+            if (prop.getType() == PropertyType.BINARY) {
+                entries.add(null);
+            } else {
+                entries.add(new JcrPropertyMapCacheEntry(prop).detach());
+            }
+        }
+        return new JcrValueMapSnapshot(keys, names, entries);
+    }
+
+    /**
+     * The number of properties.
+     */
+    int size() {
+        return this.keys.length;
+    }
+
+    /**
+     * Get the position of a property.
+     * @param name The key or the JCR name of the property
+     * @return The position or <code>-1</code> if there is no such property
+     */
+    int indexOf(final String name) {
+        final Integer index = this.positions.get(name);
+        return index == null ? -1 : index;
+    }
+
+    String getKey(final int index) {
+        return this.keys[index];
+    }
+
+    String getName(final int index) {
+        return this.names[index];
+    }
+
+    /**
+     * Get the entry of a property for a single value map.
+     * @param index The position of the property
+     * @return A copy of the entry or <code>null</code> for a binary property
+     */
+    JcrPropertyMapCacheEntry getEntry(final int index) {
+        final JcrPropertyMapCacheEntry entry = this.entries[index];
+        return entry == null ? null : entry.detach();
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The shared cache of the {@link JcrValueMapSnapshot}s, by node path and
+ * principals of the session reading the node. Sessions with the same
+ * principals are granted the same access and thus may share snapshots.
+ * <p>
+ * The cache listens to all changes of the repository and drops the
+ * snapshots of changed nodes. A change of an access control policy, any
+ * <code>rep:*Policy</code> node, drops the snapshots of the whole subtree.
+ * If the cache is full, the least recently read nodes are dropped.
+ * <p>
+ * A session only sees the changes committed before it was logged in or
+ * last refreshed. Sessions therefore pass the {@link #getStamp() stamp}
+ * taken at that time, and snapshots are only cached if the node has not
+ * been invalidated since, so sessions seeing an older state of the
+ * repository do not cache it for others.
+ */
+public class JcrValueMapSnapshotCache implements EventListener {
+
+    /** The event types dropping snapshots. */
+    public static final int EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED
+            | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+    private static final String REP_PREFIX = "/rep:";
+
+    private static final String POLICY_SUFFIX = "policy";
+
+    private static final String PRINCIPAL_POLICY = "/rep:principalPolicy";
+
+    private final Logger logger = LoggerFactory.getLogger(JcrValueMapSnapshotCache.class);
+
+    /** The maximum number of cached nodes. */
+    private final int maxSize;
+
+    /** The number of stripes of the invalidation stamps, a power of two. */
+    private static final int STRIPES = 1024;
+
+    /** The snapshots by node path, ordered to find subtrees. */
+    private final ConcurrentNavigableMap<String, CachedNode> snapshots =
+            new ConcurrentSkipListMap<String, CachedNode>();
+
+    /** The number of nodes with snapshots, the size of the skip list is not constant time. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** Whether a thread is evicting snapshots. */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /** Counts the invalidations, providing their stamps. */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /** The stamps of the last invalidation of the nodes, by hash of the path. */
+    private final AtomicLongArray invalidated = new AtomicLongArray(STRIPES);
+
+    /** The stamps of the last invalidation of the subtrees, by hash of the path. */
+    private final AtomicLongArray invalidatedTrees = new AtomicLongArray(STRIPES);
+
+    /** The stamp of the last invalidation of all snapshots. */
+    private final AtomicLong cleared = new AtomicLong();
+
+    public JcrValueMapSnapshotCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the current stamp, to be taken before a session is logged in or
+     * refreshed.
+     * @return The stamp
+     */
+    public long getStamp() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Get the snapshot of the node, reading it if it is not cached yet.
+     * @param node The node
+     * @param principals The principals key of the session of the node
+     * @param stamp The stamp taken when the session was logged in or refreshed
+     * @return The snapshot
+     * @throws RepositoryException If the properties cannot be read
+     */
+    JcrValueMapSnapshot getSnapshot(final Node node, final String principals, final long stamp)
+    throws RepositoryException {
+        final String path = node.getPath();
+        CachedNode cached = this.snapshots.get(path);
+        JcrValueMapSnapshot snapshot = null;
+        if (cached != null) {
+            cached.accessed = System.nanoTime();
+            snapshot = cached.byPrincipals.get(principals);
+        }
+        if (snapshot == null) {
+            snapshot = JcrValueMapSnapshot.read(node);
+            // the session might not see the latest state of the node
+            if (this.getLastInvalidation(path) > stamp) {
+                return snapshot;
+            }
+            if (cached == null) {
+                if (this.size.get() >= this.maxSize) {
+                    this.evict();
+                }
+                cached = new CachedNode();
+                final CachedNode existing = this.snapshots.putIfAbsent(path, cached);
+                if (existing != null) {
+                    cached = existing;
+                } else {
+                    this.size.incrementAndGet();
+                }
+            }
+            cached.byPrincipals.put(principals, snapshot);
+            // the node might have changed while reading it
+            if (this.getLastInvalidation(path) > stamp) {
+                cached.byPrincipals.remove(principals, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drop the snapshots of a node.
+     * @param path The path of the node
+     * @param deep Whether to drop the snapshots of the descendants, too
+     */
+    public void invalidate(final String path, final boolean deep) {
+        final long stamp = this.invalidations.incrementAndGet();
+        setMax(deep ? this.invalidatedTrees : this.invalidated, stripe(path.hashCode()), stamp);
+        this.remove(path);
+        if (deep) {
+            final String prefix = "/".equals(path) ? path : path + '/';
+            for (final String key : this.snapshots.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+                this.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drop all snapshots.
+     */
+    public void clear() {
+        this.cleared.set(this.invalidations.incrementAndGet());
+        for (final String key : this.snapshots.keySet()) {
+            this.remove(key);
+        }
+    }
+
+    private void remove(final String path) {
+        if (this.snapshots.remove(path) != null) {
+            this.size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get the stamp of the last invalidation of the node, including the
+     * invalidations of the subtrees of its ancestors. Paths sharing a
+     * stripe may report a later stamp, which only prevents caching.
+     */
+    private long getLastInvalidation(final String path) {
+        long last = Math.max(this.cleared.get(), this.invalidated.get(stripe(path.hashCode())));
+        last = Math.max(last, this.invalidatedTrees.get(stripe("/".hashCode())));
+        // the hash of each ancestor path, computed like String.hashCode()
+        int hash = 0;
+        for (int i = 0; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if (c == '/' && i > 0) {
+                last = Math.max(last, this.invalidatedTrees.get(stripe(hash)));
+            }
+            hash = 31 * hash + c;
+        }
+        if (path.length() > 1) {
+            last = Math.max(last, this.invalidatedTrees.get(stripe(hash)));
+        }
+        return last;
+    }
+
+    private static int stripe(final int hash) {
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    private static void setMax(final AtomicLongArray stamps, final int index, final long stamp) {
+        long current;
+        while ((current = stamps.get(index)) < stamp && !stamps.compareAndSet(index, current, stamp)) {
+            // retry
+        }
+    }
+
+    /**
+     * The number of nodes with snapshots.
+     */
+    int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Drop the eighth of the nodes read least recently to make room for new
+     * ones. As this scans all nodes, only one thread evicts at a time.
+     */
+    private void evict() {
+        if (!this.evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long[] accessed = new long[Math.max(1, this.size.get())];
+            int n = 0;
+            for (final CachedNode cached : this.snapshots.values()) {
+                if (n == accessed.length) {
+                    accessed = Arrays.copyOf(accessed, n * 2);
+                }
+                accessed[n++] = cached.accessed;
+            }
+            if (n == 0) {
+                return;
+            }
+            Arrays.sort(accessed, 0, n);
+            int count = Math.min(n, Math.max(1, this.maxSize / 8));
+            final long threshold = accessed[count - 1];
+            final Iterator<Map.Entry<String, CachedNode>> iter = this.snapshots.entrySet().iterator();
+            while (count > 0 && iter.hasNext()) {
+                final Map.Entry<String, CachedNode> entry = iter.next();
+                if (entry.getValue().accessed <= threshold
+                        && this.snapshots.remove(entry.getKey(), entry.getValue())) {
+                    this.size.decrementAndGet();
+                    count--;
+                }
+            }
+        } finally {
+            this.evicting.set(false);
+        }
+    }
+
+    @Override
+    public void onEvent(final EventIterator events) {
+        while (events.hasNext()) {
+            final Event event = events.nextEvent();
+            try {
+                final String path = event.getPath();
+                final int policy = indexOfPolicy(path);
+                if (policy != -1) {
+                    if (path.startsWith(PRINCIPAL_POLICY, policy)) {
+                        this.clear();
+                    } else {
+                        this.invalidate(policy == 0 ? "/" : path.substring(0, policy), true);
+                    }
+                    continue;
+                }
+                switch (event.getType()) {
+                case Event.PROPERTY_ADDED:
+                case Event.PROPERTY_CHANGED:
+                case Event.PROPERTY_REMOVED:
+                    final int pos = path.lastIndexOf('/');
+                    this.invalidate(pos == 0 ? "/" : path.substring(0, pos), false);
+                    break;
+                case Event.NODE_ADDED:
+                    this.invalidate(path, false);
+                    break;
+                case Event.NODE_MOVED:
+                    final Object source = event.getInfo().get("srcAbsPath");
+                    if (source != null) {
+                        this.invalidate(source.toString(), true);
+                    }
+                    this.invalidate(path, true);
+                    break;
+                default:
+                    this.invalidate(path, true);
+                    break;
+                }
+            } catch (final RepositoryException e) {
+                logger.warn("Unable to process event, dropping all value map snapshots", e);
+                this.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the index of the first access control policy node in the path,
+     * like <code>rep:policy</code>, <code>rep:cugPolicy</code> or
+     * <code>rep:repoPolicy</code>.
+     * @param path The path
+     * @return The index of the slash before the policy node or -1
+     */
+    static int indexOfPolicy(final String path) {
+        int start = path.indexOf(REP_PREFIX);
+        while (start != -1) {
+            int end = path.indexOf('/', start + 1);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (end - start > REP_PREFIX.length()
+                    && path.regionMatches(true, end - POLICY_SUFFIX.length(), POLICY_SUFFIX, 0, POLICY_SUFFIX.length())) {
+                return start;
+            }
+            start = path.indexOf(REP_PREFIX, end);
+        }
+        return -1;
+    }
+
+    /**
+     * The snapshots of a node by principals and the time the node was read
+     * last.
+     */
+    private static final class CachedNode {
+
+        final ConcurrentMap<String, JcrValueMapSnapshot> byPrincipals =
+                new ConcurrentHashMap<String, JcrValueMapSnapshot>(4);
+
+        volatile long accessed = System.nanoTime();
+    }
+
+    /**
+     * Get the key of the principals of a session, the principal of the
+     * user and the principals of the groups the user is member of.
+     * @param session The session
+     * @return The key or <code>null</code> if the principals are not known
+     * @throws RepositoryException If the user cannot be read
+     */
+    static String getPrincipalsKey(final Session session) throws RepositoryException {
+        if (!(session instanceof JackrabbitSession) || session.getUserID() == null) {
+            return null;
+        }
+        final Authorizable user = ((JackrabbitSession) session).getUserManager().getAuthorizable(session.getUserID());
+        if (user == null) {
+            return null;
+        }
+        final Set<String> names = new TreeSet<String>();
+        final Iterator<Group> groups = user.memberOf();
+        while (groups.hasNext()) {
+            names.add(groups.next().getPrincipal().getName());
+        }
+        // prefix the names with their length to keep the key unambiguous
+        final StringBuilder sb = new StringBuilder();
+        sb.append(user.getPrincipal().getName().length()).append(':').append(user.getPrincipal().getName());
+        for (final String name : names) {
+            sb.append(name.length()).append(':').append(name);
+        }
+        return sb.toString();
+    }
+}
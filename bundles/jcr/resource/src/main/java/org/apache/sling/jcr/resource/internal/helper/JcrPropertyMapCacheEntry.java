@@ -96,6 +96,46 @@ public class JcrPropertyMapCacheEntry {
         }
      }
 
+    /**
+     * Create a new cache entry holding a value only.
+     * @param value the value
+     * @param isArray whether the value is an array
+     */
+    private JcrPropertyMapCacheEntry(final Object value, final boolean isArray) {
+        this.property = null;
+        this.propertyValue = value;
+        this.isArray = isArray;
+    }
+
+    /**
+     * Create a copy of this entry which is not bound to the session of the
+     * property. Calendars and arrays are copied, as they might be changed
+     * by the caller while this entry is shared.
+     * @return The detached entry or {@code null} for a binary property.
+     */
+    public JcrPropertyMapCacheEntry detach() {
+        if (this.propertyValue == null) {
+            return null;
+        }
+        if (this.property == null && !(this.propertyValue instanceof Calendar) && !this.isArray) {
+            return this;
+        }
+        return new JcrPropertyMapCacheEntry(copy(this.propertyValue), this.isArray);
+    }
+
+    private static Object copy(final Object value) {
+        if (value instanceof Calendar) {
+            return ((Calendar) value).clone();
+        } else if (value instanceof Object[]) {
+            final Object[] values = ((Object[]) value).clone();
+            for (int i = 0; i < values.length; i++) {
+                values[i] = copy(values[i]);
+            }
+            return values;
+        }
+        return value;
+    }
+
     private void failIfCannotStore(final Object value, final Node node)
     throws RepositoryException {
         if (value instanceof InputStream) {
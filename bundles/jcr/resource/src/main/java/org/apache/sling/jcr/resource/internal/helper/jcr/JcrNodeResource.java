@@ -216,6 +216,14 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
         return null;
     }
 
+    /**
+     * Read the snapshot of the properties of this resource ahead of their
+     * use, if the session uses the value map snapshots.
+     */
+    void prefetch() {
+        this.helper.prefetchValueMap(getNode());
+    }
+
     // ---------- Descendable interface ----------------------------------------
 
     @Override
@@ -223,7 +231,7 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
         try {
             if (getNode().hasNodes()) {
                 return new JcrNodeResourceIterator(getResourceResolver(), path, version,
-                    getNode().getNodes(), this.helper, null);
+                    getNode().getNodes(), this.helper, null, this.helper.getChildrenPageSize());
             }
         } catch (final RepositoryException re) {
             LOGGER.error("listChildren: Cannot get children of " + this, re);
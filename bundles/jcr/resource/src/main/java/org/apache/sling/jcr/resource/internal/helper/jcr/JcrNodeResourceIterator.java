@@ -18,6 +18,8 @@
  */
 package org.apache.sling.jcr.resource.internal.helper.jcr;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -37,6 +39,12 @@ import org.slf4j.LoggerFactory;
  * which returns resources for each node of an underlying
  * <code>NodeIterator</code>. Nodes in the node iterator which cannot be
  * accessed or for which a resource cannot be created are skipped.
+ * <p>
+ * With a page size, the resources are created a page ahead and the
+ * properties of their nodes read into the shared value map snapshots in one
+ * go, instead of one at a time as they are used. As this only saves reads
+ * for sessions using the snapshots, other sessions create the resources one
+ * at a time. No node is read before the iterator is first used.
  */
 public class JcrNodeResourceIterator implements Iterator<Resource> {
 
@@ -52,6 +60,9 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
     /** The prefetched next iterator entry, null at the end of iterating */
     private Resource nextResult;
 
+    /** Whether {@link #nextResult} has been looked up */
+    private boolean seeked;
+
     private final HelperData helper;
 
     private final String parentPath;
@@ -60,6 +71,12 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
 
     private final PathSet excludedPaths;
 
+    /** The number of resources to create ahead, 0 to create them one at a time */
+    private final int pageSize;
+
+    /** The resources created ahead, null until known to be used */
+    private Deque<Resource> page;
+
     /**
      * Creates an instance using the given resource manager and the nodes
      * provided as a node iterator. Paths of the iterated resources will be
@@ -78,17 +95,47 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
                                    final NodeIterator nodes,
                                    final HelperData helper,
                                    final PathSet excludedPaths) {
+        this(resourceResolver, parentPath, parentVersion, nodes, helper, excludedPaths, 0);
+    }
+
+    /**
+     * Creates an instance using the given resource manager and the nodes
+     * provided as a node iterator, creating the resources a page ahead.
+     *
+     * @param resourceResolver the resolver
+     * @param parentPath the parent path
+     * @param parentVersion the parent version
+     * @param nodes the node iterator
+     * @param helper the helper
+     * @param excludedPaths the set of excluded paths
+     * @param pageSize the number of resources to create ahead, 0 to create
+     *            them one at a time
+     */
+    public JcrNodeResourceIterator(final ResourceResolver resourceResolver,
+                                   final String parentPath,
+                                   final String parentVersion,
+                                   final NodeIterator nodes,
+                                   final HelperData helper,
+                                   final PathSet excludedPaths,
+                                   final int pageSize) {
         this.resourceResolver = resourceResolver;
         this.parentPath = parentPath;
         this.parentVersion = parentVersion;
         this.nodes = nodes;
         this.helper = helper;
         this.excludedPaths = excludedPaths == null ? PathSet.EMPTY_SET : excludedPaths;
-        this.nextResult = seek();
+        this.pageSize = pageSize;
     }
 
     @Override
     public boolean hasNext() {
+        if (!seeked) {
+            if (pageSize > 0 && page == null && helper.usesValueMapSnapshots()) {
+                page = new ArrayDeque<Resource>(pageSize);
+            }
+            nextResult = seek();
+            seeked = true;
+        }
         return nextResult != null;
     }
 
@@ -99,7 +146,8 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
         }
 
         Resource result = nextResult;
-        nextResult = seek();
+        nextResult = null;
+        seeked = false;
         return result;
     }
 
@@ -113,20 +161,17 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
     }
 
     private Resource seek() {
+        if ( this.page != null ) {
+            if ( this.page.isEmpty() ) {
+                fetchPage();
+            }
+            return this.page.poll();
+        }
         while (nodes.hasNext()) {
-            try {
-                final Node n = nodes.nextNode();
-                final String path = getPath(n);
-                if ( path != null && this.excludedPaths.matches(path) == null ) {
-                    final Resource resource = new JcrNodeResource(resourceResolver,
-                        path, parentVersion, n, helper);
-                    LOGGER.debug("seek: Returning Resource {}", resource);
-                    return resource;
-                }
-            } catch (final Throwable t) {
-                LOGGER.error(
-                    "seek: Problem creating Resource for next node, skipping",
-                    t);
+            final JcrNodeResource resource = createNext();
+            if ( resource != null ) {
+                LOGGER.debug("seek: Returning Resource {}", resource);
+                return resource;
             }
         }
 
@@ -135,6 +180,45 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
         return null;
     }
 
+    /**
+     * Create the resources of the next page and read their properties.
+     */
+    private void fetchPage() {
+        while (this.page.size() < this.pageSize && nodes.hasNext()) {
+            final JcrNodeResource resource = createNext();
+            if ( resource != null ) {
+                try {
+                    resource.prefetch();
+                } catch (final Throwable t) {
+                    // the resource reads its properties again when used
+                    LOGGER.debug("seek: Problem reading Resource {} ahead", resource, t);
+                }
+                this.page.add(resource);
+            }
+        }
+        LOGGER.debug("seek: Read {} Resources ahead", this.page.size());
+    }
+
+    /**
+     * Create the resource for the next node.
+     * @return the resource or {@code null} if the node is skipped
+     */
+    private JcrNodeResource createNext() {
+        try {
+            final Node n = nodes.nextNode();
+            final String path = getPath(n);
+            if ( path != null && this.excludedPaths.matches(path) == null ) {
+                return new JcrNodeResource(resourceResolver,
+                    path, parentVersion, n, helper);
+            }
+        } catch (final Throwable t) {
+            LOGGER.warn(
+                "seek: Problem creating Resource for next node, skipping",
+                t);
+        }
+        return null;
+    }
+
     private String getPath(final Node node) throws RepositoryException {
         final String path;
         if (parentPath == null) {
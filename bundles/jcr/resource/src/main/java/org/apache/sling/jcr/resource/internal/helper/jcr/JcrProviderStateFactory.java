@@ -39,6 +39,7 @@ import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.jcr.api.SlingRepository;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
 import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrValueMapSnapshotCache;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -56,12 +57,26 @@ public class JcrProviderStateFactory {
 
     private final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference;
 
+    private final JcrValueMapSnapshotCache snapshotCache;
+
+    private final int childrenPageSize;
+
     public JcrProviderStateFactory(final ServiceReference<SlingRepository> repositoryReference,
             final SlingRepository repository,
             final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference) {
+        this(repositoryReference, repository, dynamicClassLoaderManagerReference, null, 0);
+    }
+
+    public JcrProviderStateFactory(final ServiceReference<SlingRepository> repositoryReference,
+            final SlingRepository repository,
+            final AtomicReference<DynamicClassLoaderManager> dynamicClassLoaderManagerReference,
+            final JcrValueMapSnapshotCache snapshotCache,
+            final int childrenPageSize) {
         this.repository = repository;
         this.repositoryReference = repositoryReference;
         this.dynamicClassLoaderManagerReference = dynamicClassLoaderManagerReference;
+        this.snapshotCache = snapshotCache;
+        this.childrenPageSize = childrenPageSize;
     }
 
     /** Get the calling Bundle from auth info, fail if not provided
@@ -86,9 +101,12 @@ public class JcrProviderStateFactory {
             // by default any session used by the resource resolver returned is
             // closed when the resource resolver is closed, except when the session
             // was provided in the authenticationInfo
-            return createJcrProviderState(session, false, authenticationInfo, null);
+            return createJcrProviderState(session, false, authenticationInfo, null, -1);
         }
 
+        // sessions of users logged in here may use the value map snapshots
+        long snapshotStamp = -1;
+
         BundleContext bc = null;
         try {
             final Bundle bundle = extractCallingBundle(authenticationInfo);
@@ -126,23 +144,40 @@ public class JcrProviderStateFactory {
             } else {
                 // requested non-admin session
                 final Credentials credentials = getCredentials(authenticationInfo);
+                if (this.snapshotCache != null) {
+                    snapshotStamp = this.snapshotCache.getStamp();
+                }
                 session = repository.login(credentials, null);
             }
         } catch (final RepositoryException re) {
             throw getLoginException(re);
         }
 
-        return createJcrProviderState(session, true, authenticationInfo, bc);
+        return createJcrProviderState(session, true, authenticationInfo, bc, snapshotStamp);
     }
 
+    /**
+     * @param snapshotStamp The stamp of the value map snapshot cache taken
+     *            before the session was logged in, negative if the session
+     *            must not use snapshots. The principals of service sessions
+     *            may be a subset of those of the service user and sessions
+     *            provided in the authentication info may see an older state
+     *            of the repository.
+     */
     private JcrProviderState createJcrProviderState(
             @Nonnull final Session s,
             final boolean logoutSession,
             @Nonnull final Map<String, Object> authenticationInfo,
-            @Nullable final BundleContext ctx
+            @Nullable final BundleContext ctx,
+            final long snapshotStamp
     ) throws LoginException {
         final Session session = handleImpersonation(s, authenticationInfo, logoutSession);
-        final HelperData data = new HelperData(this.dynamicClassLoaderManagerReference);
+        final HelperData data = new HelperData(this.dynamicClassLoaderManagerReference, this.snapshotCache,
+                this.childrenPageSize);
+        // impersonated sessions are not known to have the principals of the user
+        if (session == s) {
+            data.setSnapshotStamp(snapshotStamp);
+        }
         return new JcrProviderState(session, data, logoutSession, ctx, ctx == null ? null : repositoryReference);
     }
 
@@ -52,6 +52,7 @@ import org.apache.sling.jcr.resource.api.JcrResourceConstants;
 import org.apache.sling.jcr.resource.internal.JcrListenerBaseConfig;
 import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
 import org.apache.sling.jcr.resource.internal.JcrResourceListener;
+import org.apache.sling.jcr.resource.internal.JcrValueMapSnapshotCache;
 import org.apache.sling.jcr.resource.internal.NodeUtil;
 import org.apache.sling.spi.resource.provider.ObserverConfiguration;
 import org.apache.sling.spi.resource.provider.ProviderContext;
@@ -68,9 +69,13 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@Designate(ocd = JcrResourceProvider.Config.class)
 @Component(name="org.apache.sling.jcr.resource.internal.helper.jcr.JcrResourceProviderFactory",
            service = ResourceProvider.class,
            property = {
@@ -85,6 +90,27 @@ import org.slf4j.LoggerFactory;
            })
 public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
 
+    @ObjectClassDefinition(
+            name = "Apache Sling JCR Resource Provider",
+            description = "Provides the resources of the JCR repository")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Value Map Snapshots",
+                description = "The maximum number of nodes whose properties are kept in immutable snapshots, "
+                        + "shared by the value maps of sessions with the same principals. Snapshots are dropped "
+                        + "when the observation events of changes to their nodes arrive, so other sessions may read "
+                        + "outdated values until then. Set to 0 to read the properties of each value map from the "
+                        + "node (the default).")
+        int valuemap_snapshot_size() default 0;
+
+        @AttributeDefinition(name = "Children Page Size",
+                description = "The number of child nodes read ahead when listing the children of a resource. "
+                        + "The properties of a page of children are read into the value map snapshots in one go. "
+                        + "Only used for sessions using the value map snapshots. Set to 0 to read one child at a "
+                        + "time (the default).")
+        int children_page_size() default 0;
+    }
+
     /** Logger */
     private final Logger logger = LoggerFactory.getLogger(JcrResourceProvider.class);
 
@@ -113,8 +139,11 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
 
     private final AtomicReference<DynamicClassLoaderManager> classLoaderManagerReference = new AtomicReference<DynamicClassLoaderManager>();
 
+    /** The shared value map snapshots, if enabled. */
+    private volatile JcrValueMapSnapshotCache snapshotCache;
+
     @Activate
-    protected void activate(final ComponentContext context) throws RepositoryException {
+    protected void activate(final ComponentContext context, final Config config) throws RepositoryException {
         SlingRepository repository = context.locateService(REPOSITORY_REFERNENCE_NAME,
                 this.repositoryReference);
         if (repository == null) {
@@ -127,13 +156,16 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
 
         this.repository = repository;
 
+        this.snapshotCache = config.valuemap_snapshot_size() > 0
+                ? new JcrValueMapSnapshotCache(config.valuemap_snapshot_size()) : null;
         this.stateFactory = new JcrProviderStateFactory(repositoryReference, repository,
-                classLoaderManagerReference);
+                classLoaderManagerReference, snapshotCache, config.children_page_size());
     }
 
     @Deactivate
     protected void deactivate() {
         this.stateFactory = null;
+        this.snapshotCache = null;
     }
 
     @Reference(name = "dynamicClassLoaderManager",
@@ -194,6 +226,11 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
                             config);
                     this.listeners.put(config, listener);
                 }
+                final JcrValueMapSnapshotCache snapshotCache = this.snapshotCache;
+                if ( snapshotCache != null ) {
+                    snapshotCache.clear();
+                    this.listenerConfig.register(snapshotCache);
+                }
             } catch (final RepositoryException e) {
                 throw new SlingException("Can't create the JCR event listener.", e);
             }
@@ -475,6 +512,7 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
     @Override
     public void revert(final @Nonnull ResolveContext<JcrProviderState> ctx) {
         try {
+            ctx.getProviderState().getHelperData().refreshSnapshotStamp();
             ctx.getProviderState().getSession().refresh(false);
         } catch (final RepositoryException ignore) {
             logger.warn("Unable to revert pending changes.", ignore);
@@ -485,6 +523,7 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
     public void commit(final @Nonnull ResolveContext<JcrProviderState> ctx)
     throws PersistenceException {
         try {
+            ctx.getProviderState().getHelperData().setChanged();
             ctx.getProviderState().getSession().save();
         } catch (final RepositoryException e) {
             throw new PersistenceException("Unable to commit changes to session.", e);
@@ -504,6 +543,7 @@ public class JcrResourceProvider extends ResourceProvider<JcrProviderState> {
     @Override
     public void refresh(final @Nonnull ResolveContext<JcrProviderState> ctx) {
         try {
+            ctx.getProviderState().getHelperData().refreshSnapshotStamp();
             ctx.getProviderState().getSession().refresh(true);
         } catch (final RepositoryException ignore) {
             logger.warn("Unable to refresh session.", ignore);
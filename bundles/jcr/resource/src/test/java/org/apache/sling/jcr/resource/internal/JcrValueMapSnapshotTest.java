@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.apache.jackrabbit.commons.iterator.EventIteratorAdapter;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.apache.sling.commons.testing.jcr.RepositoryTestBase;
+
+public class JcrValueMapSnapshotTest extends RepositoryTestBase {
+
+    private Node rootNode;
+
+    private JcrValueMapSnapshotCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        rootNode = getSession().getRootNode().addNode("test_" + System.currentTimeMillis(), "nt:unstructured");
+        rootNode.setProperty("string", "test");
+        rootNode.setProperty("long", 1L);
+        rootNode.setProperty("date", Calendar.getInstance());
+        rootNode.setProperty("strings", new String[] {"a", "b"});
+        rootNode.setProperty("foo_x0020_bar", "escaped");
+        rootNode.setProperty("binary", getSession().getValueFactory().createBinary(
+                new ByteArrayInputStream(new byte[] {1, 2, 3})));
+        getSession().save();
+        cache = new JcrValueMapSnapshotCache(10);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (rootNode != null) {
+            rootNode.remove();
+            getSession().save();
+        }
+        super.tearDown();
+    }
+
+    private HelperData getHelperData() {
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), cache, 0);
+        helper.setSnapshotStamp(cache.getStamp());
+        return helper;
+    }
+
+    private ValueMap getValueMap() {
+        return new JcrValueMap(rootNode, getHelperData());
+    }
+
+    public void testSameValues() throws Exception {
+        final ValueMap expected = new JcrValueMap(rootNode, new HelperData(new AtomicReference<DynamicClassLoaderManager>()));
+        final ValueMap vm = getValueMap();
+
+        assertEquals("test", vm.get("string"));
+        assertEquals(Integer.valueOf(1), vm.get("long", Integer.class));
+        assertEquals("escaped", vm.get("foo bar"));
+        assertEquals("escaped", vm.get("foo_x0020_bar", String.class));
+        assertNull(vm.get("missing"));
+        assertEquals(Long.valueOf(3), vm.get("binary", Long.class));
+        assertTrue(vm.get("binary") instanceof InputStream);
+        assertEquals("string", vm.get("string", Property.class).getName());
+        assertEquals(expected.keySet(), vm.keySet());
+        // the order of the properties of the node
+        assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(getValueMap().keySet()));
+        assertEquals(expected.get("date"), vm.get("date"));
+        assertEquals(1, cache.size());
+    }
+
+    public void testShared() throws Exception {
+        final ValueMap first = getValueMap();
+        assertEquals("test", first.get("string"));
+
+        // the snapshot is read before the change
+        rootNode.setProperty("string", "changed");
+        getSession().save();
+        assertEquals("test", getValueMap().get("string"));
+
+        // mutable values are copied
+        first.get("date", Calendar.class).add(Calendar.YEAR, 1);
+        ((String[]) first.get("strings"))[0] = "c";
+        assertEquals(rootNode.getProperty("date").getDate(), getValueMap().get("date", Calendar.class));
+        assertEquals("a", getValueMap().get("strings", String[].class)[0]);
+
+        cache.invalidate(rootNode.getPath(), false);
+        assertEquals("changed", getValueMap().get("string"));
+    }
+
+    public void testEvents() throws Exception {
+        assertEquals("test", getValueMap().get("string"));
+        assertEquals(1, cache.size());
+
+        final Event event = mock(Event.class);
+        when(event.getType()).thenReturn(Event.PROPERTY_CHANGED);
+        when(event.getPath()).thenReturn(rootNode.getPath() + "/string");
+        cache.onEvent(new EventIteratorAdapter(Collections.singleton(event)));
+        assertEquals(0, cache.size());
+
+        assertEquals("test", getValueMap().get("string"));
+        final Event policy = mock(Event.class);
+        when(policy.getType()).thenReturn(Event.NODE_ADDED);
+        when(policy.getPath()).thenReturn("/rep:policy");
+        final EventIterator events = new EventIteratorAdapter(Collections.singleton(policy));
+        cache.onEvent(events);
+        assertEquals(0, cache.size());
+    }
+
+    public void testPolicies() throws Exception {
+        assertEquals(-1, JcrValueMapSnapshotCache.indexOfPolicy("/content/policy"));
+        assertEquals(-1, JcrValueMapSnapshotCache.indexOfPolicy("/content/rep:members"));
+        assertEquals(0, JcrValueMapSnapshotCache.indexOfPolicy("/rep:repoPolicy"));
+        assertEquals(8, JcrValueMapSnapshotCache.indexOfPolicy("/content/rep:policy/allow"));
+        assertEquals(8, JcrValueMapSnapshotCache.indexOfPolicy("/content/rep:cugPolicy"));
+
+        assertEquals("test", getValueMap().get("string"));
+        assertEquals(1, cache.size());
+        final Event policy = mock(Event.class);
+        when(policy.getType()).thenReturn(Event.PROPERTY_CHANGED);
+        when(policy.getPath()).thenReturn(rootNode.getPath() + "/rep:cugPolicy/rep:principalNames");
+        cache.onEvent(new EventIteratorAdapter(Collections.singleton(policy)));
+        assertEquals(0, cache.size());
+    }
+
+    public void testEviction() throws Exception {
+        final Node parent = rootNode.addNode("children", "nt:unstructured");
+        final Node[] children = new Node[20];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = parent.addNode("child" + i, "nt:unstructured");
+        }
+        getSession().save();
+
+        // the first child is read again and again, the others once
+        for (int i = 0; i < children.length; i++) {
+            assertNotNull(new JcrValueMap(children[0], getHelperData()).get("jcr:primaryType"));
+            assertNotNull(new JcrValueMap(children[i], getHelperData()).get("jcr:primaryType"));
+            assertTrue(cache.size() <= 10);
+        }
+        final int size = cache.size();
+        cache.invalidate(children[0].getPath(), false);
+        assertEquals(size - 1, cache.size());
+    }
+
+    public void testPendingChanges() throws Exception {
+        rootNode.setProperty("string", "pending");
+        try {
+            assertEquals("pending", getValueMap().get("string"));
+            assertEquals(0, cache.size());
+        } finally {
+            getSession().refresh(false);
+        }
+    }
+
+    public void testStaleSession() throws Exception {
+        final HelperData stale = getHelperData();
+        cache.invalidate(rootNode.getPath(), false);
+        assertEquals("test", new JcrValueMap(rootNode, stale).get("string"));
+        assertEquals(0, cache.size());
+
+        // nor for the subtree of an invalidated ancestor
+        final HelperData staleTree = getHelperData();
+        cache.invalidate(rootNode.getParent().getPath(), true);
+        assertEquals("test", new JcrValueMap(rootNode, staleTree).get("string"));
+        assertEquals(0, cache.size());
+
+        // a current session caches the snapshot, used by the stale one
+        assertEquals("test", getValueMap().get("string"));
+        assertEquals(1, cache.size());
+        assertEquals("test", new JcrValueMap(rootNode, stale).get("string"));
+
+        // the session did not log in as a user
+        assertEquals("test", new JcrValueMap(rootNode,
+            new HelperData(new AtomicReference<DynamicClassLoaderManager>(), cache, 0)).get("string"));
+    }
+
+    public void testDeepInvalidation() throws Exception {
+        final Node child = rootNode.addNode("child", "nt:unstructured");
+        final Node sibling = getSession().getRootNode().addNode(rootNode.getName() + "-sibling", "nt:unstructured");
+        getSession().save();
+        try {
+            assertNotNull(new JcrValueMap(child, getHelperData()).get("jcr:primaryType"));
+            assertNotNull(new JcrValueMap(sibling, getHelperData()).get("jcr:primaryType"));
+            assertEquals("test", getValueMap().get("string"));
+            assertEquals(3, cache.size());
+
+            cache.invalidate(rootNode.getPath(), true);
+            assertEquals(1, cache.size());
+        } finally {
+            sibling.remove();
+            getSession().save();
+        }
+    }
+}
@@ -26,10 +26,12 @@ import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.path.PathSet;
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.commons.testing.jcr.MockNode;
 import org.apache.sling.commons.testing.jcr.MockNodeIterator;
 import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrValueMapSnapshotCache;
 import org.apache.sling.jcr.resource.internal.helper.jcr.JcrNodeResourceIterator;
 
 import junit.framework.TestCase;
@@ -40,6 +42,13 @@ public class JcrNodeResourceIteratorTest extends TestCase {
         return new HelperData(new AtomicReference<DynamicClassLoaderManager>());
     }
 
+    private HelperData getSnapshotHelperData() {
+        final JcrValueMapSnapshotCache cache = new JcrValueMapSnapshotCache(100);
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), cache, 3);
+        helper.setSnapshotStamp(cache.getStamp());
+        return helper;
+    }
+
     public void testEmpty() {
         NodeIterator ni = new MockNodeIterator(null);
         JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getHelperData(), null);
@@ -102,6 +111,55 @@ public class JcrNodeResourceIteratorTest extends TestCase {
         }
     }
 
+    public void testPaged() throws RepositoryException {
+        int numNodes = 10;
+        String pathBase = "/parent/path/node/";
+        Node[] nodes = new Node[numNodes];
+        for (int i=0; i < nodes.length; i++) {
+            nodes[i] = new MockNode(pathBase + i, "some:type" + i);
+        }
+        NodeIterator ni = new MockNodeIterator(nodes);
+        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getSnapshotHelperData(),
+                PathSet.fromStrings(pathBase + 4), 3);
+        assertEquals(-1, ni.getPosition());
+
+        assertTrue(ri.hasNext());
+        assertEquals(2, ni.getPosition());
+
+        for (int i=0; i < nodes.length; i++) {
+            if (i == 4) {
+                continue;
+            }
+            assertTrue(ri.hasNext());
+            Resource res = ri.next();
+            assertEquals(pathBase + i, res.getPath());
+            assertEquals(nodes[i].getPrimaryNodeType().getName(), res.getResourceType());
+        }
+
+        assertFalse(ri.hasNext());
+
+        try {
+            ri.next();
+            fail("Expected no element in the iterator");
+        } catch (NoSuchElementException nsee) {
+            // expected
+        }
+    }
+
+    public void testPagedWithoutSnapshots() throws RepositoryException {
+        Node[] nodes = new Node[] { new MockNode("/node0"), new MockNode("/node1") };
+        NodeIterator ni = new MockNodeIterator(nodes);
+        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, null, null, ni, getHelperData(), null, 3);
+        assertEquals(-1, ni.getPosition());
+
+        assertTrue(ri.hasNext());
+        assertEquals(0, ni.getPosition());
+        assertEquals("/node0", ri.next().getPath());
+        assertEquals(0, ni.getPosition());
+        assertEquals("/node1", ri.next().getPath());
+        assertFalse(ri.hasNext());
+    }
+
     public void testRoot() throws RepositoryException {
         String path = "/child";
         Node node = new MockNode(path);
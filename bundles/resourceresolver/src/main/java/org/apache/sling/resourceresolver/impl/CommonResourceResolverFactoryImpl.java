@@ -39,6 +39,8 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.path.Path;
 import org.apache.sling.resourceresolver.impl.console.ResourceResolverWebConsolePlugin;
+import org.apache.sling.resourceresolver.impl.helper.ResourceCacheManager;
+import org.apache.sling.resourceresolver.impl.helper.ResourceTypeHierarchyCache;
 import org.apache.sling.resourceresolver.impl.helper.ResourceDecoratorTracker;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverControl;
 import org.apache.sling.resourceresolver.impl.mapping.MapConfigurationProvider;
@@ -92,6 +94,12 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
 
     private final Object optionalNamespaceMangler;
 
+    /** The resource cache manager, <code>null</code> if resources are not cached. */
+    private final ResourceCacheManager resourceCacheManager;
+
+    /** The resource type hierarchy cache, <code>null</code> if resource types are not cached. */
+    private final ResourceTypeHierarchyCache resourceTypeHierarchyCache;
+
 
     /**
      * Create a new common resource resolver factory.
@@ -126,6 +134,19 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
             }
         }
         this.optionalNamespaceMangler = mangler;
+
+        if ( activator.isResourceCacheEnabled() ) {
+            this.resourceCacheManager = new ResourceCacheManager(activator.getResourceCacheMaxEntries(),
+                    activator.isSharedResourceCacheEnabled(), activator.getSharedResourceCacheMaxEntries());
+        } else {
+            this.resourceCacheManager = null;
+        }
+        if ( activator.isResourceTypeCacheEnabled() ) {
+            this.resourceTypeHierarchyCache = new ResourceTypeHierarchyCache(activator.getSearchPath(),
+                    activator.getResourceTypeCacheMaxEntries());
+        } else {
+            this.resourceTypeHierarchyCache = null;
+        }
     }
 
     // ---------- Resource Resolver Factory ------------------------------------
@@ -303,6 +324,12 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
             // available
             logger.debug("activate: unable to setup web console plugin.", ignore);
         }
+        if (resourceCacheManager != null) {
+            resourceCacheManager.register(bundleContext);
+        }
+        if (resourceTypeHierarchyCache != null) {
+            resourceTypeHierarchyCache.register(bundleContext);
+        }
         // set up the map entries from configuration
         try {
             mapEntries = new MapEntries(this, bundleContext, this.activator.getEventAdmin());
@@ -329,6 +356,12 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
             ((MapEntries)mapEntries).dispose();
             mapEntries = MapEntries.EMPTY;
         }
+        if (resourceCacheManager != null) {
+            resourceCacheManager.dispose();
+        }
+        if (resourceTypeHierarchyCache != null) {
+            resourceTypeHierarchyCache.dispose();
+        }
         resolverStackHolder = null;
 
         // copy and clear map before closing the remaining references
@@ -347,6 +380,32 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return this.activator.getSearchPath();
     }
 
+    /**
+     * Returns the resource cache manager or <code>null</code> if resources are not cached.
+     */
+    public ResourceCacheManager getResourceCacheManager() {
+        return this.resourceCacheManager;
+    }
+
+    /**
+     * Returns the resource type hierarchy cache or <code>null</code> if resource types are not cached.
+     */
+    public ResourceTypeHierarchyCache getResourceTypeHierarchyCache() {
+        return this.resourceTypeHierarchyCache;
+    }
+
+    /**
+     * Drop all cached resources and resource types.
+     */
+    public void clearResourceCache() {
+        if (this.resourceCacheManager != null) {
+            this.resourceCacheManager.clear();
+        }
+        if (this.resourceTypeHierarchyCache != null) {
+            this.resourceTypeHierarchyCache.clear();
+        }
+    }
+
     public boolean isMangleNamespacePrefixes() {
         return this.activator.isMangleNamespacePrefixes();
     }
@@ -416,6 +475,11 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return this.activator.getVanityBloomFilterMaxBytes();
     }
 
+    @Override
+    public boolean isVanityPathSnapshotEnabled() {
+        return this.activator.isVanityPathSnapshotEnabled();
+    }
+
     @Override
     public boolean isOptimizeAliasResolutionEnabled() {
         return this.activator.isOptimizeAliasResolutionEnabled();
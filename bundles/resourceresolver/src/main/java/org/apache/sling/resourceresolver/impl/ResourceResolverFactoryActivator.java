@@ -225,6 +225,34 @@ public class ResourceResolverFactoryActivator {
         return this.config.resource_resolver_vanitypath_bloomfilter_maxBytes();
     }
 
+    public boolean isVanityPathSnapshotEnabled() {
+        return this.config.resource_resolver_vanitypath_snapshot();
+    }
+
+    public boolean isResourceCacheEnabled() {
+        return this.config.resource_resolver_cache_enabled();
+    }
+
+    public int getResourceCacheMaxEntries() {
+        return this.config.resource_resolver_cache_maxEntries();
+    }
+
+    public boolean isSharedResourceCacheEnabled() {
+        return this.config.resource_resolver_cache_shared();
+    }
+
+    public int getSharedResourceCacheMaxEntries() {
+        return this.config.resource_resolver_cache_shared_maxEntries();
+    }
+
+    public boolean isResourceTypeCacheEnabled() {
+        return this.config.resource_resolver_resourcetype_cache_enabled();
+    }
+
+    public int getResourceTypeCacheMaxEntries() {
+        return this.config.resource_resolver_resourcetype_cache_maxEntries();
+    }
+
     public boolean shouldLogResourceResolverClosing() {
         return this.config.resource_resolver_log_closing();
     }
@@ -381,6 +409,8 @@ public class ResourceResolverFactoryActivator {
                         public void providerAdded() {
                             if ( factoryRegistration == null ) {
                                 checkFactoryPreconditions(null, null);
+                            } else {
+                                clearResourceCache();
                             }
 
                         }
@@ -388,6 +418,7 @@ public class ResourceResolverFactoryActivator {
                         @Override
                         public void providerRemoved(final String name, final String pid, final boolean stateful, final boolean isUsed) {
                             if ( factoryRegistration != null ) {
+                                clearResourceCache();
                                 if ( isUsed && (stateful || config.resource_resolver_providerhandling_paranoid()) ) {
                                     unregisterFactory();
                                 }
@@ -436,6 +467,17 @@ public class ResourceResolverFactoryActivator {
         this.unregisterFactory();
     }
 
+    /**
+     * Clear the resource cache of the registered factory, as resources
+     * might now be provided by a different provider.
+     */
+    private void clearResourceCache() {
+        final FactoryRegistration local = this.factoryRegistration;
+        if ( local != null && local.commonFactory != null ) {
+            local.commonFactory.clearResourceCache();
+        }
+    }
+
     /**
      * Unregister the factory (if registered)
      * This method might be called concurrently from deactivate and the
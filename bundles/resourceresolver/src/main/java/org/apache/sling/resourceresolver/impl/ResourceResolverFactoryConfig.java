@@ -143,6 +143,15 @@ public @interface ResourceResolverFactoryConfig {
                       "Changing this value is subject to vanity bloom filter rebuild")
     int resource_resolver_vanitypath_bloomfilter_maxBytes() default 1024000;
 
+    @AttributeDefinition(name = "Vanity path snapshot",
+        description = "If enabled, the cached vanity paths are persisted to the bundle data area and restored " +
+                      "on restart, so vanity paths resolve without waiting for the repository query. The " +
+                      "vanity paths are then reloaded from the repository in the background to pick up changes " +
+                      "made while the resource resolver was not running; until the reload is done the restored " +
+                      "entries are used. The snapshot is only used if the number of cached vanity path entries " +
+                      "is not limited. Default is false")
+    boolean resource_resolver_vanitypath_snapshot() default false;
+
     @AttributeDefinition(name = "Optimize alias resolution",
         description ="This flag controls whether to optimize" +
                      " the alias resolution by creating an internal cache of aliases. This might have an impact on the startup time"+
@@ -166,6 +175,40 @@ public @interface ResourceResolverFactoryConfig {
                      " will have precedence over existing /etc/map mapping")
     boolean resource_resolver_vanity_precedence() default false;
 
+    @AttributeDefinition(name = "Resource cache",
+        description = "If enabled, each resource resolver caches the resources returned by getResource and the " +
+                      "paths for which no resource exists. The cache is invalidated by changes done through the " +
+                      "resolver, on commit, revert and refresh and by observed resource changes. Changes done " +
+                      "through an adapted object like a JCR session are not seen until they are committed. " +
+                      "Default is false")
+    boolean resource_resolver_cache_enabled() default false;
+
+    @AttributeDefinition(name = "Maximum number of cached resources",
+        description = "The maximum number of paths cached by a single resource resolver. Default is 1000")
+    int resource_resolver_cache_maxEntries() default 1000;
+
+    @AttributeDefinition(name = "Shared resource cache",
+        description = "If enabled, the paths for which no resource exists are shared between the resource resolvers " +
+                      "of the same user. The shared entries are invalidated by observation, therefore a resource " +
+                      "created by a different resolver might not be found until the change has been observed. " +
+                      "Only used if the resource cache is enabled. Default is false")
+    boolean resource_resolver_cache_shared() default false;
+
+    @AttributeDefinition(name = "Maximum number of shared cache entries",
+        description = "The maximum number of paths shared per user and the maximum number of users with shared " +
+                      "entries. Default is 10000")
+    int resource_resolver_cache_shared_maxEntries() default 10000;
+
+    @AttributeDefinition(name = "Resource type hierarchy cache",
+        description = "If enabled, the resource super types looked up by isResourceType and getParentResourceType " +
+                      "are cached for all resource resolvers. Only resource types in the search path are cached " +
+                      "and the cache is invalidated by observed changes in the search path. Default is false")
+    boolean resource_resolver_resourcetype_cache_enabled() default false;
+
+    @AttributeDefinition(name = "Maximum number of cached resource types",
+        description = "The maximum number of cached resource super types and hierarchies. Default is 10000")
+    int resource_resolver_resourcetype_cache_maxEntries() default 10000;
+
     @AttributeDefinition(name = "Paranoid Provider Handling",
         description = "If this flag is enabled, an unregistration of a resource provider (not factory), "
                       + "is causing the resource resolver factory to restart, potentially cleaning up "
@@ -48,10 +48,13 @@ import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ResourceWrapper;
 import org.apache.sling.resourceresolver.impl.helper.RedirectResource;
+import org.apache.sling.resourceresolver.impl.helper.ResourceCache;
+import org.apache.sling.resourceresolver.impl.helper.ResourceCacheManager;
 import org.apache.sling.resourceresolver.impl.helper.ResourceIteratorDecorator;
 import org.apache.sling.resourceresolver.impl.helper.ResourcePathIterator;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverControl;
+import org.apache.sling.resourceresolver.impl.helper.ResourceTypeHierarchyCache;
 import org.apache.sling.resourceresolver.impl.helper.StarResource;
 import org.apache.sling.resourceresolver.impl.helper.URI;
 import org.apache.sling.resourceresolver.impl.helper.URIException;
@@ -90,12 +93,28 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
     private volatile Exception closedResolverException;
 
+    /** The resource cache, created on demand if resources are cached. */
+    private ResourceCache resourceCache;
+
+    /** The change count of the resource cache manager when this resolver last read a new state of the repository. */
+    private long resourceCacheChangeCount;
+
+    /** Looks up the super types which are not in the resource type hierarchy cache. */
+    private final ResourceTypeHierarchyCache.SuperTypeLoader superTypeLoader = new ResourceTypeHierarchyCache.SuperTypeLoader() {
+
+        @Override
+        public String getParentResourceType(final String resourceType) {
+            return control.getParentResourceType(factory, ResourceResolverImpl.this, resourceType);
+        }
+    };
+
     public ResourceResolverImpl(final CommonResourceResolverFactoryImpl factory, final boolean isAdmin, final Map<String, Object> authenticationInfo) throws LoginException {
         this(factory, isAdmin, authenticationInfo, factory.getResourceProviderTracker());
     }
 
     ResourceResolverImpl(final CommonResourceResolverFactoryImpl factory, final boolean isAdmin, final Map<String, Object> authenticationInfo, final ResourceProviderStorageProvider resourceProviderTracker) throws LoginException {
         this.factory = factory;
+        this.resourceCacheChangeCount = getResourceCacheChangeCount();
         this.context = new ResourceResolverContext(this, factory.getResourceAccessSecurityTracker());
         this.control = createControl(resourceProviderTracker, authenticationInfo, isAdmin);
         this.factory.register(this, control);
@@ -109,6 +128,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     private ResourceResolverImpl(final ResourceResolverImpl resolver, final Map<String, Object> authenticationInfo) throws LoginException {
         this.factory = resolver.factory;
+        this.resourceCacheChangeCount = getResourceCacheChangeCount();
         Map<String, Object> authInfo = new HashMap<>();
         if (resolver.control.getAuthenticationInfo() != null) {
             authInfo.putAll(resolver.control.getAuthenticationInfo());
@@ -172,6 +192,40 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         this.factory.unregister(this, this.control);
     }
 
+    /**
+     * Returns the resource cache of this resolver or <code>null</code> if
+     * resources are not cached.
+     */
+    private ResourceCache getResourceCache() {
+        if (this.resourceCache == null) {
+            final ResourceCacheManager manager = this.factory.getResourceCacheManager();
+            if (manager != null) {
+                // the user id of an administrative resolver does not reflect its access rights
+                final String userId = this.getUserID();
+                this.resourceCache = manager.createCache(userId == null || this.control.isAdmin() ? null : userId,
+                        this.resourceCacheChangeCount);
+            }
+        }
+        return this.resourceCache;
+    }
+
+    /**
+     * Returns the current change count of the resource cache manager.
+     */
+    private long getResourceCacheChangeCount() {
+        final ResourceCacheManager manager = this.factory.getResourceCacheManager();
+        return manager == null ? 0 : manager.getChangeCount();
+    }
+
+    /**
+     * Returns the resource type hierarchy cache or <code>null</code> if
+     * resource types are not cached for this resolver.
+     */
+    private ResourceTypeHierarchyCache getResourceTypeHierarchyCache() {
+        // an administrative resolver looks up the hierarchy with its own rights
+        return this.control.isAdmin() ? null : this.factory.getResourceTypeHierarchyCache();
+    }
+
     /**
      * Check if the resource resolver is already closed or the factory which created this resolver is no longer live.
      *
@@ -668,9 +722,19 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             if (path.startsWith("/")) {
                 final ParsedParameters parsedPath = new ParsedParameters(path);
                 path = ResourceUtil.normalize(parsedPath.getRawPath());
+                final ResourceCache cache = (path != null && parsedPath.getParameters().isEmpty()) ? getResourceCache() : null;
+                if (cache != null) {
+                    result = cache.getResource(path);
+                    if (result != null) {
+                        return result;
+                    }
+                }
                 result = (path != null) ? getAbsoluteResourceInternal(parent, path, parsedPath.getParameters(), false) : null;
                 if (result != null) {
                     result = this.factory.getResourceDecoratorTracker().decorate(result);
+                    if (cache != null) {
+                        cache.putResource(path, result);
+                    }
                 }
             } else {
 
@@ -1042,6 +1106,12 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             parentToUse = null;
         }
 
+        final ResourceCache cache = parameters.isEmpty() ? getResourceCache() : null;
+        if (cache != null && cache.isMissing(path, isResolve)) {
+            logger.debug("getResourceInternal: Cached path '{}' does not resolve to a resource", path);
+            return null;
+        }
+
         final Resource resource = this.control.getResource(this.context, path, parentToUse, parameters, isResolve);
         if (resource != null) {
             resource.getResourceMetadata().setResolutionPath(path);
@@ -1049,6 +1119,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             return resource;
         }
 
+        if (cache != null) {
+            cache.putMissing(path, isResolve);
+        }
         logger.debug("getResourceInternal: Cannot resolve path '{}' to a resource", path);
         return null;
     }
@@ -1125,6 +1198,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
         // if resource is null, we get an NPE as stated in the API
         this.control.delete(this.context, resource);
+        resourceChanged(resource.getPath());
     }
 
     /**
@@ -1157,6 +1231,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             }
         }
         final Resource rsrc = this.control.create(this.context, path, properties);
+        resourceChanged(path);
         rsrc.getResourceMetadata().setResolutionPath(rsrc.getPath());
         return this.factory.getResourceDecoratorTracker().decorate(rsrc);
     }
@@ -1166,7 +1241,12 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void revert() {
+        final long changeCount = getResourceCacheChangeCount();
         this.control.revert(this.context);
+        this.resourceCacheChangeCount = changeCount;
+        if (this.resourceCache != null) {
+            this.resourceCache.reverted(changeCount);
+        }
     }
 
     /**
@@ -1174,7 +1254,22 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void commit() throws PersistenceException {
+        final long changeCount = getResourceCacheChangeCount();
         this.control.commit(this.context);
+        this.resourceCacheChangeCount = changeCount;
+        if (this.resourceCache != null) {
+            this.resourceCache.committed(changeCount);
+        }
+    }
+
+    /**
+     * Inform the resource cache about a change through this resolver.
+     */
+    private void resourceChanged(final String path) {
+        final ResourceCache cache = getResourceCache();
+        if (cache != null) {
+            cache.changed(path);
+        }
     }
 
     /**
@@ -1213,6 +1308,10 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public String getParentResourceType(final String resourceType) {
+        final ResourceTypeHierarchyCache cache = getResourceTypeHierarchyCache();
+        if (cache != null && cache.isCacheable(resourceType)) {
+            return cache.getParentResourceType(resourceType, this.superTypeLoader);
+        }
         return this.control.getParentResourceType(this.factory, this, resourceType);
     }
 
@@ -1226,8 +1325,15 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
              // Check if the resource is of the given type. This method first checks the
              // resource type of the resource, then its super resource type and continues
              //  to go up the resource super type hierarchy.
+             final ResourceTypeHierarchyCache cache = getResourceTypeHierarchyCache();
              if (ResourceTypeUtil.areResourceTypesEqual(resourceType, resource.getResourceType(), getSearchPath())) {
                  result = true;
+             } else if (cache != null && resource.getResourceSuperType() == null && cache.isCacheable(resource.getResourceType())) {
+                 final ResourceTypeHierarchyCache.Hierarchy hierarchy = cache.getHierarchy(resource.getResourceType(), this.superTypeLoader);
+                 result = hierarchy.contains(ResourceTypeUtil.relativizeResourceType(resourceType, getSearchPath()));
+                 if (!result && hierarchy.isCyclic()) {
+                     throw new SlingException("Cyclic dependency for resourceSuperType hierarchy detected on resource " + resource.getPath(), null);
+                 }
              } else {
                  Set<String> superTypesChecked = new HashSet<>();
                  String superType = this.getParentResourceType(resource);
@@ -1253,7 +1359,12 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void refresh() {
+        final long changeCount = getResourceCacheChangeCount();
         this.control.refresh(this.context);
+        this.resourceCacheChangeCount = changeCount;
+        if (this.resourceCache != null) {
+            this.resourceCache.refreshed(changeCount);
+        }
     }
 
     @Override
@@ -1278,6 +1389,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     @Override
     public Resource copy(final String srcAbsPath, final String destAbsPath) throws PersistenceException {
         Resource rsrc = this.control.copy(this.context, srcAbsPath, destAbsPath);
+        resourceChanged(destAbsPath);
         if (rsrc != null ) {
             rsrc.getResourceMetadata().setResolutionPath(rsrc.getPath());
             rsrc = this.factory.getResourceDecoratorTracker().decorate(rsrc);
@@ -1288,6 +1400,8 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     @Override
     public Resource move(final String srcAbsPath, final String destAbsPath) throws PersistenceException {
         Resource rsrc = this.control.move(this.context, srcAbsPath, destAbsPath);
+        resourceChanged(srcAbsPath);
+        resourceChanged(destAbsPath);
         if (rsrc != null ) {
             rsrc.getResourceMetadata().setResolutionPath(rsrc.getPath());
             rsrc = this.factory.getResourceDecoratorTracker().decorate(rsrc);
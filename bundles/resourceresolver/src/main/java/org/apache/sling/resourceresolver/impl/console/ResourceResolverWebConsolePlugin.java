@@ -45,8 +45,11 @@ import org.apache.sling.api.resource.runtime.dto.ResourceProviderDTO;
 import org.apache.sling.api.resource.runtime.dto.ResourceProviderFailureDTO;
 import org.apache.sling.api.resource.runtime.dto.RuntimeDTO;
 import org.apache.sling.resourceresolver.impl.CommonResourceResolverFactoryImpl;
+import org.apache.sling.resourceresolver.impl.helper.ResourceCacheManager;
+import org.apache.sling.resourceresolver.impl.helper.ResourceTypeHierarchyCache;
 import org.apache.sling.resourceresolver.impl.helper.URI;
 import org.apache.sling.resourceresolver.impl.helper.URIException;
+import org.apache.sling.resourceresolver.impl.mapping.CountingBloomFilter;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntriesHandler;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntry;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
@@ -198,6 +201,12 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
 
         separatorHtml(pw);
 
+        dumpBloomFilterHtml(pw, mapEntries.getVanityBloomFilter());
+
+        dumpResourceCacheHtml(pw, resolverFactory.getResourceCacheManager());
+
+        dumpResourceTypeCacheHtml(pw, resolverFactory.getResourceTypeHierarchyCache());
+
         dumpDTOsHtml(pw);
 
         pw.println("</table>");
@@ -283,6 +292,51 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         separatorText(pw);
 
         dumpMapText(pw, "Mapping Map Entries", mapEntries.getMapMaps());
+
+        final CountingBloomFilter filter = mapEntries.getVanityBloomFilter();
+        if (filter != null) {
+            separatorText(pw);
+
+            pw.println("Vanity Path Bloom Filter");
+            final String format = "%25s%25s\r\n";
+            pw.printf(format, "Entries", filter.getEntryCount());
+            pw.printf(format, "Capacity", filter.getCapacity());
+            pw.printf(format, "Stages", filter.getStageCount());
+            pw.printf(format, "Size (bytes)", filter.getByteSize() + " / " + filter.getMaxBytes());
+            pw.printf(format, "Fill Ratio", formatRatio(filter.getFillRatio()));
+            pw.printf(format, "False Positive Rate", formatRatio(filter.getFalsePositiveRate()));
+        }
+
+        final ResourceCacheManager cache = resolverFactory.getResourceCacheManager();
+        if (cache != null) {
+            separatorText(pw);
+
+            pw.println("Resource Cache");
+            final String format = "%25s%25s\r\n";
+            pw.printf(format, "Hits", cache.getHits());
+            pw.printf(format, "Missing Hits", cache.getMissingHits());
+            pw.printf(format, "Shared Hits", cache.getSharedHits());
+            pw.printf(format, "Misses", cache.getMisses());
+            pw.printf(format, "Hit Ratio", formatRatio(cache.getHitRatio()));
+            pw.printf(format, "Invalidations", cache.getInvalidations());
+            if (cache.isShared()) {
+                pw.printf(format, "Shared Users", cache.getSharedUserCount());
+                pw.printf(format, "Shared Entries", cache.getSharedEntryCount());
+            }
+        }
+
+        final ResourceTypeHierarchyCache typeCache = resolverFactory.getResourceTypeHierarchyCache();
+        if (typeCache != null) {
+            separatorText(pw);
+
+            pw.println("Resource Type Hierarchy Cache");
+            final String format = "%25s%25s\r\n";
+            pw.printf(format, "Entries", typeCache.getSize() + " / " + typeCache.getMaxEntries());
+            pw.printf(format, "Hits", typeCache.getHits());
+            pw.printf(format, "Misses", typeCache.getMisses());
+            pw.printf(format, "Hit Ratio", formatRatio(typeCache.getHitRatio()));
+            pw.printf(format, "Invalidations", typeCache.getInvalidations());
+        }
     }
 
     // ---------- internal
@@ -331,6 +385,79 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         }
     }
 
+    private void dumpBloomFilterHtml(final PrintWriter pw, final CountingBloomFilter filter) {
+        if (filter == null) {
+            return;
+        }
+        titleHtml(pw, "Vanity Path Bloom Filter",
+                "The bloom filter used to avoid repository queries for paths which are not a vanity path. "
+                + "The false positive rate is estimated from the fill ratio of the filter.");
+
+        rowHtml(pw, "Entries", String.valueOf(filter.getEntryCount()));
+        rowHtml(pw, "Capacity", String.valueOf(filter.getCapacity()));
+        rowHtml(pw, "Stages", String.valueOf(filter.getStageCount()));
+        rowHtml(pw, "Size (bytes)", filter.getByteSize() + " / " + filter.getMaxBytes());
+        rowHtml(pw, "Fill Ratio", formatRatio(filter.getFillRatio()));
+        rowHtml(pw, "False Positive Rate", formatRatio(filter.getFalsePositiveRate()));
+
+        separatorHtml(pw);
+    }
+
+    private void dumpResourceCacheHtml(final PrintWriter pw, final ResourceCacheManager cache) {
+        if (cache == null) {
+            return;
+        }
+        titleHtml(pw, "Resource Cache",
+                "The resources and missing paths cached by the resource resolvers. Missing hits are lookups of paths "
+                + "known to not exist, shared hits are missing paths shared between the resolvers of a user.");
+
+        rowHtml(pw, "Hits", String.valueOf(cache.getHits()));
+        rowHtml(pw, "Missing Hits", String.valueOf(cache.getMissingHits()));
+        rowHtml(pw, "Shared Hits", String.valueOf(cache.getSharedHits()));
+        rowHtml(pw, "Misses", String.valueOf(cache.getMisses()));
+        rowHtml(pw, "Hit Ratio", formatRatio(cache.getHitRatio()));
+        rowHtml(pw, "Invalidations", String.valueOf(cache.getInvalidations()));
+        rowHtml(pw, "Maximum Entries per Resolver", String.valueOf(cache.getMaxEntries()));
+        if (cache.isShared()) {
+            rowHtml(pw, "Shared Users", String.valueOf(cache.getSharedUserCount()));
+            rowHtml(pw, "Shared Entries", String.valueOf(cache.getSharedEntryCount()));
+        }
+
+        separatorHtml(pw);
+    }
+
+    private void dumpResourceTypeCacheHtml(final PrintWriter pw, final ResourceTypeHierarchyCache cache) {
+        if (cache == null) {
+            return;
+        }
+        titleHtml(pw, "Resource Type Hierarchy Cache",
+                "The resource super types cached for all resource resolvers, except administrative ones. "
+                + "The cache is cleared on any change below " + Arrays.asList(cache.getSearchPath()) + ".");
+
+        rowHtml(pw, "Entries", cache.getSize() + " / " + cache.getMaxEntries());
+        rowHtml(pw, "Hits", String.valueOf(cache.getHits()));
+        rowHtml(pw, "Misses", String.valueOf(cache.getMisses()));
+        rowHtml(pw, "Hit Ratio", formatRatio(cache.getHitRatio()));
+        rowHtml(pw, "Invalidations", String.valueOf(cache.getInvalidations()));
+
+        separatorHtml(pw);
+    }
+
+    private void rowHtml(final PrintWriter pw, final String name, final String value) {
+        pw.println("<tr class='content'>");
+        pw.print("<td class='content'>");
+        pw.print(ResponseUtil.escapeXml(name));
+        pw.println("</td>");
+        pw.print("<td class='content' colspan='2'>");
+        pw.print(ResponseUtil.escapeXml(value));
+        pw.println("</td>");
+        pw.println("</tr>");
+    }
+
+    private String formatRatio(final double ratio) {
+        return String.format("%.4f %%", ratio * 100);
+    }
+
     private void titleHtml(PrintWriter pw, String title, String description) {
         pw.print("<tr class='content'>");
         pw.print("<th colspan='3'class='content container'>");
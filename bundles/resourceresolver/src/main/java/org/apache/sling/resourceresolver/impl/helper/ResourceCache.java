@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+
+/**
+ * The resource cache of a single resource resolver.
+ * <p>
+ * The cache holds the resources returned by <code>getResource</code> and
+ * the paths for which no resource exists, either for <code>getResource</code>
+ * or for <code>resolve</code> which does not return synthetic resources.
+ * Entries are invalidated by the changes done through the resolver and by
+ * the changes observed by the {@link ResourceCacheManager}.
+ * <p>
+ * Changes made directly through an adapted object, like a JCR session, are
+ * not seen by this cache until they are committed.
+ * <p>
+ * A missing resource is only shared with the other resolvers of the user if
+ * no change has been observed since the resolver last read a new state of
+ * the repository. Otherwise the resolver might still see an older state and
+ * the entry is only kept in this cache.
+ * <p>
+ * This class is not thread safe (same as the resource resolver).
+ */
+public class ResourceCache {
+
+    private final ResourceCacheManager manager;
+
+    /** The user id used for the shared entries, <code>null</code> if not shared. */
+    private final String userId;
+
+    private final Map<String, Entry> entries;
+
+    /** The paths changed through the resolver since the last commit. */
+    private final List<String> changedPaths = new ArrayList<>();
+
+    /** The change count of the manager the entries are up to date with. */
+    private long changeCount;
+
+    /** The change count of the manager when the resolver last read a new state of the repository. */
+    private long snapshotChangeCount;
+
+    ResourceCache(final ResourceCacheManager manager, final String userId, final int maxEntries,
+            final long snapshotChangeCount) {
+        this.manager = manager;
+        this.userId = userId;
+        this.changeCount = manager.getChangeCount();
+        this.snapshotChangeCount = snapshotChangeCount;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached resource for the path.
+     *
+     * @param path the normalized absolute path
+     * @return the resource or <code>null</code> if no resource is cached
+     */
+    public Resource getResource(final String path) {
+        update();
+        final Entry entry = this.entries.get(path);
+        if (entry != null && entry.resource != null) {
+            this.manager.hit();
+            return entry.resource;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a lookup of the path is known to return no resource.
+     * If not, the lookup is counted as a miss.
+     *
+     * @param path the normalized absolute path
+     * @param isResolve whether the resource is looked up for resolving
+     * @return <code>true</code> if no resource exists for the path
+     */
+    public boolean isMissing(final String path, final boolean isResolve) {
+        update();
+        final Entry entry = this.entries.get(path);
+        if (entry != null && (entry.missing & flag(isResolve)) != 0) {
+            this.manager.missingHit();
+            return true;
+        }
+        if (isShared() && this.manager.isSharedMissing(this.userId, path, isResolve)) {
+            return true;
+        }
+        this.manager.miss();
+        return false;
+    }
+
+    /**
+     * Cache the resource returned by <code>getResource</code>.
+     */
+    public void putResource(final String path, final Resource resource) {
+        getEntry(path).resource = resource;
+    }
+
+    /**
+     * Cache that no resource exists for the path.
+     */
+    public void putMissing(final String path, final boolean isResolve) {
+        // if getResource does not return a resource, resolve does not either
+        final int flags = isResolve ? ResourceCacheManager.MISSING_RESOLVE
+                : ResourceCacheManager.MISSING | ResourceCacheManager.MISSING_RESOLVE;
+        getEntry(path).missing |= flags;
+        if (isShared()) {
+            this.manager.putSharedMissing(this.userId, path, flags, this.snapshotChangeCount);
+        }
+    }
+
+    /**
+     * Inform about a change of the path (and its subtree) through the resolver.
+     */
+    public void changed(final String path) {
+        this.changedPaths.add(path);
+        invalidateTree(path);
+    }
+
+    /**
+     * The changes of the resolver have been persisted.
+     *
+     * @param snapshotChangeCount the change count of the manager before the changes were persisted
+     */
+    public void committed(final long snapshotChangeCount) {
+        // make them visible to the other resolvers before observation catches up
+        this.manager.invalidate(this.changedPaths);
+        this.changedPaths.clear();
+        this.entries.clear();
+        this.snapshotChangeCount = snapshotChangeCount;
+    }
+
+    /**
+     * The changes of the resolver have been reverted.
+     *
+     * @param snapshotChangeCount the change count of the manager before the changes were reverted
+     */
+    public void reverted(final long snapshotChangeCount) {
+        this.changedPaths.clear();
+        this.entries.clear();
+        this.snapshotChangeCount = snapshotChangeCount;
+    }
+
+    /**
+     * The resolver has been refreshed, pending changes are kept.
+     *
+     * @param snapshotChangeCount the change count of the manager before the resolver was refreshed
+     */
+    public void refreshed(final long snapshotChangeCount) {
+        this.entries.clear();
+        this.snapshotChangeCount = snapshotChangeCount;
+    }
+
+    /**
+     * The shared entries are not used while the resolver has pending changes,
+     * as they do not reflect the changes.
+     */
+    private boolean isShared() {
+        return this.userId != null && this.changedPaths.isEmpty();
+    }
+
+    private Entry getEntry(final String path) {
+        Entry entry = this.entries.get(path);
+        if (entry == null) {
+            entry = new Entry();
+            this.entries.put(path, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Apply the changes observed by the manager since the last call.
+     */
+    private void update() {
+        final long current = this.manager.getChangeCount();
+        if (current == this.changeCount) {
+            return;
+        }
+        final List<String> paths = new ArrayList<>();
+        if (this.manager.getChangesSince(this.changeCount, paths)) {
+            for (final String path : paths) {
+                invalidateTree(path);
+            }
+        } else {
+            this.entries.clear();
+        }
+        this.changeCount = current;
+    }
+
+    private void invalidateTree(final String path) {
+        if ("/".equals(path)) {
+            this.entries.clear();
+            return;
+        }
+        final String prefix = path.concat("/");
+        final Iterator<String> i = this.entries.keySet().iterator();
+        while (i.hasNext()) {
+            final String key = i.next();
+            if (key.equals(path) || key.startsWith(prefix)) {
+                i.remove();
+            }
+        }
+    }
+
+    private static int flag(final boolean isResolve) {
+        return isResolve ? ResourceCacheManager.MISSING_RESOLVE : ResourceCacheManager.MISSING;
+    }
+
+    /**
+     * Number of cached paths.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    private static final class Entry {
+
+        Resource resource;
+
+        int missing;
+    }
+}
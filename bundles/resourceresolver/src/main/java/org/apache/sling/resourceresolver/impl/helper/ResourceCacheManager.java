@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.resourceresolver.impl.mapping.PathTrie;
+import org.apache.sling.resourceresolver.impl.mapping.PathTrieMap;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * The resource cache manager creates the {@link ResourceCache} of each
+ * resource resolver and keeps the state shared between them: the log of
+ * observed changes, the optional per user cache of missing resources and
+ * the cache statistics.
+ * <p>
+ * Only lookups of resources which do not exist are shared between resolvers,
+ * as a resource object is bound to the resolver which created it. The shared
+ * entries are invalidated by observation, which means a resource created by
+ * another resolver might be reported as missing until the change event has
+ * been delivered.
+ */
+public class ResourceCacheManager implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    /** Number of invalidations kept for the resolver caches. */
+    private static final int CHANGE_LOG_SIZE = 1024;
+
+    /** Access control is stored in nodes with this prefix and {@link #POLICY_SUFFIX}. */
+    private static final String REP_PREFIX = "/rep:";
+
+    /** The suffix of the access control nodes, like <code>rep:policy</code> or <code>rep:cugPolicy</code>. */
+    private static final String POLICY_SUFFIX = "policy";
+
+    /** Authorizables (and therefore group memberships) are stored below this path. */
+    private static final String AUTHORIZABLES_PATH = "/home/";
+
+    /** Login tokens are stored in nodes with this name. */
+    private static final String TOKENS_NODE = "/.tokens";
+
+    static final int MISSING = 1;
+
+    static final int MISSING_RESOLVE = 2;
+
+    private final int maxEntries;
+
+    private final boolean shared;
+
+    private final int sharedMaxEntries;
+
+    private final String[] changeLog = new String[CHANGE_LOG_SIZE];
+
+    private volatile long changeCount;
+
+    private final ConcurrentMap<String, PathTrieMap<Integer>> missingByUser = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong missingHits = new AtomicLong();
+
+    private final AtomicLong sharedHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private volatile ServiceRegistration<ResourceChangeListener> registration;
+
+    /**
+     * Create a new manager.
+     *
+     * @param maxEntries the maximum number of entries cached by a resolver
+     * @param shared whether missing resources are shared between the resolvers of a user
+     * @param sharedMaxEntries the maximum number of shared entries per user
+     */
+    public ResourceCacheManager(final int maxEntries, final boolean shared, final int sharedMaxEntries) {
+        this.maxEntries = maxEntries;
+        this.shared = shared;
+        this.sharedMaxEntries = sharedMaxEntries;
+    }
+
+    /**
+     * Register the manager for all resource changes.
+     */
+    public void register(final BundleContext bundleContext) {
+        final Dictionary<String, Object> props = new Hashtable<>();
+        props.put(ResourceChangeListener.PATHS, "/");
+        props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Resource Cache Observation");
+        props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        this.registration = bundleContext.registerService(ResourceChangeListener.class, this, props);
+    }
+
+    /**
+     * Unregister the manager and drop all shared entries.
+     */
+    public void dispose() {
+        final ServiceRegistration<ResourceChangeListener> reg = this.registration;
+        if (reg != null) {
+            this.registration = null;
+            try {
+                reg.unregister();
+            } catch (final IllegalStateException ise) {
+                // ignore
+            }
+        }
+        this.missingByUser.clear();
+    }
+
+    /**
+     * Create the cache for a new resource resolver.
+     *
+     * @param userId the user of the resolver, <code>null</code> if no entries should be shared
+     * @param snapshotChangeCount the change count before the resolver read the current state of the repository
+     * @return the cache
+     */
+    public ResourceCache createCache(final String userId, final long snapshotChangeCount) {
+        return new ResourceCache(this, this.shared ? userId : null, this.maxEntries, snapshotChangeCount);
+    }
+
+    /**
+     * Drop all cached entries, for example after the resource providers changed.
+     */
+    public void clear() {
+        invalidate("/");
+    }
+
+    @Override
+    public void onChange(final List<ResourceChange> changes) {
+        for (final ResourceChange change : changes) {
+            invalidate(getInvalidationRoot(change.getPath()));
+        }
+    }
+
+    /**
+     * Returns the root of the tree which might look different after a change
+     * of the path: adding a resource or changing the access control of a
+     * resource makes its subtree visible.
+     */
+    static String getInvalidationRoot(final String path) {
+        final int acIndex = indexOfPolicy(path);
+        if (acIndex == 0) {
+            return "/";
+        }
+        if (acIndex > 0) {
+            return path.substring(0, acIndex);
+        }
+        if (path.startsWith(AUTHORIZABLES_PATH) && !path.contains(TOKENS_NODE)) {
+            // group memberships might have changed
+            return "/";
+        }
+        return path;
+    }
+
+    /**
+     * Get the index of the first access control policy node in the path,
+     * like <code>rep:policy</code>, <code>rep:cugPolicy</code> or
+     * <code>rep:repoPolicy</code>.
+     * @param path The path
+     * @return The index of the slash before the policy node or -1
+     */
+    static int indexOfPolicy(final String path) {
+        int start = path.indexOf(REP_PREFIX);
+        while (start != -1) {
+            int end = path.indexOf('/', start + 1);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (end - start > REP_PREFIX.length()
+                    && path.regionMatches(true, end - POLICY_SUFFIX.length(), POLICY_SUFFIX, 0, POLICY_SUFFIX.length())) {
+                return start;
+            }
+            start = path.indexOf(REP_PREFIX, end);
+        }
+        return -1;
+    }
+
+    /**
+     * Invalidate all entries at or below the path.
+     */
+    void invalidate(final String path) {
+        synchronized (this.changeLog) {
+            this.changeLog[(int) (this.changeCount % CHANGE_LOG_SIZE)] = path;
+            this.changeCount++;
+        }
+        this.invalidations.incrementAndGet();
+        if ("/".equals(path)) {
+            this.missingByUser.clear();
+        } else {
+            for (final PathTrieMap<Integer> missing : this.missingByUser.values()) {
+                removeTree(missing, path);
+            }
+        }
+    }
+
+    /**
+     * Invalidate the shared entries at or below the paths.
+     */
+    void invalidate(final Collection<String> paths) {
+        for (final String path : paths) {
+            invalidate(path);
+        }
+    }
+
+    /**
+     * The number of invalidations so far.
+     */
+    public long getChangeCount() {
+        return this.changeCount;
+    }
+
+    /**
+     * Add the invalidated paths since the given change count to the list.
+     *
+     * @return <code>false</code> if some of the changes are not available
+     *         any more and everything has to be invalidated
+     */
+    boolean getChangesSince(final long since, final List<String> paths) {
+        synchronized (this.changeLog) {
+            if (this.changeCount - since > CHANGE_LOG_SIZE) {
+                return false;
+            }
+            for (long i = since; i < this.changeCount; i++) {
+                paths.add(this.changeLog[(int) (i % CHANGE_LOG_SIZE)]);
+            }
+            return true;
+        }
+    }
+
+    boolean isSharedMissing(final String userId, final String path, final boolean isResolve) {
+        final PathTrieMap<Integer> missing = this.missingByUser.get(userId);
+        if (missing != null) {
+            final Integer flags = missing.get(path);
+            if (flags != null && (flags & (isResolve ? MISSING_RESOLVE : MISSING)) != 0) {
+                this.sharedHits.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void putSharedMissing(final String userId, final String path, final int flags, final long changeCount) {
+        // the resolver might not see the changes observed since
+        if (this.changeCount != changeCount) {
+            return;
+        }
+        PathTrieMap<Integer> missing = this.missingByUser.get(userId);
+        if (missing == null) {
+            if (this.missingByUser.size() >= this.sharedMaxEntries) {
+                this.missingByUser.clear();
+            }
+            missing = new PathTrieMap<>();
+            final PathTrieMap<Integer> old = this.missingByUser.putIfAbsent(userId, missing);
+            if (old != null) {
+                missing = old;
+            }
+        } else if (missing.size() >= this.sharedMaxEntries) {
+            missing.clear();
+        }
+        final Integer old = missing.get(path);
+        missing.put(path, old == null ? flags : old | flags);
+        // the lookup raced with a change, the entry might already be stale
+        if (this.changeCount != changeCount) {
+            missing.remove(path);
+        }
+    }
+
+    private static void removeTree(final PathTrieMap<Integer> map, final String path) {
+        final PathTrie<Integer> snapshot = map.snapshot();
+        if (snapshot.get(path) != null) {
+            map.remove(path);
+        }
+        for (final Map.Entry<String, Integer> entry : snapshot.entriesBelow(path)) {
+            map.remove(entry.getKey());
+        }
+    }
+
+    void hit() {
+        this.hits.incrementAndGet();
+    }
+
+    void missingHit() {
+        this.missingHits.incrementAndGet();
+    }
+
+    void miss() {
+        this.misses.incrementAndGet();
+    }
+
+    public boolean isShared() {
+        return this.shared;
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * The number of resources returned from a resolver cache.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * The number of missing resources detected by a resolver cache.
+     */
+    public long getMissingHits() {
+        return this.missingHits.get();
+    }
+
+    /**
+     * The number of missing resources detected by the shared cache.
+     */
+    public long getSharedHits() {
+        return this.sharedHits.get();
+    }
+
+    /**
+     * The number of lookups passed on to the resource providers.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * The number of users with shared entries.
+     */
+    public int getSharedUserCount() {
+        return this.missingByUser.size();
+    }
+
+    /**
+     * The number of shared entries over all users.
+     */
+    public long getSharedEntryCount() {
+        long count = 0;
+        for (final PathTrieMap<Integer> missing : this.missingByUser.values()) {
+            count += missing.size();
+        }
+        return count;
+    }
+
+    /**
+     * The ratio of lookups answered by a cache.
+     */
+    public double getHitRatio() {
+        final long cached = getHits() + getMissingHits() + getSharedHits();
+        final long total = cached + getMisses();
+        return total == 0 ? 0 : (double) cached / total;
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.resourceresolver.impl.ResourceTypeUtil;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Cache of the resource type hierarchy shared by all resource resolvers of
+ * a factory.
+ * <p>
+ * The super type of a resource type is looked up through the resource type
+ * resource resolver, which is the same for all resolvers (except for
+ * administrative ones, which do not use this cache). Therefore the super
+ * types only depend on the search path the cache is created for. Only
+ * resource types located in the search path are cached and all entries are
+ * dropped on any observed change below the search path.
+ * <p>
+ * If the cache is full, all entries are dropped.
+ */
+public class ResourceTypeHierarchyCache implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    /** Value cached for resource types without a super type. */
+    private static final String NO_SUPER_TYPE = "";
+
+    private final String[] searchPath;
+
+    private final int maxEntries;
+
+    /** The super type by resource type. */
+    private final ConcurrentMap<String, String> superTypes = new ConcurrentHashMap<>();
+
+    /** The hierarchy by resource type. */
+    private final ConcurrentMap<String, Hierarchy> hierarchies = new ConcurrentHashMap<>();
+
+    /** Incremented on invalidation, to not cache a lookup which raced with a change. */
+    private volatile long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private volatile ServiceRegistration<ResourceChangeListener> registration;
+
+    /**
+     * Create a new cache.
+     *
+     * @param searchPath the search path of the factory, each entry ending with a slash
+     * @param maxEntries the maximum number of cached resource types
+     */
+    public ResourceTypeHierarchyCache(final String[] searchPath, final int maxEntries) {
+        this.searchPath = searchPath == null ? new String[0] : searchPath.clone();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Register the cache for changes below the search path.
+     */
+    public void register(final BundleContext bundleContext) {
+        if (this.searchPath.length == 0) {
+            return;
+        }
+        final String[] paths = new String[this.searchPath.length];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = this.searchPath[i].length() > 1 && this.searchPath[i].endsWith("/")
+                    ? this.searchPath[i].substring(0, this.searchPath[i].length() - 1) : this.searchPath[i];
+        }
+        final Dictionary<String, Object> props = new Hashtable<>();
+        props.put(ResourceChangeListener.PATHS, paths);
+        props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Resource Type Hierarchy Cache Observation");
+        props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        this.registration = bundleContext.registerService(ResourceChangeListener.class, this, props);
+    }
+
+    /**
+     * Unregister the cache and drop all entries.
+     */
+    public void dispose() {
+        final ServiceRegistration<ResourceChangeListener> reg = this.registration;
+        if (reg != null) {
+            this.registration = null;
+            try {
+                reg.unregister();
+            } catch (final IllegalStateException ise) {
+                // ignore
+            }
+        }
+        clear();
+    }
+
+    @Override
+    public void onChange(final List<ResourceChange> changes) {
+        clear();
+    }
+
+    /**
+     * Drop all entries.
+     */
+    public void clear() {
+        this.generation++;
+        this.superTypes.clear();
+        this.hierarchies.clear();
+        this.invalidations.incrementAndGet();
+    }
+
+    /**
+     * Only resource types located in the search path are cached, as only
+     * changes there are observed.
+     */
+    public boolean isCacheable(final String resourceType) {
+        if (resourceType == null || resourceType.isEmpty()) {
+            return false;
+        }
+        if (!resourceType.startsWith("/")) {
+            return true;
+        }
+        for (final String prefix : this.searchPath) {
+            if (resourceType.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the cached super type.
+     *
+     * @param resourceType a cacheable resource type
+     * @param loader loads the super type if it is not cached
+     * @return the super type or <code>null</code>
+     */
+    public String getParentResourceType(final String resourceType, final SuperTypeLoader loader) {
+        String superType = this.superTypes.get(resourceType);
+        if (superType != null) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+            final long current = this.generation;
+            superType = loader.getParentResourceType(resourceType);
+            if (superType == null) {
+                superType = NO_SUPER_TYPE;
+            }
+            if (current == this.generation) {
+                ensureCapacity();
+                this.superTypes.put(resourceType, superType);
+                // the lookup raced with a change, the entry might already be stale
+                if (current != this.generation) {
+                    this.superTypes.remove(resourceType);
+                }
+            }
+        }
+        return superType.isEmpty() ? null : superType;
+    }
+
+    /**
+     * Returns the super types of the resource type.
+     *
+     * @param resourceType a cacheable resource type
+     * @param loader loads the super types which are not cached
+     * @return the hierarchy
+     */
+    public Hierarchy getHierarchy(final String resourceType, final SuperTypeLoader loader) {
+        Hierarchy result = this.hierarchies.get(resourceType);
+        if (result != null) {
+            this.hits.incrementAndGet();
+            return result;
+        }
+        final long current = this.generation;
+        final Set<String> superTypes = new HashSet<>();
+        boolean cyclic = false;
+        String superType = getParentResourceType(resourceType, loader);
+        while (superType != null) {
+            if (!superTypes.add(ResourceTypeUtil.relativizeResourceType(superType, this.searchPath))) {
+                cyclic = true;
+                break;
+            }
+            superType = isCacheable(superType) ? getParentResourceType(superType, loader)
+                    : loader.getParentResourceType(superType);
+        }
+        result = new Hierarchy(superTypes, cyclic);
+        if (current == this.generation) {
+            ensureCapacity();
+            this.hierarchies.put(resourceType, result);
+            // the lookup raced with a change, the entry might already be stale
+            if (current != this.generation) {
+                this.hierarchies.remove(resourceType);
+            }
+        }
+        return result;
+    }
+
+    private void ensureCapacity() {
+        if (this.superTypes.size() + this.hierarchies.size() >= this.maxEntries) {
+            this.superTypes.clear();
+            this.hierarchies.clear();
+        }
+    }
+
+    public String[] getSearchPath() {
+        return this.searchPath.clone();
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * The number of cached super types and hierarchies.
+     */
+    public int getSize() {
+        return this.superTypes.size() + this.hierarchies.size();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * The ratio of lookups answered by the cache.
+     */
+    public double getHitRatio() {
+        final long hits = getHits();
+        final long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * The super types of a resource type, relative to the search path.
+     */
+    public static final class Hierarchy {
+
+        private final Set<String> superTypes;
+
+        private final boolean cyclic;
+
+        Hierarchy(final Set<String> superTypes, final boolean cyclic) {
+            this.superTypes = superTypes;
+            this.cyclic = cyclic;
+        }
+
+        /**
+         * @param resourceType a resource type relative to the search path
+         */
+        public boolean contains(final String resourceType) {
+            return this.superTypes.contains(resourceType);
+        }
+
+        /**
+         * Whether the super type chain contains a cycle.
+         */
+        public boolean isCyclic() {
+            return this.cyclic;
+        }
+    }
+
+    /**
+     * Loads the super type of a resource type which is not cached.
+     */
+    public interface SuperTypeLoader {
+
+        String getParentResourceType(String resourceType);
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Scalable counting bloom filter for strings.
+ * <p>
+ * The filter consists of one or more stages. Each stage is a counting bloom
+ * filter using four bit counters, sized for a capacity and a false positive
+ * probability, rounded up to a power of two counters. Once a stage is full,
+ * a new stage with twice the capacity and half the false positive
+ * probability is added, so the overall false positive probability stays
+ * bounded while the number of entries grows.
+ * <p>
+ * Keys can be removed, however removing a key which has not been added
+ * before may cause false negatives. A key is only removed if exactly one
+ * stage contains it; otherwise it stays (probably) contained.
+ * <p>
+ * Adding and removing keys must be synchronized by the caller, checking
+ * for a key can be done concurrently.
+ * <p>
+ * A filter with a maximum size of zero bytes is disabled: it contains
+ * every key.
+ */
+public class CountingBloomFilter {
+
+    private static final int MAGIC = 0x534c4246;
+
+    private static final int VERSION = 2;
+
+    private static final double LN2 = Math.log(2);
+
+    /** The smallest stage which is worth adding. */
+    private static final int MIN_STAGE_BYTES = 1024;
+
+    private static final int MAX_HASH_COUNT = 16;
+
+    private final double falsePositiveProbability;
+
+    private final int maxBytes;
+
+    private volatile Stage[] stages;
+
+    /**
+     * Create a new filter.
+     *
+     * @param capacity the number of entries the first stage is sized for
+     * @param falsePositiveProbability the false positive probability of the first stage
+     * @param maxBytes the maximum number of bytes used by all stages, zero to disable the filter
+     */
+    public CountingBloomFilter(final int capacity, final double falsePositiveProbability, final int maxBytes) {
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.maxBytes = maxBytes;
+        if (maxBytes > 0) {
+            this.stages = new Stage[] {Stage.create(Math.max(1, capacity), falsePositiveProbability, maxBytes)};
+        } else {
+            this.stages = new Stage[0];
+        }
+    }
+
+    private CountingBloomFilter(final double falsePositiveProbability, final int maxBytes, final Stage[] stages) {
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.maxBytes = maxBytes;
+        this.stages = stages;
+    }
+
+    /**
+     * Add the key.
+     *
+     * @param key the key
+     */
+    public void add(final String key) {
+        if (stages.length == 0) {
+            return;
+        }
+        Stage stage = stages[stages.length - 1];
+        if (stage.count >= stage.capacity) {
+            stage = grow(stage);
+        }
+        stage.add(hash1(key), hash2(key));
+    }
+
+    /**
+     * Remove the key. The key must have been added before.
+     *
+     * @param key the key
+     * @return {@code true} if the key has been removed
+     */
+    public boolean remove(final String key) {
+        final int h1 = hash1(key);
+        final int h2 = hash2(key);
+        Stage found = null;
+        for (final Stage stage : stages) {
+            if (stage.probablyContains(h1, h2)) {
+                if (found != null) {
+                    // ambiguous, the key might have been added to both stages
+                    return false;
+                }
+                found = stage;
+            }
+        }
+        if (found == null) {
+            return false;
+        }
+        found.remove(h1, h2);
+        return true;
+    }
+
+    /**
+     * Check whether the given key is probably in the set. This method never
+     * returns false if the key is in the set, but possibly returns true even if
+     * it isn't.
+     *
+     * @param key the key
+     * @return true if the given key is probably in the set
+     */
+    public boolean probablyContains(final String key) {
+        final Stage[] current = stages;
+        if (current.length == 0) {
+            return true;
+        }
+        final int h1 = hash1(key);
+        final int h2 = hash2(key);
+        for (final Stage stage : current) {
+            if (stage.probablyContains(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The number of entries, added minus removed.
+     */
+    public long getEntryCount() {
+        long count = 0;
+        for (final Stage stage : stages) {
+            count += stage.count;
+        }
+        return count;
+    }
+
+    /**
+     * The number of entries the filter is currently sized for.
+     */
+    public long getCapacity() {
+        long capacity = 0;
+        for (final Stage stage : stages) {
+            capacity += stage.capacity;
+        }
+        return capacity;
+    }
+
+    public int getStageCount() {
+        return stages.length;
+    }
+
+    public int getByteSize() {
+        int size = 0;
+        for (final Stage stage : stages) {
+            size += stage.counters.length;
+        }
+        return size;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * The ratio of counters which are not zero over all stages.
+     */
+    public double getFillRatio() {
+        long used = 0;
+        long total = 0;
+        for (final Stage stage : stages) {
+            used += stage.countNonZero();
+            total += stage.size;
+        }
+        return total == 0 ? 0 : (double) used / total;
+    }
+
+    /**
+     * The estimated false positive rate, calculated from the current fill
+     * ratio of the stages.
+     */
+    public double getFalsePositiveRate() {
+        if (stages.length == 0) {
+            return 1;
+        }
+        double negative = 1;
+        for (final Stage stage : stages) {
+            final double fill = (double) stage.countNonZero() / stage.size;
+            negative *= 1 - Math.pow(fill, stage.hashCount);
+        }
+        return 1 - negative;
+    }
+
+    private Stage grow(final Stage last) {
+        final int available = maxBytes - getByteSize();
+        if (available < MIN_STAGE_BYTES) {
+            // no more room, the false positive rate of the last stage increases
+            return last;
+        }
+        final double fpp = last.falsePositiveProbability / 2;
+        final long capacity = Math.min(Integer.MAX_VALUE, 2L * last.capacity);
+        final Stage stage = Stage.create((int) capacity, fpp, available);
+        final Stage[] newStages = new Stage[stages.length + 1];
+        System.arraycopy(stages, 0, newStages, 0, stages.length);
+        newStages[stages.length] = stage;
+        this.stages = newStages;
+        return stage;
+    }
+
+    /**
+     * Write the filter to the file.
+     *
+     * @param file the file
+     * @throws IOException if writing fails
+     */
+    public void write(final File file) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(falsePositiveProbability);
+            out.writeInt(maxBytes);
+            final Stage[] current = stages;
+            out.writeInt(current.length);
+            for (final Stage stage : current) {
+                out.writeInt(stage.capacity);
+                out.writeDouble(stage.falsePositiveProbability);
+                out.writeInt(stage.size);
+                out.writeInt(stage.hashCount);
+                out.writeInt(stage.count);
+                out.write(stage.counters);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read a filter from the file.
+     *
+     * @param file the file
+     * @param maxBytes the expected maximum number of bytes
+     * @return the filter or {@code null} if the file has not been written by
+     *         this version of the filter or for a different maximum size
+     * @throws IOException if reading fails
+     */
+    public static CountingBloomFilter read(final File file, final int maxBytes) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (file.length() < 8 || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            final double fpp = in.readDouble();
+            if (in.readInt() != maxBytes) {
+                return null;
+            }
+            final Stage[] stages = new Stage[in.readInt()];
+            for (int i = 0; i < stages.length; i++) {
+                final int capacity = in.readInt();
+                final double stageFpp = in.readDouble();
+                final int size = in.readInt();
+                final int hashCount = in.readInt();
+                final int count = in.readInt();
+                if (size < 2 || Integer.bitCount(size) != 1) {
+                    return null;
+                }
+                final byte[] counters = new byte[(size + 1) / 2];
+                in.readFully(counters);
+                stages[i] = new Stage(capacity, stageFpp, size, hashCount, counters);
+                stages[i].count = count;
+            }
+            return new CountingBloomFilter(fpp, maxBytes, stages);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int hash1(final String key) {
+        int h = key.hashCode();
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+
+    private static int hash2(final String key) {
+        // FNV-1a, independent from String.hashCode()
+        int h = 0x811c9dc5;
+        for (int i = 0; i < key.length(); i++) {
+            final char c = key.charAt(i);
+            h = (h ^ (c & 0xff)) * 0x01000193;
+            h = (h ^ (c >>> 8)) * 0x01000193;
+        }
+        // the stride must be odd, so coprime with the power of two size,
+        // to reach all counters
+        return h | 1;
+    }
+
+    /**
+     * A counting bloom filter with four bit counters, two counters per byte.
+     */
+    private static final class Stage {
+
+        final int capacity;
+
+        final double falsePositiveProbability;
+
+        /** The number of counters. */
+        final int size;
+
+        final int hashCount;
+
+        final byte[] counters;
+
+        volatile int count;
+
+        Stage(final int capacity, final double falsePositiveProbability, final int size, final int hashCount,
+                final byte[] counters) {
+            this.capacity = capacity;
+            this.falsePositiveProbability = falsePositiveProbability;
+            this.size = size;
+            this.hashCount = hashCount;
+            this.counters = counters;
+        }
+
+        /**
+         * Create a stage using the formula m = - (n * ln(p)) / (ln(2)^2)
+         * for the number of counters and k = m / n * ln(2) for the number of
+         * hash functions as described in http://en.wikipedia.org/wiki/Bloom_filter
+         * where m is rounded up to a power of two, within the maximum size.
+         */
+        static Stage create(final int capacity, final double fpp, final int maxBytes) {
+            final long wanted = (long) Math.ceil(-capacity * Math.log(fpp) / (LN2 * LN2));
+            final long rounded = wanted <= 2 ? 2 : Long.highestOneBit(wanted - 1) << 1;
+            final long limit = Long.highestOneBit(Math.min(2L * maxBytes, 1 << 30));
+            final int size = (int) Math.max(2, Math.min(rounded, limit));
+            final int hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT, Math.round((double) size / capacity * LN2)));
+            return new Stage(capacity, fpp, size, hashCount, new byte[(size + 1) / 2]);
+        }
+
+        private int index(final int h1, final int h2, final int i) {
+            return (h1 + i * h2) & (size - 1);
+        }
+
+        private int get(final int index) {
+            return (counters[index >>> 1] >>> ((index & 1) << 2)) & 0xf;
+        }
+
+        private void set(final int index, final int value) {
+            final int shift = (index & 1) << 2;
+            final int b = counters[index >>> 1] & ~(0xf << shift);
+            counters[index >>> 1] = (byte) (b | (value << shift));
+        }
+
+        void add(final int h1, final int h2) {
+            for (int i = 0; i < hashCount; i++) {
+                final int index = index(h1, h2, i);
+                final int value = get(index);
+                // saturated counters are never changed again
+                if (value < 0xf) {
+                    set(index, value + 1);
+                }
+            }
+            count++;
+        }
+
+        void remove(final int h1, final int h2) {
+            for (int i = 0; i < hashCount; i++) {
+                final int index = index(h1, h2, i);
+                final int value = get(index);
+                if (value > 0 && value < 0xf) {
+                    set(index, value - 1);
+                }
+            }
+            if (count > 0) {
+                count--;
+            }
+        }
+
+        boolean probablyContains(final int h1, final int h2) {
+            for (int i = 0; i < hashCount; i++) {
+                if (get(index(h1, h2, i)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int countNonZero() {
+            int used = 0;
+            for (final byte b : counters) {
+                if ((b & 0xf) != 0) {
+                    used++;
+                }
+                if ((b & 0xf0) != 0) {
+                    used++;
+                }
+            }
+            return used;
+        }
+    }
+}
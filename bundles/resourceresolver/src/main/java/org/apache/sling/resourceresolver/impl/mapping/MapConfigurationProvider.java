@@ -52,6 +52,8 @@ public interface MapConfigurationProvider extends ResourceResolverFactory {
 
     int getVanityBloomFilterMaxBytes();
 
+    boolean isVanityPathSnapshotEnabled();
+
     boolean isOptimizeAliasResolutionEnabled();
 
     boolean hasVanityPathPrecedence();
@@ -18,10 +18,7 @@
  */
 package org.apache.sling.resourceresolver.impl.mapping;
 
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -34,16 +31,21 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -97,7 +99,12 @@ public class MapEntries implements
 
     private static final String VANITY_BLOOM_FILTER_NAME = "vanityBloomFilter.txt";
 
-    private static final int VANITY_BLOOM_FILTER_MAX_ENTRIES = 10000000;
+    /** The number of entries the first stage of a new bloom filter is sized for. */
+    private static final int VANITY_BLOOM_FILTER_INITIAL_ENTRIES = 10000;
+
+    private static final double VANITY_BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private static final String VANITY_SNAPSHOT_NAME = "vanityPaths.snapshot";
 
     /** Key for the global list. */
     private static final String GLOBAL_LIST_KEY = "*";
@@ -121,13 +128,13 @@ public class MapEntries implements
 
     private volatile ServiceRegistration<ResourceChangeListener> registration;
 
-    private Map<String, List<MapEntry>> resolveMapsMap;
+    private PathTrieMap<List<MapEntry>> resolveMapsMap;
 
     private Collection<MapEntry> mapMaps;
 
-    private Map <String,List <String>> vanityTargets;
+    private PathTrieMap<List<String>> vanityTargets;
 
-    private Map<String, Map<String, String>> aliasMap;
+    private PathTrieMap<Map<String, String>> aliasMap;
 
     private final ReentrantLock initializing = new ReentrantLock();
 
@@ -135,13 +142,19 @@ public class MapEntries implements
 
     private final File vanityBloomFilterFile;
 
-    private byte[] vanityBloomFilter;
+    private final File vanitySnapshotFile;
+
+    private volatile CountingBloomFilter vanityBloomFilter;
 
     private Timer timer;
 
     private boolean updateBloomFilterFile = false;
 
-    @SuppressWarnings({ "unchecked" })
+    private volatile boolean updateVanitySnapshot = false;
+
+    /** Reloads the vanity paths restored from a snapshot, null if not restored. */
+    private volatile ExecutorService vanityReconciler;
+
     public MapEntries(final MapConfigurationProvider factory, final BundleContext bundleContext, final EventAdmin eventAdmin)
         throws LoginException, IOException {
 
@@ -149,10 +162,11 @@ public class MapEntries implements
         this.factory = factory;
         this.eventAdmin = eventAdmin;
 
-        this.resolveMapsMap = Collections.singletonMap(GLOBAL_LIST_KEY, (List<MapEntry>)Collections.EMPTY_LIST);
+        this.resolveMapsMap = new PathTrieMap<>();
+        this.resolveMapsMap.put(GLOBAL_LIST_KEY, Collections.<MapEntry> emptyList());
         this.mapMaps = Collections.<MapEntry> emptyList();
-        this.vanityTargets = Collections.<String,List <String>>emptyMap();
-        this.aliasMap = Collections.<String, Map<String, String>>emptyMap();
+        this.vanityTargets = new PathTrieMap<>();
+        this.aliasMap = new PathTrieMap<>();
 
         doInit();
 
@@ -169,6 +183,7 @@ public class MapEntries implements
 
         this.vanityCounter = new AtomicLong(0);
         this.vanityBloomFilterFile = bundleContext.getDataFile(VANITY_BLOOM_FILTER_NAME);
+        this.vanitySnapshotFile = factory.isVanityPathSnapshotEnabled() ? bundleContext.getDataFile(VANITY_SNAPSHOT_NAME) : null;
         initializeVanityPaths();
     }
 
@@ -187,11 +202,11 @@ public class MapEntries implements
                 return;
             }
 
-            final Map<String, List<MapEntry>> newResolveMapsMap = new ConcurrentHashMap<>();
+            final PathTrieMap<List<MapEntry>> newResolveMapsMap = new PathTrieMap<>();
 
             //optimization made in SLING-2521
             if (this.factory.isOptimizeAliasResolutionEnabled()) {
-                final Map<String, Map<String, String>> aliasMap = this.loadAliases(resolver);
+                final PathTrieMap<Map<String, String>> aliasMap = this.loadAliases(resolver);
                 this.aliasMap = aliasMap;
             }
 
@@ -228,23 +243,21 @@ public class MapEntries implements
                             "This platform does not have file system support");
                 }
                 boolean createVanityBloomFilter = false;
-                if (!vanityBloomFilterFile.exists()) {
+                if (vanityBloomFilterFile.exists()) {
+                    // initialize bloom filter from disk
+                    vanityBloomFilter = CountingBloomFilter.read(vanityBloomFilterFile,
+                            this.factory.getVanityBloomFilterMaxBytes());
+                    if (vanityBloomFilter == null) {
+                        log.info("Discarding bloom filter file {} written by a different version or configuration",
+                                vanityBloomFilterFile.getAbsolutePath());
+                    }
+                }
+                if (vanityBloomFilter == null) {
                     log.debug("creating bloom filter file {}",
                             vanityBloomFilterFile.getAbsolutePath());
                     vanityBloomFilter = createVanityBloomFilter();
                     persistBloomFilter();
                     createVanityBloomFilter = true;
-                } else {
-                    // initialize bloom filter from disk
-                    vanityBloomFilter = new byte[(int) vanityBloomFilterFile
-                            .length()];
-                    DataInputStream dis = new DataInputStream(
-                            new FileInputStream(vanityBloomFilterFile));
-                    try {
-                        dis.readFully(vanityBloomFilter);
-                    } finally {
-                        dis.close();
-                    }
                 }
 
                 // task for persisting the bloom filter every minute (if changes
@@ -252,9 +265,15 @@ public class MapEntries implements
                 timer = new Timer();
                 timer.schedule(new BloomFilterTask(), 60 * 1000);
 
-                final Map<String, List<String>> vanityTargets = this
-                        .loadVanityPaths(createVanityBloomFilter);
-                this.vanityTargets = vanityTargets;
+                PathTrieMap<List<String>> vanityTargets = this.restoreVanityPaths(createVanityBloomFilter);
+                if (vanityTargets == null) {
+                    vanityTargets = this.loadVanityPaths(createVanityBloomFilter);
+                    this.updateVanitySnapshot = true;
+                    this.vanityTargets = vanityTargets;
+                } else {
+                    this.vanityTargets = vanityTargets;
+                    this.reconcileVanityPaths();
+                }
             }
         } finally {
             this.initializing.unlock();
@@ -321,20 +340,27 @@ public class MapEntries implements
     private boolean removeResource(final String path, final AtomicBoolean resolverRefreshed) {
         boolean changed = false;
         final String actualContentPath = getActualContentPath(path);
-        final String actualContentPathPrefix = actualContentPath + "/";
 
-        for (final String target : this.vanityTargets.keySet()) {
-            if (target.startsWith(actualContentPathPrefix) || target.equals(actualContentPath)) {
-                changed |= removeVanityPath(target);
-            }
+        // the targets are the content path itself and all paths below it
+        final PathTrie<List<String>> targets = this.vanityTargets.snapshot();
+        if (targets.get(actualContentPath) != null) {
+            changed |= removeVanityPath(actualContentPath);
+        }
+        for (final Map.Entry<String, List<String>> target : targets.entriesBelow(actualContentPath)) {
+            changed |= removeVanityPath(target.getKey());
         }
         if (this.factory.isOptimizeAliasResolutionEnabled()) {
-            for (final String contentPath : this.aliasMap.keySet()) {
-                if (path.startsWith(contentPath + "/") || path.equals(contentPath)) {
-                    changed |= removeAlias(contentPath, path, resolverRefreshed);
-                } else if ( contentPath.startsWith(actualContentPathPrefix) ) {
-                    changed |= removeAlias(contentPath, path, resolverRefreshed);
-                }
+            // aliases of the path, its ancestors and all paths below the content path
+            final PathTrie<Map<String, String>> aliases = this.aliasMap.snapshot();
+            final Set<String> contentPaths = new LinkedHashSet<>();
+            for (final Map.Entry<String, Map<String, String>> entry : aliases.entriesAbove(path)) {
+                contentPaths.add(entry.getKey());
+            }
+            for (final Map.Entry<String, Map<String, String>> entry : aliases.entriesBelow(actualContentPath)) {
+                contentPaths.add(entry.getKey());
+            }
+            for (final String contentPath : contentPaths) {
+                changed |= removeAlias(contentPath, path, resolverRefreshed);
             }
         }
         return changed;
@@ -441,19 +467,151 @@ public class MapEntries implements
         this.mapMaps = Collections.unmodifiableSet(new TreeSet<>(newMapMaps.values()));
     }
 
+    /**
+     * Restore the vanity paths from the snapshot written by a previous instance.
+     * A snapshot is only used if all vanity path entries are cached.
+     * @return the vanity targets or {@code null} if no snapshot could be restored
+     */
+    private PathTrieMap<List<String>> restoreVanityPaths(final boolean createVanityBloomFilter) {
+        if (vanitySnapshotFile == null || !isAllVanityPathEntriesCached()) {
+            return null;
+        }
+        final PathTrie<List<MapEntry>> snapshot;
+        try {
+            snapshot = VanityPathSnapshot.read(vanitySnapshotFile, getVanitySnapshotFingerprint());
+        } catch (final IOException e) {
+            log.warn("Unable to read vanity path snapshot " + vanitySnapshotFile.getAbsolutePath(), e);
+            return null;
+        }
+        if (snapshot == null) {
+            log.debug("No valid vanity path snapshot at {}", vanitySnapshotFile.getAbsolutePath());
+            return null;
+        }
+        final PathTrieMap<List<String>> targetPaths = new PathTrieMap<>();
+        long count = 0;
+        for (final Map.Entry<String, List<MapEntry>> entry : snapshot.entries()) {
+            final String checkPath = entry.getKey();
+            final Set<String> redirects = new LinkedHashSet<>();
+            for (final MapEntry mapEntry : entry.getValue()) {
+                final String redirect = getMapEntryRedirect(mapEntry);
+                if (redirect != null) {
+                    redirects.add(redirect);
+                }
+            }
+            for (final String redirect : redirects) {
+                updateTargetPaths(targetPaths, redirect, checkPath);
+                // one count per target, as removing a target removes one count
+                if (createVanityBloomFilter) {
+                    vanityBloomFilter.add(checkPath);
+                }
+            }
+            this.resolveMapsMap.put(checkPath, entry.getValue());
+            count += entry.getValue().size();
+        }
+        vanityCounter.addAndGet(count);
+        log.info("Restored {} vanity path entries from {}", count, vanitySnapshotFile.getAbsolutePath());
+        return targetPaths;
+    }
+
+    /**
+     * Reload the vanity paths restored from a snapshot in the background, as
+     * the content might have changed since the snapshot was written. Until
+     * then the restored vanity paths are used.
+     */
+    private void reconcileVanityPaths() {
+        this.vanityReconciler = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "Apache Sling Vanity Path Reconciler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.vanityReconciler.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                initializing.lock();
+                try {
+                    final ResourceResolver resolver = MapEntries.this.resolver;
+                    if (resolver == null || factory == null) {
+                        return;
+                    }
+                    resolver.refresh();
+                    final PathTrieMap<List<MapEntry>> newResolveMapsMap = new PathTrieMap<>();
+                    newResolveMapsMap.put(GLOBAL_LIST_KEY, resolveMapsMap.get(GLOBAL_LIST_KEY));
+                    // a new filter, the restored one still counts the removed vanity paths
+                    final CountingBloomFilter newBloomFilter = createVanityBloomFilter();
+                    final PathTrieMap<List<String>> newVanityTargets = loadVanityPaths(newBloomFilter, newResolveMapsMap);
+                    if (Thread.currentThread().isInterrupted()) {
+                        log.debug("Reconciling the vanity paths has been stopped");
+                        return;
+                    }
+                    // snapshots are only used if all entries are cached, so the
+                    // count only needs to be correct once the reload is done
+                    long count = 0;
+                    for (final List<String> targets : newVanityTargets.values()) {
+                        count += 2 * targets.size();
+                    }
+                    vanityCounter.set(count);
+                    resolveMapsMap = newResolveMapsMap;
+                    vanityTargets = newVanityTargets;
+                    vanityBloomFilter = newBloomFilter;
+                    updateBloomFilterFile = true;
+                    updateVanitySnapshot = true;
+                    log.debug("Reconciled {} vanity path entries with the repository", vanityCounter.get());
+                    sendChangeEvent();
+                } catch (final Exception e) {
+                    log.warn("Unable to reconcile the vanity paths restored from " + vanitySnapshotFile.getAbsolutePath(), e);
+                } finally {
+                    initializing.unlock();
+                }
+            }
+        });
+        // the executor ends its thread once the reload is done
+        this.vanityReconciler.shutdown();
+    }
+
+    private void persistVanitySnapshot() throws IOException {
+        if (vanitySnapshotFile != null && updateVanitySnapshot && this.factory != null && isAllVanityPathEntriesCached()) {
+            updateVanitySnapshot = false;
+            final PathTrie<List<MapEntry>> entries = this.resolveMapsMap.snapshot().remove(GLOBAL_LIST_KEY);
+            VanityPathSnapshot.write(vanitySnapshotFile, getVanitySnapshotFingerprint(), entries);
+        }
+    }
+
+    /**
+     * The fingerprint of the configuration the vanity path entries depend on.
+     */
+    private String getVanitySnapshotFingerprint() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(this.factory.getDefaultVanityPathRedirectStatus());
+        for (final Path path : this.factory.getObservationPaths()) {
+            sb.append(';').append(path.getPath());
+        }
+        if (this.factory.getVanityPathConfig() != null) {
+            for (final VanityPathConfig config : this.factory.getVanityPathConfig()) {
+                sb.append(';').append(config.isExclude ? '-' : '+').append(config.prefix);
+            }
+        }
+        return sb.toString();
+    }
+
     private boolean doAddVanity(final Resource resource) {
         log.debug("doAddVanity getting {}", resource.getPath());
 
         boolean needsUpdate = false;
         if (isAllVanityPathEntriesCached() || vanityCounter.longValue() < this.factory.getMaxCachedVanityPathEntries()) {
             // fill up the cache and the bloom filter
-            needsUpdate = loadVanityPath(resource, resolveMapsMap, vanityTargets, true, true);
+            needsUpdate = loadVanityPath(resource, resolveMapsMap, vanityTargets, true, vanityBloomFilter);
         } else {
             // fill up the bloom filter
-            needsUpdate = loadVanityPath(resource, resolveMapsMap, vanityTargets, false, true);
+            needsUpdate = loadVanityPath(resource, resolveMapsMap, vanityTargets, false, vanityBloomFilter);
         }
         if ( needsUpdate ) {
             updateBloomFilterFile = true;
+            updateVanitySnapshot = true;
             return true;
         }
         return false;
@@ -464,28 +622,47 @@ public class MapEntries implements
         final List <String> l = vanityTargets.remove(actualContentPath);
         if (l != null){
             for (final String s : l){
-                final List<MapEntry> entries = this.resolveMapsMap.get(s);
-                if (entries!= null) {
-                    for (final Iterator<MapEntry> iterator =entries.iterator(); iterator.hasNext(); ) {
-                        final MapEntry entry = iterator.next();
-                        final String redirect = getMapEntryRedirect(entry);
-                        if (redirect != null && redirect.equals(actualContentPath)) {
-                            iterator.remove();
-                        }
-                    }
-                }
-                if (entries!= null && entries.isEmpty()) {
-                    this.resolveMapsMap.remove(s);
+                removeEntries(s, actualContentPath);
+                if (vanityBloomFilter != null) {
+                    vanityBloomFilter.remove(s);
                 }
             }
+            updateBloomFilterFile = true;
             if (vanityCounter.longValue() > 0) {
                 vanityCounter.addAndGet(-2);
             }
+            updateVanitySnapshot = true;
             return true;
         }
         return false;
     }
 
+    /**
+     * Remove all entries of the key redirecting to the content path
+     */
+    private void removeEntries(final String key, final String actualContentPath) {
+        while (true) {
+            final List<MapEntry> entries = this.resolveMapsMap.get(key);
+            if (entries == null) {
+                return;
+            }
+            final List<MapEntry> remaining = new ArrayList<>(entries.size());
+            for (final MapEntry entry : entries) {
+                final String redirect = getMapEntryRedirect(entry);
+                if (redirect == null || !redirect.equals(actualContentPath)) {
+                    remaining.add(entry);
+                }
+            }
+            if (remaining.size() == entries.size()) {
+                return;
+            }
+            final List<MapEntry> newEntries = remaining.isEmpty() ? null : Collections.unmodifiableList(remaining);
+            if (this.resolveMapsMap.replace(key, entries, newEntries)) {
+                return;
+            }
+        }
+    }
+
     private boolean doAddAlias(final Resource resource) {
         return loadAlias(resource, this.aliasMap);
     }
@@ -540,11 +717,27 @@ public class MapEntries implements
      * Cleans up this class.
      */
     public void dispose() {
+        final ExecutorService reconciler = this.vanityReconciler;
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            try {
+                if (!reconciler.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("dispose: Reconciling the vanity paths did not stop within 10 seconds");
+                }
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
         try {
             persistBloomFilter();
         } catch (IOException e) {
            log.error("Error while saving bloom filter to disk", e);
         }
+        try {
+            persistVanitySnapshot();
+        } catch (IOException e) {
+           log.error("Error while saving vanity path snapshot to disk", e);
+        }
 
         if (this.registration != null) {
             this.registration.unregister();
@@ -621,7 +814,7 @@ public class MapEntries implements
             key = requestPath.substring(secondIndex);
         }
 
-        return new MapEntryIterator(key, resolveMapsMap, this.factory.hasVanityPathPrecedence());
+        return new MapEntryIterator(key, resolveMapsMap.snapshot(), this.factory.hasVanityPathPrecedence());
     }
 
     @Override
@@ -634,13 +827,18 @@ public class MapEntries implements
         return aliasMap.get(parentPath);
     }
 
+    @Override
+    public CountingBloomFilter getVanityBloomFilter() {
+        return vanityBloomFilter;
+    }
+
     /**
      * get the MapEnty containing all the nodes having a specific vanityPath
      */
     private List<MapEntry> getMapEntryList(String vanityPath){
         List<MapEntry> mapEntries = null;
 
-        if (BloomFilterUtils.probablyContains(vanityBloomFilter, vanityPath)) {
+        if (vanityBloomFilter.probablyContains(vanityPath)) {
             mapEntries = this.resolveMapsMap.get(vanityPath);
             if (mapEntries == null) {
                 Map<String, List<MapEntry>>  mapEntry = getVanityPaths(vanityPath);
@@ -768,22 +966,21 @@ public class MapEntries implements
 
     // ---------- internal
 
-    private byte[] createVanityBloomFilter() throws IOException {
-        byte bloomFilter[] = null;
-        if (vanityBloomFilter == null) {
-            bloomFilter = BloomFilterUtils.createFilter(VANITY_BLOOM_FILTER_MAX_ENTRIES, this.factory.getVanityBloomFilterMaxBytes());
+    private CountingBloomFilter createVanityBloomFilter() {
+        // the filter grows with the number of vanity paths, start with the
+        // size of the cache if limited
+        int capacity = VANITY_BLOOM_FILTER_INITIAL_ENTRIES;
+        if (!isAllVanityPathEntriesCached()) {
+            capacity = (int) Math.max(capacity, Math.min(Integer.MAX_VALUE, this.factory.getMaxCachedVanityPathEntries()));
         }
-        return bloomFilter;
+        return new CountingBloomFilter(capacity, VANITY_BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY,
+                this.factory.getVanityBloomFilterMaxBytes());
     }
 
     private void persistBloomFilter() throws IOException {
-        if (vanityBloomFilterFile != null && vanityBloomFilter != null) {
-            FileOutputStream out = new FileOutputStream(vanityBloomFilterFile);
-            try {
-                out.write(this.vanityBloomFilter);
-            } finally {
-                out.close();
-            }
+        final CountingBloomFilter filter = this.vanityBloomFilter;
+        if (vanityBloomFilterFile != null && filter != null) {
+            filter.write(vanityBloomFilterFile);
         }
     }
 
@@ -822,7 +1019,7 @@ public class MapEntries implements
      */
     private Map<String, List<MapEntry>> getVanityPaths(String vanityPath) {
 
-        Map<String, List<MapEntry>> entryMap = new HashMap<>();
+        PathTrieMap<List<MapEntry>> entryMap = new PathTrieMap<>();
 
                 // sling:vanityPath (lowercase) is the property name
         final String queryString = "SELECT sling:vanityPath, sling:redirect, sling:redirectStatus FROM nt:base WHERE sling:vanityPath ="
@@ -844,11 +1041,11 @@ public class MapEntries implements
                 }
                 if ( isValid ) {
                     if (this.factory.isMaxCachedVanityPathEntriesStartup() || vanityCounter.longValue() < this.factory.getMaxCachedVanityPathEntries()) {
-                        loadVanityPath(resource, resolveMapsMap, vanityTargets, true, false);
+                        loadVanityPath(resource, resolveMapsMap, vanityTargets, true, null);
                         entryMap = resolveMapsMap;
                     } else {
-                        final Map <String, List<String>> targetPaths = new HashMap <>();
-                        loadVanityPath(resource, entryMap, targetPaths, true, false);
+                        final PathTrieMap<List<String>> targetPaths = new PathTrieMap<>();
+                        loadVanityPath(resource, entryMap, targetPaths, true, null);
                     }
                 }
             }
@@ -998,35 +1195,45 @@ public class MapEntries implements
     /**
      * Add an entry to the resolve map.
      */
-    private boolean addEntry(final Map<String, List<MapEntry>> entryMap, final String key, final MapEntry entry) {
+    private boolean addEntry(final PathTrieMap<List<MapEntry>> entryMap, final String key, final MapEntry entry) {
 
         if (entry==null){
             return false;
         }
 
-        List<MapEntry> entries = entryMap.get(key);
-        if (entries == null) {
-            entries = new ArrayList<>();
-            entries.add(entry);
-            // and finally sort list
-            Collections.sort(entries);
-            entryMap.put(key, entries);
-        } else {
-            List<MapEntry> entriesCopy =new ArrayList<>(entries);
-            entriesCopy.add(entry);
-            // and finally sort list
-            Collections.sort( entriesCopy);
-            entryMap.put(key, entriesCopy);
+        while (true) {
+            final List<MapEntry> entries = entryMap.get(key);
+            final List<MapEntry> newEntries;
+            if (entries == null) {
+                newEntries = Collections.singletonList(entry);
+            } else {
+                // insert the entry at its sort position
+                int pos = Collections.binarySearch(entries, entry);
+                if (pos < 0) {
+                    pos = -pos - 1;
+                }
+                final MapEntry[] array = new MapEntry[entries.size() + 1];
+                for (int i = 0; i < pos; i++) {
+                    array[i] = entries.get(i);
+                }
+                array[pos] = entry;
+                for (int i = pos; i < entries.size(); i++) {
+                    array[i + 1] = entries.get(i);
+                }
+                newEntries = Collections.unmodifiableList(Arrays.asList(array));
+            }
+            if (entryMap.replace(key, entries, newEntries)) {
+                return true;
+            }
         }
-        return true;
     }
 
     /**
      * Load aliases Search for all nodes inheriting the sling:alias
      * property
      */
-    private Map<String, Map<String, String>> loadAliases(final ResourceResolver resolver) {
-        final Map<String, Map<String, String>> map = new ConcurrentHashMap<>();
+    private PathTrieMap<Map<String, String>> loadAliases(final ResourceResolver resolver) {
+        final PathTrieMap<Map<String, String>> map = new PathTrieMap<>();
         final String queryString = "SELECT sling:alias FROM nt:base WHERE sling:alias IS NOT NULL";
         final Iterator<Resource> i = resolver.findResources(queryString, "sql");
         while (i.hasNext()) {
@@ -1123,13 +1330,22 @@ public class MapEntries implements
      * Load vanity paths Search for all nodes inheriting the sling:VanityPath
      * mixin
      */
-    private Map <String, List<String>> loadVanityPaths(boolean createVanityBloomFilter) {
+    private PathTrieMap<List<String>> loadVanityPaths(boolean createVanityBloomFilter) {
+        return loadVanityPaths(createVanityBloomFilter ? vanityBloomFilter : null, resolveMapsMap);
+    }
+
+    /**
+     * Load vanity paths into the given map, adding them to the given bloom
+     * filter unless it is null. Stops early if the thread is interrupted.
+     */
+    private PathTrieMap<List<String>> loadVanityPaths(final CountingBloomFilter bloomFilter, final PathTrieMap<List<MapEntry>> entryMap) {
+        final boolean createVanityBloomFilter = bloomFilter != null;
         // sling:vanityPath (lowercase) is the property name
-        final Map <String, List<String>> targetPaths = new ConcurrentHashMap <>();
+        final PathTrieMap<List<String>> targetPaths = new PathTrieMap<>();
         final String queryString = "SELECT sling:vanityPath, sling:redirect, sling:redirectStatus FROM nt:base WHERE sling:vanityPath IS NOT NULL";
         final Iterator<Resource> i = resolver.findResources(queryString, "sql");
 
-        while (i.hasNext() && (createVanityBloomFilter || isAllVanityPathEntriesCached() || vanityCounter.longValue() < this.factory.getMaxCachedVanityPathEntries())) {
+        while (i.hasNext() && !Thread.currentThread().isInterrupted() && (createVanityBloomFilter || isAllVanityPathEntriesCached() || vanityCounter.longValue() < this.factory.getMaxCachedVanityPathEntries())) {
             final Resource resource = i.next();
             boolean isValid = false;
             for(final Path sPath : this.factory.getObservationPaths()) {
@@ -1141,12 +1357,12 @@ public class MapEntries implements
             if ( isValid ) {
                 if (isAllVanityPathEntriesCached() || vanityCounter.longValue() < this.factory.getMaxCachedVanityPathEntries()) {
                     // fill up the cache and the bloom filter
-                    loadVanityPath(resource, resolveMapsMap, targetPaths, true,
-                            createVanityBloomFilter);
+                    loadVanityPath(resource, entryMap, targetPaths, true,
+                            bloomFilter);
                 } else {
                     // fill up the bloom filter
-                    loadVanityPath(resource, resolveMapsMap, targetPaths, false,
-                            createVanityBloomFilter);
+                    loadVanityPath(resource, entryMap, targetPaths, false,
+                            bloomFilter);
                 }
             }
 
@@ -1157,9 +1373,10 @@ public class MapEntries implements
     }
 
     /**
-     * Load vanity path given a resource
+     * Load vanity path given a resource, adding it to the given bloom filter
+     * unless it is null
      */
-    private boolean loadVanityPath(final Resource resource, final Map<String, List<MapEntry>> entryMap, final Map <String, List<String>> targetPaths, boolean addToCache, boolean newVanity) {
+    private boolean loadVanityPath(final Resource resource, final PathTrieMap<List<MapEntry>> entryMap, final PathTrieMap<List<String>> targetPaths, boolean addToCache, final CountingBloomFilter bloomFilter) {
 
         if (!isValidVanityPath(resource.getPath())) {
             return false;
@@ -1228,15 +1445,15 @@ public class MapEntries implements
                             vanityCounter.addAndGet(2);
                         }
 
-                        if (newVanity) {
+                        if (bloomFilter != null) {
                             // update bloom filter
-                            BloomFilterUtils.add(vanityBloomFilter, checkPath);
+                            bloomFilter.add(checkPath);
                         }
                     }
                 } else {
-                    if (newVanity) {
+                    if (bloomFilter != null) {
                         // update bloom filter
-                        BloomFilterUtils.add(vanityBloomFilter, checkPath);
+                        bloomFilter.add(checkPath);
                     }
                 }
             }
@@ -1244,16 +1461,25 @@ public class MapEntries implements
         return hasVanityPath;
     }
 
-    private void updateTargetPaths(final Map<String, List<String>> targetPaths, final String key, final String entry) {
+    private void updateTargetPaths(final PathTrieMap<List<String>> targetPaths, final String key, final String entry) {
         if (entry == null) {
            return;
         }
-        List<String> entries = targetPaths.get(key);
-        if (entries == null) {
-            entries = new ArrayList<>();
-            targetPaths.put(key, entries);
+        while (true) {
+            final List<String> entries = targetPaths.get(key);
+            final List<String> newEntries;
+            if (entries == null) {
+                newEntries = Collections.singletonList(entry);
+            } else {
+                final List<String> copy = new ArrayList<>(entries.size() + 1);
+                copy.addAll(entries);
+                copy.add(entry);
+                newEntries = Collections.unmodifiableList(copy);
+            }
+            if (targetPaths.replace(key, entries, newEntries)) {
+                return;
+            }
         }
-        entries.add(entry);
     }
 
     /**
@@ -1397,10 +1623,12 @@ public class MapEntries implements
 
     private final class MapEntryIterator implements Iterator<MapEntry> {
 
-        private final Map<String, List<MapEntry>> resolveMapsMap;
+        private final PathTrie<List<MapEntry>> resolveMapsMap;
 
         private String key;
 
+        private Iterator<List<MapEntry>> cachedSpecials;
+
         private MapEntry next;
 
         private final Iterator<MapEntry> globalListIterator;
@@ -1411,14 +1639,40 @@ public class MapEntries implements
 
         private boolean vanityPathPrecedence;
 
-        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap, final boolean vanityPathPrecedence) {
-            this.key = startKey;
+        public MapEntryIterator(final String startKey, final PathTrie<List<MapEntry>> resolveMapsMap, final boolean vanityPathPrecedence) {
             this.resolveMapsMap = resolveMapsMap;
             this.globalListIterator = this.resolveMapsMap.get(GLOBAL_LIST_KEY).iterator();
             this.vanityPathPrecedence = vanityPathPrecedence;
+            if (startKey != null && MapEntries.this.isAllVanityPathEntriesCached()) {
+                // all entries are in the trie: collect them in a single walk
+                this.cachedSpecials = collectSpecials(startKey).iterator();
+            } else {
+                this.key = startKey;
+            }
             this.seek();
         }
 
+        /**
+         * Collect the entries for the key and all its parents, starting
+         * with the longest key. For each of these keys selectors and
+         * extension of the last segment are ignored.
+         */
+        private List<List<MapEntry>> collectSpecials(final String startKey) {
+            final LinkedList<List<MapEntry>> specials = new LinkedList<>();
+            final String[] segments = startKey.split("/", -1);
+            PathTrie.Node<List<MapEntry>> node = this.resolveMapsMap.getRoot().getChild(segments[0]);
+            for (int i = 1; i < segments.length && node != null; i++) {
+                final String segment = segments[i];
+                final int dotPos = segment.indexOf('.');
+                final PathTrie.Node<List<MapEntry>> candidate = node.getChild(dotPos == -1 ? segment : segment.substring(0, dotPos));
+                if (candidate != null && candidate.getValue() != null) {
+                    specials.addFirst(candidate.getValue());
+                }
+                node = node.getChild(segment);
+            }
+            return specials;
+        }
+
         /**
          * @see java.util.Iterator#hasNext()
          */
@@ -1456,6 +1710,12 @@ public class MapEntries implements
                 if (specialIterator != null && !specialIterator.hasNext()) {
                     specialIterator = null;
                 }
+                while (specialIterator == null && cachedSpecials != null && cachedSpecials.hasNext()) {
+                    final List<MapEntry> special = cachedSpecials.next();
+                    if (!special.isEmpty()) {
+                        specialIterator = special.iterator();
+                    }
+                }
                 while (specialIterator == null && key != null) {
                     // remove selectors and extension
                     final int lastSlashPos = key.lastIndexOf('/');
@@ -1464,12 +1724,7 @@ public class MapEntries implements
                         key = key.substring(0, lastDotPos);
                     }
 
-                    final List<MapEntry> special;
-                    if (MapEntries.this.isAllVanityPathEntriesCached()) {
-                        special = this.resolveMapsMap.get(key);
-                    } else {
-                        special = MapEntries.this.getMapEntryList(key)
-;                    }
+                    final List<MapEntry> special = MapEntries.this.getMapEntryList(key);
                     if (special != null) {
                         specialIterator = special.iterator();
                     }
@@ -1549,6 +1804,12 @@ public class MapEntries implements
                 throw new RuntimeException(
                         "Error while saving bloom filter to disk", e);
             }
+            try {
+                persistVanitySnapshot();
+            } catch (IOException e) {
+                throw new RuntimeException(
+                        "Error while saving vanity path snapshot to disk", e);
+            }
         }
     }
 
@@ -51,6 +51,11 @@ public interface MapEntriesHandler {
         public Map<String, String> getAliasMap(String parentPath) {
             return Collections.emptyMap();
         }
+
+        @Override
+        public CountingBloomFilter getVanityBloomFilter() {
+            return null;
+        }
     };
 
     Map<String, String> getAliasMap(String parentPath);
@@ -67,4 +72,10 @@ public interface MapEntriesHandler {
      * This is for the web console plugin
      */
     List<MapEntry> getResolveMaps();
+
+    /**
+     * The bloom filter for vanity path lookups, for the web console plugin
+     * @return the filter or {@code null} if vanity paths are disabled
+     */
+    CountingBloomFilter getVanityBloomFilter();
 }
@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, persistent trie keyed by slash separated paths.
+ * <p>
+ * A key is split into its segments at every slash, so <code>/a/b</code>
+ * is stored as the segments <code>""</code>, <code>a</code> and <code>b</code>
+ * and arbitrary keys like <code>*</code> can be stored as well. Lookups are
+ * bounded by the depth of the key.
+ * <p>
+ * Updates never modify an existing trie: {@link #put(String, Object)} and
+ * {@link #remove(String)} return a new trie which shares all untouched nodes
+ * with the original one. The children of a node are held in a hash array
+ * mapped trie, so an update copies only a few small arrays per path segment,
+ * independent of the number of siblings.
+ */
+public final class PathTrie<V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final PathTrie EMPTY = new PathTrie<>(null, 0);
+
+    private final Node<V> root;
+
+    private final int size;
+
+    private PathTrie(final Node<V> root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PathTrie<V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * The number of keys in this trie.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value stored for the key or <code>null</code>.
+     */
+    public V get(final String key) {
+        final Node<V> node = getNode(key);
+        return node == null ? null : node.getValue();
+    }
+
+    /**
+     * Returns the node for the key or <code>null</code> if neither the key
+     * nor any key below it is contained in the trie.
+     */
+    public Node<V> getNode(final String key) {
+        Node<V> node = root;
+        int start = 0;
+        while (node != null) {
+            final int end = key.indexOf('/', start);
+            if (end == -1) {
+                return node.getChild(key.substring(start));
+            }
+            node = node.getChild(key.substring(start, end));
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * The root node of this trie, which never carries a value. The first
+     * level of children are the first segments of the keys, which is the
+     * empty string for absolute paths.
+     */
+    public Node<V> getRoot() {
+        return root == null ? Node.<V> emptyNode() : root;
+    }
+
+    /**
+     * Returns a new trie with the value stored for the key.
+     */
+    public PathTrie<V> put(final String key, final V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value must not be null");
+        }
+        final boolean[] added = new boolean[1];
+        final Node<V> newRoot = put(root == null ? Node.<V> emptyNode() : root, split(key), 0, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PathTrie<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a new trie without the key. If the key is not contained,
+     * this trie is returned.
+     */
+    public PathTrie<V> remove(final String key) {
+        if (root == null) {
+            return this;
+        }
+        final Node<V> newRoot = remove(root, split(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PathTrie<>(newRoot, size - 1);
+    }
+
+    /**
+     * Returns all entries of this trie.
+     */
+    public List<Map.Entry<String, V>> entries() {
+        final List<Map.Entry<String, V>> result = new ArrayList<>(size);
+        if (root != null) {
+            for (final Map.Entry<String, Node<V>> child : root.getChildren()) {
+                collect(child.getKey(), child.getValue(), result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all entries whose key starts with the key followed by a slash,
+     * i.e. the entries of the subtree below the key, excluding the key itself.
+     */
+    public List<Map.Entry<String, V>> entriesBelow(final String key) {
+        final List<Map.Entry<String, V>> result = new ArrayList<>();
+        final Node<V> node = getNode(key);
+        if (node != null) {
+            for (final Map.Entry<String, Node<V>> child : node.getChildren()) {
+                collect(key + '/' + child.getKey(), child.getValue(), result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all entries whose key equals the key or is an ancestor of it,
+     * i.e. the key starts with the entry key followed by a slash. The entries
+     * are returned from the shortest to the longest key.
+     */
+    public List<Map.Entry<String, V>> entriesAbove(final String key) {
+        final List<Map.Entry<String, V>> result = new ArrayList<>();
+        Node<V> node = root;
+        int start = 0;
+        while (node != null) {
+            final int end = key.indexOf('/', start);
+            node = node.getChild(end == -1 ? key.substring(start) : key.substring(start, end));
+            if (node != null && node.getValue() != null) {
+                final String nodeKey = end == -1 ? key : key.substring(0, end);
+                result.add(new AbstractMap.SimpleImmutableEntry<>(nodeKey, node.getValue()));
+            }
+            if (end == -1) {
+                break;
+            }
+            start = end + 1;
+        }
+        return result;
+    }
+
+    private static <V> void collect(final String key, final Node<V> node, final List<Map.Entry<String, V>> result) {
+        if (node.getValue() != null) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(key, node.getValue()));
+        }
+        for (final Map.Entry<String, Node<V>> child : node.getChildren()) {
+            collect(key + '/' + child.getKey(), child.getValue(), result);
+        }
+    }
+
+    private static String[] split(final String key) {
+        return key.split("/", -1);
+    }
+
+    private static <V> Node<V> put(final Node<V> node, final String[] segments, final int index, final V value,
+            final boolean[] added) {
+        if (index == segments.length) {
+            if (node.value == value) {
+                return node;
+            }
+            added[0] = node.value == null;
+            return new Node<>(value, node.children);
+        }
+        final String segment = segments[index];
+        final Node<V> child = node.getChild(segment);
+        final Node<V> newChild = put(child == null ? Node.<V> emptyNode() : child, segments, index + 1, value, added);
+        if (newChild == child) {
+            return node;
+        }
+        final Branch<V> children = node.children == null ? Branch.<V> emptyBranch() : node.children;
+        return new Node<>(node.value, children.put(segment, hash(segment), 0, newChild));
+    }
+
+    private static <V> Node<V> remove(final Node<V> node, final String[] segments, final int index) {
+        if (index == segments.length) {
+            if (node.value == null) {
+                return node;
+            }
+            return node.children == null ? null : new Node<>(null, node.children);
+        }
+        final String segment = segments[index];
+        final Node<V> child = node.getChild(segment);
+        if (child == null) {
+            return node;
+        }
+        final Node<V> newChild = remove(child, segments, index + 1);
+        if (newChild == child) {
+            return node;
+        }
+        final int hash = hash(segment);
+        final Branch<V> children = newChild == null
+                ? node.children.remove(segment, hash, 0)
+                : node.children.put(segment, hash, 0, newChild);
+        if (children == null && node.value == null) {
+            return null;
+        }
+        return new Node<>(node.value, children);
+    }
+
+    private static int hash(final String segment) {
+        final int h = segment.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A node of the trie, holding an optional value and the child nodes.
+     */
+    public static final class Node<V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final Node EMPTY_NODE = new Node<>(null, null);
+
+        private final V value;
+
+        private final Branch<V> children;
+
+        private Node(final V value, final Branch<V> children) {
+            this.value = value;
+            this.children = children;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <V> Node<V> emptyNode() {
+            return EMPTY_NODE;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public Node<V> getChild(final String segment) {
+            return children == null ? null : children.get(segment, hash(segment), 0);
+        }
+
+        /**
+         * Returns the children of this node keyed by their segment.
+         */
+        public List<Map.Entry<String, Node<V>>> getChildren() {
+            final List<Map.Entry<String, Node<V>>> result = new ArrayList<>();
+            if (children != null) {
+                children.collect(result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Persistent hash array mapped trie holding the children of a node.
+     * Each level consumes five bits of the segment hash; segments with
+     * identical hashes end up in a {@link Collision} branch.
+     */
+    private static abstract class Branch<V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final Branch EMPTY_BRANCH = new Bitmap<>(0, new Object[0]);
+
+        @SuppressWarnings("unchecked")
+        static <V> Branch<V> emptyBranch() {
+            return EMPTY_BRANCH;
+        }
+
+        abstract Node<V> get(String segment, int hash, int shift);
+
+        abstract Branch<V> put(String segment, int hash, int shift, Node<V> node);
+
+        /**
+         * @return the new branch or <code>null</code> if it is empty
+         */
+        abstract Branch<V> remove(String segment, int hash, int shift);
+
+        abstract void collect(List<Map.Entry<String, Node<V>>> result);
+
+        static <V> Branch<V> create(final int shift,
+                final String segment1, final Node<V> node1, final int hash1,
+                final String segment2, final Node<V> node2, final int hash2) {
+            if (shift >= 32) {
+                return new Collision<>(new String[] {segment1, segment2}, new Object[] {node1, node2});
+            }
+            final int bit1 = bit(hash1, shift);
+            final int bit2 = bit(hash2, shift);
+            if (bit1 == bit2) {
+                return new Bitmap<>(bit1, new Object[] {null,
+                        create(shift + 5, segment1, node1, hash1, segment2, node2, hash2)});
+            }
+            if (((hash1 >>> shift) & 31) < ((hash2 >>> shift) & 31)) {
+                return new Bitmap<>(bit1 | bit2, new Object[] {segment1, node1, segment2, node2});
+            }
+            return new Bitmap<>(bit1 | bit2, new Object[] {segment2, node2, segment1, node1});
+        }
+
+        static int bit(final int hash, final int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+    }
+
+    /**
+     * Bitmap indexed branch. The array contains pairs of segment and node;
+     * if the segment is <code>null</code> the second element is a sub branch.
+     */
+    private static final class Bitmap<V> extends Branch<V> {
+
+        private final int bitmap;
+
+        private final Object[] array;
+
+        Bitmap(final int bitmap, final Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(final int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<V> get(final String segment, final int hash, final int shift) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            final int idx = 2 * index(bit);
+            final Object key = array[idx];
+            if (key == null) {
+                return ((Branch<V>) array[idx + 1]).get(segment, hash, shift + 5);
+            }
+            return segment.equals(key) ? (Node<V>) array[idx + 1] : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Branch<V> put(final String segment, final int hash, final int shift, final Node<V> node) {
+            final int bit = bit(hash, shift);
+            final int idx = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                final Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, idx);
+                newArray[idx] = segment;
+                newArray[idx + 1] = node;
+                System.arraycopy(array, idx, newArray, idx + 2, array.length - idx);
+                return new Bitmap<>(bitmap | bit, newArray);
+            }
+            final Object key = array[idx];
+            final Object current = array[idx + 1];
+            final Object replacement;
+            if (key == null) {
+                final Branch<V> sub = (Branch<V>) current;
+                replacement = sub.put(segment, hash, shift + 5, node);
+            } else if (segment.equals(key)) {
+                replacement = node;
+            } else {
+                final String existing = (String) key;
+                replacement = create(shift + 5, existing, (Node<V>) current, PathTrie.hash(existing),
+                        segment, node, hash);
+                final Object[] newArray = array.clone();
+                newArray[idx] = null;
+                newArray[idx + 1] = replacement;
+                return new Bitmap<>(bitmap, newArray);
+            }
+            if (replacement == current) {
+                return this;
+            }
+            final Object[] newArray = array.clone();
+            newArray[idx + 1] = replacement;
+            return new Bitmap<>(bitmap, newArray);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Branch<V> remove(final String segment, final int hash, final int shift) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int idx = 2 * index(bit);
+            final Object key = array[idx];
+            if (key == null) {
+                final Branch<V> sub = (Branch<V>) array[idx + 1];
+                final Branch<V> newSub = sub.remove(segment, hash, shift + 5);
+                if (newSub == sub) {
+                    return this;
+                }
+                if (newSub != null) {
+                    final Object[] newArray = array.clone();
+                    newArray[idx + 1] = newSub;
+                    return new Bitmap<>(bitmap, newArray);
+                }
+            } else if (!segment.equals(key)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            System.arraycopy(array, idx + 2, newArray, idx, array.length - idx - 2);
+            return new Bitmap<>(bitmap ^ bit, newArray);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void collect(final List<Map.Entry<String, Node<V>>> result) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Branch<V>) array[i + 1]).collect(result);
+                } else {
+                    result.add(new AbstractMap.SimpleImmutableEntry<>((String) array[i], (Node<V>) array[i + 1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Branch for segments sharing the complete hash value.
+     */
+    private static final class Collision<V> extends Branch<V> {
+
+        private final String[] segments;
+
+        private final Object[] nodes;
+
+        Collision(final String[] segments, final Object[] nodes) {
+            this.segments = segments;
+            this.nodes = nodes;
+        }
+
+        private int indexOf(final String segment) {
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i].equals(segment)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<V> get(final String segment, final int hash, final int shift) {
+            final int idx = indexOf(segment);
+            return idx == -1 ? null : (Node<V>) nodes[idx];
+        }
+
+        @Override
+        Branch<V> put(final String segment, final int hash, final int shift, final Node<V> node) {
+            final int idx = indexOf(segment);
+            if (idx == -1) {
+                final String[] newSegments = new String[segments.length + 1];
+                final Object[] newNodes = new Object[nodes.length + 1];
+                System.arraycopy(segments, 0, newSegments, 0, segments.length);
+                System.arraycopy(nodes, 0, newNodes, 0, nodes.length);
+                newSegments[segments.length] = segment;
+                newNodes[nodes.length] = node;
+                return new Collision<>(newSegments, newNodes);
+            }
+            if (nodes[idx] == node) {
+                return this;
+            }
+            final Object[] newNodes = nodes.clone();
+            newNodes[idx] = node;
+            return new Collision<>(segments, newNodes);
+        }
+
+        @Override
+        Branch<V> remove(final String segment, final int hash, final int shift) {
+            final int idx = indexOf(segment);
+            if (idx == -1) {
+                return this;
+            }
+            if (segments.length == 1) {
+                return null;
+            }
+            final String[] newSegments = new String[segments.length - 1];
+            final Object[] newNodes = new Object[nodes.length - 1];
+            System.arraycopy(segments, 0, newSegments, 0, idx);
+            System.arraycopy(segments, idx + 1, newSegments, idx, segments.length - idx - 1);
+            System.arraycopy(nodes, 0, newNodes, 0, idx);
+            System.arraycopy(nodes, idx + 1, newNodes, idx, nodes.length - idx - 1);
+            return new Collision<>(newSegments, newNodes);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void collect(final List<Map.Entry<String, Node<V>>> result) {
+            for (int i = 0; i < segments.length; i++) {
+                result.add(new AbstractMap.SimpleImmutableEntry<>(segments[i], (Node<V>) nodes[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread safe map backed by a {@link PathTrie}.
+ * <p>
+ * The current trie is published through an atomic reference: readers
+ * never block and always see a consistent snapshot, writers create a new
+ * trie sharing all unchanged nodes and swap it in. Iterating the map
+ * iterates the snapshot taken when the iteration started.
+ */
+public class PathTrieMap<V> extends AbstractMap<String, V> {
+
+    private final AtomicReference<PathTrie<V>> trie;
+
+    public PathTrieMap() {
+        this(PathTrie.<V> empty());
+    }
+
+    public PathTrieMap(final PathTrie<V> trie) {
+        this.trie = new AtomicReference<>(trie);
+    }
+
+    /**
+     * Returns the current, immutable snapshot of this map.
+     */
+    public PathTrie<V> snapshot() {
+        return trie.get();
+    }
+
+    @Override
+    public V get(final Object key) {
+        return key instanceof String ? trie.get().get((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return trie.get().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return trie.get().isEmpty();
+    }
+
+    @Override
+    public V put(final String key, final V value) {
+        while (true) {
+            final PathTrie<V> current = trie.get();
+            if (trie.compareAndSet(current, current.put(key, value))) {
+                return current.get(key);
+            }
+        }
+    }
+
+    @Override
+    public V remove(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        while (true) {
+            final PathTrie<V> current = trie.get();
+            if (trie.compareAndSet(current, current.remove((String) key))) {
+                return current.get((String) key);
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the value of the key if the current value is the
+     * expected one. If the new value is <code>null</code> the key is removed.
+     * @return {@code true} if the value has been replaced
+     */
+    public boolean replace(final String key, final V expected, final V value) {
+        while (true) {
+            final PathTrie<V> current = trie.get();
+            if (current.get(key) != expected) {
+                return false;
+            }
+            final PathTrie<V> updated = value == null ? current.remove(key) : current.put(key, value);
+            if (trie.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        trie.set(PathTrie.<V> empty());
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        return new AbstractSet<Map.Entry<String, V>>() {
+
+            @Override
+            public Iterator<Map.Entry<String, V>> iterator() {
+                final Iterator<Map.Entry<String, V>> entries = trie.get().entries().iterator();
+                return new Iterator<Map.Entry<String, V>>() {
+
+                    private Map.Entry<String, V> current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, V> next() {
+                        current = entries.next();
+                        return current;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (current == null) {
+                            throw new IllegalStateException();
+                        }
+                        PathTrieMap.this.remove(current.getKey());
+                        current = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return PathTrieMap.this.size();
+            }
+        };
+    }
+}
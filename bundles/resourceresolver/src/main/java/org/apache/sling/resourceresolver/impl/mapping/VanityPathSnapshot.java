@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot and restore of the cached vanity path entries.
+ * <p>
+ * The snapshot contains the vanity path entries keyed by their vanity path
+ * together with a fingerprint of the configuration used to create them. A
+ * snapshot with a different fingerprint or format version is not restored.
+ */
+public class VanityPathSnapshot {
+
+    private static final int MAGIC = 0x534c5650;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Write the entries to the file. The file is written to a temporary
+     * file first which is then renamed, so a partially written snapshot is
+     * never read.
+     *
+     * @param file the snapshot file
+     * @param fingerprint the configuration fingerprint
+     * @param entries the vanity path entries
+     * @throws IOException if writing fails
+     */
+    public static void write(final File file, final String fingerprint, final PathTrie<List<MapEntry>> entries)
+    throws IOException {
+        final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fingerprint);
+            final List<Map.Entry<String, List<MapEntry>>> list = entries.entries();
+            out.writeInt(list.size());
+            for (final Map.Entry<String, List<MapEntry>> entry : list) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (final MapEntry mapEntry : entry.getValue()) {
+                    out.writeUTF(mapEntry.getPattern());
+                    out.writeInt(mapEntry.getStatus());
+                    out.writeLong(mapEntry.getOrder());
+                    final String[] redirect = mapEntry.getRedirect();
+                    out.writeInt(redirect.length);
+                    for (final String r : redirect) {
+                        out.writeUTF(r);
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace snapshot " + file);
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmpFile + " to " + file);
+        }
+    }
+
+    /**
+     * Read the entries from the file.
+     *
+     * @param file the snapshot file
+     * @param fingerprint the expected configuration fingerprint
+     * @return the entries or <code>null</code> if the file does not exist
+     *         or has been written for a different configuration or version
+     * @throws IOException if reading fails
+     */
+    public static PathTrie<List<MapEntry>> read(final File file, final String fingerprint) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !fingerprint.equals(in.readUTF())) {
+                return null;
+            }
+            PathTrie<List<MapEntry>> result = PathTrie.empty();
+            final int keys = in.readInt();
+            for (int i = 0; i < keys; i++) {
+                final String key = in.readUTF();
+                final int count = in.readInt();
+                final List<MapEntry> list = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    final String pattern = in.readUTF();
+                    final int status = in.readInt();
+                    final long order = in.readLong();
+                    final String[] redirect = new String[in.readInt()];
+                    for (int k = 0; k < redirect.length; k++) {
+                        redirect[k] = in.readUTF();
+                    }
+                    list.add(new MapEntry(pattern, status, false, order, redirect));
+                }
+                if (!list.isEmpty()) {
+                    result = result.put(key, Collections.unmodifiableList(list));
+                }
+            }
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -29,6 +29,11 @@ import org.apache.sling.spi.resource.provider.ResourceProvider;
  * The resource provider storage contains all available handlers
  * and keeps a list of handlers for specific categories to avoid
  * iterating over all handlers for the different use cases.
+ * <p>
+ * A storage is immutable. Adding or removing a handler creates a new
+ * storage sharing the unchanged parts of the handler tree, so the
+ * {@link ResourceProviderTracker} can publish a new storage without
+ * rebuilding it from all handlers.
  */
 public class ResourceProviderStorage {
 
@@ -45,6 +50,11 @@ public class ResourceProviderStorage {
     private final PathTree<ResourceProviderHandler> handlersTree;
 
     public ResourceProviderStorage(List<ResourceProviderHandler> handlers) {
+        this(handlers, new PathTree<ResourceProviderHandler>(handlers));
+    }
+
+    private ResourceProviderStorage(final List<ResourceProviderHandler> handlers,
+            final PathTree<ResourceProviderHandler> handlersTree) {
         this.allHandlers = handlers;
         this.authRequiredHandlers = new ArrayList<ResourceProviderHandler>();
         this.adaptableHandlers = new ArrayList<ResourceProviderHandler>();
@@ -66,9 +76,45 @@ public class ResourceProviderStorage {
                 this.languageQueryableHandlers.add(h);
             }
         }
-        this.handlersTree = new PathTree<ResourceProviderHandler>(handlers);
+        this.handlersTree = handlersTree;
+    }
+
+    /**
+     * Returns a new storage with the handler, replacing the handler
+     * mounted at the same path.
+     *
+     * @param handler The handler
+     * @return The new storage
+     */
+    public ResourceProviderStorage withHandler(final ResourceProviderHandler handler) {
+        final List<ResourceProviderHandler> handlers = new ArrayList<ResourceProviderHandler>(allHandlers.size() + 1);
+        for (final ResourceProviderHandler h : allHandlers) {
+            if (!h.getPath().equals(handler.getPath())) {
+                handlers.add(h);
+            }
+        }
+        handlers.add(handler);
+        return new ResourceProviderStorage(handlers, handlersTree.add(handler));
     }
 
+    /**
+     * Returns a new storage without the handler mounted at the path.
+     *
+     * @param path The mount path
+     * @return The new storage or this storage if no handler is mounted at the path
+     */
+    public ResourceProviderStorage withoutHandler(final String path) {
+        final List<ResourceProviderHandler> handlers = new ArrayList<ResourceProviderHandler>(allHandlers.size());
+        for (final ResourceProviderHandler h : allHandlers) {
+            if (!h.getPath().equals(path)) {
+                handlers.add(h);
+            }
+        }
+        if (handlers.size() == allHandlers.size()) {
+            return this;
+        }
+        return new ResourceProviderStorage(handlers, handlersTree.remove(path));
+    }
     public List<ResourceProviderHandler> getAllHandlers() {
         return allHandlers;
     }
@@ -141,7 +141,10 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
             this.tracker = null;
         }
         this.infos.clear();
-        this.handlers.clear();
+        synchronized ( this.handlers ) {
+            this.handlers.clear();
+            this.storage = null;
+        }
         this.invalidProviders.clear();
     }
 
@@ -191,7 +194,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                        if ( matchingHandlers.size() > 1 ) {
                            deactivateHandler = matchingHandlers.get(1);
                        }
-                       storage = null;
+                       updateStorage(info.getPath());
                    }
                }
            }
@@ -214,7 +217,6 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                synchronized ( this.handlers ) {
                    this.deactivate(deactivateHandler);
                    events.add(new ProviderEvent(false, handlerInfo));
-                   storage = null;
                }
            }
            this.postEvents(events);
@@ -258,7 +260,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                 boolean providerAdded = false;
                 synchronized ( this.handlers ) {
                     this.deactivate(deactivateHandler);
-                    storage = null;
+                    updateStorage(info.getPath(), null);
 
                     final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(info.getPath());
                     if ( matchingHandlers != null && !matchingHandlers.isEmpty() ) {
@@ -280,6 +282,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                             this.handlers.remove(info.getPath());
                         }
                     }
+                    updateStorage(info.getPath());
                 }
                 if ( providerAdded && cl != null ) {
                     if ( cl != null ) {
@@ -406,6 +409,30 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
         dto.failedProviders = failures.toArray(new ResourceProviderFailureDTO[failures.size()]);
     }
 
+    /**
+     * Update the storage with the active handler for the path.
+     * Must be called while holding the lock on the handlers.
+     * @param path The mount path
+     */
+    private void updateStorage(final String path) {
+        final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(path);
+        updateStorage(path, matchingHandlers == null || matchingHandlers.isEmpty() ? null : matchingHandlers.get(0));
+    }
+
+    /**
+     * Update the storage with the handler for the path.
+     * Must be called while holding the lock on the handlers.
+     * @param path The mount path
+     * @param handler The handler or {@code null} if no handler is mounted at the path
+     */
+    private void updateStorage(final String path, final ResourceProviderHandler handler) {
+        final ResourceProviderStorage current = this.storage;
+        // if there is no storage yet, it is created on first access
+        if ( current != null ) {
+            this.storage = handler == null ? current.withoutHandler(path) : current.withHandler(handler);
+        }
+    }
+
     @Override
     public ResourceProviderStorage getResourceProviderStorage() {
         ResourceProviderStorage result = storage;
@@ -22,12 +22,26 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * A node of the {@link PathTree}. Nodes are not changed once the tree they
+ * belong to has been created, changing the tree creates new nodes for the
+ * changed path and shares all other nodes.
+ */
 public class Node<T> {
 
     private T value;
 
     private Map<String, Node<T>> children;
 
+    Node() {
+        this(null, null);
+    }
+
+    Node(final T value, final Map<String, Node<T>> children) {
+        this.value = value;
+        this.children = children;
+    }
+
     public boolean hasChild(String name) {
         return children != null && children.containsKey(name);
     }
@@ -40,6 +54,9 @@ public class Node<T> {
         }
     }
 
+    /**
+     * Adds a new child, only used while creating a new tree.
+     */
     Node<T> addChild(String name) {
         if (children == null) {
             children = new HashMap<String, Node<T>>();
@@ -49,10 +66,42 @@ public class Node<T> {
         return newNode;
     }
 
+    /**
+     * Sets the value, only used while creating a new tree.
+     */
     void setValue(T value) {
         this.value = value;
     }
 
+    /**
+     * Returns a copy of this node with the child added or replaced, or removed
+     * if the child is <code>null</code>.
+     */
+    Node<T> withChild(final String name, final Node<T> child) {
+        final Map<String, Node<T>> newChildren = children == null
+                ? new HashMap<String, Node<T>>() : new HashMap<String, Node<T>>(children);
+        if (child == null) {
+            newChildren.remove(name);
+        } else {
+            newChildren.put(name, child);
+        }
+        return new Node<T>(value, newChildren.isEmpty() ? null : newChildren);
+    }
+
+    /**
+     * Returns a copy of this node with the value.
+     */
+    Node<T> withValue(final T value) {
+        return new Node<T>(value, children);
+    }
+
+    /**
+     * Whether this node has neither a value nor children.
+     */
+    boolean isEmpty() {
+        return value == null && children == null;
+    }
+
     public T getValue() {
         return value;
     }
@@ -69,4 +118,4 @@ public class Node<T> {
     public String toString() {
         return "[" + getClass().getSimpleName() + "# value: " + value +" ]";
     }
-}
\ No newline at end of file
+}
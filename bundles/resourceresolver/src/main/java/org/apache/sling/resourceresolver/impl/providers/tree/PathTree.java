@@ -20,21 +20,43 @@ package org.apache.sling.resourceresolver.impl.providers.tree;
 
 import static org.apache.commons.lang3.StringUtils.split;
 
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Immutable tree of values keyed by their path.
+ * <p>
+ * Besides the tree, all nodes except the root are kept in a flat open
+ * addressing table keyed by their path. While scanning a looked up path
+ * once, the hash code of each prefix is calculated and the matching entry
+ * is verified by comparing its parent entry and its last segment only, so
+ * the best matching node is found without creating strings for the path
+ * segments.
+ * <p>
+ * Adding or removing a value returns a new tree which shares all nodes
+ * not on the changed path with this tree.
+ */
 public class PathTree<T extends Pathable> {
 
-    private Node<T> root;
+    private final Node<T> root;
+
+    private final Table<T> table;
 
     public PathTree(List<T> values) {
-        this.root = new Node<>();
+        final Node<T> newRoot = new Node<>();
         for (T v : values) {
-            addNewValue(v);
+            addNewValue(newRoot, v);
         }
+        this.root = newRoot;
+        this.table = Table.build(newRoot);
     }
 
-    private void addNewValue(T value) {
+    private PathTree(final Node<T> root, final Table<T> table) {
+        this.root = root;
+        this.table = table;
+    }
+
+    private static <T extends Pathable> void addNewValue(final Node<T> root, final T value) {
         Node<T> node = root;
         for (String segment : split(value.getPath(), '/')) {
             if (node.hasChild(segment)) {
@@ -46,42 +68,265 @@ public class PathTree<T extends Pathable> {
         node.setValue(value);
     }
 
-    public Node<T> getBestMatchingNode(final String path) {
-        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
-            return null;
+    /**
+     * Returns a new tree with the value added, replacing the value with the
+     * same path.
+     *
+     * @param value The value
+     * @return The new tree
+     */
+    public PathTree<T> add(final T value) {
+        final String[] segments = split(value.getPath(), '/');
+        final Node<T> newRoot = add(root, segments, 0, value);
+        if (!table.hasRoomFor(segments.length)) {
+            return new PathTree<>(newRoot, Table.build(newRoot));
         }
+        // all nodes on the path have been replaced
+        final Table<T> newTable = table.copy();
+        Node<T> node = newRoot;
+        int parent = -1;
+        final StringBuilder sb = new StringBuilder();
+        for (final String segment : segments) {
+            node = node.getChild(segment);
+            sb.append('/').append(segment);
+            parent = newTable.put(sb.toString(), node, parent);
+        }
+        return new PathTree<>(newRoot, newTable);
+    }
 
-        Node<T> result = root.getValue() != null ? root : null;
+    /**
+     * Returns a new tree without the value of the path. Nodes which neither
+     * have a value nor children any more are removed.
+     *
+     * @param path The path
+     * @return The new tree or this tree if there is no value for the path
+     */
+    public PathTree<T> remove(final String path) {
+        final Node<T> removed = remove(root, split(path, '/'), 0);
+        if (removed == root) {
+            return this;
+        }
+        final Node<T> newRoot = removed == null ? new Node<T>() : removed;
+        return new PathTree<>(newRoot, Table.build(newRoot));
+    }
 
-        Node<T> node = root;
-        Iterator<String> it = new PathSegmentIterator(path, 1);
-        while (it.hasNext()) {
-            String segment = it.next();
-            node = node.getChild(segment);
-            if (node == null) {
-                break;
-            } else {
-                if (node.getValue() != null) {
-                    result = node;
-                }
+    private Node<T> add(final Node<T> node, final String[] segments, final int index, final T value) {
+        if (index == segments.length) {
+            return node == null ? new Node<T>(value, null) : node.withValue(value);
+        }
+        final Node<T> child = node == null ? null : node.getChild(segments[index]);
+        final Node<T> newChild = add(child, segments, index + 1, value);
+        return (node == null ? new Node<T>() : node).withChild(segments[index], newChild);
+    }
+
+    /**
+     * Removes the value below the node.
+     * @return The node if nothing has been removed, the new node or
+     *         <code>null</code> if the new node would be empty.
+     */
+    private Node<T> remove(final Node<T> node, final String[] segments, final int index) {
+        final Node<T> result;
+        if (index == segments.length) {
+            if (node.getValue() == null) {
+                return node;
+            }
+            result = node.withValue(null);
+        } else {
+            final Node<T> child = node.getChild(segments[index]);
+            if (child == null) {
+                return node;
+            }
+            final Node<T> newChild = remove(child, segments, index + 1);
+            if (newChild == child) {
+                return node;
             }
+            result = node.withChild(segments[index], newChild);
         }
-        return result;
+        return result.isEmpty() ? null : result;
+    }
+
+    public Node<T> getBestMatchingNode(final String path) {
+        return find(path, true);
     }
 
     public Node<T> getNode(String path) {
+        return find(path, false);
+    }
+
+    /**
+     * Find the node for the path.
+     * @param path The path
+     * @param bestMatch Whether to return the deepest node with a value on the path
+     *                  instead of the node of the path
+     * @return The node or <code>null</code>
+     */
+    private Node<T> find(final String path, final boolean bestMatch) {
         if (path == null || path.isEmpty() || path.charAt(0) != '/') {
             return null;
         }
-        Node<T> node = root;
-        Iterator<String> it = new PathSegmentIterator(path, 1);
-        while (it.hasNext()) {
-            String segment = it.next();
-            node = node.getChild(segment);
-            if (node == null) {
-                return null;
+        Node<T> result = !bestMatch || root.getValue() != null ? root : null;
+
+        // a single trailing slash is ignored
+        final int length = path.length() > 1 && path.charAt(path.length() - 1) == '/' ? path.length() - 1 : path.length();
+        if (length == 1) {
+            return result;
+        }
+        int hash = '/';
+        int parent = -1;
+        int start = 1;
+        while (true) {
+            int end = path.indexOf('/', start);
+            if (end == -1 || end > length) {
+                end = length;
+            }
+            // empty segments are never in the tree
+            if (end == start) {
+                break;
+            }
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + path.charAt(i);
+            }
+            final int slot = table.find(path, start, end, hash, parent);
+            if (slot < 0) {
+                break;
+            }
+            final Node<T> node = table.nodes[slot];
+            if (!bestMatch || node.getValue() != null) {
+                result = node;
             }
+            if (end == length) {
+                return result;
+            }
+            hash = 31 * hash + '/';
+            parent = slot;
+            start = end + 1;
+        }
+        return bestMatch ? result : null;
+    }
+
+    /**
+     * Open addressing hash table of all nodes except the root, keyed by
+     * their path. Each entry knows the slot of its parent entry.
+     */
+    private static final class Table<T> {
+
+        /** The paths of the nodes, <code>null</code> for free slots. */
+        final String[] paths;
+
+        final Node<T>[] nodes;
+
+        /** The hash codes of the paths. */
+        final int[] hashes;
+
+        /** The slot of the parent, -1 for the children of the root. */
+        final int[] parents;
+
+        int size;
+
+        @SuppressWarnings("unchecked")
+        Table(final int capacity) {
+            this.paths = new String[capacity];
+            this.nodes = new Node[capacity];
+            this.hashes = new int[capacity];
+            this.parents = new int[capacity];
+        }
+
+        static <T> Table<T> build(final Node<T> root) {
+            final Table<T> table = new Table<>(capacity(count(root)));
+            table.putChildren(root, "", -1);
+            return table;
+        }
+
+        private static int count(final Node<?> node) {
+            int count = 0;
+            for (final Node<?> child : node.getChildren().values()) {
+                count += 1 + count(child);
+            }
+            return count;
+        }
+
+        /**
+         * The table is at most half full.
+         */
+        private static int capacity(final int entries) {
+            int capacity = 4;
+            while (capacity < entries * 2) {
+                capacity <<= 1;
+            }
+            return capacity;
+        }
+
+        private void putChildren(final Node<T> node, final String path, final int slot) {
+            for (final Map.Entry<String, Node<T>> entry : node.getChildren().entrySet()) {
+                final String childPath = path + '/' + entry.getKey();
+                putChildren(entry.getValue(), childPath, put(childPath, entry.getValue(), slot));
+            }
+        }
+
+        boolean hasRoomFor(final int entries) {
+            return capacity(size + entries) <= paths.length;
+        }
+
+        Table<T> copy() {
+            final Table<T> copy = new Table<>(paths.length);
+            System.arraycopy(paths, 0, copy.paths, 0, paths.length);
+            System.arraycopy(nodes, 0, copy.nodes, 0, nodes.length);
+            System.arraycopy(hashes, 0, copy.hashes, 0, hashes.length);
+            System.arraycopy(parents, 0, copy.parents, 0, parents.length);
+            copy.size = size;
+            return copy;
+        }
+
+        /**
+         * Puts the node into the table, replacing the node with the same path.
+         * @return The slot of the node
+         */
+        int put(final String path, final Node<T> node, final int parent) {
+            final int mask = paths.length - 1;
+            final int hash = path.hashCode();
+            int index = spread(hash) & mask;
+            while (paths[index] != null && !paths[index].equals(path)) {
+                index = (index + 1) & mask;
+            }
+            if (paths[index] == null) {
+                paths[index] = path;
+                hashes[index] = hash;
+                parents[index] = parent;
+                size++;
+            }
+            nodes[index] = node;
+            return index;
+        }
+
+        /**
+         * Find the slot of the prefix of the path ending at <code>end</code>.
+         * As the prefix up to <code>start</code> is the path of the parent,
+         * only the last segment is compared.
+         * @return The slot or -1
+         */
+        int find(final String path, final int start, final int end, final int hash, final int parent) {
+            final int mask = paths.length - 1;
+            int index = spread(hash) & mask;
+            while (true) {
+                final String p = paths[index];
+                if (p == null) {
+                    return -1;
+                }
+                if (hashes[index] == hash && parents[index] == parent && p.length() == end
+                        && path.regionMatches(start, p, start, end - start)) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        /**
+         * The hash codes of sibling paths often differ in the lowest bits
+         * only, mix them to avoid long probe sequences.
+         */
+        private static int spread(final int hash) {
+            final int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
         }
-        return node;
     }
 }
@@ -199,6 +199,41 @@ public class MockedResourceResolverImplTest {
                 return 1024000;
             }
 
+            @Override
+            public boolean resource_resolver_vanitypath_snapshot() {
+                return false;
+            }
+
+            @Override
+            public boolean resource_resolver_cache_enabled() {
+                return false;
+            }
+
+            @Override
+            public int resource_resolver_cache_maxEntries() {
+                return 1000;
+            }
+
+            @Override
+            public boolean resource_resolver_cache_shared() {
+                return false;
+            }
+
+            @Override
+            public int resource_resolver_cache_shared_maxEntries() {
+                return 10000;
+            }
+
+            @Override
+            public boolean resource_resolver_resourcetype_cache_enabled() {
+                return true;
+            }
+
+            @Override
+            public int resource_resolver_resourcetype_cache_maxEntries() {
+                return 10000;
+            }
+
             @Override
             public String[] resource_resolver_vanitypath_blacklist() {
                 return null;
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import static java.util.Arrays.asList;
+import static org.apache.sling.resourceresolver.impl.MockedResourceResolverImplTest.createRPHandler;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.sling.api.resource.AbstractResource;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.resourceresolver.impl.helper.ResourceCacheManager;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderStorage;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker;
+import org.apache.sling.spi.resource.provider.ResolveContext;
+import org.apache.sling.spi.resource.provider.ResourceContext;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+public class ResourceResolverCacheTest {
+
+    private final Set<String> paths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final Map<String, Integer> lookups = new ConcurrentHashMap<>();
+
+    private CommonResourceResolverFactoryImpl commonFactory;
+
+    private ResourceProviderTracker resourceProviderTracker;
+
+    private ResourceCacheManager manager;
+
+    @Before public void setup() {
+        final ResourceProvider<?> rp = new ResourceProvider<Object>() {
+
+            @Override
+            public Resource getResource(ResolveContext<Object> ctx, String path, ResourceContext rCtx, Resource parent) {
+                final Integer count = lookups.get(path);
+                lookups.put(path, count == null ? 1 : count + 1);
+                if (paths.contains(path)) {
+                    return createResource(ctx.getResourceResolver(), path);
+                }
+                return null;
+            }
+
+            @Override
+            public Iterator<Resource> listChildren(ResolveContext<Object> ctx, Resource parent) {
+                return null;
+            }
+
+            @Override
+            public Resource create(ResolveContext<Object> ctx, String path, Map<String, Object> properties) {
+                paths.add(path);
+                return createResource(ctx.getResourceResolver(), path);
+            }
+        };
+        paths.add("/");
+        paths.add("/content");
+
+        resourceProviderTracker = mock(ResourceProviderTracker.class);
+        final ResourceProviderStorage storage = new ResourceProviderStorage(asList(createRPHandler(rp, "rp1", 0, "/")));
+        when(resourceProviderTracker.getResourceProviderStorage()).thenReturn(storage);
+
+        final ResourceResolverFactoryConfig config = mock(ResourceResolverFactoryConfig.class);
+        when(config.resource_resolver_cache_enabled()).thenReturn(true);
+        when(config.resource_resolver_cache_maxEntries()).thenReturn(100);
+        when(config.resource_resolver_cache_shared()).thenReturn(true);
+        when(config.resource_resolver_cache_shared_maxEntries()).thenReturn(100);
+        final ResourceResolverFactoryActivator activator = new ResourceResolverFactoryActivator();
+        Whitebox.setInternalState(activator, "config", config);
+        activator.resourceProviderTracker = resourceProviderTracker;
+        activator.resourceAccessSecurityTracker = new ResourceAccessSecurityTracker();
+        commonFactory = new CommonResourceResolverFactoryImpl(activator);
+        manager = commonFactory.getResourceCacheManager();
+    }
+
+    private static Resource createResource(final ResourceResolver resolver, final String path) {
+        return new AbstractResource() {
+
+            private final ResourceMetadata metadata = new ResourceMetadata();
+
+            @Override
+            public String getPath() {
+                return path;
+            }
+
+            @Override
+            public String getResourceType() {
+                return "test";
+            }
+
+            @Override
+            public String getResourceSuperType() {
+                return null;
+            }
+
+            @Override
+            public ResourceMetadata getResourceMetadata() {
+                return metadata;
+            }
+
+            @Override
+            public ResourceResolver getResourceResolver() {
+                return resolver;
+            }
+        };
+    }
+
+    private ResourceResolver createResolver(final String userId) throws LoginException {
+        final Map<String, Object> authInfo = new HashMap<>();
+        authInfo.put(ResourceResolverFactory.USER, userId);
+        return new ResourceResolverImpl(commonFactory, false, authInfo, resourceProviderTracker);
+    }
+
+    private int lookups(final String path) {
+        final Integer count = lookups.get(path);
+        return count == null ? 0 : count;
+    }
+
+    @Test public void testResourceCache() throws LoginException {
+        final ResourceResolver resolver = createResolver("user");
+        final Resource resource = resolver.getResource("/content");
+        assertNotNull(resource);
+        assertSame(resource, resolver.getResource("/content"));
+        assertSame(resource, resolver.getResource("/content/./"));
+        assertEquals(1, lookups("/content"));
+        assertEquals(2, manager.getHits());
+
+        assertNull(resolver.getResource("/content/missing"));
+        assertNull(resolver.getResource("/content/missing"));
+        assertEquals(1, lookups("/content/missing"));
+        assertEquals(1, manager.getMissingHits());
+
+        // a missing resource is missing for resolve, too
+        resolver.resolve("/content/missing");
+        assertEquals(1, lookups("/content/missing"));
+
+        final int count = lookups("/content");
+        resolver.getResource("/content");
+        assertEquals(count, lookups("/content"));
+        resolver.refresh();
+        resolver.getResource("/content");
+        assertEquals(count + 1, lookups("/content"));
+        resolver.close();
+    }
+
+    @Test public void testCreateAndCommit() throws LoginException, PersistenceException {
+        final ResourceResolver resolver = createResolver("user");
+        final ResourceResolver other = createResolver("user");
+        assertNull(resolver.getResource("/content/page"));
+        // shared between the resolvers of the user
+        assertNull(other.getResource("/content/page"));
+        assertEquals(1, lookups("/content/page"));
+        assertEquals(1, manager.getSharedHits());
+
+        resolver.create(resolver.getResource("/content"), "page", null);
+        assertNotNull(resolver.getResource("/content/page"));
+        resolver.commit();
+        assertNotNull(other.getResource("/content/page"));
+        assertNotNull(resolver.getResource("/content/page"));
+
+        resolver.close();
+        other.close();
+    }
+
+    @Test public void testNotSharedBetweenUsers() throws LoginException {
+        final ResourceResolver resolver = createResolver("user");
+        final ResourceResolver other = createResolver("other");
+        assertNull(resolver.getResource("/content/page"));
+        assertNull(other.getResource("/content/page"));
+        assertEquals(2, lookups("/content/page"));
+        assertEquals(0, manager.getSharedHits());
+        resolver.close();
+        other.close();
+    }
+
+    @Test public void testResourceChange() throws LoginException {
+        final ResourceResolver resolver = createResolver("user");
+        final ResourceResolver other = createResolver("user");
+        assertNull(resolver.getResource("/content/a/b"));
+        assertNull(resolver.getResource("/content/c"));
+
+        // created outside of the resolvers
+        paths.add("/content/a");
+        paths.add("/content/a/b");
+        manager.onChange(Collections.singletonList(new ResourceChange(ChangeType.ADDED, "/content/a", false, null, null, null)));
+        assertNotNull(resolver.getResource("/content/a/b"));
+        assertNotNull(other.getResource("/content/a/b"));
+        assertNull(resolver.getResource("/content/c"));
+        assertEquals(1, lookups("/content/c"));
+
+        // access control changes invalidate the subtree of the access controlled resource
+        manager.onChange(Collections.singletonList(new ResourceChange(ChangeType.ADDED, "/content/rep:policy/allow", false, null, null, null)));
+        assertNull(resolver.getResource("/content/c"));
+        assertEquals(2, lookups("/content/c"));
+
+        resolver.close();
+        other.close();
+    }
+
+    @Test public void testAccessControlChange() throws LoginException {
+        final ResourceResolver resolver = createResolver("user");
+        assertNull(resolver.getResource("/content/a"));
+        assertNull(resolver.getResource("/other"));
+
+        // a closed user group changes the access to the subtree of the protected resource
+        manager.onChange(Collections.singletonList(new ResourceChange(ChangeType.ADDED, "/content/rep:cugPolicy", false, null, null, null)));
+        resolver.refresh();
+        assertNull(resolver.getResource("/content/a"));
+        assertNull(resolver.getResource("/other"));
+        assertEquals(2, lookups("/content/a"));
+        assertEquals(1, lookups("/other"));
+
+        // the repository level access control changes the access to everything
+        manager.onChange(Collections.singletonList(new ResourceChange(ChangeType.CHANGED, "/rep:repoPolicy/allow", false, null, null, null)));
+        resolver.refresh();
+        assertNull(resolver.getResource("/content/a"));
+        assertNull(resolver.getResource("/other"));
+        assertEquals(3, lookups("/content/a"));
+        assertEquals(2, lookups("/other"));
+
+        resolver.close();
+    }
+
+    @Test public void testStaleResolverDoesNotShareMissing() throws LoginException {
+        final ResourceResolver stale = createResolver("user");
+
+        // created and observed after the resolver read the state of the repository,
+        // which still reports the resource as missing
+        manager.onChange(Collections.singletonList(new ResourceChange(ChangeType.ADDED, "/content/page", false, null, null, null)));
+        assertNull(stale.getResource("/content/page"));
+        paths.add("/content/page");
+
+        final ResourceResolver other = createResolver("user");
+        assertNotNull(other.getResource("/content/page"));
+        assertEquals(0, manager.getSharedHits());
+
+        // after a refresh the missing resources are shared again
+        stale.refresh();
+        assertNull(stale.getResource("/content/missing"));
+        assertNull(other.getResource("/content/missing"));
+        assertEquals(1, lookups("/content/missing"));
+        assertEquals(1, manager.getSharedHits());
+
+        stale.close();
+        other.close();
+    }
+
+    @Test public void testDisabled() throws LoginException {
+        final ResourceResolverFactoryActivator activator = new ResourceResolverFactoryActivator();
+        activator.resourceProviderTracker = resourceProviderTracker;
+        activator.resourceAccessSecurityTracker = new ResourceAccessSecurityTracker();
+        final CommonResourceResolverFactoryImpl factory = new CommonResourceResolverFactoryImpl(activator);
+        assertNull(factory.getResourceCacheManager());
+
+        final ResourceResolver resolver = new ResourceResolverImpl(factory, false, null, resourceProviderTracker);
+        resolver.getResource("/content");
+        resolver.getResource("/content");
+        assertEquals(2, lookups("/content"));
+        resolver.close();
+    }
+}
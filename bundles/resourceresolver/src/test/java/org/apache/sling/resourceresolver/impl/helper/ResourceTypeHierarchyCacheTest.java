@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResourceTypeHierarchyCacheTest {
+
+    private final Map<String, String> superTypes = new HashMap<String, String>();
+
+    private final Map<String, Integer> lookups = new HashMap<String, Integer>();
+
+    private final ResourceTypeHierarchyCache.SuperTypeLoader loader = new ResourceTypeHierarchyCache.SuperTypeLoader() {
+
+        @Override
+        public String getParentResourceType(final String resourceType) {
+            final Integer count = lookups.get(resourceType);
+            lookups.put(resourceType, count == null ? 1 : count + 1);
+            return superTypes.get(resourceType);
+        }
+    };
+
+    private ResourceTypeHierarchyCache cache;
+
+    @Before
+    public void setup() {
+        superTypes.put("a/page", "a/base");
+        superTypes.put("a/base", "/libs/foundation/page");
+        cache = new ResourceTypeHierarchyCache(new String[] {"/apps/", "/libs/"}, 100);
+    }
+
+    private int lookups(final String resourceType) {
+        final Integer count = lookups.get(resourceType);
+        return count == null ? 0 : count;
+    }
+
+    @Test
+    public void testParentResourceTypeIsCached() {
+        assertEquals("a/base", cache.getParentResourceType("a/page", loader));
+        assertEquals("a/base", cache.getParentResourceType("a/page", loader));
+        assertEquals(1, lookups("a/page"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testMissingParentResourceTypeIsCached() {
+        assertNull(cache.getParentResourceType("a/other", loader));
+        assertNull(cache.getParentResourceType("a/other", loader));
+        assertEquals(1, lookups("a/other"));
+    }
+
+    @Test
+    public void testHierarchy() {
+        final ResourceTypeHierarchyCache.Hierarchy hierarchy = cache.getHierarchy("a/page", loader);
+        assertTrue(hierarchy.contains("a/base"));
+        assertTrue(hierarchy.contains("foundation/page"));
+        assertFalse(hierarchy.contains("a/page"));
+        assertFalse(hierarchy.isCyclic());
+
+        cache.getHierarchy("a/page", loader);
+        assertEquals(1, lookups("a/page"));
+        assertEquals(1, lookups("a/base"));
+    }
+
+    @Test
+    public void testCyclicHierarchy() {
+        superTypes.put("/libs/foundation/page", "a/page");
+        final ResourceTypeHierarchyCache.Hierarchy hierarchy = cache.getHierarchy("a/page", loader);
+        assertTrue(hierarchy.isCyclic());
+        assertTrue(hierarchy.contains("a/page"));
+    }
+
+    @Test
+    public void testInvalidation() {
+        cache.getHierarchy("a/page", loader);
+        superTypes.put("a/page", "a/other");
+        cache.onChange(Collections.<ResourceChange> emptyList());
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getInvalidations());
+
+        final ResourceTypeHierarchyCache.Hierarchy hierarchy = cache.getHierarchy("a/page", loader);
+        assertTrue(hierarchy.contains("a/other"));
+        assertFalse(hierarchy.contains("a/base"));
+    }
+
+    @Test
+    public void testIsCacheable() {
+        assertTrue(cache.isCacheable("a/page"));
+        assertTrue(cache.isCacheable("/apps/a/page"));
+        assertTrue(cache.isCacheable("/libs/foundation/page"));
+        assertFalse(cache.isCacheable("/content/a/page"));
+        assertFalse(cache.isCacheable(""));
+        assertFalse(cache.isCacheable(null));
+    }
+
+    @Test
+    public void testMaxEntries() {
+        cache = new ResourceTypeHierarchyCache(new String[] {"/apps/"}, 2);
+        cache.getParentResourceType("a/page", loader);
+        cache.getParentResourceType("a/base", loader);
+        assertEquals(2, cache.getSize());
+        cache.getParentResourceType("a/other", loader);
+        assertEquals(1, cache.getSize());
+    }
+}
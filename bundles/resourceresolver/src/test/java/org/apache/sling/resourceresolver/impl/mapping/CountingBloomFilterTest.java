@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Test the counting bloom filter.
+ */
+public class CountingBloomFilterTest {
+
+    private static final int MAX_BYTES = 1024000;
+
+    private static String key(final int i) {
+        return "/content/site/page-" + i;
+    }
+
+    @Test
+    public void probability() {
+        final CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01, MAX_BYTES);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(key(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.probablyContains(key(i)));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 101000; i++) {
+            if (filter.probablyContains(key(i))) {
+                falsePositives++;
+            }
+        }
+        // 1% false positive probability, allow some variance
+        assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+        assertEquals(1000, filter.getEntryCount());
+        assertEquals(1, filter.getStageCount());
+        assertTrue(filter.getFalsePositiveRate() < 0.02);
+        assertTrue(filter.getFillRatio() > 0 && filter.getFillRatio() < 1);
+    }
+
+    @Test
+    public void remove() {
+        final CountingBloomFilter filter = new CountingBloomFilter(100, 0.01, MAX_BYTES);
+        filter.add("/a");
+        filter.add("/b");
+        filter.add("/b");
+        assertTrue(filter.remove("/a"));
+        assertFalse(filter.probablyContains("/a"));
+        assertTrue(filter.probablyContains("/b"));
+
+        // added twice, removed once
+        assertTrue(filter.remove("/b"));
+        assertTrue(filter.probablyContains("/b"));
+        assertTrue(filter.remove("/b"));
+        assertFalse(filter.probablyContains("/b"));
+        assertEquals(0, filter.getEntryCount());
+        assertEquals(0, filter.getFillRatio(), 0);
+    }
+
+    @Test
+    public void growth() {
+        final CountingBloomFilter filter = new CountingBloomFilter(100, 0.01, MAX_BYTES);
+        for (int i = 0; i < 10000; i++) {
+            filter.add(key(i));
+        }
+        assertTrue(filter.getStageCount() > 1);
+        assertTrue(filter.getCapacity() >= 10000);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.probablyContains(key(i)));
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 110000; i++) {
+            if (filter.probablyContains(key(i))) {
+                falsePositives++;
+            }
+        }
+        // the stages together stay below twice the probability of the first stage
+        assertTrue("False positives: " + falsePositives, falsePositives < 3000);
+
+        // entries can be removed from any stage
+        for (int i = 0; i < 10000; i++) {
+            filter.remove(key(i));
+        }
+        int remaining = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.probablyContains(key(i))) {
+                remaining++;
+            }
+        }
+        assertTrue("Remaining: " + remaining, remaining < 500);
+    }
+
+    @Test
+    public void maxBytes() {
+        final CountingBloomFilter filter = new CountingBloomFilter(1000000, 0.01, 2048);
+        assertEquals(2048, filter.getByteSize());
+        for (int i = 0; i < 10000; i++) {
+            filter.add(key(i));
+        }
+        assertEquals(1, filter.getStageCount());
+        assertTrue(filter.getByteSize() <= 2048);
+        assertTrue(filter.probablyContains(key(42)));
+    }
+
+    @Test
+    public void powerOfTwoSize() {
+        // the odd stride of the second hash only reaches all counters for a power of two size
+        assertEquals(8192, new CountingBloomFilter(1000, 0.01, 100000).getByteSize());
+        assertEquals(2048, new CountingBloomFilter(1000000, 0.01, 3000).getByteSize());
+    }
+
+    @Test
+    public void disabled() {
+        final CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01, 0);
+        filter.add("/a");
+        assertTrue(filter.probablyContains("/a"));
+        assertTrue(filter.probablyContains("/b"));
+        assertFalse(filter.remove("/a"));
+        assertEquals(0, filter.getByteSize());
+    }
+
+    @Test
+    public void persistence() throws IOException {
+        final File file = File.createTempFile("bloom", ".filter");
+        try {
+            final CountingBloomFilter filter = new CountingBloomFilter(100, 0.01, MAX_BYTES);
+            for (int i = 0; i < 500; i++) {
+                filter.add(key(i));
+            }
+            filter.write(file);
+
+            assertNull(CountingBloomFilter.read(file, MAX_BYTES + 1));
+
+            final CountingBloomFilter read = CountingBloomFilter.read(file, MAX_BYTES);
+            assertEquals(filter.getEntryCount(), read.getEntryCount());
+            assertEquals(filter.getStageCount(), read.getStageCount());
+            assertEquals(filter.getByteSize(), read.getByteSize());
+            for (int i = 0; i < 500; i++) {
+                assertTrue(read.probablyContains(key(i)));
+            }
+            assertTrue(read.remove(key(0)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readOldFormat() throws IOException {
+        final File file = File.createTempFile("bloom", ".filter");
+        try {
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[1024]);
+            } finally {
+                out.close();
+            }
+            assertNull(CountingBloomFilter.read(file, MAX_BYTES));
+        } finally {
+            file.delete();
+        }
+    }
+}
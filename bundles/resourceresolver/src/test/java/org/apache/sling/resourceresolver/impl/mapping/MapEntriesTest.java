@@ -44,6 +44,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -607,6 +608,157 @@ public class MapEntriesTest {
     }
 
 
+    @Test
+    public void test_vanity_path_snapshot() throws Exception {
+        final File snapshotFile = new File("target/vanityPaths.snapshot");
+        snapshotFile.delete();
+        when(bundleContext.getDataFile("vanityPaths.snapshot")).thenReturn(snapshotFile);
+        when(resourceResolverFactory.isVanityPathSnapshotEnabled()).thenReturn(true);
+
+        final Resource justVanityPath = mock(Resource.class, "justVanityPath");
+        when(justVanityPath.getPath()).thenReturn("/justVanityPath");
+        when(justVanityPath.getName()).thenReturn("justVanityPath");
+        when(justVanityPath.getValueMap()).thenReturn(buildValueMap("sling:vanityPath", "/target/justVanityPath",
+                "sling:vanityOrder", 100L));
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            @Override
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:vanityPath")) {
+                    return Collections.singleton(justVanityPath).iterator();
+                } else {
+                    return Collections.<Resource> emptySet().iterator();
+                }
+            }
+        });
+
+        final MapEntries first = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        final List<MapEntry> entries = first.getResolveMaps();
+        assertEquals(2, entries.size());
+        first.dispose();
+        assertTrue(snapshotFile.exists());
+
+        // the second instance restores the snapshot and reloads in the background,
+        // where the vanity path has been removed in the meantime
+        final CountDownLatch reload = new CountDownLatch(1);
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            @Override
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:vanityPath")) {
+                    reload.await();
+                }
+                return Collections.<Resource> emptySet().iterator();
+            }
+        });
+        final MapEntries second = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            final List<MapEntry> restored = second.getResolveMaps();
+            assertEquals(entries.size(), restored.size());
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(entries.get(i).getPattern(), restored.get(i).getPattern());
+                assertEquals(entries.get(i).getOrder(), restored.get(i).getOrder());
+                assertEquals(Arrays.asList(entries.get(i).getRedirect()), Arrays.asList(restored.get(i).getRedirect()));
+            }
+
+            final Field field = MapEntries.class.getDeclaredField("vanityTargets");
+            field.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            final Map<String, List<String>> vanityTargets = (Map<String, List<String>>) field.get(second);
+            assertEquals(Collections.singletonList("/target/justVanityPath"), vanityTargets.get("/justVanityPath"));
+
+            reload.countDown();
+            final long until = System.currentTimeMillis() + 10000;
+            while (!second.getResolveMaps().isEmpty() && System.currentTimeMillis() < until) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(0, second.getResolveMaps().size());
+            // the bloom filter is built again instead of adding to the restored one
+            assertEquals(0, second.getVanityBloomFilter().getEntryCount());
+            @SuppressWarnings("unchecked")
+            final Map<String, List<String>> reconciled = (Map<String, List<String>>) field.get(second);
+            assertTrue(reconciled.isEmpty());
+        } finally {
+            reload.countDown();
+            second.dispose();
+            snapshotFile.delete();
+        }
+    }
+
+    @Test
+    public void test_vanity_path_snapshot_shared_vanity_path() throws Exception {
+        final File snapshotFile = new File("target/vanityPaths.snapshot");
+        snapshotFile.delete();
+        when(bundleContext.getDataFile("vanityPaths.snapshot")).thenReturn(snapshotFile);
+        when(resourceResolverFactory.isVanityPathSnapshotEnabled()).thenReturn(true);
+        when(resourceResolverFactory.getVanityBloomFilterMaxBytes()).thenReturn(1024 * 1024);
+
+        final Resource first = mock(Resource.class, "first");
+        when(first.getPath()).thenReturn("/justVanityPath");
+        when(first.getName()).thenReturn("justVanityPath");
+        when(first.getValueMap()).thenReturn(buildValueMap("sling:vanityPath", "/target/shared"));
+        final Resource second = mock(Resource.class, "second");
+        when(second.getPath()).thenReturn("/justVanityPath2");
+        when(second.getName()).thenReturn("justVanityPath2");
+        when(second.getValueMap()).thenReturn(buildValueMap("sling:vanityPath", "/target/shared"));
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            @Override
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:vanityPath")) {
+                    return Arrays.asList(first, second).iterator();
+                } else {
+                    return Collections.<Resource> emptySet().iterator();
+                }
+            }
+        });
+
+        final MapEntries written = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        assertEquals(4, written.getResolveMaps().size());
+        written.dispose();
+        assertTrue(snapshotFile.exists());
+        // the bloom filter is built from the snapshot
+        vanityBloomFilterFile.delete();
+
+        // keep the restored vanity paths until the end of the test
+        final CountDownLatch reload = new CountDownLatch(1);
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            @Override
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:vanityPath")) {
+                    reload.await();
+                }
+                return Collections.<Resource> emptySet().iterator();
+            }
+        });
+        final MapEntries restored = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            assertEquals(4, restored.getResolveMaps().size());
+
+            final Method doRemoveVanity = MapEntries.class.getDeclaredMethod("doRemoveVanity", String.class);
+            doRemoveVanity.setAccessible(true);
+            doRemoveVanity.invoke(restored, "/justVanityPath");
+
+            assertTrue(restored.getVanityBloomFilter().probablyContains("/target/shared"));
+            final Iterator<MapEntry> iterator = restored.getResolveMapsIterator("http/localhost.8080/target/shared");
+            boolean found = false;
+            while (iterator.hasNext()) {
+                final MapEntry entry = iterator.next();
+                for (final String redirect : entry.getRedirect()) {
+                    assertTrue(redirect, redirect.startsWith("/justVanityPath2"));
+                    found = true;
+                }
+            }
+            assertTrue(found);
+        } finally {
+            reload.countDown();
+            restored.dispose();
+            snapshotFile.delete();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void test_doUpdateVanity() throws Exception {
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PathTrieTest {
+
+    @Test
+    public void testPutAndGet() {
+        final PathTrie<String> empty = PathTrie.empty();
+        final PathTrie<String> trie = empty.put("/a/b", "ab").put("/a", "a").put("*", "global");
+
+        assertEquals(0, empty.size());
+        assertNull(empty.get("/a"));
+
+        assertEquals(3, trie.size());
+        assertEquals("a", trie.get("/a"));
+        assertEquals("ab", trie.get("/a/b"));
+        assertEquals("global", trie.get("*"));
+        assertNull(trie.get("/a/b/c"));
+        assertNull(trie.get("/"));
+        assertNull(trie.get("a"));
+    }
+
+    @Test
+    public void testStructuralSharing() {
+        final PathTrie<String> trie = PathTrie.<String> empty().put("/a/b", "ab").put("/c", "c");
+        final PathTrie<String> updated = trie.put("/a/d", "ad");
+
+        assertNull(trie.get("/a/d"));
+        assertEquals("ad", updated.get("/a/d"));
+        // the untouched subtree is shared
+        assertSame(trie.getNode("/c"), updated.getNode("/c"));
+        assertSame(trie.getNode("/a/b"), updated.getNode("/a/b"));
+        // replacing with the same value returns the same trie
+        assertSame(updated, updated.put("/a/d", updated.get("/a/d")));
+    }
+
+    @Test
+    public void testRemove() {
+        final PathTrie<String> trie = PathTrie.<String> empty().put("/a/b", "ab").put("/a", "a");
+
+        assertSame(trie, trie.remove("/x"));
+        assertSame(trie, trie.remove("/a/b/c"));
+
+        final PathTrie<String> withoutParent = trie.remove("/a");
+        assertEquals(1, withoutParent.size());
+        assertNull(withoutParent.get("/a"));
+        assertEquals("ab", withoutParent.get("/a/b"));
+
+        final PathTrie<String> emptied = withoutParent.remove("/a/b");
+        assertEquals(0, emptied.size());
+        assertNull(emptied.getNode("/a"));
+    }
+
+    @Test
+    public void testEntriesAboveAndBelow() {
+        final PathTrie<String> trie = PathTrie.<String> empty()
+                .put("/", "root")
+                .put("/a", "a")
+                .put("/a/b", "ab")
+                .put("/a/b/c", "abc")
+                .put("/a/bc", "abc2")
+                .put("/x", "x");
+
+        final List<Map.Entry<String, String>> above = trie.entriesAbove("/a/b/c/d");
+        assertEquals(3, above.size());
+        assertEquals("/a", above.get(0).getKey());
+        assertEquals("/a/b", above.get(1).getKey());
+        assertEquals("/a/b/c", above.get(2).getKey());
+
+        final Set<String> below = new HashSet<>();
+        for (final Map.Entry<String, String> entry : trie.entriesBelow("/a")) {
+            below.add(entry.getKey());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("/a/b", "/a/b/c", "/a/bc")), below);
+        assertTrue(trie.entriesBelow("/y").isEmpty());
+        assertEquals(6, trie.entries().size());
+    }
+
+    @Test
+    public void testManySiblings() {
+        final Random random = new Random(42);
+        final Map<String, Integer> expected = new HashMap<>();
+        PathTrie<Integer> trie = PathTrie.empty();
+        for (int i = 0; i < 20000; i++) {
+            final String key = "/content/" + Integer.toHexString(random.nextInt(50000));
+            if (random.nextInt(4) == 0) {
+                trie = trie.remove(key);
+                expected.remove(key);
+            } else {
+                trie = trie.put(key, i);
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), trie.size());
+        for (final Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), trie.get(entry.getKey()));
+        }
+        assertEquals(expected.size(), trie.entriesBelow("/content").size());
+    }
+
+    @Test
+    public void testHashCollisions() {
+        // "Aa" and "BB" share the same hash code
+        final PathTrie<String> trie = PathTrie.<String> empty().put("/Aa", "1").put("/BB", "2").put("/AaBB", "3")
+                .put("/BBAa", "4");
+        assertEquals("1", trie.get("/Aa"));
+        assertEquals("2", trie.get("/BB"));
+        assertEquals("3", trie.get("/AaBB"));
+        assertEquals("4", trie.get("/BBAa"));
+
+        final PathTrie<String> removed = trie.remove("/AaBB");
+        assertNull(removed.get("/AaBB"));
+        assertEquals("4", removed.get("/BBAa"));
+        assertEquals(3, removed.size());
+    }
+
+    @Test
+    public void testMap() {
+        final PathTrieMap<String> map = new PathTrieMap<>();
+        assertNull(map.put("/a", "a"));
+        assertEquals("a", map.put("/a", "b"));
+        assertEquals(1, map.size());
+        assertTrue(map.containsKey("/a"));
+
+        final PathTrie<String> snapshot = map.snapshot();
+        assertTrue(map.replace("/a", "b", null));
+        assertEquals(0, map.size());
+        assertEquals("b", snapshot.get("/a"));
+    }
+}
@@ -94,6 +94,75 @@ public class PathTreeTest {
         }
     }
     
+    @Test
+    public void trailingSlash() {
+
+        assertPathHasBestMatch("/libs/sling/", "/libs/sling");
+        assertThat(tree.getNode("/libs/sling/").getValue().getPath(), equalTo("/libs/sling"));
+        assertPathHasBestMatch("/libs//sling", "/libs");
+        assertPathDoesNotHaveExactMatch("/libs//sling");
+        assertThat(tree.getNode("/").getValue().getPath(), equalTo("/"));
+    }
+
+    @Test
+    public void addValue() {
+
+        final PathTree<Pathable> original = tree;
+        tree = tree.add(new StringPath("/apps/sling/base"));
+
+        assertPathHasBestMatch("/apps/sling/base/install", "/apps/sling/base");
+        assertPathHasBestMatch("/apps/sling/other", "/apps");
+        // the intermediate node exists, but has no value
+        assertThat(tree.getNode("/apps/sling").getValue(), nullValue());
+        assertThat(original.getNode("/apps/sling"), nullValue());
+        // unchanged nodes are shared
+        assertThat(tree.getNode("/libs"), Matchers.sameInstance(original.getNode("/libs")));
+
+        // replace the value
+        final StringPath replacement = new StringPath("/libs");
+        tree = tree.add(replacement);
+        assertThat(tree.getNode("/libs").getValue(), Matchers.<Pathable>sameInstance(replacement));
+        assertPathHasExactMatch("/libs/sling");
+    }
+
+    @Test
+    public void removeValue() {
+
+        assertThat(tree.remove("/system"), Matchers.sameInstance(tree));
+
+        tree = tree.add(new StringPath("/apps/sling/base")).remove("/apps/sling/base");
+        assertPathDoesNotHaveExactMatch("/apps/sling");
+        assertPathHasBestMatch("/apps/sling/base", "/apps");
+
+        tree = tree.remove("/libs");
+        assertPathHasBestMatch("/libs/sling/base", "/libs/sling");
+        assertPathHasBestMatch("/libs/other", "/");
+        assertThat(tree.getNode("/libs").getValue(), nullValue());
+
+        tree = tree.remove("/libs/sling");
+        assertPathDoesNotHaveExactMatch("/libs");
+
+        tree = tree.remove("/");
+        assertThat(tree.getBestMatchingNode("/system"), nullValue());
+    }
+
+    @Test
+    public void manyValues() {
+
+        for (int i = 0; i < 1000; i++) {
+            tree = tree.add(new StringPath("/content/provider" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertPathHasBestMatch("/content/provider" + i + "/child", "/content/provider" + i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            tree = tree.remove("/content/provider" + i);
+        }
+        assertPathHasBestMatch("/content/provider0/child", "/");
+        assertPathHasBestMatch("/content/provider1/child", "/content/provider1");
+        assertThat(tree.getNode("/content").getChildren().size(), equalTo(500));
+    }
+
     static class StringPath implements Pathable {
 
         private final String path;
@@ -17,9 +17,11 @@
 package org.apache.sling.servlets.get.impl.helpers;
 
 import java.io.IOException;
+import java.util.Collections;
 
 import javax.json.Json;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
@@ -31,6 +33,7 @@ import org.apache.sling.api.resource.ResourceNotFoundException;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
 import org.apache.sling.servlets.get.impl.util.JsonRenderer;
+import org.apache.sling.servlets.get.impl.util.JsonResourceWriter;
 import org.apache.sling.servlets.get.impl.util.ResourceTraversor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +68,10 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
 
     private final JsonRenderer renderer = new JsonRenderer();
 
+    /** Shared to not look up the JSON provider and allocate its buffers per request */
+    private final JsonGeneratorFactory generatorFactory = Json.createGeneratorFactory(
+            Collections.<String, Object> emptyMap());
+
     public JsonRendererServlet(long maximumResults) {
         this.maximumResults = maximumResults;
     }
@@ -95,9 +102,16 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
         final boolean tidy = isTidy(req);
         final boolean harray = hasSelector(req, HARRAY);
         ResourceTraversor traversor = null;
+        JsonResourceWriter writer = null;
         try {
-            traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r);
-            allowedLevel = traversor.collectResources();
+            if (tidy || harray) {
+                // the pretty printer needs the whole tree
+                traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r);
+                allowedLevel = traversor.collectResources();
+            } else {
+                writer = new JsonResourceWriter(maxRecursionLevels, maximumResults);
+                allowedLevel = writer.checkLimits(r);
+            }
             if ( allowedLevel != -1 ) {
                 allowDump = false;
             }
@@ -113,10 +127,10 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
                             .withArraysForChildren(harray);
                     resp.getWriter().write(renderer.prettyPrint(traversor.getJSONObject(), opt));
                 } else {
-                    // If no rendering options, use the plain toString() method, for
-                    // backwards compatibility. Output might be slightly different
-                    // with prettyPrint and no options
-                    Json.createGenerator(resp.getWriter()).write(traversor.getJSONObject()).close();
+                    // If no rendering options, stream the plain output
+                    final JsonGenerator generator = generatorFactory.createGenerator(resp.getWriter());
+                    writer.write(generator, r);
+                    generator.close();
                 }
 
             } else {
@@ -124,14 +138,14 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
                 // Send a 300
                 String tidyUrl = (tidy) ? "tidy." : "";
                 resp.setStatus(HttpServletResponse.SC_MULTIPLE_CHOICES);
-                JsonGenerator writer = Json.createGenerator(resp.getWriter());
-                writer.writeStartArray();
+                JsonGenerator generator = generatorFactory.createGenerator(resp.getWriter());
+                generator.writeStartArray();
                 while (allowedLevel >= 0) {
-                    writer.write(r.getResourceMetadata().getResolutionPath() + "." + tidyUrl + allowedLevel + ".json");
+                    generator.write(r.getResourceMetadata().getResolutionPath() + "." + tidyUrl + allowedLevel + ".json");
                     allowedLevel--;
                 }
-                writer.writeEnd();
-                writer.close();
+                generator.writeEnd();
+                generator.close();
             }
         } catch (Exception je) {
             reportException(je);
@@ -20,12 +20,15 @@ import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static org.apache.sling.api.servlets.HttpConstants.HEADER_IF_MODIFIED_SINCE;
 import static org.apache.sling.api.servlets.HttpConstants.HEADER_LAST_MODIFIED;
 
-import java.io.BufferedInputStream;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
@@ -80,6 +83,15 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
     // Accept-Ranges header value
     private static final String ACCEPT_RANGES_BYTES = "bytes";
 
+    // ETag header name
+    private static final String ETAG_HEADER = "ETag";
+
+    // If-None-Match header name
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    // the entity tag maintained by the repository for mix:etag nodes
+    private static final String JCR_ETAG = "jcr:etag";
+
     /**
      * Full range marker.
      */
@@ -149,15 +161,8 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
             return;
         }
 
-        // check the last modification time and If-Modified-Since header
-        if (!included) {
-            ResourceMetadata meta = resource.getResourceMetadata();
-            long modifTime = meta.getModificationTime();
-            if (unmodified(request, modifTime)) {
-                response.setStatus(SC_NOT_MODIFIED);
-                return;
-            }
-        }
+        // the last modification time of the requested resource
+        final long modifTime = resource.getResourceMetadata().getModificationTime();
 
         // fall back to plain text rendering if the resource has no stream
         if (resource.getResourceType().equals(JcrConstants.NT_LINKEDFILE)) {
@@ -165,9 +170,27 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
             final String actualResourcePath = vm.get(JcrConstants.JCR_CONTENT, String.class);
             resource = request.getResourceResolver().getResource(actualResourcePath);
         }
+
+        // check the If-None-Match header before opening the stream; the
+        // If-Modified-Since header is only checked without it (RFC 7232, 6.)
+        if (!included) {
+            if (request.getHeader(IF_NONE_MATCH_HEADER) != null) {
+                final String etag = getEntityTag(resource);
+                if (noneMatch(request, etag)) {
+                    response.setHeader(ETAG_HEADER, etag);
+                    response.setStatus(SC_NOT_MODIFIED);
+                    return;
+                }
+            } else if (unmodified(request, modifTime)) {
+                response.setStatus(SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
         InputStream stream = resource.adaptTo(InputStream.class);
         if (stream != null) {
             if (isHeadRequest(request)) {
+                closeSilently(stream);
                 setContentLength(response, resource.getResourceMetadata().getContentLength());
                 setHeaders(resource, response);
                 return;
@@ -232,10 +255,87 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         return false;
     }
 
+    /**
+     * Returns <code>true</code> if the request has a
+     * <code>If-None-Match</code> header matching the entity tag.
+     *
+     * @param request The request checked for the <code>If-None-Match</code>
+     *            header.
+     * @param etag The entity tag of the resource, may be <code>null</code>
+     * @return <code>true</code> if the header lists the entity tag or is
+     *         <code>*</code>.
+     */
+    private boolean noneMatch(HttpServletRequest request, String etag) {
+        final String header = request.getHeader(IF_NONE_MATCH_HEADER);
+        return header != null && etag != null && matches(header, etag, true);
+    }
+
+    /**
+     * Returns <code>true</code> if the comma separated list of entity tags
+     * in the header contains the entity tag. Weak entity tags only match if
+     * <code>weak</code> comparison is requested.
+     */
+    static boolean matches(String header, String etag, boolean weak) {
+        final StringTokenizer tokenizer = new StringTokenizer(header, ",");
+        while (tokenizer.hasMoreTokens()) {
+            String candidate = tokenizer.nextToken().trim();
+            if ("*".equals(candidate)) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the strong entity tag of the resource, which is the digest of
+     * the binary computed by the repository for <code>mix:etag</code> nodes,
+     * either of the resource itself or of its <code>jcr:content</code>
+     * child.
+     *
+     * @param resource The resource
+     * @return The quoted entity tag or <code>null</code> if the resource has
+     *         none.
+     */
+    static String getEntityTag(Resource resource) {
+        String etag = getEntityTagProperty(resource);
+        if (etag == null) {
+            etag = getEntityTagProperty(resource.getChild(JcrConstants.JCR_CONTENT));
+        }
+        if (etag == null || etag.length() == 0) {
+            return null;
+        }
+        return etag.startsWith("\"") ? etag : "\"" + etag + "\"";
+    }
+
+    private static String getEntityTagProperty(Resource resource) {
+        final ValueMap props = (resource == null) ? null : resource.adaptTo(ValueMap.class);
+        return (props == null) ? null : props.get(JCR_ETAG, String.class);
+    }
+
     private void streamResource(final Resource resource,
             final InputStream stream, final boolean included,
             final SlingHttpServletRequest request,
             final SlingHttpServletResponse response) throws IOException {
+        // stream from the file channel if the resource is backed by a file
+        FileChannel channel = null;
+        final File file = resource.adaptTo(File.class);
+        if (file != null && file.isFile()) {
+            try {
+                channel = new FileInputStream(file).getChannel();
+            } catch (IOException ioe) {
+                log.debug("streamResource: Cannot open {}, using the stream", file, ioe);
+            }
+        }
+
         // finally stream the resource
         try {
 
@@ -248,8 +348,7 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
             } else {
 
                 // parse optional ranges
-                ranges = parseRange(request, response,
-                    resource.getResourceMetadata());
+                ranges = parseRange(request, response, resource);
                 if (ranges == null) {
                     // there was something wrong, the parseRange has sent a
                     // response and we are done
@@ -267,10 +366,14 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
                 // return full resource
                 setContentLength(response,
                     resource.getResourceMetadata().getContentLength());
-                byte[] buf = new byte[IO_BUFFER_SIZE];
-                int rd;
-                while ((rd = stream.read(buf)) >= 0) {
-                    out.write(buf, 0, rd);
+                if (channel != null) {
+                    staticCopyRange(channel, out, 0, channel.size());
+                } else {
+                    byte[] buf = new byte[IO_BUFFER_SIZE];
+                    int rd;
+                    while ((rd = stream.read(buf)) >= 0) {
+                        out.write(buf, 0, rd);
+                    }
                 }
 
             } else {
@@ -285,19 +388,24 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
                         + "-" + range.end + "/" + range.length);
                     setContentLength(response, range.end - range.start + 1);
 
-                    copy(stream, out, range);
+                    if (channel != null) {
+                        staticCopyRange(channel, out, range.start, range.end + 1);
+                    } else {
+                        copy(stream, out, range);
+                    }
 
                 } else {
 
                     response.setContentType("multipart/byteranges; boundary="
                         + mimeSeparation);
 
-                    copy(resource, out, ranges.iterator());
+                    copy(resource, stream, channel, out, ranges.iterator());
                 }
 
             }
 
         } finally {
+            closeSilently(channel);
             closeSilently(stream);
         }
     }
@@ -400,6 +508,11 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         if (meta.getContentLength() > ACCEPT_RANGES_THRESHOLD) {
             response.setHeader(ACCEPT_RANGES_HEADER, ACCEPT_RANGES_BYTES);
         }
+
+        final String etag = getEntityTag(resource);
+        if (etag != null) {
+            response.setHeader(ETAG_HEADER, etag);
+        }
     }
 
     /**
@@ -503,28 +616,28 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
     /**
      * Copies a number of ranges from the given resource to the output stream.
-     * Copy the contents of the specified input stream to the specified output
-     * stream, and ensure that both streams are closed before returning (even in
-     * the face of an exception).
+     * The ranges are read from the file channel if there is one. Otherwise
+     * they are read from the stream, which is only opened again for a range
+     * starting before the end of the previous one.
      *
      * @param resource The resource from which to send ranges
+     * @param stream The open stream of the resource
+     * @param channel The file channel of the resource or <code>null</code>
      * @param ostream The output stream to write to
      * @param ranges Iterator of the ranges the client wanted to retrieve
      * @exception IOException if an input/output error occurs
      */
-    private void copy(Resource resource, ServletOutputStream ostream,
-            Iterator<Range> ranges) throws IOException {
+    private void copy(Resource resource, InputStream stream, FileChannel channel,
+            ServletOutputStream ostream, Iterator<Range> ranges) throws IOException {
 
         String contentType = resource.getResourceMetadata().getContentType();
         IOException exception = null;
 
-        while ((exception == null) && (ranges.hasNext())) {
-
-            InputStream resourceInputStream = resource.adaptTo(InputStream.class);
-            InputStream istream = new BufferedInputStream(resourceInputStream,
-                IO_BUFFER_SIZE);
+        InputStream istream = stream;
+        long position = 0;
+        try {
+            while ((exception == null) && (ranges.hasNext())) {
 
-            try {
                 Range currentRange = ranges.next();
 
                 // Writing MIME header.
@@ -539,14 +652,30 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // Copy content
                 try {
-                    copy(istream, ostream, currentRange);
+                    final long endIndex = currentRange.end + 1;
+                    if (channel != null) {
+                        staticCopyRange(channel, ostream, currentRange.start, endIndex);
+                    } else {
+                        if (currentRange.start < position) {
+                            // the stream cannot go back, open it again
+                            if (istream != stream) {
+                                closeSilently(istream);
+                            }
+                            istream = resource.adaptTo(InputStream.class);
+                            position = 0;
+                        }
+                        staticCopyRange(istream, ostream, currentRange.start - position,
+                            endIndex - position);
+                        position = endIndex;
+                    }
                 } catch(IOException e) {
                     exception = e;
                 }
-            } finally {
+            }
+        } finally {
+            if (istream != stream) {
                 closeSilently(istream);
             }
-
         }
 
         ostream.println();
@@ -608,6 +737,30 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         }
     }
 
+    /**
+     * Copy the bytes from <code>start</code> to <code>end</code> (exclusive)
+     * of the file channel to the output stream. The bytes are read by
+     * position into a buffer, which saves skipping the bytes in front of
+     * the range.
+     */
+    static void staticCopyRange(FileChannel channel, OutputStream ostream,
+            long start, long end) throws IOException {
+        long position = start;
+        final byte[] buffer = new byte[IO_BUFFER_SIZE];
+        final ByteBuffer bb = ByteBuffer.wrap(buffer);
+        while (position < end) {
+            bb.clear();
+            bb.limit((int) Math.min(end - position, buffer.length));
+            final int read = channel.read(bb, position);
+            if (read <= 0) {
+                // end of the file
+                break;
+            }
+            ostream.write(buffer, 0, read);
+            position += read;
+        }
+    }
+
     /**
      * Parse the range header.
      *
@@ -619,9 +772,11 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
      *         finished sending an error status.
      */
     private ArrayList<Range> parseRange(HttpServletRequest request,
-            HttpServletResponse response, ResourceMetadata metadata)
+            HttpServletResponse response, Resource resource)
             throws IOException {
 
+        final ResourceMetadata metadata = resource.getResourceMetadata();
+
         // Checking If-Range
         String headerValue = request.getHeader("If-Range");
         if (headerValue != null) {
@@ -637,8 +792,10 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // If the ETag the client gave does not match the entity
                 // etag, then the entire entity is returned.
-                // Sling: no etag support yet, return full range
-                return FULL;
+                final String etag = getEntityTag(resource);
+                if (etag == null || !matches(headerValue, etag, false)) {
+                    return FULL;
+                }
 
             } else if (metadata.getModificationTime() > (headerValueTime + 1000)) {
 
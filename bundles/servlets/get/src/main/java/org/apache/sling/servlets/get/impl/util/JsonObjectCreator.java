@@ -24,14 +24,17 @@ import java.lang.reflect.Array;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceUtil;
@@ -119,8 +122,16 @@ public abstract class JsonObjectCreator {
     static final Locale DATE_FORMAT_LOCALE = Locale.US;
 
 
+    /** The date formats, reused per thread as they are not thread safe */
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat(ECMA_DATE_FORMAT, DATE_FORMAT_LOCALE);
+        }
+    };
+
     public static String format(final Calendar date) {
-        DateFormat formatter = new SimpleDateFormat(ECMA_DATE_FORMAT, DATE_FORMAT_LOCALE);
+        final DateFormat formatter = DATE_FORMAT.get();
         formatter.setTimeZone(date.getTimeZone());
         return formatter.format(date.getTime());
     }
@@ -235,4 +246,172 @@ public abstract class JsonObjectCreator {
         }
         return length;
     }
+
+    /**
+     * Write the properties of the given resource to the generator, the same
+     * way {@link #create(Resource, int)} adds them to the JSON object, but
+     * without building the object. The generator must be in the context of
+     * the object of the resource.
+     */
+    public static void writeProperties(final JsonGenerator generator, final Resource resource) {
+        writeProperties(generator, resource, Collections.<String> emptySet());
+    }
+
+    /**
+     * Write the properties of the given resource to the generator, except
+     * for those written as JSON members with one of the given names.
+     */
+    public static void writeProperties(final JsonGenerator generator, final Resource resource,
+                                       final Set<String> skipped) {
+        final ValueMap valueMap = resource.adaptTo(ValueMap.class);
+
+        final Map propertyMap = (valueMap != null)
+                ? valueMap
+                : resource.adaptTo(Map.class);
+
+        if (propertyMap == null) {
+
+            // no map available, try string
+            if (skipped.contains(ResourceUtil.getName(resource))) {
+                return;
+            }
+            final String value = resource.adaptTo(String.class);
+            if (value != null) {
+
+                // single value property or just plain String resource or...
+                generator.write(ResourceUtil.getName(resource), value);
+
+            } else {
+
+                // Try multi-value "property"
+                final String[] values = resource.adaptTo(String[].class);
+                if (values != null) {
+                    generator.writeStartArray(ResourceUtil.getName(resource));
+                    for (final String v : values) {
+                        generator.write(v);
+                    }
+                    generator.writeEnd();
+                }
+
+            }
+
+        } else {
+
+            @SuppressWarnings("unchecked")
+            final Iterator<Map.Entry> props = propertyMap.entrySet().iterator();
+
+            // the node's actual properties
+            while (props.hasNext()) {
+                final Map.Entry prop = props.next();
+
+                if ( prop.getValue() != null
+                        && !skipped.contains(getMemberName(prop.getKey().toString(), prop.getValue())) ) {
+                    writeProperty(generator, valueMap, prop.getKey().toString(),
+                        prop.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * The name of the JSON member of a property, binaries are written as
+     * their length with a colon prefix.
+     */
+    private static String getMemberName(final String key, final Object value) {
+        if (value instanceof InputStream) {
+            return ":" + key;
+        }
+        if (value.getClass().isArray() && Array.getLength(value) > 0 && Array.get(value, 0) instanceof InputStream) {
+            return ":" + key;
+        }
+        return key;
+    }
+
+    /**
+     * Write a single property, the same way
+     * {@link #createProperty(JsonObjectBuilder, ValueMap, String, Object)}
+     * adds it.
+     */
+    public static void writeProperty(final JsonGenerator generator,
+                                     final ValueMap valueMap,
+                                     final String key,
+                                     final Object value) {
+        if (!value.getClass().isArray()) {
+            if (value instanceof InputStream) {
+                // binaries are rendered by their length, see createProperty
+                generator.write(":" + key, getLength(valueMap, -1, key, (InputStream)value));
+            } else {
+                writeValue(generator, key, value);
+            }
+            return;
+        }
+
+        final int length = Array.getLength(value);
+        if ( length > 0 && Array.get(value, 0) instanceof InputStream ) {
+            generator.writeStartArray(":" + key);
+            for (int i = 0; i < length; i++) {
+                generator.write(getLength(valueMap, i, key, (InputStream)Array.get(value, i)));
+            }
+        } else {
+            generator.writeStartArray(key);
+            for (int i = 0; i < length; i++) {
+                writeValue(generator, null, Array.get(value, i));
+            }
+        }
+        generator.writeEnd();
+    }
+
+    /**
+     * Write a value in the format of {@link #getValue(Object)}, as a member
+     * of an object if the key is not <code>null</code>, otherwise as an
+     * element of an array.
+     */
+    private static void writeValue(final JsonGenerator generator, final String key, final Object value) {
+        if ( value instanceof InputStream ) {
+            // input stream is already handled
+            if ( key == null ) {
+                generator.write(0);
+            } else {
+                generator.write(key, 0);
+            }
+        } else if ( value instanceof Boolean ) {
+            if ( key == null ) {
+                generator.write((Boolean) value);
+            } else {
+                generator.write(key, (Boolean) value);
+            }
+        } else if ( value instanceof Long ) {
+            if ( key == null ) {
+                generator.write((Long) value);
+            } else {
+                generator.write(key, (Long) value);
+            }
+        } else if ( value instanceof Integer ) {
+            if ( key == null ) {
+                generator.write((Integer) value);
+            } else {
+                generator.write(key, (Integer) value);
+            }
+        } else if ( value instanceof Double ) {
+            if ( key == null ) {
+                generator.write((Double) value);
+            } else {
+                generator.write(key, (Double) value);
+            }
+        } else {
+            final String string;
+            if ( value instanceof Calendar ) {
+                string = format((Calendar)value);
+            } else if ( value != null ) {
+                string = value.toString();
+            } else {
+                string = "";
+            }
+            if ( key == null ) {
+                generator.write(string);
+            } else {
+                generator.write(key, string);
+            }
+        }
+    }
 }
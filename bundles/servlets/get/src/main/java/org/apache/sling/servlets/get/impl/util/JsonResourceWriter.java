@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.get.impl.util;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.json.stream.JsonGenerator;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+
+/**
+ * Writes a resource tree as JSON directly to a generator, depth first,
+ * producing the same output as the object built by the
+ * {@link ResourceTraversor}. Only the resources on the path from the root
+ * to the current resource and their children are held in memory while
+ * writing.
+ * <p>
+ * As in the built object, a child replaces a property or an earlier child
+ * with the same name. Unlike in the built object, such a child is written
+ * after the properties instead of at the position of the property.
+ */
+public class JsonResourceWriter {
+
+    private final int maxRecursionLevels;
+
+    private final long maxResources;
+
+    /**
+     * @param levels recursion levels limit, -1 means no limit
+     * @param maxResources maximum number of resources to write, ignored if levels == 1
+     */
+    public JsonResourceWriter(final int levels, final long maxResources) {
+        this.maxRecursionLevels = levels;
+        this.maxResources = maxResources;
+    }
+
+    /**
+     * Count the resources to write, breadth first, with the semantics of
+     * {@link ResourceTraversor#collectResources()}. At most the maximum
+     * number of resources is held in memory.
+     *
+     * @param resource the root resource
+     * @return -1 if the tree can be written, otherwise the level at which
+     *         the maximum number of resources is exceeded
+     */
+    public int checkLimits(final Resource resource) {
+        // SLING-2320: always allow enumeration of one's children;
+        // DOS-limitation is for deeper traversals.
+        if (maxRecursionLevels == 0 || maxRecursionLevels == 1) {
+            return -1;
+        }
+        long count = 0;
+        int level = 0;
+        ArrayDeque<Resource> current = new ArrayDeque<>();
+        ArrayDeque<Resource> next = new ArrayDeque<>();
+        current.add(resource);
+        while (!current.isEmpty()) {
+            final boolean expandNext = maxRecursionLevels == -1 || level + 1 < maxRecursionLevels;
+            while (!current.isEmpty()) {
+                final Iterator<Resource> children = ResourceUtil.listChildren(current.removeFirst());
+                while (children.hasNext()) {
+                    count++;
+                    final Resource child = children.next();
+                    if (count > maxResources) {
+                        return level;
+                    }
+                    if (expandNext) {
+                        next.addLast(child);
+                    }
+                }
+            }
+            final ArrayDeque<Resource> swap = current;
+            current = next;
+            next = swap;
+            level++;
+        }
+        return -1;
+    }
+
+    /**
+     * Write the resource tree as a JSON object. The limits are not checked
+     * by this method, see {@link #checkLimits(Resource)}.
+     *
+     * @param generator the generator, not in the context of an object
+     * @param resource the root resource
+     */
+    public void write(final JsonGenerator generator, final Resource resource) {
+        generator.writeStartObject();
+        writeContent(generator, resource, 0);
+        generator.writeEnd();
+    }
+
+    private void writeContent(final JsonGenerator generator, final Resource resource, final int level) {
+        if (maxRecursionLevels != -1 && level >= maxRecursionLevels) {
+            JsonObjectCreator.writeProperties(generator, resource);
+            return;
+        }
+        // the children are listed first, the JSON members must be unique
+        final Map<String, Resource> children = new LinkedHashMap<>();
+        final Iterator<Resource> iter = ResourceUtil.listChildren(resource);
+        while (iter.hasNext()) {
+            final Resource child = iter.next();
+            children.put(ResourceUtil.getName(child), child);
+        }
+        JsonObjectCreator.writeProperties(generator, resource, children.keySet());
+        for (final Map.Entry<String, Resource> child : children.entrySet()) {
+            generator.writeStartObject(child.getKey());
+            writeContent(generator, child.getValue(), level + 1);
+            generator.writeEnd();
+        }
+    }
+}
@@ -19,20 +19,37 @@
 package org.apache.sling.servlets.get.impl.helpers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
 import java.util.Random;
 import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
 import junitx.util.PrivateAccessor;
+import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.request.RequestPathInfo;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class StreamRendererServletTest {
 
@@ -52,6 +69,202 @@ public class StreamRendererServletTest {
         assertEquals("34", result);
     }
     
+    @Test
+    public void testCopyFileChannelRange() throws IOException {
+        final byte[] expected = new byte[StreamRendererServlet.IO_BUFFER_SIZE * 3 + 42];
+        new Random(1234).nextBytes(expected);
+        final File file = File.createTempFile("stream", ".bin");
+        try {
+            final FileOutputStream fos = new FileOutputStream(file);
+            try {
+                fos.write(expected);
+            } finally {
+                fos.close();
+            }
+            final FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                assertCopyRange(expected, channel, 0, 0);
+                assertCopyRange(expected, channel, 0, expected.length);
+                assertCopyRange(expected, channel, 17, StreamRendererServlet.IO_BUFFER_SIZE + 5);
+                assertCopyRange(expected, channel, expected.length - 1, expected.length);
+            } finally {
+                channel.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertCopyRange(byte[] expected, FileChannel channel, int a, int b) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StreamRendererServlet.staticCopyRange(channel, output, a, b);
+        final byte[] actual = output.toByteArray();
+        assertEquals(b - a, actual.length);
+        for (int i = a; i < b; i++) {
+            assertEquals(expected[i], actual[i - a]);
+        }
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(StreamRendererServlet.matches("\"abc\"", "\"abc\"", false));
+        assertTrue(StreamRendererServlet.matches("\"x\", \"abc\"", "\"abc\"", false));
+        assertTrue(StreamRendererServlet.matches("*", "\"abc\"", false));
+        assertFalse(StreamRendererServlet.matches("\"x\"", "\"abc\"", true));
+        // weak entity tags only match with the weak comparison
+        assertTrue(StreamRendererServlet.matches("W/\"abc\"", "\"abc\"", true));
+        assertFalse(StreamRendererServlet.matches("W/\"abc\"", "\"abc\"", false));
+    }
+
+    @Test
+    public void testGetEntityTag() {
+        final Resource resource = Mockito.mock(Resource.class);
+        assertNull(StreamRendererServlet.getEntityTag(resource));
+
+        final Resource content = Mockito.mock(Resource.class);
+        Mockito.when(resource.getChild("jcr:content")).thenReturn(content);
+        Mockito.when(content.adaptTo(ValueMap.class)).thenReturn(
+                new ValueMapDecorator(Collections.<String, Object> singletonMap("jcr:etag", "abc")));
+        assertEquals("\"abc\"", StreamRendererServlet.getEntityTag(resource));
+
+        Mockito.when(resource.adaptTo(ValueMap.class)).thenReturn(
+                new ValueMapDecorator(Collections.<String, Object> singletonMap("jcr:etag", "\"def\"")));
+        assertEquals("\"def\"", StreamRendererServlet.getEntityTag(resource));
+    }
+
+    @Test
+    public void testNotModifiedOnEntityTag() throws Exception {
+        final Resource resource = mockResource("0123456789", null);
+        Mockito.when(resource.adaptTo(ValueMap.class)).thenReturn(
+                new ValueMapDecorator(Collections.<String, Object> singletonMap("jcr:etag", "abc")));
+        final SlingHttpServletRequest request = mockRequest(resource);
+        Mockito.when(request.getHeader("If-None-Match")).thenReturn("\"abc\"");
+        final SlingHttpServletResponse response = Mockito.mock(SlingHttpServletResponse.class);
+
+        newServlet().doGet(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        Mockito.verify(response).setHeader("ETag", "\"abc\"");
+        Mockito.verify(resource, Mockito.never()).adaptTo(InputStream.class);
+        Mockito.verify(response, Mockito.never()).getOutputStream();
+    }
+
+    @Test
+    public void testIfModifiedSinceIgnoredWithEntityTag() throws Exception {
+        final Resource resource = mockResource("0123456789", null);
+        Mockito.when(resource.adaptTo(ValueMap.class)).thenReturn(
+                new ValueMapDecorator(Collections.<String, Object> singletonMap("jcr:etag", "abc")));
+        final SlingHttpServletRequest request = mockRequest(resource);
+        Mockito.when(request.getHeader("If-None-Match")).thenReturn("\"def\"");
+        Mockito.when(request.getDateHeader("If-Modified-Since")).thenReturn(System.currentTimeMillis());
+        final SlingHttpServletResponse response = Mockito.mock(SlingHttpServletResponse.class);
+        final ByteArrayOutputStream out = mockOutput(response);
+
+        newServlet().doGet(request, response);
+
+        Mockito.verify(response, Mockito.never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals("0123456789", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testMultipleRanges() throws Exception {
+        assertMultipleRanges(null);
+
+        final File file = File.createTempFile("stream", ".txt");
+        try {
+            final FileOutputStream fos = new FileOutputStream(file);
+            try {
+                fos.write("0123456789abcdefghij".getBytes("UTF-8"));
+            } finally {
+                fos.close();
+            }
+            assertMultipleRanges(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertMultipleRanges(File file) throws Exception {
+        final Resource resource = mockResource("0123456789abcdefghij", file);
+        final SlingHttpServletRequest request = mockRequest(resource);
+        // the last range goes backwards
+        Mockito.when(request.getHeader("Range")).thenReturn("bytes=0-3,10-12,2-5");
+        final SlingHttpServletResponse response = Mockito.mock(SlingHttpServletResponse.class);
+        final ByteArrayOutputStream out = mockOutput(response);
+
+        newServlet().doGet(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        Mockito.verify(response).setContentType("multipart/byteranges; boundary=SLING_MIME_BOUNDARY");
+        assertEquals("\r\n--SLING_MIME_BOUNDARY\r\nContent-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-3/20\r\n\r\n0123"
+                + "\r\n--SLING_MIME_BOUNDARY\r\nContent-Type: text/plain\r\n"
+                + "Content-Range: bytes 10-12/20\r\n\r\nabc"
+                + "\r\n--SLING_MIME_BOUNDARY\r\nContent-Type: text/plain\r\n"
+                + "Content-Range: bytes 2-5/20\r\n\r\n2345"
+                + "\r\n--SLING_MIME_BOUNDARY--", out.toString("UTF-8"));
+    }
+
+    private StreamRendererServlet newServlet() {
+        final ServletContext sc = Mockito.mock(ServletContext.class);
+        return new StreamRendererServlet(true, new String[] {"/"}) {
+            @Override
+            public ServletContext getServletContext() {
+                return sc;
+            }
+        };
+    }
+
+    private Resource mockResource(final String content, final File file) throws Exception {
+        final ResourceMetadata meta = new ResourceMetadata();
+        meta.setContentLength(content.length());
+        meta.setContentType("text/plain");
+        meta.setModificationTime(1000000L);
+
+        final Resource resource = Mockito.mock(Resource.class);
+        Mockito.when(resource.getPath()).thenReturn("/content/stream.txt");
+        Mockito.when(resource.getResourceType()).thenReturn("nt:file");
+        Mockito.when(resource.getResourceMetadata()).thenReturn(meta);
+        Mockito.when(resource.adaptTo(File.class)).thenReturn(file);
+        Mockito.when(resource.adaptTo(InputStream.class)).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                return new ByteArrayInputStream(content.getBytes("UTF-8"));
+            }
+        });
+        return resource;
+    }
+
+    private SlingHttpServletRequest mockRequest(final Resource resource) {
+        final RequestPathInfo pathInfo = Mockito.mock(RequestPathInfo.class);
+        final SlingHttpServletRequest request = Mockito.mock(SlingHttpServletRequest.class);
+        Mockito.when(request.getRequestPathInfo()).thenReturn(pathInfo);
+        Mockito.when(request.getResource()).thenReturn(resource);
+        Mockito.when(request.getMethod()).thenReturn("GET");
+        Mockito.when(request.getDateHeader(Mockito.anyString())).thenReturn(-1L);
+        return request;
+    }
+
+    private ByteArrayOutputStream mockOutput(final SlingHttpServletResponse response) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+        return out;
+    }
+
     private void runTests(int randomSeed) throws IOException {
         final Random random = new Random(randomSeed);
         assertCopyRange(random, StreamRendererServlet.IO_BUFFER_SIZE * 2 + 42);
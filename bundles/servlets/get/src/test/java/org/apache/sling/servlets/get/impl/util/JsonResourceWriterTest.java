@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.get.impl.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.testing.sling.MockResource;
+import org.apache.sling.commons.testing.sling.MockResourceResolver;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the streamed JSON is the same as the JSON built by the
+ * {@link ResourceTraversor}.
+ */
+public class JsonResourceWriterTest {
+
+    private MockResourceResolver resolver;
+
+    /** A resource with properties of all types. */
+    static class PropertiesResource extends MockResource {
+
+        final Map<String, Object> properties = new LinkedHashMap<>();
+
+        PropertiesResource(final ResourceResolver resolver, final String path) {
+            super(resolver, path, "test/type");
+            properties.put("sling:resourceType", "test/type");
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+            if (type == ValueMap.class) {
+                return (AdapterType) new ValueMapDecorator(properties);
+            }
+            return super.adaptTo(type);
+        }
+    }
+
+    @Before
+    public void setup() {
+        resolver = new MockResourceResolver();
+        final PropertiesResource root = new PropertiesResource(resolver, "/content/root");
+        final Calendar date = Calendar.getInstance(TimeZone.getTimeZone("GMT+02:00"));
+        date.setTimeInMillis(1500000000000L);
+        root.properties.put("string", "a \"quoted\" <value>\n");
+        root.properties.put("long", 42L);
+        root.properties.put("int", 7);
+        root.properties.put("double", 1.5d);
+        root.properties.put("float", 2.5f);
+        root.properties.put("boolean", true);
+        root.properties.put("date", date);
+        root.properties.put("strings", new String[] {"a", "b"});
+        root.properties.put("longs", new Long[] {1L, 2L});
+        root.properties.put("empty", new String[0]);
+        root.properties.put("binary", new ByteArrayInputStream(new byte[10]));
+        resolver.addResource(root);
+        for (int i = 0; i < 3; i++) {
+            final PropertiesResource child = new PropertiesResource(resolver, "/content/root/child" + i);
+            child.properties.put("index", i);
+            resolver.addResource(child);
+            for (int j = 0; j < 3; j++) {
+                final PropertiesResource grandChild = new PropertiesResource(resolver,
+                        "/content/root/child" + i + "/grandchild" + j);
+                grandChild.properties.put("index", j);
+                resolver.addResource(grandChild);
+            }
+        }
+    }
+
+    private String build(final int levels) {
+        final ResourceTraversor traversor = new ResourceTraversor(levels, 100, resolver.getResource("/content/root"));
+        assertEquals(-1, traversor.collectResources());
+        final StringWriter out = new StringWriter();
+        Json.createGenerator(out).write(traversor.getJSONObject()).close();
+        return out.toString();
+    }
+
+    private String stream(final int levels) {
+        final JsonResourceWriter writer = new JsonResourceWriter(levels, 100);
+        assertEquals(-1, writer.checkLimits(resolver.getResource("/content/root")));
+        final StringWriter out = new StringWriter();
+        final JsonGenerator generator = Json.createGenerator(out);
+        writer.write(generator, resolver.getResource("/content/root"));
+        generator.close();
+        return out.toString();
+    }
+
+    @Test
+    public void testSameOutput() {
+        for (final int levels : new int[] {0, 1, 2, -1}) {
+            assertEquals("levels " + levels, build(levels), stream(levels));
+        }
+    }
+
+    @Test
+    public void testChildReplacesProperty() {
+        final PropertiesResource child = new PropertiesResource(resolver, "/content/root/long");
+        child.properties.put("index", 3);
+        resolver.addResource(child);
+        for (final int levels : new int[] {0, 1, 2, -1}) {
+            final String streamed = stream(levels);
+            // the child is written after the properties, the members are the same
+            assertEquals("levels " + levels, Json.createReader(new StringReader(build(levels))).readObject(),
+                    Json.createReader(new StringReader(streamed)).readObject());
+            assertEquals("levels " + levels, streamed.indexOf("\"long\""), streamed.lastIndexOf("\"long\""));
+        }
+    }
+
+    @Test
+    public void testLimits() {
+        for (final int levels : new int[] {0, 1, 2, 3, -1}) {
+            for (int max = 0; max < 14; max++) {
+                final ResourceTraversor traversor = new ResourceTraversor(levels, max,
+                        resolver.getResource("/content/root"));
+                final JsonResourceWriter writer = new JsonResourceWriter(levels, max);
+                assertEquals("levels " + levels + ", max " + max, traversor.collectResources(),
+                        writer.checkLimits(resolver.getResource("/content/root")));
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Servlet;
+
+import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+
+/**
+ * The script resolution cache.
+ * <p>
+ * An entry holds the servlets found for a key up to the first one which is
+ * not an <code>OptingServlet</code>, so a request is checked against the
+ * opting servlets without resolving them again. An empty entry records that
+ * no servlet exists for the key and the default servlet is to be used.
+ * <p>
+ * Each entry remembers the locations searched to resolve it, and a change
+ * at, above or below one of these locations only removes the entries which
+ * searched it. If the cache is full, the least recently used entries are
+ * evicted. Recency is tracked with a clock which advances on every
+ * insertion, so reading an entry only writes to the entry itself.
+ */
+class ResolutionCache {
+
+    private final int maxEntries;
+
+    /** The number of entries evicted at once if the cache is full. */
+    private final int evictionBatch;
+
+    private final ConcurrentMap<AbstractResourceCollector, Entry> entries;
+
+    /** The cached keys by searched location, guarded by itself. */
+    private final TreeMap<String, Set<AbstractResourceCollector>> locations = new TreeMap<>();
+
+    /** Advanced on every insertion. */
+    private final AtomicLong clock = new AtomicLong();
+
+    /** Advanced on every invalidation, to not cache a resolution which raced with a change. */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    ResolutionCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.evictionBatch = Math.max(1, maxEntries / 10);
+        this.entries = new ConcurrentHashMap<>(maxEntries + this.evictionBatch);
+    }
+
+    /**
+     * Returns the cached servlets, an empty array if no servlet exists or
+     * <code>null</code> if the key is not cached.
+     */
+    Servlet[] get(final AbstractResourceCollector key) {
+        final Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        final long now = this.clock.get();
+        if (entry.lastAccess != now) {
+            entry.lastAccess = now;
+        }
+        return entry.servlets;
+    }
+
+    /**
+     * The generation to pass to {@link #put(AbstractResourceCollector, Servlet[], Collection, long)},
+     * taken before the servlet is resolved.
+     */
+    long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Cache the servlets unless the cache has been invalidated since the
+     * resolution started.
+     *
+     * @param key The key
+     * @param servlets The resolved servlets, might be empty
+     * @param searched The locations searched to resolve the servlets
+     * @param generation The generation before the resolution started
+     */
+    void put(final AbstractResourceCollector key, final Servlet[] servlets, final Collection<String> searched,
+            final long generation) {
+        final Entry entry = new Entry(servlets, searched.toArray(new String[searched.size()]),
+                this.clock.incrementAndGet());
+        synchronized (this.locations) {
+            if (generation != this.generation.get() || this.entries.putIfAbsent(key, entry) != null) {
+                return;
+            }
+            for (final String location : entry.locations) {
+                Set<AbstractResourceCollector> keys = this.locations.get(location);
+                if (keys == null) {
+                    keys = new HashSet<>();
+                    this.locations.put(location, keys);
+                }
+                keys.add(key);
+            }
+            if (this.entries.size() > this.maxEntries) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used entries. Must be called while holding
+     * the lock.
+     */
+    private void evict() {
+        final int count = this.entries.size() - this.maxEntries + this.evictionBatch;
+        final long[] ticks = new long[this.entries.size()];
+        int size = 0;
+        for (final Entry entry : this.entries.values()) {
+            if (size == ticks.length) {
+                break;
+            }
+            ticks[size++] = entry.lastAccess;
+        }
+        Arrays.sort(ticks, 0, size);
+        final long threshold = ticks[Math.min(count, size) - 1];
+        int evicted = 0;
+        final Iterator<Map.Entry<AbstractResourceCollector, Entry>> iter = this.entries.entrySet().iterator();
+        while (evicted < count && iter.hasNext()) {
+            final Map.Entry<AbstractResourceCollector, Entry> current = iter.next();
+            if (current.getValue().lastAccess <= threshold) {
+                iter.remove();
+                unindex(current.getKey(), current.getValue());
+                evicted++;
+            }
+        }
+        this.evictions.addAndGet(evicted);
+    }
+
+    /**
+     * Remove all entries which searched a location at, above or below the
+     * path.
+     */
+    void invalidate(final Collection<String> paths) {
+        synchronized (this.locations) {
+            this.generation.incrementAndGet();
+            final List<AbstractResourceCollector> keys = new ArrayList<>();
+            for (final String path : paths) {
+                // the locations above or at the path
+                String current = path;
+                while (current != null) {
+                    final Set<AbstractResourceCollector> found = this.locations.get(current);
+                    if (found != null) {
+                        keys.addAll(found);
+                    }
+                    final int pos = current.lastIndexOf('/');
+                    current = pos > 0 ? current.substring(0, pos) : null;
+                }
+                // the locations below the path
+                final String prefix = path.endsWith("/") ? path : path.concat("/");
+                for (final Set<AbstractResourceCollector> found : this.locations
+                        .subMap(prefix, prefix.substring(0, prefix.length() - 1).concat("0")).values()) {
+                    keys.addAll(found);
+                }
+            }
+            for (final AbstractResourceCollector key : keys) {
+                final Entry entry = this.entries.remove(key);
+                if (entry != null) {
+                    unindex(key, entry);
+                    this.invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void unindex(final AbstractResourceCollector key, final Entry entry) {
+        for (final String location : entry.locations) {
+            final Set<AbstractResourceCollector> keys = this.locations.get(location);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    this.locations.remove(location);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void flush() {
+        synchronized (this.locations) {
+            this.generation.incrementAndGet();
+            this.invalidations.addAndGet(this.entries.size());
+            this.entries.clear();
+            this.locations.clear();
+        }
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    long getHits() {
+        return this.hits.get();
+    }
+
+    long getMisses() {
+        return this.misses.get();
+    }
+
+    long getEvictions() {
+        return this.evictions.get();
+    }
+
+    long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    private static final class Entry {
+
+        final Servlet[] servlets;
+
+        final String[] locations;
+
+        volatile long lastAccess;
+
+        Entry(final Servlet[] servlets, final String[] locations, final long lastAccess) {
+            this.servlets = servlets;
+            this.locations = locations;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -41,7 +41,6 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
@@ -154,7 +153,8 @@ public class SlingServletResolver
         /** The default cache size for the script resolution. */
         @AttributeDefinition(name = "Cache Size",
                 description = "This property configures the size of the " +
-                    "cache used for script resolution. A value lower than 5 disables the cache.")
+                    "cache used for script resolution. If the cache is full, the least recently used " +
+                    "entries are evicted. A value lower than 5 disables the cache.")
         int servletresolver_cacheSize() default 200;
 
         @AttributeDefinition(name = "Execution Paths",
@@ -207,14 +207,11 @@ public class SlingServletResolver
     private Servlet fallbackErrorServlet;
 
     /** The script resolution cache. */
-    private Map<AbstractResourceCollector, Servlet> cache;
+    private volatile ResolutionCache cache;
 
     /** The cache size. */
     private int cacheSize;
 
-    /** Flag to log warning if cache size exceed only once. */
-    private volatile boolean logCacheSizeWarning;
-
     /** Registration as event handler. */
     private ServiceRegistration<?> eventHandlerReg;
 
@@ -645,15 +642,18 @@ public class SlingServletResolver
     private Servlet getServletInternal(final AbstractResourceCollector locationUtil,
             final SlingHttpServletRequest request,
             final ResourceResolver resolver) {
-        final Servlet scriptServlet = (this.cache != null ? this.cache.get(locationUtil) : null);
-        if (scriptServlet != null) {
+        final ResolutionCache cache = this.cache;
+        Servlet[] servlets = (cache != null ? cache.get(locationUtil) : null);
+        if (servlets != null) {
             if ( LOGGER.isDebugEnabled() ) {
-                LOGGER.debug("Using cached servlet {}", RequestUtil.getServletName(scriptServlet));
+                LOGGER.debug("Using {} cached servlet candidates", servlets.length);
             }
-            return scriptServlet;
+            return selectServlet(servlets, request);
         }
 
-        final Collection<Resource> candidates = locationUtil.getServlets(resolver);
+        final long generation = (cache != null ? cache.getGeneration() : 0);
+        final List<String> locations = (cache != null ? new ArrayList<String>() : null);
+        final Collection<Resource> candidates = locationUtil.getServlets(resolver, locations);
 
         if (LOGGER.isDebugEnabled()) {
             if (candidates.isEmpty()) {
@@ -666,33 +666,51 @@ public class SlingServletResolver
             }
         }
 
-        boolean hasOptingServlet = false;
+        // the servlets up to the first one which is not an opting servlet
+        // are the result of the resolution, independent of the request
+        final List<Servlet> usable = new ArrayList<>();
         for (final Resource candidateResource : candidates) {
-            LOGGER.debug("Checking if candidate resource {} adapts to servlet and accepts request", candidateResource
-                        .getPath());
-            Servlet candidate = this.getServlet(candidateResource);
-            if (candidate != null) {
-                final boolean isOptingServlet = candidate instanceof OptingServlet;
-                boolean servletAcceptsRequest = !isOptingServlet || (request != null && ((OptingServlet) candidate).accepts(request));
-                if (servletAcceptsRequest) {
-                    if (!hasOptingServlet && !isOptingServlet && this.cache != null) {
-                        if ( this.cache.size() < this.cacheSize ) {
-                            this.cache.put(locationUtil, candidate);
-                        } else if ( this.logCacheSizeWarning ) {
-                            this.logCacheSizeWarning = false;
-                            LOGGER.warn("Script cache has reached its limit of {}. You might want to increase the cache size for the servlet resolver.",
-                                    this.cacheSize);
-                        }
-                    }
-                    LOGGER.debug("Using servlet provided by candidate resource {}", candidateResource.getPath());
-                    return candidate;
-                }
-                if (isOptingServlet) {
-                    hasOptingServlet = true;
-                }
-                LOGGER.debug("Candidate {} does not accept request, ignored", candidateResource.getPath());
-            } else {
+            LOGGER.debug("Checking if candidate resource {} adapts to servlet", candidateResource.getPath());
+            final Servlet candidate = this.getServlet(candidateResource);
+            if (candidate == null) {
                 LOGGER.debug("Candidate {} does not adapt to a servlet, ignored", candidateResource.getPath());
+                continue;
+            }
+            usable.add(candidate);
+            if (!(candidate instanceof OptingServlet)) {
+                break;
+            }
+        }
+        servlets = usable.toArray(new Servlet[usable.size()]);
+
+        // cache the resolution, if no servlet is found this is the fallback
+        // to the default servlet
+        if (cache != null) {
+            cache.put(locationUtil, servlets, locations, generation);
+        }
+        return selectServlet(servlets, request);
+    }
+
+    /**
+     * Returns the first servlet willing to handle the request.
+     *
+     * @param servlets The resolved servlets, only the last one might not be
+     *            an <code>OptingServlet</code>
+     * @param request The request or <code>null</code>, in which case no
+     *            <code>OptingServlet</code> is used
+     * @return The servlet or <code>null</code>
+     */
+    private Servlet selectServlet(final Servlet[] servlets, final SlingHttpServletRequest request) {
+        for (final Servlet candidate : servlets) {
+            if (!(candidate instanceof OptingServlet)
+                    || (request != null && ((OptingServlet) candidate).accepts(request))) {
+                if ( LOGGER.isDebugEnabled() ) {
+                    LOGGER.debug("Using servlet {}", RequestUtil.getServletName(candidate));
+                }
+                return candidate;
+            }
+            if ( LOGGER.isDebugEnabled() ) {
+                LOGGER.debug("Servlet {} does not accept request, ignored", RequestUtil.getServletName(candidate));
             }
         }
 
@@ -844,8 +862,7 @@ public class SlingServletResolver
         // create cache - if a cache size is configured
         this.cacheSize = config.servletresolver_cacheSize();
         if (this.cacheSize > 5) {
-            this.cache = new ConcurrentHashMap<>(cacheSize);
-            this.logCacheSizeWarning = true;
+            this.cache = new ResolutionCache(cacheSize);
         } else {
             this.cacheSize = 0;
         }
@@ -859,7 +876,14 @@ public class SlingServletResolver
     		final Dictionary<String, Object> props = new Hashtable<>();
             props.put("event.topics", new String[] {"javax/script/ScriptEngineFactory/*",
                 "org/apache/sling/api/adapter/AdapterFactory/*","org/apache/sling/scripting/core/BindingsValuesProvider/*" });
-            props.put(ResourceChangeListener.PATHS, "/");
+            // only changes below the search paths affect resolutions
+            final String[] listenerPaths = new String[this.searchPaths.length];
+            for (int i = 0; i < this.searchPaths.length; i++) {
+                final String path = this.searchPaths[i];
+                listenerPaths[i] = path.length() > 1 && path.endsWith("/")
+                        ? path.substring(0, path.length() - 1) : path;
+            }
+            props.put(ResourceChangeListener.PATHS, listenerPaths);
             props.put("service.description", "Apache Sling Servlet Resolver and Error Handler");
             props.put("service.vendor","The Apache Software Foundation");
 
@@ -1073,8 +1097,10 @@ public class SlingServletResolver
     }
 
     private void flushCache() {
-        this.cache.clear();
-        this.logCacheSizeWarning = true;
+        final ResolutionCache cache = this.cache;
+        if (cache != null) {
+            cache.flush();
+        }
     }
 
     /** The list of property names checked by {@link #getName(ServiceReference)} */
@@ -1385,9 +1411,34 @@ public class SlingServletResolver
 
         @Override
         public int getCacheSize() {
+            final ResolutionCache cache = SlingServletResolver.this.cache;
             return cache != null ? cache.size() : 0;
         }
 
+        @Override
+        public long getHitCount() {
+            final ResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getHits() : 0;
+        }
+
+        @Override
+        public long getMissCount() {
+            final ResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getMisses() : 0;
+        }
+
+        @Override
+        public long getEvictionCount() {
+            final ResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getEvictions() : 0;
+        }
+
+        @Override
+        public long getInvalidationCount() {
+            final ResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getInvalidations() : 0;
+        }
+
         @Override
         public void flushCache() {
             SlingServletResolver.this.flushCache();
@@ -1401,23 +1452,25 @@ public class SlingServletResolver
     }
 
     @Override
-	public void onChange(final List<ResourceChange> changes) {
-        boolean flushCache = false;
+    public void onChange(final List<ResourceChange> changes) {
+        final ResolutionCache cache = this.cache;
+        if (cache == null) {
+            return;
+        }
+        // only the entries which searched a changed location are removed,
+        // changes outside of the search paths do not affect any resolution
+        final List<String> paths = new ArrayList<>(changes.size());
         for(final ResourceChange change : changes){
-            // if the path of the event is a sub path of a search path
-            // we flush the whole cache
             final String path = change.getPath();
-            int index = 0;
-            while (!flushCache && index < searchPaths.length) {
-                if (path.startsWith(this.searchPaths[index])) {
-                    flushCache = true;
+            for (final String searchPath : this.searchPaths) {
+                if (path.startsWith(searchPath) || searchPath.equals(path.concat("/"))) {
+                    paths.add(path);
+                    break;
                 }
-                index++;
-            }
-            if ( flushCache ) {
-                flushCache();
-                break; // we can stop looping
             }
         }
+        if (!paths.isEmpty()) {
+            cache.invalidate(paths);
+        }
     }
 }
@@ -65,6 +65,20 @@ public abstract class AbstractResourceCollector {
     }
 
     public final Collection<Resource> getServlets(final ResourceResolver resolver) {
+        return getServlets(resolver, null);
+    }
+
+    /**
+     * Returns the servlets and scripts usable for the request and records
+     * the locations searched.
+     *
+     * @param resolver The resource resolver used to find the resources
+     * @param searched If not <code>null</code>, the paths of all locations
+     *            searched are added to this collection
+     * @return The ordered collection of resources
+     */
+    public final Collection<Resource> getServlets(final ResourceResolver resolver,
+            final Collection<String> searched) {
 
         final SortedSet<Resource> resources = new TreeSet<Resource>();
         final Iterator<String> locations = new LocationIterator(resourceType, resourceSuperType,
@@ -81,6 +95,9 @@ public abstract class AbstractResourceCollector {
             } else {
                 path = location;
             }
+            if ( searched != null ) {
+                searched.add(path);
+            }
             final Resource locationRes = getResource(resolver, path);
             getWeightedResources(resources, locationRes);
         }
@@ -40,6 +40,38 @@ public interface SlingServletResolverCacheMBean {
      */
     int getMaximumCacheSize();
 
+    /**
+     * Get the number of resolutions answered by the cache
+     *
+     * @return the number of cache hits
+     * @since 2.4.0
+     */
+    long getHitCount();
+
+    /**
+     * Get the number of resolutions not answered by the cache
+     *
+     * @return the number of cache misses
+     * @since 2.4.0
+     */
+    long getMissCount();
+
+    /**
+     * Get the number of entries evicted as the cache was full
+     *
+     * @return the number of evicted entries
+     * @since 2.4.0
+     */
+    long getEvictionCount();
+
+    /**
+     * Get the number of entries removed because of resource changes or a flush
+     *
+     * @return the number of invalidated entries
+     * @since 2.4.0
+     */
+    long getInvalidationCount();
+
     /**
      * Flush the servlet resolver cache.
      */
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+import org.junit.Test;
+
+public class ResolutionCacheTest {
+
+    private final Servlet servlet = new HttpServlet() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private static AbstractResourceCollector key(final String resourceType) {
+        return new AbstractResourceCollector(null, resourceType, null, "html", null) {
+            {
+                this.hashCode = resourceType.hashCode();
+            }
+
+            @Override
+            protected void getWeightedResources(final Set<Resource> resources, final Resource location) {
+                // not used
+            }
+        };
+    }
+
+    private void put(final ResolutionCache cache, final String resourceType, final String... locations) {
+        cache.put(key(resourceType), new Servlet[] {servlet}, Arrays.asList(locations), cache.getGeneration());
+    }
+
+    @Test
+    public void testGetAndPut() {
+        final ResolutionCache cache = new ResolutionCache(10);
+        assertNull(cache.get(key("a/b")));
+        put(cache, "a/b", "/apps/a/b", "/libs/a/b");
+        assertSame(servlet, cache.get(key("a/b"))[0]);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testNoServlet() {
+        final ResolutionCache cache = new ResolutionCache(10);
+        cache.put(key("a/b"), new Servlet[0], Arrays.asList("/apps/a/b", "/libs/a/b"), cache.getGeneration());
+        assertEquals(0, cache.get(key("a/b")).length);
+
+        // a script is added
+        cache.invalidate(Collections.singletonList("/libs/a/b/b.jsp"));
+        assertNull(cache.get(key("a/b")));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        final ResolutionCache cache = new ResolutionCache(10);
+        for (int i = 0; i < 10; i++) {
+            put(cache, "a/" + i, "/apps/a/" + i);
+            // keep the first entry in use
+            assertNotNull(cache.get(key("a/0")));
+        }
+        // a tenth of the entries is evicted at once
+        put(cache, "a/10", "/apps/a/10");
+        assertEquals(9, cache.size());
+        assertEquals(2, cache.getEvictions());
+        assertNotNull(cache.get(key("a/0")));
+        assertNull(cache.get(key("a/1")));
+        assertNull(cache.get(key("a/2")));
+        assertNotNull(cache.get(key("a/3")));
+        assertNotNull(cache.get(key("a/10")));
+    }
+
+    @Test
+    public void testInvalidateScriptChange() {
+        final ResolutionCache cache = new ResolutionCache(10);
+        put(cache, "a/b", "/apps/a/b", "/libs/a/b", "/apps/sling/servlet/default");
+        put(cache, "a/c", "/apps/a/c", "/libs/a/c", "/apps/sling/servlet/default");
+
+        cache.invalidate(Collections.singletonList("/apps/a/b/html.jsp"));
+        assertNull(cache.get(key("a/b")));
+        assertNotNull(cache.get(key("a/c")));
+        assertEquals(1, cache.getInvalidations());
+
+        // a change of the default servlet affects all entries
+        cache.invalidate(Collections.singletonList("/apps/sling/servlet/default/GET.jsp"));
+        assertNull(cache.get(key("a/c")));
+    }
+
+    @Test
+    public void testInvalidateLocationAndParent() {
+        final ResolutionCache cache = new ResolutionCache(10);
+        put(cache, "a/b", "/apps/a/b");
+        put(cache, "a/c", "/apps/a/c");
+        put(cache, "x/y", "/apps/x/y");
+
+        // a changed super type
+        cache.invalidate(Collections.singletonList("/apps/a/b"));
+        assertNull(cache.get(key("a/b")));
+        assertNotNull(cache.get(key("a/c")));
+
+        // a removed parent
+        cache.invalidate(Collections.singletonList("/apps/a"));
+        assertNull(cache.get(key("a/c")));
+        assertNotNull(cache.get(key("x/y")));
+
+        cache.invalidate(Collections.singletonList("/apps/ab"));
+        assertNotNull(cache.get(key("x/y")));
+    }
+
+    @Test
+    public void testRacingChangeIsNotCached() {
+        final ResolutionCache cache = new ResolutionCache(10);
+        final long generation = cache.getGeneration();
+        cache.invalidate(Collections.singletonList("/apps/a/b/html.jsp"));
+        cache.put(key("a/b"), new Servlet[] {servlet}, Collections.singletonList("/apps/a/b"), generation);
+        assertNull(cache.get(key("a/b")));
+    }
+
+    @Test
+    public void testFlush() {
+        final ResolutionCache cache = new ResolutionCache(10);
+        put(cache, "a/b", "/apps/a/b");
+        cache.flush();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key("a/b")));
+        put(cache, "a/b", "/apps/a/b");
+        assertNotNull(cache.get(key("a/b")));
+    }
+}
@@ -234,6 +234,25 @@ public class SlingServletResolverTest {
             result.getClass() != MockSlingRequestHandlerServlet.class);
     }
 
+    @Test public void testCachedResolutionWithOptingServlet() {
+        MockSlingHttpServletRequest secureRequest = new MockSlingHttpServletRequest(
+            SERVLET_PATH, null, SERVLET_EXTENSION, null, null);
+        secureRequest.setResourceResolver(mockResourceResolver);
+        secureRequest.setSecure(true);
+        assertEquals("Did not resolve to correct servlet", servlet, servletResolver.resolveServlet(secureRequest));
+
+        // the resolution is cached, but the opting servlet is asked again
+        MockSlingHttpServletRequest insecureRequest = new MockSlingHttpServletRequest(
+            SERVLET_PATH, null, SERVLET_EXTENSION, null, null);
+        insecureRequest.setResourceResolver(mockResourceResolver);
+        insecureRequest.setSecure(false);
+        Servlet result = servletResolver.resolveServlet(insecureRequest);
+        assertTrue("Did not ignore unwanted request",
+            result.getClass() != MockSlingRequestHandlerServlet.class);
+
+        assertEquals("Did not resolve to correct servlet", servlet, servletResolver.resolveServlet(secureRequest));
+    }
+
     @Test public void testCreateServiceRegistrationProperties() throws Throwable {
         MockServiceReference msr = new MockServiceReference(null);
 
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.form.impl;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+
+/**
+ * The token store of the form authentication handler.
+ */
+public class TokenStoreFixture {
+
+    private final TokenStore store;
+
+    /**
+     * Create the token store.
+     *
+     * @param tokenFile the file to persist the secret keys to
+     * @param algorithm the name of the HMAC function
+     */
+    public TokenStoreFixture(final File tokenFile, final String algorithm) throws GeneralSecurityException,
+            UnsupportedEncodingException {
+        // the default session timeout of 30 minutes, keys are not rotated while benchmarking
+        this.store = new TokenStore(tokenFile, 30 * 60 * 1000L, true, algorithm);
+    }
+
+    public String encode(final long expires, final String userId) throws GeneralSecurityException,
+            UnsupportedEncodingException {
+        return store.encode(expires, userId);
+    }
+
+    public boolean isValid(final String token) {
+        return store.isValid(token);
+    }
+}
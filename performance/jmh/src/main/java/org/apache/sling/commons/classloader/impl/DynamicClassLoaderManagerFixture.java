@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.classloader.impl;
+
+import static org.mockito.Mockito.mock;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.service.packageadmin.PackageAdmin;
+
+/**
+ * The dynamic class loader manager without any bundles exporting packages
+ * and without class loader providers.
+ */
+public class DynamicClassLoaderManagerFixture {
+
+    private final DynamicClassLoaderManagerImpl manager;
+
+    /**
+     * Create the manager.
+     *
+     * @param parent the class loader of the bundle using the manager
+     */
+    public DynamicClassLoaderManagerFixture(final ClassLoader parent) {
+        final BundleContext context = mock(BundleContext.class);
+        final PackageAdmin packageAdmin = mock(PackageAdmin.class);
+        this.manager = new DynamicClassLoaderManagerImpl(context, packageAdmin, parent,
+                new DynamicClassLoaderManagerFactory(context, packageAdmin, new PackageIndex(packageAdmin)));
+    }
+
+    public ClassLoader getDynamicClassLoader() {
+        return manager.getDynamicClassLoader();
+    }
+
+    public void deactivate() {
+        manager.deactivate();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The content the benchmarks run against: pages in folders of
+ * {@link #PAGES_PER_FOLDER} pages below {@link #SITE}, each with a
+ * <code>jcr:content</code> child, and a component hierarchy of three
+ * resource types below the search paths.
+ */
+final class BenchmarkContent {
+
+    static final String SITE = "/content/site";
+
+    static final int PAGES_PER_FOLDER = 100;
+
+    static final String PAGE_TYPE = "site/components/page";
+
+    static final String BASE_TYPE = "site/components/base";
+
+    static final String FOUNDATION_TYPE = "foundation/components/page";
+
+    private BenchmarkContent() {
+        // static methods only
+    }
+
+    /**
+     * Create the content.
+     *
+     * @param pages the number of pages
+     * @param aliases the number of pages having an alias
+     * @param vanityPaths the number of pages having a vanity path
+     * @return the properties by path, parents before their children
+     */
+    static Map<String, Map<String, Object>> create(final int pages, final int aliases, final int vanityPaths) {
+        final Map<String, Map<String, Object>> content = new LinkedHashMap<String, Map<String, Object>>();
+        content.put("/apps", properties("sling:Folder", null));
+        content.put("/apps/site", properties("sling:Folder", null));
+        content.put("/apps/site/components", properties("sling:Folder", null));
+        content.put("/apps/" + PAGE_TYPE, properties("sling:Folder", BASE_TYPE));
+        content.put("/apps/" + BASE_TYPE, properties("sling:Folder", FOUNDATION_TYPE));
+        content.put("/libs", properties("sling:Folder", null));
+        content.put("/libs/foundation", properties("sling:Folder", null));
+        content.put("/libs/foundation/components", properties("sling:Folder", null));
+        content.put("/libs/" + FOUNDATION_TYPE, properties("sling:Folder", null));
+        content.put("/content", properties("sling:Folder", null));
+        content.put(SITE, properties("sling:Folder", null));
+
+        for (int i = 0; i < pages; i++) {
+            if (i % PAGES_PER_FOLDER == 0) {
+                content.put(folderPath(i), properties("sling:Folder", null));
+            }
+            final Map<String, Object> page = properties(PAGE_TYPE, null);
+            page.put("jcr:title", "Page " + i);
+            if (i < aliases) {
+                page.put("sling:alias", aliasName(i));
+            }
+            if (i < vanityPaths) {
+                page.put("sling:vanityPath", vanityPath(i));
+            }
+            content.put(pagePath(i), page);
+
+            final Map<String, Object> pageContent = properties("nt:unstructured", null);
+            pageContent.put("jcr:title", "Page " + i);
+            pageContent.put("text", "The text of page " + i);
+            pageContent.put("index", i);
+            content.put(pagePath(i) + "/jcr:content", pageContent);
+        }
+        return content;
+    }
+
+    static String folderPath(final int page) {
+        return SITE + "/folder" + (page / PAGES_PER_FOLDER);
+    }
+
+    static String pagePath(final int page) {
+        return folderPath(page) + "/page" + page;
+    }
+
+    static String aliasName(final int page) {
+        return "alias" + page;
+    }
+
+    static String aliasPath(final int page) {
+        return folderPath(page) + "/" + aliasName(page);
+    }
+
+    static String vanityPath(final int page) {
+        return "/vanity/page" + page;
+    }
+
+    private static Map<String, Object> properties(final String resourceType, final String resourceSuperType) {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put("jcr:primaryType", "sling:Folder".equals(resourceType) ? "sling:Folder" : "nt:unstructured");
+        props.put("sling:resourceType", resourceType);
+        if (resourceSuperType != null) {
+            props.put("sling:resourceSuperType", resourceSuperType);
+        }
+        return props;
+    }
+}
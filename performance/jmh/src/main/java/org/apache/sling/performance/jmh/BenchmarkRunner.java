@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options and writes the
+ * results as JSON, by default to
+ * <code>jmh-result-&lt;module&gt;-&lt;version&gt;_...json</code> with the
+ * versions of all benchmarked modules, so the results of different releases
+ * can be compared.
+ * <p>
+ * Build the benchmarks for a release with
+ * <code>mvn package -Dresourceresolver.version=&lt;version&gt;</code> and
+ * run them with <code>java -jar target/benchmarks.jar [JMH options]</code>.
+ * <p>
+ * The benchmarks run without an OSGi framework. The fixtures set up the
+ * components with OSGi mocks or, where they need package private members,
+ * from the package of the component.
+ */
+public class BenchmarkRunner {
+
+    /** The properties of the versions of the benchmarked modules. */
+    private static final String[] MODULES = {
+        "resourceresolver", "auth.form", "jcr.resource", "commons.classloader", "commons.scheduler",
+        "servlets.get"
+    };
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-result-" + getVersions() + ".json");
+        }
+        new Runner(options.build()).run();
+    }
+
+    private static String getVersions() throws IOException {
+        final Properties props = new Properties();
+        final InputStream in = BenchmarkRunner.class.getResourceAsStream("/benchmark.properties");
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final String module : MODULES) {
+            if (sb.length() > 0) {
+                sb.append('_');
+            }
+            sb.append(module).append('-').append(props.getProperty(module + ".version"));
+        }
+        return sb.toString();
+    }
+}
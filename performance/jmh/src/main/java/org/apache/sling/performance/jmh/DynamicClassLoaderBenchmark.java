@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.classloader.impl.DynamicClassLoaderManagerFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of loading classes through the dynamic class loader, as
+ * script engines and the JCR resource provider do for every request.
+ * <p>
+ * The <code>*Contended</code> benchmarks run with one thread per available
+ * processor against a single dynamic class loader. Their score is the
+ * throughput of all threads: divide it by the number of processors to
+ * compare the lookups per second per core with the single threaded
+ * benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicClassLoaderBenchmark {
+
+    /** A power of two number of classes, to cycle through them with a mask. */
+    private static final String[] CLASSES = {
+        "java.lang.String", "java.util.ArrayList", "java.util.HashMap", "java.util.concurrent.ConcurrentHashMap",
+        "org.apache.sling.performance.jmh.BenchmarkContent", "org.apache.sling.performance.jmh.BenchmarkRunner",
+        "org.openjdk.jmh.annotations.Benchmark", "org.slf4j.Logger"
+    };
+
+    /** A power of two, to cycle through the names with a mask. */
+    private static final int MISSING = 64;
+
+    private DynamicClassLoaderManagerFixture manager;
+
+    private ClassLoader classLoader;
+
+    private String[] missing;
+
+    @Setup
+    public void setup() {
+        manager = new DynamicClassLoaderManagerFixture(DynamicClassLoaderBenchmark.class.getClassLoader());
+        classLoader = manager.getDynamicClassLoader();
+        missing = new String[MISSING];
+        for (int i = 0; i < MISSING; i++) {
+            missing[i] = "org.apache.sling.missing" + (i % 4) + ".Missing" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.deactivate();
+    }
+
+    /** The index of the next class name of each benchmark thread. */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        int next() {
+            return index++;
+        }
+    }
+
+    private Class<?> load(final Cursor cursor) throws ClassNotFoundException {
+        return classLoader.loadClass(CLASSES[cursor.next() & (CLASSES.length - 1)]);
+    }
+
+    private boolean miss(final Cursor cursor) {
+        try {
+            classLoader.loadClass(missing[cursor.next() & (MISSING - 1)]);
+            return false;
+        } catch (final ClassNotFoundException expected) {
+            return true;
+        }
+    }
+
+    @Benchmark
+    public Class<?> loadClass(final Cursor cursor) throws ClassNotFoundException {
+        return load(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Class<?> loadClassContended(final Cursor cursor) throws ClassNotFoundException {
+        return load(cursor);
+    }
+
+    @Benchmark
+    public boolean missClass(final Cursor cursor) {
+        return miss(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean missClassContended(final Cursor cursor) {
+        return miss(cursor);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.sling.api.resource.AbstractResource;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
+import org.apache.sling.spi.resource.provider.ResolveContext;
+import org.apache.sling.spi.resource.provider.ResourceContext;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+
+/**
+ * Read only resource provider keeping the whole tree in memory, so the
+ * benchmarks measure the resource resolver and not a repository.
+ * <p>
+ * The provider understands just enough of the <code>sql</code> query
+ * language to answer the queries the resource resolver uses for loading
+ * aliases and vanity paths: all resources having the property of the
+ * <code>WHERE</code> clause are returned.
+ */
+public class InMemoryResourceProvider extends ResourceProvider<Object> {
+
+    private static final Pattern PROPERTY_CONDITION = Pattern.compile("WHERE\\s+\\[?([\\w:]+)\\]?(?:\\s*=\\s*'([^']*)')?");
+
+    private final Map<String, ValueMap> resources = new HashMap<String, ValueMap>();
+
+    private final Map<String, List<String>> children = new HashMap<String, List<String>>();
+
+    public InMemoryResourceProvider() {
+        add("/", Collections.<String, Object> emptyMap());
+    }
+
+    /**
+     * Add a resource, missing parents are created without properties.
+     */
+    public void add(final String path, final Map<String, Object> properties) {
+        if (!"/".equals(path)) {
+            final String parent = ResourceUtil.getParent(path);
+            if (!resources.containsKey(parent)) {
+                add(parent, Collections.<String, Object> emptyMap());
+            }
+            if (!resources.containsKey(path)) {
+                List<String> names = children.get(parent);
+                if (names == null) {
+                    names = new ArrayList<String>();
+                    children.put(parent, names);
+                }
+                names.add(path);
+            }
+        }
+        resources.put(path, new ValueMapDecorator(Collections.unmodifiableMap(new HashMap<String, Object>(properties))));
+    }
+
+    @Override
+    public Resource getResource(final ResolveContext<Object> ctx, final String path, final ResourceContext resourceContext,
+            final Resource parent) {
+        final ValueMap properties = resources.get(path);
+        if (properties == null) {
+            return null;
+        }
+        return new InMemoryResource(ctx.getResourceResolver(), path, properties);
+    }
+
+    @Override
+    public Iterator<Resource> listChildren(final ResolveContext<Object> ctx, final Resource parent) {
+        final List<String> paths = children.get(parent.getPath());
+        if (paths == null) {
+            return null;
+        }
+        return toResources(ctx.getResourceResolver(), paths.iterator());
+    }
+
+    @Override
+    public QueryLanguageProvider<Object> getQueryLanguageProvider() {
+        return new QueryLanguageProvider<Object>() {
+
+            @Override
+            public String[] getSupportedLanguages(final ResolveContext<Object> ctx) {
+                return new String[] {"sql"};
+            }
+
+            @Override
+            public Iterator<Resource> findResources(final ResolveContext<Object> ctx, final String query, final String language) {
+                final Matcher m = PROPERTY_CONDITION.matcher(query);
+                if (!m.find()) {
+                    return Collections.<Resource> emptyList().iterator();
+                }
+                final String name = m.group(1);
+                final String value = m.group(2);
+                final List<String> paths = new ArrayList<String>();
+                for (final Map.Entry<String, ValueMap> entry : resources.entrySet()) {
+                    if (matches(entry.getValue().get(name, String[].class), value)) {
+                        paths.add(entry.getKey());
+                    }
+                }
+                return toResources(ctx.getResourceResolver(), paths.iterator());
+            }
+
+            @Override
+            public Iterator<ValueMap> queryResources(final ResolveContext<Object> ctx, final String query, final String language) {
+                return Collections.<ValueMap> emptyList().iterator();
+            }
+        };
+    }
+
+    private static boolean matches(final String[] values, final String value) {
+        if (values == null) {
+            return false;
+        }
+        if (value == null) {
+            return true;
+        }
+        for (final String v : values) {
+            if (value.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Iterator<Resource> toResources(final ResourceResolver resolver, final Iterator<String> paths) {
+        return new Iterator<Resource>() {
+
+            @Override
+            public boolean hasNext() {
+                return paths.hasNext();
+            }
+
+            @Override
+            public Resource next() {
+                final String path = paths.next();
+                return new InMemoryResource(resolver, path, resources.get(path));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static final class InMemoryResource extends AbstractResource {
+
+        private final ResourceResolver resolver;
+
+        private final String path;
+
+        private final ValueMap properties;
+
+        private final ResourceMetadata metadata = new ResourceMetadata();
+
+        InMemoryResource(final ResourceResolver resolver, final String path, final ValueMap properties) {
+            this.resolver = resolver;
+            this.path = path;
+            this.properties = properties;
+            this.metadata.setResolutionPath(path);
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getResourceType() {
+            return properties.get("sling:resourceType", "nt:unstructured");
+        }
+
+        @Override
+        public String getResourceSuperType() {
+            return properties.get("sling:resourceSuperType", String.class);
+        }
+
+        @Override
+        public ResourceMetadata getResourceMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public ResourceResolver getResourceResolver() {
+            return resolver;
+        }
+
+        @Override
+        public ValueMap getValueMap() {
+            return properties;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+            if (type == ValueMap.class || type == Map.class) {
+                return (AdapterType) properties;
+            }
+            return super.adaptTo(type);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of listing the children of a JCR node as a navigation
+ * component does: it reads the resource type and the title of each child.
+ * <p>
+ * The children are listed one at a time (page size 0) or read ahead in
+ * pages, each time with a new value map of a new request, with or without
+ * the value map snapshots shared between requests. The repository is an
+ * in memory Oak repository, so the scores show the overhead of the JCR API
+ * calls rather than of the persistence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JcrChildrenBenchmark {
+
+    private static final int CHILDREN = 5000;
+
+    @Param({"0", "100"})
+    public int pageSize;
+
+    @Param({"false", "true"})
+    public boolean snapshots;
+
+    private Session session;
+
+    private JcrNodeResourceIteratorFixture fixture;
+
+    @Setup
+    public void setup() throws RepositoryException {
+        final Repository repository = new Jcr(new Oak()).createRepository();
+        session = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+        session.getWorkspace().getNamespaceRegistry().registerNamespace("sling", "http://sling.apache.org/jcr/sling/1.0");
+        final Node parent = session.getRootNode().addNode("content", "nt:unstructured");
+        for (int i = 0; i < CHILDREN; i++) {
+            final Node child = parent.addNode("page" + i, "nt:unstructured");
+            child.setProperty("sling:resourceType", "sample/page");
+            child.setProperty("jcr:title", "Page " + i);
+            child.setProperty("navTitle", "Page " + i);
+            child.setProperty("hideInNav", false);
+        }
+        session.save();
+        fixture = new JcrNodeResourceIteratorFixture(parent, pageSize, snapshots ? 2 * CHILDREN : 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.logout();
+    }
+
+    @Benchmark
+    public void listChildren(final Blackhole blackhole) throws RepositoryException {
+        final Iterator<Resource> children = fixture.listChildren();
+        while (children.hasNext()) {
+            final Resource child = children.next();
+            blackhole.consume(child.getResourceType());
+            blackhole.consume(child.adaptTo(ValueMap.class).get("jcr:title", String.class));
+        }
+    }
+}
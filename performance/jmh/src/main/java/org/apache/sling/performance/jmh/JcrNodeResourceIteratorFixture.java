@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrValueMapSnapshotCache;
+import org.apache.sling.jcr.resource.internal.helper.jcr.JcrNodeResourceIterator;
+
+/**
+ * Lists the children of a JCR node as resources of the JCR resource
+ * provider.
+ */
+class JcrNodeResourceIteratorFixture {
+
+    private final Node parent;
+
+    private final int pageSize;
+
+    private final JcrValueMapSnapshotCache snapshotCache;
+
+    /**
+     * Create the fixture.
+     *
+     * @param parent the node whose children are listed
+     * @param pageSize the number of children read ahead, 0 to read one at a time
+     * @param snapshots the maximum number of shared value map snapshots, 0 to disable them
+     */
+    JcrNodeResourceIteratorFixture(final Node parent, final int pageSize, final int snapshots) {
+        this.parent = parent;
+        this.pageSize = pageSize;
+        this.snapshotCache = snapshots > 0 ? new JcrValueMapSnapshotCache(snapshots) : null;
+    }
+
+    /**
+     * List the children as a resource resolver of a new request does.
+     *
+     * @return the iterator of the child resources
+     */
+    Iterator<Resource> listChildren() throws RepositoryException {
+        final Session session = parent.getSession();
+        final HelperData helper = new HelperData(new AtomicReference<DynamicClassLoaderManager>(), snapshotCache,
+                pageSize);
+        if (snapshotCache != null) {
+            helper.setSnapshotStamp(snapshotCache.getStamp());
+        }
+        return new JcrNodeResourceIterator(null, parent.getPath(), null, session.getNode(parent.getPath()).getNodes(),
+                helper, null, pageSize);
+    }
+}
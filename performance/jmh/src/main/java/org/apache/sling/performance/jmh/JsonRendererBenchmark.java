@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.testing.sling.MockResource;
+import org.apache.sling.commons.testing.sling.MockResourceResolver;
+import org.apache.sling.servlets.get.impl.util.JsonResourceWriter;
+import org.apache.sling.servlets.get.impl.util.ResourceTraversor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of a tree of {@link #NODES} resources as JSON, building the
+ * JSON object tree first as the <code>.tidy</code> and <code>.harray</code>
+ * rendering does, and streaming it as the plain rendering does. The scores
+ * are per resource; with <code>-prof gc</code> the
+ * <code>gc.alloc.rate.norm</code> value is the number of bytes allocated
+ * per resource.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonRendererBenchmark {
+
+    private static final int FANOUT = 10;
+
+    /** The root, 10 children, 100 grand children and 1000 great grand children. */
+    private static final int NODES = 1 + FANOUT + FANOUT * FANOUT + FANOUT * FANOUT * FANOUT;
+
+    private static final int LIMIT = 2 * NODES;
+
+    /** Discards the output, so only the rendering is measured. */
+    private static final Writer NULL_WRITER = new Writer() {
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            // discard
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            // discard
+        }
+
+        @Override
+        public void flush() {
+            // nothing to flush
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    };
+
+    private final JsonGeneratorFactory factory = Json.createGeneratorFactory(Collections.<String, Object> emptyMap());
+
+    private Resource root;
+
+    @Setup
+    public void setup() {
+        final MockResourceResolver resolver = new MockResourceResolver();
+        root = create(resolver, "/content/root", 0);
+    }
+
+    private Resource create(final MockResourceResolver resolver, final String path, final int level) {
+        final PropertiesResource resource = new PropertiesResource(resolver, path);
+        resource.properties.put("jcr:primaryType", "nt:unstructured");
+        resource.properties.put("jcr:title", "The title of " + path);
+        resource.properties.put("jcr:created", Calendar.getInstance());
+        resource.properties.put("level", (long) level);
+        resource.properties.put("hidden", false);
+        resource.properties.put("tags", new String[] {"a", "b", "c"});
+        resolver.addResource(resource);
+        // the children are always registered, the mock searches all resources otherwise
+        final List<Resource> children = new ArrayList<>();
+        if (level < 3) {
+            for (int i = 0; i < FANOUT; i++) {
+                children.add(create(resolver, path + "/child" + i, level + 1));
+            }
+        }
+        resolver.addChildren(resource, children);
+        return resource;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public void tree() {
+        final ResourceTraversor traversor = new ResourceTraversor(-1, LIMIT, root);
+        traversor.collectResources();
+        final JsonGenerator generator = factory.createGenerator(NULL_WRITER);
+        generator.write(traversor.getJSONObject());
+        generator.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public void stream() {
+        final JsonResourceWriter writer = new JsonResourceWriter(-1, LIMIT);
+        writer.checkLimits(root);
+        final JsonGenerator generator = factory.createGenerator(NULL_WRITER);
+        writer.write(generator, root);
+        generator.close();
+    }
+
+    private static final class PropertiesResource extends MockResource {
+
+        final Map<String, Object> properties = new LinkedHashMap<>();
+
+        PropertiesResource(final ResourceResolver resolver, final String path) {
+            super(resolver, path, "test/type");
+            properties.put("sling:resourceType", "test/type");
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+            if (type == ValueMap.class) {
+                return (AdapterType) new ValueMapDecorator(properties);
+            }
+            return super.adaptTo(type);
+        }
+    }
+}
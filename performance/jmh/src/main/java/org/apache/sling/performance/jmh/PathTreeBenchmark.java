@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.resourceresolver.impl.providers.tree.Node;
+import org.apache.sling.resourceresolver.impl.providers.tree.PathTree;
+import org.apache.sling.resourceresolver.impl.providers.tree.Pathable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Routing throughput of the provider tree for different numbers of mounted
+ * providers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathTreeBenchmark {
+
+    private static final int LOOKUP_PATHS = 1024;
+
+    @Param({"10", "100", "1000"})
+    public int providers;
+
+    private List<Pathable> values;
+
+    private PathTree<Pathable> tree;
+
+    private String[] paths;
+
+    private int index;
+
+    @Setup
+    public void setup() {
+        values = new ArrayList<>();
+        values.add(new StringPath("/"));
+        for (int i = 0; i < providers; i++) {
+            values.add(new StringPath("/content/site" + (i % 10) + "/provider" + i));
+        }
+        tree = new PathTree<>(values);
+
+        final Random random = new Random(42);
+        paths = new String[LOOKUP_PATHS];
+        for (int i = 0; i < paths.length; i++) {
+            final int provider = random.nextInt(providers);
+            if (i % 4 == 0) {
+                // not below a provider, falls back to the root provider
+                paths[i] = "/apps/site" + provider + "/components/page/page.jsp";
+            } else {
+                paths[i] = "/content/site" + (provider % 10) + "/provider" + provider + "/jcr:content/par/text";
+            }
+        }
+    }
+
+    private String nextPath() {
+        index = (index + 1) & (LOOKUP_PATHS - 1);
+        return paths[index];
+    }
+
+    @Benchmark
+    public Node<Pathable> bestMatchingNode() {
+        return tree.getBestMatchingNode(nextPath());
+    }
+
+    @Benchmark
+    public PathTree<Pathable> addIncremental() {
+        return tree.add(new StringPath("/content/site0/provider-new"));
+    }
+
+    @Benchmark
+    public PathTree<Pathable> addRebuild() {
+        final List<Pathable> newValues = new ArrayList<>(values);
+        newValues.add(new StringPath("/content/site0/provider-new"));
+        return new PathTree<>(newValues);
+    }
+
+    private static final class StringPath implements Pathable {
+
+        private final String path;
+
+        StringPath(final String path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+    }
+}
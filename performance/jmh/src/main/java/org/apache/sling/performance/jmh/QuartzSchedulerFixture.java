@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.scheduler.impl.QuartzScheduler;
+import org.apache.sling.commons.threads.ThreadPoolManager;
+import org.apache.sling.commons.threads.impl.DefaultThreadPoolManager;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.osgi.framework.BundleContext;
+
+/**
+ * The scheduler with the default thread pool and without metrics.
+ */
+class QuartzSchedulerFixture {
+
+    private final BundleContext context;
+
+    private final DefaultThreadPoolManager threadPoolManager;
+
+    private final QuartzScheduler scheduler;
+
+    /**
+     * Create and activate the scheduler.
+     *
+     * @param useTimerWheel whether jobs without cron expression run on the timer wheel
+     */
+    QuartzSchedulerFixture(final boolean useTimerWheel) {
+        this.context = MockOsgi.newBundleContext();
+        this.threadPoolManager = new DefaultThreadPoolManager(context, new Hashtable<String, Object>());
+        context.registerService(ThreadPoolManager.class, threadPoolManager, null);
+        context.registerService(MetricsService.class, MetricsService.NOOP, null);
+
+        this.scheduler = new QuartzScheduler();
+        MockOsgi.injectServices(scheduler, context);
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("scheduler.timerwheel", useTimerWheel);
+        MockOsgi.activate(scheduler, context, properties);
+    }
+
+    QuartzScheduler getScheduler() {
+        return scheduler;
+    }
+
+    void deactivate() {
+        MockOsgi.deactivate(scheduler, context);
+        threadPoolManager.destroy();
+    }
+}
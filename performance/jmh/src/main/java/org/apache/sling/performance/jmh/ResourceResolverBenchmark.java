@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.resourceresolver.impl.ResourceResolverFactoryFixture;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the resource resolver methods called for every request.
+ * <p>
+ * The <code>sling</code> provider runs the resource resolver implementation
+ * with the {@link InMemoryResourceProvider}, including the resolution of
+ * aliases and vanity paths. The <code>mock</code> provider runs the
+ * resource resolver mock as a baseline without any resolution overhead;
+ * the mock neither removes selectors and extensions nor resolves aliases
+ * and vanity paths, so all its resolve calls return a non existing
+ * resource.
+ * <p>
+ * A resource resolver is not thread safe, so the benchmarks have to run
+ * with a single thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceResolverBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"sling", "mock"})
+    public String provider;
+
+    @Param({"1000", "10000"})
+    public int pages;
+
+    @Param({"0", "1000"})
+    public int aliases;
+
+    @Param({"0", "1000"})
+    public int vanityPaths;
+
+    private File dataDirectory;
+
+    private ResourceResolverFactoryFixture fixture;
+
+    private ResourceResolver resolver;
+
+    /** Random page numbers, the same for every run. */
+    private int[] lookups;
+
+    private Resource[] pageResources;
+
+    private Resource[] contentResources;
+
+    private int index;
+
+    @Setup
+    public void setup() throws IOException, LoginException {
+        final Map<String, Map<String, Object>> content = BenchmarkContent.create(pages, aliases, vanityPaths);
+        if ("sling".equals(provider)) {
+            final InMemoryResourceProvider rp = new InMemoryResourceProvider();
+            for (final Map.Entry<String, Map<String, Object>> entry : content.entrySet()) {
+                rp.add(entry.getKey(), entry.getValue());
+            }
+            dataDirectory = File.createTempFile("benchmark", null);
+            dataDirectory.delete();
+            dataDirectory.mkdirs();
+            fixture = new ResourceResolverFactoryFixture(rp, dataDirectory, Collections.<String, Object> emptyMap());
+            resolver = fixture.getResourceResolverFactory().getResourceResolver(null);
+        } else if ("mock".equals(provider)) {
+            resolver = new MockResourceResolverFactory().getResourceResolver(null);
+            for (final Map.Entry<String, Map<String, Object>> entry : content.entrySet()) {
+                final Resource parent = resolver.getResource(ResourceUtil.getParent(entry.getKey()));
+                resolver.create(parent, ResourceUtil.getName(entry.getKey()), entry.getValue());
+            }
+            resolver.commit();
+        } else {
+            throw new IllegalArgumentException("Unknown provider " + provider);
+        }
+
+        final Random random = new Random(42);
+        lookups = new int[LOOKUPS];
+        pageResources = new Resource[LOOKUPS];
+        contentResources = new Resource[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = random.nextInt(pages);
+            pageResources[i] = resolver.getResource(BenchmarkContent.pagePath(lookups[i]));
+            contentResources[i] = resolver.getResource(BenchmarkContent.pagePath(lookups[i]) + "/jcr:content");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        resolver.close();
+        if (fixture != null) {
+            fixture.dispose();
+        }
+        if (dataDirectory != null) {
+            FileUtils.deleteDirectory(dataDirectory);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (LOOKUPS - 1);
+        return index;
+    }
+
+    @Benchmark
+    public Resource resolve() {
+        return resolver.resolve(BenchmarkContent.pagePath(lookups[next()]) + ".html");
+    }
+
+    @Benchmark
+    public Resource resolveAlias() {
+        return resolver.resolve(BenchmarkContent.aliasPath(lookups[next()] % Math.max(aliases, 1)) + ".html");
+    }
+
+    @Benchmark
+    public Resource resolveVanityPath() {
+        return resolver.resolve(BenchmarkContent.vanityPath(lookups[next()] % Math.max(vanityPaths, 1)));
+    }
+
+    @Benchmark
+    public Resource resolveNonExisting() {
+        return resolver.resolve(BenchmarkContent.SITE + "/missing" + lookups[next()] + ".html");
+    }
+
+    @Benchmark
+    public String map() {
+        return resolver.map(BenchmarkContent.pagePath(lookups[next()]));
+    }
+
+    @Benchmark
+    public Resource getResource() {
+        return resolver.getResource(BenchmarkContent.pagePath(lookups[next()]) + "/jcr:content");
+    }
+
+    @Benchmark
+    public void listChildren(final Blackhole blackhole) {
+        final Resource folder = pageResources[next()].getParent();
+        final Iterator<Resource> children = resolver.listChildren(folder);
+        while (children.hasNext()) {
+            blackhole.consume(children.next());
+        }
+    }
+
+    @Benchmark
+    public boolean isResourceType() {
+        return resolver.isResourceType(pageResources[next()], BenchmarkContent.FOUNDATION_TYPE);
+    }
+
+    @Benchmark
+    public void valueMap(final Blackhole blackhole) {
+        final ValueMap properties = contentResources[next()].getValueMap();
+        blackhole.consume(properties.get("jcr:title", String.class));
+        blackhole.consume(properties.get("index", 0));
+        blackhole.consume(properties.get("missing", String.class));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.scheduler.impl.QuartzScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of scheduling one shot jobs, with quartz or with the timer
+ * wheel of the scheduler.
+ * <p>
+ * <code>scheduleAt</code> schedules 100k jobs an hour ahead, so it measures
+ * the cost of adding them to the scheduler. <code>fireNow</code> schedules
+ * 10k jobs to run now, as Sling Jobs does for retries, and waits for all of
+ * them to run on the default thread pool. Each invocation uses a new
+ * scheduler, the score is the time per job.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SchedulerBenchmark {
+
+    private static final int JOBS = 100000;
+
+    /** Fewer jobs to run, quartz takes minutes to run 100k jobs scheduled at once. */
+    private static final int FIRED = 10000;
+
+    @Param({"false", "true"})
+    public boolean timerWheel;
+
+    private QuartzSchedulerFixture fixture;
+
+    private QuartzScheduler scheduler;
+
+    private CountDownLatch latch;
+
+    private Runnable job;
+
+    @Setup(Level.Invocation)
+    public void setup() throws Exception {
+        fixture = new QuartzSchedulerFixture(timerWheel);
+        scheduler = fixture.getScheduler();
+        latch = new CountDownLatch(FIRED);
+        job = new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        fixture.deactivate();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JOBS)
+    public void scheduleAt() {
+        final Date future = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < JOBS; i++) {
+            scheduler.schedule(1L, 1L, job, scheduler.AT(future));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIRED)
+    public void fireNow() throws InterruptedException {
+        for (int i = 0; i < FIRED; i++) {
+            scheduler.schedule(1L, 1L, job, scheduler.NOW());
+        }
+        if (!latch.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Jobs did not run: " + latch.getCount());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.auth.form.impl.TokenStoreFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the form authentication token store, which validates the
+ * authentication cookie of every request and encodes a new one on login.
+ * <p>
+ * The <code>*Contended</code> benchmarks run with one thread per available
+ * processor against a single token store, as during a login storm. Their
+ * score is the throughput of all threads: divide it by the number of
+ * processors to compare the validations per second per core with the
+ * single threaded benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenStoreBenchmark {
+
+    private static final int TOKENS = 1024;
+
+    @Param({"HmacSHA1", "HmacSHA256"})
+    public String algorithm;
+
+    private File tokenFile;
+
+    private TokenStoreFixture store;
+
+    private String[] tokens;
+
+    private long expires;
+
+    @Setup
+    public void setup() throws IOException, GeneralSecurityException {
+        tokenFile = File.createTempFile("benchmark-tokens", ".bin");
+        tokenFile.delete();
+        store = new TokenStoreFixture(tokenFile, algorithm);
+
+        // valid for longer than the benchmark runs
+        expires = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = store.encode(expires, "user" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        tokenFile.delete();
+    }
+
+    /** The index of the next token of each benchmark thread. */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        int next() {
+            index = (index + 1) & (TOKENS - 1);
+            return index;
+        }
+    }
+
+    @Benchmark
+    public boolean validate(final Cursor cursor) {
+        return store.isValid(tokens[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean validateContended(final Cursor cursor) {
+        return store.isValid(tokens[cursor.next()]);
+    }
+
+    @Benchmark
+    public String encode(final Cursor cursor) throws GeneralSecurityException, IOException {
+        return store.encode(expires, "user" + cursor.next());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String encodeContended(final Cursor cursor) throws GeneralSecurityException, IOException {
+        return store.encode(expires, "user" + cursor.next());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.resourceresolver.impl.observation.ResourceChangeListenerWhiteboard;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderInfo;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderStorage;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker;
+import org.apache.sling.serviceusermapping.ServiceUserMapper;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * The resource resolver factory with a single resource provider mounted at
+ * the root, wired like the unit tests of the resource resolver do.
+ */
+public class ResourceResolverFactoryFixture {
+
+    private static final String PROVIDER_NAME = "benchmark";
+
+    private final ResourceResolverFactoryActivator activator = new ResourceResolverFactoryActivator();
+
+    private final ResourceResolverFactory factory;
+
+    /**
+     * Activate the factory.
+     *
+     * @param provider the resource provider mounted at the root
+     * @param dataDirectory the directory for the data files, like the vanity path bloom filter
+     * @param config configuration values by the name of the configuration method,
+     *               all other values are the defaults except for the required
+     *               providers, which are not required by default
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ResourceResolverFactoryFixture(final ResourceProvider<?> provider, final File dataDirectory,
+            final Map<String, Object> config) {
+        final Bundle bundle = mock(Bundle.class);
+        final BundleContext bundleContext = mock(BundleContext.class);
+        when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext);
+        when(bundleContext.getBundle()).thenReturn(bundle);
+        when(bundleContext.getBundle(Constants.SYSTEM_BUNDLE_LOCATION)).thenReturn(bundle);
+        when(bundleContext.getDataFile(anyString())).thenAnswer(new Answer<File>() {
+
+            @Override
+            public File answer(final InvocationOnMock invocation) {
+                return new File(dataDirectory, (String) invocation.getArguments()[0]);
+            }
+        });
+
+        final ServiceUserMapper serviceUserMapper = mock(ServiceUserMapper.class);
+        when(serviceUserMapper.getServiceUserID(any(Bundle.class), anyString())).thenReturn(PROVIDER_NAME);
+
+        final ResourceProviderStorage storage = new ResourceProviderStorage(Collections.singletonList(createHandler(provider)));
+        final ResourceProviderTracker resourceProviderTracker = mock(ResourceProviderTracker.class);
+        when(resourceProviderTracker.getResourceProviderStorage()).thenReturn(storage);
+
+        activator.serviceUserMapper = serviceUserMapper;
+        activator.resourceAccessSecurityTracker = new ResourceAccessSecurityTracker();
+        activator.resourceProviderTracker = resourceProviderTracker;
+        activator.changeListenerWhiteboard = mock(ResourceChangeListenerWhiteboard.class);
+        final Map<String, Object> values = new HashMap<String, Object>();
+        values.put("resource_resolver_required_providernames", new String[0]);
+        values.putAll(config);
+        activator.activate(bundleContext, createConfig(values));
+
+        final ArgumentCaptor<ServiceFactory> captor = ArgumentCaptor.forClass(ServiceFactory.class);
+        verify(bundleContext).registerService(eq(ResourceResolverFactory.class), (ServiceFactory<ResourceResolverFactory>) captor.capture(),
+                any(Dictionary.class));
+        this.factory = (ResourceResolverFactory) captor.getValue().getService(bundle, null);
+    }
+
+    public ResourceResolverFactory getResourceResolverFactory() {
+        return factory;
+    }
+
+    public void dispose() {
+        activator.deactivate();
+    }
+
+    private static ResourceProviderHandler createHandler(final ResourceProvider<?> provider) {
+        final ServiceReference<?> ref = mock(ServiceReference.class);
+        final BundleContext bc = mock(BundleContext.class);
+        when(bc.getService(eq(ref))).thenReturn(provider);
+        when(ref.getProperty(Constants.SERVICE_ID)).thenReturn(1L);
+        when(ref.getProperty(Constants.SERVICE_RANKING)).thenReturn(0);
+        when(ref.getProperty(ResourceProvider.PROPERTY_NAME)).thenReturn(PROVIDER_NAME);
+        when(ref.getProperty(ResourceProvider.PROPERTY_ROOT)).thenReturn("/");
+        when(ref.getProperty(ResourceProvider.PROPERTY_ADAPTABLE)).thenReturn(true);
+
+        final ResourceProviderHandler handler = new ResourceProviderHandler(bc, new ResourceProviderInfo(ref));
+        handler.activate();
+        return handler;
+    }
+
+    private static ResourceResolverFactoryConfig createConfig(final Map<String, Object> values) {
+        return (ResourceResolverFactoryConfig) Proxy.newProxyInstance(ResourceResolverFactoryConfig.class.getClassLoader(),
+                new Class<?>[] { ResourceResolverFactoryConfig.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (values.containsKey(method.getName())) {
+                            return values.get(method.getName());
+                        }
+                        if ("annotationType".equals(method.getName())) {
+                            return ResourceResolverFactoryConfig.class;
+                        }
+                        if ("toString".equals(method.getName())) {
+                            return values.toString();
+                        }
+                        if ("hashCode".equals(method.getName())) {
+                            return values.hashCode();
+                        }
+                        if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        }
+                        return method.getDefaultValue();
+                    }
+                });
+    }
+}